@@ -0,0 +1,95 @@
+package iudx.resource.server.database.elastic;
+
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Rows per second of writing a page of records as CSV, an operation is a row. Run with
+ *
+ * <pre>mvn -P jmh test-compile exec:exec@jmh</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CsvFormatterBenchmark {
+
+  private static final int ROWS = 1000;
+
+  private List<Hit<ObjectNode>> page;
+  private EsResponseFormatterToCsv formatter;
+  private Set<String> headers;
+
+  @Setup
+  public void setup() {
+    page = new ArrayList<>(ROWS);
+    for (int i = 0; i < ROWS; i++) {
+      ObjectNode source =
+          JsonNodeFactory.instance
+              .objectNode()
+              .put("id", "b58da193-23d9-43eb-b98a-a103d4b6103c")
+              .put("observationDateTime", "2020-10-18T14:20:00+05:30")
+              .put("trip_id", "trip-" + i)
+              .put("license_plate", "KA01AB" + i)
+              .put("speed", 30.5 + i)
+              .put("route_id", "route, " + (i % 50))
+              .put("trip_direction", i % 2 == 0);
+      source.putObject("location").put("type", "Point").putArray("coordinates").add(77.5).add(12.9);
+      page.add(Hit.of(h -> h.index("index").id("id").source(source)));
+    }
+    formatter = new EsResponseFormatterToCsv(Writer.nullWriter());
+    headers = formatter.writeToCsv(page);
+  }
+
+  /** flattening as done before, a JsonFlatten and map per record and a StringBuilder per row. */
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void flattenToMap() throws IOException {
+    Writer writer = Writer.nullWriter();
+    for (Hit<ObjectNode> hit : page) {
+      Map<String, Object> map = new JsonFlatten(hit.source()).flatten();
+      StringBuilder stringBuilder = new StringBuilder();
+      for (String field : headers) {
+        Object cell = map.get(field);
+        if (cell == null) {
+          stringBuilder.append("").append(",");
+        } else {
+          String cellValue = cell.toString();
+          if (cellValue.contains(",") || cellValue.contains("\"")) {
+            cellValue = "\"" + cellValue.replace("\"", "\"\"") + "\"";
+          }
+          stringBuilder.append(cellValue).append(",");
+        }
+      }
+      String row = stringBuilder.substring(0, stringBuilder.length() - 1);
+      writer.append(row).append("\n");
+    }
+  }
+
+  @Benchmark
+  @OperationsPerInvocation(ROWS)
+  public void flattenToWriter() {
+    formatter.append(page, true, headers);
+  }
+}
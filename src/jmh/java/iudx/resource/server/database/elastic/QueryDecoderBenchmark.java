@@ -0,0 +1,77 @@
+package iudx.resource.server.database.elastic;
+
+import static iudx.resource.server.database.archives.Constants.*;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per request cost of decoding a temporal + attribute search. Run with
+ *
+ * <pre>mvn -P jmh test-compile exec:exec@jmh</pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryDecoderBenchmark {
+
+  private static final String SEARCH_TYPE_VALUE = "temporalSearch_attributeSearch_";
+
+  private QueryDecoder queryDecoder;
+  private JsonObject request;
+
+  @Setup
+  public void setup() {
+    queryDecoder = new QueryDecoder();
+    request =
+        new JsonObject()
+            .put(ID, new JsonArray().add("b58da193-23d9-43eb-b98a-a103d4b6103c"))
+            .put(SEARCH_TYPE, SEARCH_TYPE_VALUE)
+            .put(REQ_TIMEREL, "during")
+            .put(TIME_KEY, "2020-10-18T14:20:00Z")
+            .put(END_TIME, "2020-10-19T14:20:00Z")
+            .put(
+                ATTRIBUTE_QUERY_KEY,
+                new JsonArray()
+                    .add(
+                        new JsonObject()
+                            .put(ATTRIBUTE_KEY, "speed")
+                            .put(OPERATOR, ">")
+                            .put(VALUE, "30")))
+            .put("applicableFilters", new JsonArray().add("ATTR").add("TEMPORAL"))
+            .put(TIME_LIMIT, "production,2020-10-22T00:00:00Z,10");
+  }
+
+  @Benchmark
+  public boolean classifyWithRegex() {
+    return SEARCH_TYPE_VALUE.matches(TEMPORAL_SEARCH_REGEX)
+        | SEARCH_TYPE_VALUE.matches(ATTRIBUTE_SEARCH_REGEX)
+        | SEARCH_TYPE_VALUE.matches(GEOSEARCH_REGEX)
+        | SEARCH_TYPE_VALUE.matches(RESPONSE_FILTER_REGEX);
+  }
+
+  @Benchmark
+  public QueryPlan classifyWithPlan() {
+    return QueryPlan.forSearchType(SEARCH_TYPE_VALUE);
+  }
+
+  @Benchmark
+  public Query decodeQuery() {
+    return queryDecoder.getQuery(request);
+  }
+}
@@ -3,6 +3,7 @@ package iudx.resource.server.apiserver;
 import static iudx.resource.server.apiserver.response.ResponseUtil.generateResponse;
 import static iudx.resource.server.apiserver.util.Constants.*;
 import static iudx.resource.server.apiserver.util.Util.errorResponse;
+import static iudx.resource.server.apiserver.util.Util.toList;
 import static iudx.resource.server.authenticator.Constants.ROLE;
 import static iudx.resource.server.cache.cachelmpl.CacheType.CATALOGUE_CACHE;
 import static iudx.resource.server.common.Constants.CACHE_SERVICE_ADDRESS;
@@ -11,6 +12,7 @@ import static iudx.resource.server.common.HttpStatusCode.BAD_REQUEST;
 import static iudx.resource.server.common.HttpStatusCode.NOT_FOUND;
 import static iudx.resource.server.common.HttpStatusCode.UNAUTHORIZED;
 import static iudx.resource.server.common.ResponseUrn.*;
+import static iudx.resource.server.database.archives.Constants.HIT_COUNT;
 import static iudx.resource.server.database.archives.Constants.ITEM_TYPES;
 import static iudx.resource.server.metering.util.Constants.DELEGATOR_ID;
 import static iudx.resource.server.metering.util.Constants.EPOCH_TIME;
@@ -21,9 +23,11 @@ import static iudx.resource.server.metering.util.Constants.TYPE_KEY;
 import io.netty.handler.codec.http.HttpConstants;
 import io.netty.handler.codec.http.QueryStringDecoder;
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.MultiMap;
 import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpMethod;
 import io.vertx.core.http.HttpServer;
 import io.vertx.core.http.HttpServerOptions;
@@ -65,11 +69,13 @@ import iudx.resource.server.metering.MeteringService;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import org.apache.logging.log4j.LogManager;
@@ -146,6 +152,7 @@ public class ApiServerVerticle extends AbstractVerticle {
     allowedHeaders.add(HEADER_ALLOW_ORIGIN);
     allowedHeaders.add(HEADER_PUBLIC_KEY);
     allowedHeaders.add(HEADER_RESPONSE_FILE_FORMAT);
+    allowedHeaders.add(HEADER_RESPONSE_FILE_COMPRESSION);
     allowedHeaders.add(HEADER_OPTIONS);
 
     Set<HttpMethod> allowedMethods = new HashSet<>();
@@ -647,10 +654,13 @@ public class ApiServerVerticle extends AbstractVerticle {
     HttpServerResponse response = routingContext.response();
     // get query parameters
     MultiMap params = getQueryParams(routingContext, response).get();
-    if (!params.isEmpty()) {
+    // only attrs is allowed, latest values are projected to them
+    if (params.names().stream().anyMatch(name -> !NGSILDQUERY_ATTRIBUTE.equals(name))) {
       RuntimeException ex =
-          new RuntimeException("Query parameters are not allowed with latest query");
+          new RuntimeException(
+              "Query parameters other than attrs are not allowed with latest query");
       routingContext.fail(ex);
+      return;
     }
     Map<String, String> pathParams = routingContext.pathParams();
     String id = pathParams.get("*");
@@ -660,10 +670,18 @@ public class ApiServerVerticle extends AbstractVerticle {
     /* HTTP request instance/host details */
     String instanceId = request.getHeader(HEADER_HOST);
     json.put(JSON_INSTANCEID, instanceId);
-    json.put(JSON_ID, new JsonArray().add(id));
-    json.put(JSON_SEARCH_TYPE, "latestSearch");
+    // latest values of a comma separated list of ids are got in a single request
+    JsonArray ids = new JsonArray(List.of(id.split(",")));
+    json.put(JSON_ID, ids);
+    if (params.contains(NGSILDQUERY_ATTRIBUTE)) {
+      String[] attrs = params.get(NGSILDQUERY_ATTRIBUTE).split(",");
+      json.put(JSON_ATTRIBUTE_FILTER, new JsonArray(List.of(attrs)));
+      json.put(JSON_SEARCH_TYPE, JSON_LATEST_SEARCH + "responseFilter");
+    } else {
+      json.put(JSON_SEARCH_TYPE, "latestSearch");
+    }
     LOGGER.debug("Info: IUDX query json;" + json);
-    Future<List<String>> filtersFuture = catalogueService.getApplicableFilters(id);
+    Future<List<String>> filtersFuture = catalogueService.getApplicableFilters(toList(ids));
     filtersFuture.onComplete(
         filtersHandler -> {
           if (filtersHandler.succeeded()) {
@@ -717,7 +735,7 @@ public class ApiServerVerticle extends AbstractVerticle {
             JsonObject requestBody = new JsonObject();
             requestBody.put("ids", json.getJsonArray("id"));
             Future<List<String>> filtersFuture =
-                catalogueService.getApplicableFilters(json.getJsonArray("id").getString(0));
+                catalogueService.getApplicableFilters(toList(json.getJsonArray("id")));
             filtersFuture.onComplete(
                 filtersHandler -> {
                   if (filtersHandler.succeeded()) {
@@ -770,7 +788,7 @@ public class ApiServerVerticle extends AbstractVerticle {
             requestJson.put("ids", json.getJsonArray("id"));
             LOGGER.debug("Info: IUDX query json : ;" + json);
             Future<List<String>> filtersFuture =
-                catalogueService.getApplicableFilters(json.getJsonArray("id").getString(0));
+                catalogueService.getApplicableFilters(toList(json.getJsonArray("id")));
             filtersFuture.onComplete(
                 filtersHandler -> {
                   if (filtersHandler.succeeded()) {
@@ -780,6 +798,9 @@ public class ApiServerVerticle extends AbstractVerticle {
                       json.put("limit", params.get("limit"));
                       json.put("offset", params.get("offset"));
                     }
+                    if (params.contains(IUDXQUERY_CURSOR)) {
+                      json.put(IUDXQUERY_CURSOR, params.get(IUDXQUERY_CURSOR));
+                    }
                     if (json.containsKey(IUDXQUERY_OPTIONS)
                         && JSON_COUNT.equalsIgnoreCase(json.getString(IUDXQUERY_OPTIONS))) {
                       executeCountQuery(routingContext, json, response);
@@ -805,11 +826,21 @@ public class ApiServerVerticle extends AbstractVerticle {
    */
   private void executeCountQuery(
       RoutingContext context, JsonObject json, HttpServerResponse response) {
-    Future<JsonObject> countQueryDbFuture = database.count(json);
-    countQueryDbFuture.onComplete(
+    executeResultsQuery(context, database.count(json), response);
+  }
+
+  private void executeAggregationQuery(
+      RoutingContext context, JsonObject json, HttpServerResponse response) {
+    executeResultsQuery(context, database.aggregate(json), response);
+  }
+
+  /** respond with results of a count/aggregation query, encrypted when a public key is given. */
+  private void executeResultsQuery(
+      RoutingContext context, Future<JsonObject> queryDbFuture, HttpServerResponse response) {
+    queryDbFuture.onComplete(
         handler -> {
           if (handler.succeeded()) {
-            LOGGER.info("Success: Count Success");
+            LOGGER.info("Success: query Success");
             if (context.request().getHeader(HEADER_PUBLIC_KEY) == null) {
               handleSuccessResponse(
                   response, ResponseType.Ok.getCode(), handler.result().toString());
@@ -836,7 +867,7 @@ public class ApiServerVerticle extends AbstractVerticle {
                   });
             }
           } else if (handler.failed()) {
-            LOGGER.error("Fail: Count Fail");
+            LOGGER.error("Fail: query Fail");
             processBackendResponse(response, handler.cause().getMessage());
           }
         });
@@ -850,35 +881,36 @@ public class ApiServerVerticle extends AbstractVerticle {
    */
   private void executeSearchQuery(
       RoutingContext context, JsonObject json, HttpServerResponse response) {
+    if (isStreamingRequest(context)) {
+      executeStreamingSearchQuery(context, json, response);
+      return;
+    }
+    if (context.request().getHeader(HEADER_PUBLIC_KEY) == null) {
+      executeRawSearchQuery(context, json, response);
+      return;
+    }
+    // results are parsed only to be encrypted
     Future<JsonObject> searchDbFuture = database.search(json);
     searchDbFuture.onComplete(
         handler -> {
           if (handler.succeeded()) {
             LOGGER.info("Success: Search Success");
-            if (context.request().getHeader(HEADER_PUBLIC_KEY) == null) {
-              handleSuccessResponse(
-                  response, ResponseType.Ok.getCode(), handler.result().toString());
-              context.data().put(RESPONSE_SIZE, response.bytesWritten());
-              Future.future(fu -> updateAuditTable(context));
-            } else {
-              // Encryption
-              Future<JsonObject> future =
-                  encryption(context, handler.result().getJsonArray("results").toString());
-              future.onComplete(
-                  encryptionHandler -> {
-                    if (encryptionHandler.succeeded()) {
-                      JsonObject result = encryptionHandler.result();
-                      handler.result().put("results", result);
-                      handleSuccessResponse(
-                          response, ResponseType.Ok.getCode(), handler.result().encode());
-                      context.data().put(RESPONSE_SIZE, response.bytesWritten());
-                      Future.future(fu -> updateAuditTable(context));
-                    } else {
-                      LOGGER.error("Encryption not completed");
-                      processBackendResponse(response, encryptionHandler.cause().getMessage());
-                    }
-                  });
-            }
+            Future<JsonObject> future =
+                encryption(context, handler.result().getJsonArray("results").toString());
+            future.onComplete(
+                encryptionHandler -> {
+                  if (encryptionHandler.succeeded()) {
+                    JsonObject result = encryptionHandler.result();
+                    handler.result().put("results", result);
+                    handleSuccessResponse(
+                        response, ResponseType.Ok.getCode(), handler.result().encode());
+                    context.data().put(RESPONSE_SIZE, response.bytesWritten());
+                    Future.future(fu -> updateAuditTable(context));
+                  } else {
+                    LOGGER.error("Encryption not completed");
+                    processBackendResponse(response, encryptionHandler.cause().getMessage());
+                  }
+                });
           } else if (handler.failed()) {
             LOGGER.error("Fail: Search Fail");
             processBackendResponse(response, handler.cause().getMessage());
@@ -886,29 +918,192 @@ public class ApiServerVerticle extends AbstractVerticle {
         });
   }
 
+  /**
+   * Execute a search query in DB, response from DB is written to client as received without
+   * being parsed again.
+   *
+   * @param json valid json query
+   * @param response HttpServerResponse
+   */
+  private void executeRawSearchQuery(
+      RoutingContext context, JsonObject json, HttpServerResponse response) {
+    database
+        .searchRaw(json)
+        .onComplete(
+            handler -> {
+              if (handler.succeeded()) {
+                LOGGER.info("Success: Search Success");
+                response
+                    .putHeader(CONTENT_TYPE, APPLICATION_JSON)
+                    .setStatusCode(ResponseType.Ok.getCode())
+                    .end(handler.result());
+                context.data().put(RESPONSE_SIZE, response.bytesWritten());
+                Future.future(fu -> updateAuditTable(context));
+              } else {
+                LOGGER.error("Fail: Search Fail");
+                processBackendResponse(response, handler.cause().getMessage());
+              }
+            });
+  }
+
+  private boolean isStreamingRequest(RoutingContext context) {
+    String accept = context.request().getHeader(HEADER_ACCEPT);
+    return accept != null
+        && accept.contains(APPLICATION_NDJSON)
+        && context.request().getHeader(HEADER_PUBLIC_KEY) == null;
+  }
+
+  /**
+   * Execute a search query in DB and stream all matching records as newline delimited json. Pages
+   * are fetched one at a time using a cursor, next page is fetched only once the previous one is
+   * accepted by the connection so memory held per request stays within a page. Hit sources of a
+   * page are written as read from DB. <b>offset</b> and <b>limit</b> apply to the whole stream,
+   * the records skipped and the most records written. The point-in-time of the cursor is closed
+   * once the stream stops short of the last page, on reaching the limit or a closed connection.
+   *
+   * @param json valid json query
+   * @param response HttpServerResponse
+   */
+  private void executeStreamingSearchQuery(
+      RoutingContext context, JsonObject json, HttpServerResponse response) {
+    long offset =
+        json.containsKey(NGSILDQUERY_FROM) ? Long.parseLong(json.getString(NGSILDQUERY_FROM)) : 0;
+    long limit =
+        json.containsKey(NGSILDQUERY_SIZE)
+            ? Long.parseLong(json.getString(NGSILDQUERY_SIZE))
+            : Long.MAX_VALUE;
+    json.remove(NGSILDQUERY_FROM);
+    json.put(IUDXQUERY_CURSOR, IUDXQUERY_NEW_CURSOR);
+    // cursor of the next page while waiting on the connection, closed if the client goes away
+    AtomicReference<String> pendingCursor = new AtomicReference<>();
+    response.closeHandler(
+        closed -> {
+          String cursor = pendingCursor.getAndSet(null);
+          if (cursor != null) {
+            LOGGER.warn("client closed connection, stopping stream");
+            database.closeCursor(cursor);
+          }
+        });
+    streamNextPage(context, json, response, offset, limit, pendingCursor);
+  }
+
+  private void streamNextPage(
+      RoutingContext context,
+      JsonObject json,
+      HttpServerResponse response,
+      long skip,
+      long remaining,
+      AtomicReference<String> pendingCursor) {
+    json.put(
+        NGSILDQUERY_SIZE,
+        String.valueOf(Math.min(STREAM_PAGE_SIZE, skip + Math.min(remaining, STREAM_PAGE_SIZE))));
+    database
+        .searchStreamPage(json)
+        .onComplete(
+            handler -> {
+              String next =
+                  handler.succeeded() ? handler.result().getString(JSON_NEXT_CURSOR) : null;
+              if (response.closed()) {
+                LOGGER.warn("client closed connection, stopping stream");
+                if (next != null) {
+                  database.closeCursor(next);
+                }
+                return;
+              }
+              if (handler.failed()) {
+                String cursor = json.getString(IUDXQUERY_CURSOR);
+                if (!IUDXQUERY_NEW_CURSOR.equals(cursor)) {
+                  database.closeCursor(cursor);
+                }
+                if (!response.headWritten()) {
+                  LOGGER.error("Fail: Search Fail");
+                  processBackendResponse(response, handler.cause().getMessage());
+                } else {
+                  LOGGER.error("Fail: stream interrupted : " + handler.cause().getMessage());
+                  response.reset();
+                }
+                return;
+              }
+              if (!response.headWritten()) {
+                response
+                    .setChunked(true)
+                    .putHeader(CONTENT_TYPE, APPLICATION_NDJSON)
+                    .setStatusCode(ResponseType.Ok.getCode());
+              }
+              Buffer lines = handler.result().getBuffer("results");
+              int hitCount = handler.result().getInteger(HIT_COUNT);
+              int skipped = (int) Math.min(skip, hitCount);
+              int written = (int) Math.min(hitCount - skipped, remaining);
+              if (written > 0) {
+                int start = lineOffset(lines, 0, skipped);
+                response.write(lines.slice(start, lineOffset(lines, start, written)));
+              }
+              long nextSkip = skip - skipped;
+              long nextRemaining = remaining - written;
+
+              if (next == null || nextRemaining == 0) {
+                if (next != null) {
+                  database.closeCursor(next);
+                }
+                LOGGER.info("Success: Search stream Success");
+                response.end();
+                context.data().put(RESPONSE_SIZE, response.bytesWritten());
+                Future.future(fu -> updateAuditTable(context));
+                return;
+              }
+              json.put(IUDXQUERY_CURSOR, next);
+              if (response.writeQueueFull()) {
+                pendingCursor.set(next);
+                response.drainHandler(
+                    drained -> {
+                      response.drainHandler(null);
+                      if (pendingCursor.getAndSet(null) != null) {
+                        streamNextPage(
+                            context, json, response, nextSkip, nextRemaining, pendingCursor);
+                      }
+                    });
+              } else {
+                streamNextPage(context, json, response, nextSkip, nextRemaining, pendingCursor);
+              }
+            });
+  }
+
+  /* byte offset past a number of lines of newline delimited json, counted from a byte offset */
+  private static int lineOffset(Buffer lines, int from, int count) {
+    int offset = from;
+    for (int i = 0; i < count; i++) {
+      while (lines.getByte(offset) != '\n') {
+        offset++;
+      }
+      offset++;
+    }
+    return offset;
+  }
+
   private void executeLatestSearchQuery(
       RoutingContext context, JsonObject json, HttpServerResponse response) {
-    latestDataService.getLatestData(
+    latestDataService.getLatestDataEncoded(
         json,
         handler -> {
           if (handler.succeeded()) {
             LOGGER.info("Latest data search succeeded");
             if (context.request().getHeader(HEADER_PUBLIC_KEY) == null) {
-              handleSuccessResponse(
-                  response, ResponseType.Ok.getCode(), handler.result().toString());
+              // latest data is written as it is read from Redis
+              handleSuccessResponse(response, ResponseType.Ok.getCode(), handler.result());
               context.data().put(RESPONSE_SIZE, response.bytesWritten());
               Future.future(fu -> updateAuditTable(context));
             } else {
               //                Encryption
+              JsonObject latestResponse = new JsonObject(handler.result());
               Future<JsonObject> future =
-                  encryption(context, handler.result().getJsonArray("results").toString());
+                  encryption(context, latestResponse.getJsonArray("results").toString());
               future.onComplete(
                   encryptionHandler -> {
                     if (encryptionHandler.succeeded()) {
                       JsonObject result = encryptionHandler.result();
-                      handler.result().put("results", result);
+                      latestResponse.put("results", result);
                       handleSuccessResponse(
-                          response, ResponseType.Ok.getCode(), handler.result().encode());
+                          response, ResponseType.Ok.getCode(), latestResponse.encode());
                       context.data().put(RESPONSE_SIZE, response.bytesWritten());
                       Future.future(fu -> updateAuditTable(context));
                     } else {
@@ -986,7 +1181,7 @@ public class ApiServerVerticle extends AbstractVerticle {
             JsonObject requestBody = new JsonObject();
             requestBody.put("ids", json.getJsonArray("id"));
             Future<List<String>> filtersFuture =
-                catalogueService.getApplicableFilters(json.getJsonArray("id").getString(0));
+                catalogueService.getApplicableFilters(toList(json.getJsonArray("id")));
             filtersFuture.onComplete(
                 filtersHandler -> {
                   if (filtersHandler.succeeded()) {
@@ -994,6 +1189,8 @@ public class ApiServerVerticle extends AbstractVerticle {
                     if (json.containsKey(IUDXQUERY_OPTIONS)
                         && JSON_COUNT.equalsIgnoreCase(json.getString(IUDXQUERY_OPTIONS))) {
                       executeCountQuery(routingContext, json, response);
+                    } else if (json.containsKey(NGSILDQUERY_AGGRMETHODS)) {
+                      executeAggregationQuery(routingContext, json, response);
                     } else {
                       executeSearchQuery(routingContext, json, response);
                     }
@@ -1637,11 +1834,28 @@ public class ApiServerVerticle extends AbstractVerticle {
   private Future<Void> updateAuditTable(RoutingContext context) {
     JsonObject authInfo = (JsonObject) context.data().get("authInfo");
     LOGGER.debug("auth info" + authInfo);
+    Object responseSize = context.data().get(RESPONSE_SIZE);
+    String id = authInfo.getString(ID);
+    if (id == null || !id.contains(",")) {
+      return updateAuditTable(authInfo, id, responseSize);
+    }
+    // a record for each id of a multi id query, response size is shared equally among them
+    String[] ids = id.split(",");
+    Object idResponseSize =
+        responseSize instanceof Number ? ((Number) responseSize).longValue() / ids.length : null;
+    List<Future> auditFutures = new ArrayList<>();
+    for (String i : ids) {
+      auditFutures.add(updateAuditTable(authInfo, i, idResponseSize));
+    }
+    return CompositeFuture.join(auditFutures).mapEmpty();
+  }
+
+  private Future<Void> updateAuditTable(JsonObject authInfo, String id, Object responseSize) {
     Promise<Void> promise = Promise.promise();
     JsonObject request = new JsonObject();
     JsonObject cacheRequest = new JsonObject();
     cacheRequest.put("type", CATALOGUE_CACHE);
-    cacheRequest.put("key", authInfo.getValue(ID));
+    cacheRequest.put("key", id);
     cacheService
         .get(cacheRequest)
         .onComplete(
@@ -1674,9 +1888,9 @@ public class ApiServerVerticle extends AbstractVerticle {
                 request.put(EPOCH_TIME, time);
                 request.put(ISO_TIME, isoTime);
                 request.put(USER_ID, authInfo.getValue(USER_ID));
-                request.put(ID, authInfo.getValue(ID));
+                request.put(ID, id);
                 request.put(API, authInfo.getValue(API_ENDPOINT));
-                request.put(RESPONSE_SIZE, context.data().get(RESPONSE_SIZE));
+                request.put(RESPONSE_SIZE, responseSize);
                 request.put(PROVIDER_ID, providerId);
                 meteringService.insertMeteringValuesInRmq(
                     request,
@@ -137,6 +137,11 @@ public class AsyncRestApi {
             if (routingContext.request().getHeader(HEADER_RESPONSE_FILE_FORMAT) != null) {
               json.put("format", routingContext.request().getHeader(HEADER_RESPONSE_FILE_FORMAT));
             }
+            if (routingContext.request().getHeader(HEADER_RESPONSE_FILE_COMPRESSION) != null) {
+              json.put(
+                  HEADER_RESPONSE_FILE_COMPRESSION,
+                  routingContext.request().getHeader(HEADER_RESPONSE_FILE_COMPRESSION));
+            }
 
             Future<List<String>> filtersFuture =
                 catalogueService.getApplicableFilters(json.getJsonArray("id").getString(0));
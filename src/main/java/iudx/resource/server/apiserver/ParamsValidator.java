@@ -17,10 +17,12 @@ import iudx.resource.server.apiserver.validation.types.GeoRelTypeValidator;
 import iudx.resource.server.apiserver.validation.types.QtypeValidator;
 import iudx.resource.server.apiserver.validation.types.Validator;
 import iudx.resource.server.common.HttpStatusCode;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.StringJoiner;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.locationtech.jts.geom.Coordinate;
@@ -55,6 +57,11 @@ public class ParamsValidator {
     validParams.add(NGSILDQUERY_TIME_PROPERTY);
     validParams.add(NGSILDQUERY_FROM);
     validParams.add(NGSILDQUERY_SIZE);
+    // for cursor based pagination
+    validParams.add(IUDXQUERY_CURSOR);
+    // for temporal aggregation query
+    validParams.add(NGSILDQUERY_AGGRMETHODS);
+    validParams.add(NGSILDQUERY_AGGRPERIODDURATION);
 
     // for IUDX count query
     validParams.add(IUDXQUERY_OPTIONS);
@@ -150,11 +157,9 @@ public class ParamsValidator {
           } else if (entry.getKey().equalsIgnoreCase("entities")) {
             paramsMap.add(entry.getKey().toString(), entry.getValue().toString());
             JsonArray array = (JsonArray) entry.getValue();
-            JsonObject innerObject = array.getJsonObject(0);
-            innerObject.forEach(
-                innerentry -> {
-                  paramsMap.add(innerentry.getKey().toString(), innerentry.getValue().toString());
-                });
+            StringJoiner ids = new StringJoiner(",");
+            array.forEach(entity -> ids.add(((JsonObject) entity).getString(NGSILDQUERY_ID)));
+            paramsMap.add(NGSILDQUERY_ID, ids.toString());
           } else {
             paramsMap.add(entry.getKey().toString(), entry.getValue().toString());
           }
@@ -190,7 +195,9 @@ public class ParamsValidator {
 
   private Future<Boolean> isValidQueryWithFilters(MultiMap paramsMap) {
     Promise<Boolean> promise = Promise.promise();
-    Future<List<String>> filtersFuture = catalogueService.getApplicableFilters(paramsMap.get("id"));
+    String id = paramsMap.get(NGSILDQUERY_ID);
+    List<String> ids = id != null ? Arrays.asList(id.split(",")) : List.of();
+    Future<List<String>> filtersFuture = catalogueService.getApplicableFilters(ids);
     filtersFuture.onComplete(
         handler -> {
           if (handler.succeeded()) {
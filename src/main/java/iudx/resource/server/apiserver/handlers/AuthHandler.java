@@ -5,6 +5,8 @@ import static iudx.resource.server.authenticator.Constants.ROLE;
 import static iudx.resource.server.common.Constants.*;
 import static iudx.resource.server.common.ResponseUrn.*;
 
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.http.HttpMethod;
@@ -17,8 +19,10 @@ import iudx.resource.server.authenticator.AuthenticationService;
 import iudx.resource.server.common.Api;
 import iudx.resource.server.common.HttpStatusCode;
 import iudx.resource.server.common.ResponseUrn;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.StringJoiner;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -84,9 +88,25 @@ public class AuthHandler implements Handler<RoutingContext> {
     }
     requestJson.put(IDS, ids);
 
-    authenticator.tokenInterospect(
-        requestJson,
-        authInfo,
+    final JsonObject introspectRequest = requestJson;
+    Future<JsonObject> authFuture;
+    if (idArray.length > 1) {
+      // a multi id query is authorized for every id, as if each of them was requested alone
+      List<Future> idAuthFutures = new ArrayList<>();
+      for (String i : idArray) {
+        JsonObject idAuthInfo = authInfo.copy().put(ID, i);
+        idAuthFutures.add(
+            Future.<JsonObject>future(
+                promise -> authenticator.tokenInterospect(introspectRequest, idAuthInfo, promise)));
+      }
+      authFuture = CompositeFuture.all(idAuthFutures).map(composite -> composite.resultAt(0));
+    } else {
+      authFuture =
+          Future.future(
+              promise -> authenticator.tokenInterospect(introspectRequest, authInfo, promise));
+    }
+
+    authFuture.onComplete(
         authHandler -> {
           if (authHandler.succeeded()) {
             authInfo.put(IID, authHandler.result().getValue(IID));
@@ -189,10 +209,9 @@ public class AuthHandler implements Handler<RoutingContext> {
             || endpoint.matches(getpathRegex(api.getSubscriptionUrl()))) {
           id = array.getString(0);
         } else {
-          JsonObject json = array.getJsonObject(0);
-          if (json != null) {
-            id = json.getString(ID);
-          }
+          StringJoiner ids = new StringJoiner(",");
+          array.forEach(entity -> ids.add(((JsonObject) entity).getString(ID)));
+          id = array.isEmpty() ? null : ids.toString();
         }
       }
     }
@@ -20,6 +20,12 @@ public class FailureHandler implements Handler<RoutingContext> {
   public void handle(RoutingContext context) {
     Throwable failure = context.failure();
     LOGGER.debug("exception caught");
+    if (context.response().headWritten()) {
+      // a streamed response is already in progress (e.g. ndjson search), it can't be replaced
+      // with an error response anymore.
+      LOGGER.warn("response already started, ignoring failure [{}]", context.statusCode());
+      return;
+    }
     if (failure instanceof DxRuntimeException) {
       DxRuntimeException exception = (DxRuntimeException) failure;
       LOGGER.error(exception.getUrn().getUrn() + " : " + exception.getMessage());
@@ -1,7 +1,10 @@
 package iudx.resource.server.apiserver.query;
 
+import static iudx.resource.server.apiserver.util.Constants.IUDXQUERY_CURSOR;
 import static iudx.resource.server.apiserver.util.Constants.IUDXQUERY_OPTIONS;
 import static iudx.resource.server.apiserver.util.Constants.MSG_INVALID_PARAM;
+import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_AGGRMETHODS;
+import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_AGGRPERIODDURATION;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_ATTRIBUTE;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_COORDINATES;
 import static iudx.resource.server.apiserver.util.Constants.NGSILDQUERY_ENDTIME;
@@ -50,6 +53,9 @@ public class NgsildQueryParams {
   private String options;
   private String pageFrom;
   private String pageSize;
+  private String cursor;
+  private List<String> aggrMethods;
+  private String aggrPeriodDuration;
 
   public NgsildQueryParams() {}
 
@@ -138,6 +144,15 @@ public class NgsildQueryParams {
         case NGSILDQUERY_FROM:
           this.pageFrom = entry.getValue();
           break;
+        case IUDXQUERY_CURSOR:
+          this.cursor = entry.getValue();
+          break;
+        case NGSILDQUERY_AGGRMETHODS:
+          this.aggrMethods = Arrays.asList(entry.getValue().split(","));
+          break;
+        case NGSILDQUERY_AGGRPERIODDURATION:
+          this.aggrPeriodDuration = entry.getValue();
+          break;
         default:
           LOGGER.warn(MSG_INVALID_PARAM + ":" + entry.getKey());
           break;
@@ -186,9 +201,9 @@ public class NgsildQueryParams {
           } else if (entry.getKey().equalsIgnoreCase("entities")) {
             JsonArray array = new JsonArray(entry.getValue().toString());
             Iterator<?> iter = array.iterator();
+            this.id = new ArrayList<URI>();
+            this.idPattern = new ArrayList<String>();
             while (iter.hasNext()) {
-              this.id = new ArrayList<URI>();
-              this.idPattern = new ArrayList<String>();
               JsonObject entity = (JsonObject) iter.next();
               String id = entity.getString("id");
               String idPattern = entity.getString("idPattern");
@@ -315,6 +330,30 @@ public class NgsildQueryParams {
     return pageSize;
   }
 
+  public String getCursor() {
+    return cursor;
+  }
+
+  public void setCursor(String cursor) {
+    this.cursor = cursor;
+  }
+
+  public List<String> getAggrMethods() {
+    return aggrMethods;
+  }
+
+  public void setAggrMethods(List<String> aggrMethods) {
+    this.aggrMethods = aggrMethods;
+  }
+
+  public String getAggrPeriodDuration() {
+    return aggrPeriodDuration;
+  }
+
+  public void setAggrPeriodDuration(String aggrPeriodDuration) {
+    this.aggrPeriodDuration = aggrPeriodDuration;
+  }
+
   @Override
   public String toString() {
     return "NGSILDQueryParams [id="
@@ -150,6 +150,15 @@ public class QueryMapper {
     if (params.getPageSize() != null) {
       json.put(NGSILDQUERY_SIZE, params.getPageSize());
     }
+    if (params.getCursor() != null) {
+      json.put(IUDXQUERY_CURSOR, params.getCursor());
+    }
+    if (params.getAggrMethods() != null) {
+      json.put(NGSILDQUERY_AGGRMETHODS, new JsonArray(params.getAggrMethods()));
+    }
+    if (params.getAggrPeriodDuration() != null) {
+      json.put(NGSILDQUERY_AGGRPERIODDURATION, params.getAggrPeriodDuration());
+    }
 
     json.put(JSON_SEARCH_TYPE, getSearchType(isAsyncQuery));
     LOGGER.debug("Info : json " + json);
@@ -148,6 +148,32 @@ public class CatalogueService {
     return promise.future();
   }
 
+  /**
+   * filters applicable to all of the given ids, i.e. the ones a query spanning them can use.
+   *
+   * @param ids resource/group ids
+   * @return Future list of filters common to all ids
+   */
+  public Future<List<String>> getApplicableFilters(List<String> ids) {
+    if (ids.isEmpty()) {
+      return Future.failedFuture("no filters available for : " + ids);
+    }
+    if (ids.size() == 1) {
+      return getApplicableFilters(ids.get(0));
+    }
+    List<Future> filtersFutures =
+        ids.stream().distinct().map(this::getApplicableFilters).collect(Collectors.toList());
+    return CompositeFuture.all(filtersFutures)
+        .map(
+            composite -> {
+              List<String> filters = new ArrayList<String>(composite.<List<String>>resultAt(0));
+              for (int i = 1; i < composite.size(); i++) {
+                filters.retainAll(composite.<List<String>>resultAt(i));
+              }
+              return filters;
+            });
+  }
+
   // private Future<List<String>> fetchFilters4Item(String id, String groupId) {
   // Promise<List<String>> promise = Promise.promise();
   // Future<List<String>> getItemFilters = getFilterFromItemId(id);
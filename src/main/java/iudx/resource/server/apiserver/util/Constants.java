@@ -1,5 +1,6 @@
 package iudx.resource.server.apiserver.util;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.regex.Pattern;
 
@@ -120,6 +121,11 @@ public class Constants {
   public static final String NGSILDQUERY_TIME_PROPERTY = "timeProperty";
   public static final String NGSILDQUERY_FROM = "offset";
   public static final String NGSILDQUERY_SIZE = "limit";
+  public static final String IUDXQUERY_CURSOR = "cursor";
+  public static final String IUDXQUERY_NEW_CURSOR = "*";
+  public static final String JSON_NEXT_CURSOR = "next";
+  public static final String NGSILDQUERY_AGGRMETHODS = "aggrMethods";
+  public static final String NGSILDQUERY_AGGRPERIODDURATION = "aggrPeriodDuration";
 
   // Header params
   public static final String HEADER_TOKEN = "token";
@@ -139,10 +145,14 @@ public class Constants {
   public static final String PUBLIC_TOKEN = "public";
   public static final String HEADER_PUBLIC_KEY = "publicKey";
   public static final String HEADER_RESPONSE_FILE_FORMAT = "format";
+  public static final String HEADER_RESPONSE_FILE_COMPRESSION = "compression";
+  public static final String COMPRESSION_GZIP = "gzip";
+  public static final String COMPRESSION_ZSTD = "zstd";
 
   // request/response params
   public static final String CONTENT_TYPE = "content-type";
   public static final String APPLICATION_JSON = "application/json";
+  public static final String APPLICATION_NDJSON = "application/x-ndjson";
   public static final String SUBSCRIPTION_ID = "subscriptionID";
   public static final String EXCHANGE_ID = "exId";
 
@@ -248,6 +258,7 @@ public class Constants {
   // Validations
   public static final int VALIDATION_ID_MIN_LEN = 0;
   public static final int VALIDATION_ID_MAX_LEN = 512;
+  public static final int VALIDATION_MAX_IDS = 25;
   public static final Pattern VALIDATION_ID_PATTERN =
       Pattern.compile("^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$");
   public static final int VALIDATION_MAX_ATTRS = 5;
@@ -270,6 +281,8 @@ public class Constants {
   public static final double VALIDATION_ALLOWED_DIST_FOR_ASYNC = 10000.0;
   public static final int VALIDATION_PAGINATION_LIMIT_MAX = 5000;
   public static final int VALIDATION_PAGINATION_OFFSET_MAX = 49999;
+  public static final int STREAM_PAGE_SIZE = 5000;
+  public static final int VALIDATION_CURSOR_MAX_LENGTH = 4096;
   public static final List<Object> VALIDATION_ALLOWED_GEOM =
       List.of("Point", "point", "Polygon", "polygon", "LineString", "linestring", "bbox");
   public static final List<Object> VALIDATION_ALLOWED_GEOPROPERTY = List.of("location", "Location");
@@ -280,6 +293,10 @@ public class Constants {
 
   public static final List<String> VALIDATION_ALLOWED_TEMPORAL_REL_ASYNC =
       List.of("during", "between");
+  public static final List<String> VALIDATION_ALLOWED_AGGR_METHODS =
+      List.of("totalCount", "sum", "avg", "min", "max");
+  public static final Duration VALIDATION_AGGR_PERIOD_MIN = Duration.ofMinutes(1);
+  public static final Duration VALIDATION_AGGR_PERIOD_MAX = Duration.ofDays(10);
 
   public static final Pattern VALIDATION_Q_ATTR_PATTERN = Pattern.compile("^[a-zA-Z0-9_]{1,100}$");
   public static final Pattern VALIDATION_Q_VALUE_PATTERN =
@@ -91,7 +91,8 @@ public class ValidatorsHandlersFactory {
   private List<Validator> getEntityRequestValidations(final MultiMap parameters) {
     List<Validator> validators = new ArrayList<>();
 
-    validators.add(new IdTypeValidator(parameters.get(NGSILDQUERY_ID), true));
+    validators.add(
+        new IdTypeValidator(parameters.get(NGSILDQUERY_ID), true, VALIDATION_MAX_IDS));
     validators.add(new AttrsTypeValidator(parameters.get(NGSILDQUERY_ATTRIBUTE), false));
     validators.add(new GeoRelTypeValidator(parameters.get(NGSILDQUERY_GEOREL), false));
     validators.add(new GeometryTypeValidator(parameters.get(NGSILDQUERY_GEOMETRY), false));
@@ -105,6 +106,7 @@ public class ValidatorsHandlersFactory {
     // pagination optional fields
     validators.add(new PaginationLimitTypeValidator(parameters.get(NGSILDQUERY_SIZE), false));
     validators.add(new PaginationOffsetTypeValidator(parameters.get(NGSILDQUERY_FROM), false));
+    validators.add(new CursorTypeValidator(parameters.get(IUDXQUERY_CURSOR), false));
 
     // optional header public key
     validators.add(new HeaderKeyTypeValidation(parameters.get(HEADER_PUBLIC_KEY), false));
@@ -116,7 +118,8 @@ public class ValidatorsHandlersFactory {
 
     List<Validator> validators = new ArrayList<>();
 
-    validators.add(new IdTypeValidator(parameters.get(NGSILDQUERY_ID), true));
+    validators.add(
+        new IdTypeValidator(parameters.get(NGSILDQUERY_ID), true, VALIDATION_MAX_IDS));
     validators.add(new AttrsTypeValidator(parameters.get(NGSILDQUERY_ATTRIBUTE), false));
     validators.add(new GeoRelTypeValidator(parameters.get(NGSILDQUERY_GEOREL), false));
     validators.add(new GeometryTypeValidator(parameters.get(NGSILDQUERY_GEOMETRY), false));
@@ -130,9 +133,16 @@ public class ValidatorsHandlersFactory {
     validators.add(new DateTypeValidator(parameters.get(NGSILDQUERY_TIME), true));
     validators.add(new DateTypeValidator(parameters.get(NGSILDQUERY_ENDTIME), false));
 
+    // temporal aggregation optional fields
+    validators.add(new AggrMethodsTypeValidator(parameters.get(NGSILDQUERY_AGGRMETHODS), false));
+    validators.add(
+        new AggrPeriodDurationTypeValidator(
+            parameters.get(NGSILDQUERY_AGGRPERIODDURATION), false));
+
     // pagination optional fields
     validators.add(new PaginationLimitTypeValidator(parameters.get(NGSILDQUERY_SIZE), false));
     validators.add(new PaginationOffsetTypeValidator(parameters.get(NGSILDQUERY_FROM), false));
+    validators.add(new CursorTypeValidator(parameters.get(IUDXQUERY_CURSOR), false));
 
     // optional header public key
     validators.add(new HeaderKeyTypeValidation(parameters.get(HEADER_PUBLIC_KEY), false));
@@ -143,7 +153,8 @@ public class ValidatorsHandlersFactory {
   private List<Validator> getLatestRequestValidations(final MultiMap parameters) {
 
     List<Validator> validators = new ArrayList<>();
-    validators.add(new StringTypeValidator(parameters.get("*"), true, UUID_PATTERN));
+    validators.add(new IdTypeValidator(parameters.get("*"), true, VALIDATION_MAX_IDS));
+    validators.add(new AttrsTypeValidator(parameters.get(NGSILDQUERY_ATTRIBUTE), false));
 
     // optional header public key
     validators.add(new HeaderKeyTypeValidation(parameters.get(HEADER_PUBLIC_KEY), false));
@@ -161,6 +172,7 @@ public class ValidatorsHandlersFactory {
     // pagination optional fields
     validators.add(new PaginationLimitTypeValidator(parameters.get(NGSILDQUERY_SIZE), false));
     validators.add(new PaginationOffsetTypeValidator(parameters.get(NGSILDQUERY_FROM), false));
+    validators.add(new CursorTypeValidator(parameters.get(IUDXQUERY_CURSOR), false));
     // request body validators.
     validators.addAll(getRequestSchemaValidator(vertx, body, requestType));
 
@@ -179,6 +191,7 @@ public class ValidatorsHandlersFactory {
     // pagination optional fields
     validators.add(new PaginationLimitTypeValidator(parameters.get(NGSILDQUERY_SIZE), false));
     validators.add(new PaginationOffsetTypeValidator(parameters.get(NGSILDQUERY_FROM), false));
+    validators.add(new CursorTypeValidator(parameters.get(IUDXQUERY_CURSOR), false));
     // request body validators.
     validators.addAll(getRequestSchemaValidator(vertx, body, requestType));
 
@@ -220,6 +233,8 @@ public class ValidatorsHandlersFactory {
     validators.add(
         new ElasticSearchFileResponseTypeValidator(
             parameters.get(HEADER_RESPONSE_FILE_FORMAT), false));
+    validators.add(
+        new CompressionTypeValidator(parameters.get(HEADER_RESPONSE_FILE_COMPRESSION), false));
 
     return validators;
   }
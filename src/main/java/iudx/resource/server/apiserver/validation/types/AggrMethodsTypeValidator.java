@@ -0,0 +1,56 @@
+package iudx.resource.server.apiserver.validation.types;
+
+import static iudx.resource.server.apiserver.util.Constants.*;
+import static iudx.resource.server.common.ResponseUrn.*;
+
+import iudx.resource.server.apiserver.exceptions.DxRuntimeException;
+import iudx.resource.server.common.HttpStatusCode;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/** Validates the comma separated <i>aggrMethods</i> of a temporal aggregation query. */
+public final class AggrMethodsTypeValidator implements Validator {
+
+  private static final Logger LOGGER = LogManager.getLogger(AggrMethodsTypeValidator.class);
+
+  private final String value;
+  private final boolean required;
+
+  public AggrMethodsTypeValidator(final String value, final boolean required) {
+    this.value = value;
+    this.required = required;
+  }
+
+  @Override
+  public boolean isValid() {
+    if (required && (value == null || value.isBlank())) {
+      LOGGER.error("Validation error : null or blank value for required mandatory field");
+      throw new DxRuntimeException(failureCode(), INVALID_PARAM_VALUE_URN, failureMessage());
+    } else {
+      if (value == null) {
+        return true;
+      }
+      if (value.isBlank()) {
+        LOGGER.error("Validation error :  blank value passed");
+        throw new DxRuntimeException(failureCode(), INVALID_PARAM_VALUE_URN, failureMessage(value));
+      }
+    }
+    for (String method : value.split(",")) {
+      if (!VALIDATION_ALLOWED_AGGR_METHODS.contains(method)) {
+        LOGGER.error("Validation error : invalid aggrMethod {}", method);
+        throw new DxRuntimeException(failureCode(), INVALID_PARAM_VALUE_URN, failureMessage(value));
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int failureCode() {
+    return HttpStatusCode.BAD_REQUEST.getValue();
+  }
+
+  @Override
+  public String failureMessage() {
+    return INVALID_PARAM_VALUE_URN.getMessage();
+  }
+}
@@ -0,0 +1,68 @@
+package iudx.resource.server.apiserver.validation.types;
+
+import static iudx.resource.server.apiserver.util.Constants.*;
+import static iudx.resource.server.common.ResponseUrn.*;
+
+import iudx.resource.server.apiserver.exceptions.DxRuntimeException;
+import iudx.resource.server.common.HttpStatusCode;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Validates the <i>aggrPeriodDuration</i> of a temporal aggregation query, an ISO-8601 duration
+ * (e.g. PT1H, P1D) with a fixed length between one minute and the max temporal query window.
+ */
+public final class AggrPeriodDurationTypeValidator implements Validator {
+
+  private static final Logger LOGGER =
+      LogManager.getLogger(AggrPeriodDurationTypeValidator.class);
+
+  private final String value;
+  private final boolean required;
+
+  public AggrPeriodDurationTypeValidator(final String value, final boolean required) {
+    this.value = value;
+    this.required = required;
+  }
+
+  @Override
+  public boolean isValid() {
+    if (required && (value == null || value.isBlank())) {
+      LOGGER.error("Validation error : null or blank value for required mandatory field");
+      throw new DxRuntimeException(failureCode(), INVALID_PARAM_VALUE_URN, failureMessage());
+    } else {
+      if (value == null) {
+        return true;
+      }
+      if (value.isBlank()) {
+        LOGGER.error("Validation error :  blank value passed");
+        throw new DxRuntimeException(failureCode(), INVALID_PARAM_VALUE_URN, failureMessage(value));
+      }
+    }
+    Duration duration;
+    try {
+      duration = Duration.parse(value);
+    } catch (DateTimeParseException e) {
+      LOGGER.error("Validation error : invalid aggrPeriodDuration {}", value);
+      throw new DxRuntimeException(failureCode(), INVALID_PARAM_VALUE_URN, failureMessage(value));
+    }
+    if (duration.compareTo(VALIDATION_AGGR_PERIOD_MIN) < 0
+        || duration.compareTo(VALIDATION_AGGR_PERIOD_MAX) > 0) {
+      LOGGER.error("Validation error : aggrPeriodDuration out of range {}", value);
+      throw new DxRuntimeException(failureCode(), INVALID_PARAM_VALUE_URN, failureMessage(value));
+    }
+    return true;
+  }
+
+  @Override
+  public int failureCode() {
+    return HttpStatusCode.BAD_REQUEST.getValue();
+  }
+
+  @Override
+  public String failureMessage() {
+    return INVALID_PARAM_VALUE_URN.getMessage();
+  }
+}
@@ -14,10 +14,23 @@ public final class IdTypeValidator implements Validator {
 
   private final String value;
   private final boolean required;
+  private final int maxIds;
 
   public IdTypeValidator(final String value, final boolean required) {
+    this(value, required, 1);
+  }
+
+  /**
+   * IdTypeValidator for a comma separated list of ids.
+   *
+   * @param value ids
+   * @param required true if mandatory
+   * @param maxIds max number of ids allowed in value
+   */
+  public IdTypeValidator(final String value, final boolean required, final int maxIds) {
     this.value = value;
     this.required = required;
+    this.maxIds = maxIds;
   }
 
   public boolean isvalidIudxId(final String value) {
@@ -39,13 +52,20 @@ public final class IdTypeValidator implements Validator {
         throw new DxRuntimeException(failureCode(), INVALID_ID_VALUE_URN, failureMessage(value));
       }
     }
-    if (value.length() > VALIDATION_ID_MAX_LEN) {
-      LOGGER.error("Validation error : Value exceed max character limit.");
+    String[] ids = value.split(",", -1);
+    if (ids.length > maxIds) {
+      LOGGER.error("Validation error : more than {} ids passed.", maxIds);
       throw new DxRuntimeException(failureCode(), INVALID_ID_VALUE_URN, failureMessage(value));
     }
-    if (!isvalidIudxId(value)) {
-      LOGGER.error("Validation error : Invalid id.");
-      throw new DxRuntimeException(failureCode(), INVALID_ID_VALUE_URN, failureMessage(value));
+    for (String id : ids) {
+      if (id.length() > VALIDATION_ID_MAX_LEN) {
+        LOGGER.error("Validation error : Value exceed max character limit.");
+        throw new DxRuntimeException(failureCode(), INVALID_ID_VALUE_URN, failureMessage(value));
+      }
+      if (!isvalidIudxId(id)) {
+        LOGGER.error("Validation error : Invalid id.");
+        throw new DxRuntimeException(failureCode(), INVALID_ID_VALUE_URN, failureMessage(value));
+      }
     }
     return true;
   }
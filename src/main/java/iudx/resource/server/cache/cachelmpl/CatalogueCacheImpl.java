@@ -1,5 +1,7 @@
 package iudx.resource.server.cache.cachelmpl;
 
+import static iudx.resource.server.common.Constants.GROUP_RESOURCES;
+
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import io.vertx.core.Future;
@@ -10,6 +12,8 @@ import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
 import io.vertx.ext.web.client.WebClientOptions;
 import io.vertx.ext.web.client.predicate.ResponsePredicate;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -101,10 +105,25 @@ public class CatalogueCacheImpl implements IudxCache {
               if (catHandler.succeeded()) {
                 JsonArray response = catHandler.result().bodyAsJsonObject().getJsonArray("results");
                 cache.invalidateAll();
+                // a group is cached with the ids of its resources
+                Map<String, JsonArray> groupResources = new HashMap<>();
+                response.forEach(
+                    json -> {
+                      JsonObject res = (JsonObject) json;
+                      String group = res.getString("resourceGroup");
+                      if (group != null) {
+                        groupResources
+                            .computeIfAbsent(group, g -> new JsonArray())
+                            .add(res.getString("id"));
+                      }
+                    });
                 response.forEach(
                     json -> {
                       JsonObject res = (JsonObject) json;
                       String id = res.getString("id");
+                      if (groupResources.containsKey(id)) {
+                        res.put(GROUP_RESOURCES, groupResources.get(id));
+                      }
                       CacheValue<JsonObject> cacheValue = createCacheValue(id, res.toString());
                       cache.put(id, cacheValue);
                     });
@@ -32,4 +32,6 @@ public class Constants {
   // postgres queries
   public static String SELECT_REVOKE_TOKEN_SQL = "SELECT * FROM revoked_tokens";
   public static String SELECT_UNIQUE_ATTRIBUTE = "SELECT * from unique_attributes";
+  // catalogue cache, ids of the resources of a group
+  public static final String GROUP_RESOURCES = "resources";
 }
@@ -7,6 +7,7 @@ public class Constants {
   /* General Purpose */
   public static final String SEARCH_TYPE = "searchType";
   public static final String ID = "id";
+  public static final String RESOURCE_GROUPS = "resourceGroups";
   public static final String PROD_INSTANCE = "production";
   public static final String TEST_INSTANCE = "test";
   public static final String ITEM_TYPE_RESOURCE = "Resource";
@@ -32,10 +33,14 @@ public class Constants {
   public static final String SHAPE_KEY = "shape";
   public static final String FILTER_PATH_VAL = "took,hits.hits._source";
   public static final String FILTER_PATH_VAL_LATEST = "docs._source";
+  public static final String FILTER_PATH_VAL_RAW = "hits.total,hits.hits._source";
+  public static final String FILTER_PATH_VAL_CURSOR_RAW =
+      "pit_id,hits.total,hits.hits._source,hits.hits.sort";
   public static final String SIZE_KEY = "size";
   public static final String SEARCH_KEY = "search";
   public static final String ERROR = "Error";
   public static final String COUNT = "count";
+  public static final String AGGREGATE = "aggregate";
   public static final String TOTAL_HITS = "totalHits";
   public static final String FROM_KEY = "from";
   /* Request Params */
@@ -79,6 +84,28 @@ public class Constants {
   /*pagination*/
   public static final String PARAM_SIZE = "limit";
   public static final String PARAM_FROM = "offset";
+  public static final String PARAM_CURSOR = "cursor";
+  public static final String NEXT_CURSOR = "next";
+  public static final String HIT_COUNT = "hitCount";
+  public static final String CURSOR_KEEP_ALIVE = "5m";
+  /*async scroll*/
+  public static final int SCROLL_PAGE_SIZE = 10000;
+  public static final String SCROLL_KEEP_ALIVE = "5m";
+  public static final int DEFAULT_EXPORT_POOL_SIZE = 4;
+  public static final int DEFAULT_SCROLL_BUFFERED_PAGES = 2;
+  public static final int DEFAULT_MAX_SCROLL_SLICES = 8;
+  public static final String SORT_FIELD_TIME = "observationDateTime";
+  // temporal aggregation
+  public static final String AGGR_METHODS = "aggrMethods";
+  public static final String AGGR_PERIOD_DURATION = "aggrPeriodDuration";
+  public static final String AGGR_TOTAL_COUNT = "totalCount";
+  public static final String AGGR_SUM = "sum";
+  public static final String AGGR_AVG = "avg";
+  public static final String AGGR_MIN = "min";
+  public static final String AGGR_MAX = "max";
+  public static final String AGGR_BUCKETS = "buckets";
+  public static final String SORT_FIELD_TIEBREAKER = "_shard_doc";
+  public static final String SORT_FIELD_ID = "id";
 
   /* Errors */
   public static final String INVALID_OPERATOR = "Invalid operator";
@@ -91,6 +118,12 @@ public class Constants {
   public static final String MISSING_GEO_FIELDS = "Missing/Invalid geo parameters";
   public static final String COORDINATE_MISMATCH = "Coordinate mismatch (Polygon)";
   public static final String COUNT_UNSUPPORTED = "Count is not supported with filtering";
+  public static final String CURSOR_WITH_OFFSET = "offset is not allowed with cursor";
+  public static final String INVALID_CURSOR = "Invalid or expired cursor";
+  public static final String AGGREGATION_PARAMS_MISSING =
+      "aggrMethods, aggrPeriodDuration and attrs are mandatory for aggregation query";
+  public static final String AGGREGATION_MULTIPLE_IDS =
+      "aggregation query is supported for a single id only";
   public static final String EMPTY_RESPONSE = "Empty response";
   public static final String DB_ERROR = "DB request has failed";
   public static final String DB_ERROR_2XX = "Status code is not 2xx";
@@ -141,10 +174,26 @@ public class Constants {
   public static final String INVALID_OPTIONS = "invalid options for latest";
   // needs modification depending on the actual error returned from Redis
   public static final String ID_NOT_PRESENT = "Not found";
+  // keys got with a single JSON.MGET
+  public static final int MGET_BATCH_SIZE = 100;
+  // reconnect backoff of Redis connections, doubled on every failed attempt
+  public static final long REDIS_RECONNECT_BACKOFF_MS = 500;
+  public static final long REDIS_RECONNECT_MAX_BACKOFF_MS = 30000;
+  // time a Redis command waits for a connection to open
+  public static final long REDIS_POOL_WAIT_TIMEOUT_MS = 5000;
+  // near-cache of latest values, time after an update that values read aren't cached
+  public static final long NEAR_CACHE_UPDATE_GRACE_MS = 1000;
+  public static final long NEAR_CACHE_UPDATED_IDS = 100000;
+  public static final long DEFAULT_NEAR_CACHE_MAX_WEIGHT = 64L * 1024 * 1024;
+  public static final long DEFAULT_NEAR_CACHE_TTL_SECONDS = 300;
+  // data of a window closed before the horizon is settled, its results can be reused
+  public static final long DEFAULT_SETTLED_HORIZON_MINUTES = 60;
 
   // pagination
 
   public static final int DEFAULT_SIZE_VALUE = 5000;
   public static final int DEFAULT_FROM_VALUE = 0;
+  public static final int MAX_SEARCH_HITS = 50000;
+  public static final int DEFAULT_TRACK_TOTAL_HITS = MAX_SEARCH_HITS + 1;
   public static final String COUNT_MATCH_ALL_QUERY = "{\"query\": { \"match_all\": {} }}";
 }
@@ -5,6 +5,7 @@ import io.vertx.codegen.annotations.ProxyGen;
 import io.vertx.codegen.annotations.VertxGen;
 import io.vertx.core.Future;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
 import iudx.resource.server.cache.CacheService;
 import iudx.resource.server.database.elastic.ElasticClient;
@@ -59,4 +60,41 @@ public interface DatabaseService {
    * @return Future
    */
   Future<JsonObject> count(JsonObject request);
+
+  /**
+   * The searchRaw implements the search operation with the database, returning the serialized
+   * response envelope. Hit sources are passed through from database without being parsed.
+   *
+   * @param request - search request query
+   * @return Future
+   */
+  Future<Buffer> searchRaw(JsonObject request);
+
+  /**
+   * The searchStreamPage implements a page of a streamed search with the database, read with the
+   * cursor of the request. Hit sources are passed through from database as lines of newline
+   * delimited json in <i>results</i>, with the count of hits in <i>hitCount</i> and the cursor of
+   * the page after it in <i>next</i>, absent on the last page.
+   *
+   * @param request - search request query with a cursor
+   * @return Future
+   */
+  Future<JsonObject> searchStreamPage(JsonObject request);
+
+  /**
+   * The closeCursor releases the point-in-time of a cursor whose pages aren't all read.
+   *
+   * @param cursor - next cursor of the last page read
+   * @return Future
+   */
+  Future<Void> closeCursor(String cursor);
+
+  /**
+   * The aggregate implements the temporal aggregation operation with the database, returning
+   * bucketed metrics of numeric attributes over aggrPeriodDuration intervals.
+   *
+   * @param request - temporal aggregation request query
+   * @return Future
+   */
+  Future<JsonObject> aggregate(JsonObject request);
 }
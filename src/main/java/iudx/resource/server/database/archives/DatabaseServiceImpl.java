@@ -2,17 +2,27 @@ package iudx.resource.server.database.archives;
 
 import static iudx.resource.server.database.archives.Constants.*;
 
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
 import co.elastic.clients.elasticsearch.core.search.SourceConfig;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Promise;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import iudx.resource.server.cache.CacheService;
 import iudx.resource.server.cache.cachelmpl.CacheType;
 import iudx.resource.server.common.ResponseUrn;
 import iudx.resource.server.database.elastic.ElasticClient;
+import iudx.resource.server.database.elastic.IndexResolver;
 import iudx.resource.server.database.elastic.QueryDecoder;
+import iudx.resource.server.database.elastic.QueryPlan;
+import iudx.resource.server.database.elastic.RawSearchResponse;
+import iudx.resource.server.database.elastic.SearchCursor;
+import iudx.resource.server.database.elastic.TemporalWindow;
 import iudx.resource.server.database.elastic.exception.EsQueryException;
+import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
@@ -36,14 +46,43 @@ public class DatabaseServiceImpl implements DatabaseService {
   static CacheService cacheService;
   private QueryDecoder queryDecoder = new QueryDecoder();
   private String timeLimit;
-  private String tenantPrefix;
+  private IndexResolver indexResolver;
+  private int trackTotalHitsUpTo;
+  private SearchResultCache resultCache;
 
   public DatabaseServiceImpl(
       ElasticClient client, String timeLimit, String tenantPrefix, CacheService cacheService) {
+    this(
+        client,
+        timeLimit,
+        new IndexResolver(tenantPrefix),
+        cacheService,
+        DEFAULT_TRACK_TOTAL_HITS,
+        SearchResultCache.disabled());
+  }
+
+  /**
+   * DatabaseServiceImpl.
+   *
+   * @param indexResolver resolves the indices of a resource group a query has to search
+   * @param trackTotalHitsUpTo accuracy of total hits reported with search results. Below what is
+   *     needed to enforce the max search hits limit, the limit is checked with a count of its own
+   *     when the total is only a lower bound
+   * @param resultCache cache for responses of queries over settled time windows
+   */
+  public DatabaseServiceImpl(
+      ElasticClient client,
+      String timeLimit,
+      IndexResolver indexResolver,
+      CacheService cacheService,
+      int trackTotalHitsUpTo,
+      SearchResultCache resultCache) {
     this.client = client;
     this.timeLimit = timeLimit;
-    this.tenantPrefix = tenantPrefix;
+    this.indexResolver = indexResolver;
     this.cacheService = cacheService;
+    this.trackTotalHitsUpTo = trackTotalHitsUpTo;
+    this.resultCache = resultCache;
   }
 
   public int getOrDefault(JsonObject json, String key, int def) {
@@ -67,52 +106,58 @@ public class DatabaseServiceImpl implements DatabaseService {
               })
           .onSuccess(
               handler -> {
-                String resourceGroup = handler.getString("resourceGroup");
-                StringBuilder tenantBuilder = new StringBuilder(tenantPrefix);
-                final String searchIndex;
-                if (!this.tenantPrefix.equals("none")) {
-                  searchIndex = String.valueOf(tenantBuilder.append("__").append(resourceGroup));
-                } else {
-                  searchIndex = resourceGroup;
-                }
-                // String searchIndex = tenantBuilder;
+                final TemporalWindow window = queryDecoder.getTemporalWindow(request);
+                final String searchIndex = resolveIndex(handler, window);
                 final int sizeKeyValue = getOrDefault(request, PARAM_SIZE, DEFAULT_SIZE_VALUE);
+                if (request.containsKey(PARAM_CURSOR)) {
+                  searchWithCursor(searchIndex, request, sizeKeyValue, promise);
+                  return;
+                }
                 final int fromKeyValue = getOrDefault(request, PARAM_FROM, DEFAULT_FROM_VALUE);
 
                 Query query = queryDecoder.getQuery(request);
-                LOGGER.info("query : " + query.toString());
-                CountResultPlaceholder countPlaceHolder = new CountResultPlaceholder();
-                Future<JsonObject> countFuture = client.asyncCount(searchIndex, query);
-                countFuture
-                    .compose(
-                        countQueryHandler -> {
-                          long count =
-                              countQueryHandler
-                                  .getJsonArray("results")
-                                  .getJsonObject(0)
-                                  .getInteger("totalHits");
-                          LOGGER.info("count : " + count);
-                          if (count > 50000) {
-                            JsonObject json = new JsonObject();
-                            json.put("type", 413);
-                            json.put("title", ResponseUrn.PAYLOAD_TOO_LARGE_URN.getUrn());
-                            json.put("details", ResponseUrn.PAYLOAD_TOO_LARGE_URN.getMessage());
-                            return Future.failedFuture(json.toString());
-                          }
-                          countPlaceHolder.setCount(count);
-                          SourceConfig sourceFilter = queryDecoder.getSourceConfigFilters(request);
-                          return client.asyncSearch(
-                              searchIndex, query, sizeKeyValue, fromKeyValue, sourceFilter);
-                        })
+                LOGGER.debug("query : {}", query);
+                SourceConfig sourceFilter = queryDecoder.getSourceConfigFilters(request);
+                String cacheKey =
+                    resultCache.getKey(
+                        SEARCH_KEY,
+                        searchIndex,
+                        window,
+                        query,
+                        sizeKeyValue,
+                        fromKeyValue,
+                        sourceFilter);
+                resultCache
+                    .getOrLoadJson(
+                        cacheKey,
+                        () ->
+                            client
+                                .asyncSearch(
+                                    searchIndex,
+                                    query,
+                                    sizeKeyValue,
+                                    fromKeyValue,
+                                    sourceFilter,
+                                    trackTotalHitsUpTo)
+                                .compose(
+                                    searchHandler -> {
+                                      long count = searchHandler.getLong(TOTAL_HITS, 0L);
+                                      LOGGER.info("count : " + count);
+                                      return exceedsMaxSearchHits(searchIndex, query, count)
+                                          .compose(
+                                              exceeds ->
+                                                  exceeds
+                                                      ? Future.failedFuture(
+                                                          payloadTooLargeResponse())
+                                                      : Future.succeededFuture(
+                                                          searchHandler
+                                                              .put(PARAM_SIZE, sizeKeyValue)
+                                                              .put(PARAM_FROM, fromKeyValue)));
+                                    }))
                     .onSuccess(
                         successHandler -> {
                           LOGGER.debug("Success: Successful DB request");
-                          JsonObject responseJson = successHandler;
-                          responseJson
-                              .put(PARAM_SIZE, sizeKeyValue)
-                              .put(PARAM_FROM, fromKeyValue)
-                              .put("totalHits", countPlaceHolder.getCount());
-                          promise.complete(responseJson);
+                          promise.complete(successHandler);
                         })
                     .onFailure(
                         failureHandler -> {
@@ -130,6 +175,260 @@ public class DatabaseServiceImpl implements DatabaseService {
     return promise.future();
   }
 
+  @Override
+  public Future<Buffer> searchRaw(JsonObject request) {
+    if (request.containsKey(PARAM_CURSOR)) {
+      return search(request).map(JsonObject::toBuffer);
+    }
+    Promise<Buffer> promise = Promise.promise();
+    request.put(TIME_LIMIT, timeLimit);
+    try {
+      Future<JsonObject> validationFuture = checkQuery(request);
+      validationFuture
+          .onFailure(
+              handler -> {
+                promise.fail(handler.toString());
+              })
+          .onSuccess(
+              handler -> {
+                final TemporalWindow window = queryDecoder.getTemporalWindow(request);
+                final String searchIndex = resolveIndex(handler, window);
+                final int sizeKeyValue = getOrDefault(request, PARAM_SIZE, DEFAULT_SIZE_VALUE);
+                final int fromKeyValue = getOrDefault(request, PARAM_FROM, DEFAULT_FROM_VALUE);
+
+                Query query = queryDecoder.getQuery(request);
+                LOGGER.debug("query : {}", query);
+                SourceConfig sourceFilter = queryDecoder.getSourceConfigFilters(request);
+                String cacheKey =
+                    resultCache.getKey(
+                        SEARCH_KEY,
+                        searchIndex,
+                        window,
+                        query,
+                        sizeKeyValue,
+                        fromKeyValue,
+                        sourceFilter);
+                resultCache
+                    .getOrLoad(
+                        cacheKey,
+                        () ->
+                            client
+                                .asyncSearchRaw(
+                                    searchIndex,
+                                    query,
+                                    sizeKeyValue,
+                                    fromKeyValue,
+                                    sourceFilter,
+                                    trackTotalHitsUpTo)
+                                .compose(
+                                    rawResponse -> {
+                                      long count = rawResponse.getTotalHits();
+                                      LOGGER.info("count : " + count);
+                                      return exceedsMaxSearchHits(searchIndex, query, count)
+                                          .compose(
+                                              exceeds ->
+                                                  exceeds
+                                                      ? Future.failedFuture(
+                                                          payloadTooLargeResponse())
+                                                      : Future.succeededFuture(
+                                                          toResponseBuffer(
+                                                              rawResponse,
+                                                              sizeKeyValue,
+                                                              fromKeyValue)));
+                                    }))
+                    .onSuccess(
+                        successHandler -> {
+                          LOGGER.debug("Success: Successful DB request");
+                          promise.complete(successHandler);
+                        })
+                    .onFailure(
+                        failureHandler -> {
+                          LOGGER.info("failed to query : " + failureHandler);
+                          promise.fail(failureHandler.getMessage());
+                        });
+              });
+    } catch (EsQueryException ex) {
+      ResponseUrn exceptionUrn = ResponseUrn.BAD_REQUEST_URN;
+      promise.fail(new EsQueryException(exceptionUrn, ex.getMessage()).toString());
+    } catch (Exception ex) {
+      promise.fail(new EsQueryException("Exception occured executing query").toString());
+    }
+    return promise.future();
+  }
+
+  /* same envelope as search, with results spliced in from the raw hits buffer */
+  private Buffer toResponseBuffer(RawSearchResponse rawResponse, int size, int from) {
+    Buffer envelope =
+        new ResponseBuilder(SUCCESS)
+            .setTypeAndTitle(200)
+            .getResponse()
+            .put(PARAM_SIZE, size)
+            .put(PARAM_FROM, from)
+            .put(TOTAL_HITS, rawResponse.getTotalHits())
+            .toBuffer();
+    Buffer hits = rawResponse.getHits();
+    return Buffer.buffer(envelope.length() + hits.length() + RESULTS.length() + 4)
+        .appendBuffer(envelope, 0, envelope.length() - 1)
+        .appendString(",\"" + RESULTS + "\":")
+        .appendBuffer(hits)
+        .appendByte((byte) '}');
+  }
+
+  /**
+   * Serve a page using a point-in-time and search_after instead of from/size, so that cost of a
+   * page doesn't grow with depth. A cursor of <b>*</b> opens a new point-in-time, any other value
+   * is a <i>next</i> token from a previous page. The 50k window limit doesn't apply here as no
+   * more than one page is ever held.
+   */
+  private void searchWithCursor(
+      String searchIndex, JsonObject request, int size, Promise<JsonObject> promise) {
+    if (request.containsKey(PARAM_FROM)) {
+      promise.fail(failureResponse(400, ResponseUrn.BAD_REQUEST_URN, CURSOR_WITH_OFFSET));
+      return;
+    }
+    String token = request.getString(PARAM_CURSOR);
+    Query query = queryDecoder.getQuery(request);
+    SourceConfig sourceFilter = queryDecoder.getSourceConfigFilters(request);
+    getCursor(searchIndex, token)
+        .compose(cursor -> client.asyncSearchAfter(cursor, query, size, sourceFilter))
+        .onSuccess(
+            successHandler -> {
+              LOGGER.debug("Success: Successful DB cursor request");
+              promise.complete(successHandler.put(PARAM_SIZE, size));
+            })
+        .onFailure(
+            failureHandler -> {
+              LOGGER.info("failed to query with cursor : " + failureHandler);
+              promise.fail(cursorFailure(token, failureHandler));
+            });
+  }
+
+  @Override
+  public Future<JsonObject> searchStreamPage(JsonObject request) {
+    Promise<JsonObject> promise = Promise.promise();
+    request.put(TIME_LIMIT, timeLimit);
+    if (request.containsKey(PARAM_FROM)) {
+      promise.fail(failureResponse(400, ResponseUrn.BAD_REQUEST_URN, CURSOR_WITH_OFFSET));
+      return promise.future();
+    }
+    try {
+      checkQuery(request)
+          .onFailure(handler -> promise.fail(handler.toString()))
+          .onSuccess(
+              handler -> {
+                final TemporalWindow window = queryDecoder.getTemporalWindow(request);
+                final String searchIndex = resolveIndex(handler, window);
+                final int size = getOrDefault(request, PARAM_SIZE, DEFAULT_SIZE_VALUE);
+                String token = request.getString(PARAM_CURSOR);
+                Query query = queryDecoder.getQuery(request);
+                SourceConfig sourceFilter = queryDecoder.getSourceConfigFilters(request);
+                getCursor(searchIndex, token)
+                    .compose(
+                        cursor ->
+                            client
+                                .asyncSearchAfterRaw(cursor, query, size, sourceFilter)
+                                .map(rawResponse -> toStreamPage(cursor, rawResponse, size)))
+                    .onSuccess(promise::complete)
+                    .onFailure(
+                        failureHandler -> {
+                          LOGGER.info("failed to stream with cursor : " + failureHandler);
+                          promise.fail(cursorFailure(token, failureHandler));
+                        });
+              });
+    } catch (EsQueryException ex) {
+      ResponseUrn exceptionUrn = ResponseUrn.BAD_REQUEST_URN;
+      promise.fail(new EsQueryException(exceptionUrn, ex.getMessage()).toString());
+    } catch (Exception ex) {
+      promise.fail(new EsQueryException("Exception occured executing query").toString());
+    }
+    return promise.future();
+  }
+
+  /* lines of the page and the cursor after it, none once the page isn't full */
+  private JsonObject toStreamPage(SearchCursor cursor, RawSearchResponse rawResponse, int size) {
+    JsonObject page =
+        new JsonObject()
+            .put(RESULTS, rawResponse.getHits())
+            .put(HIT_COUNT, rawResponse.getHitCount());
+    if (rawResponse.getHitCount() == size) {
+      String pitId = rawResponse.getPitId() != null ? rawResponse.getPitId() : cursor.getPitId();
+      page.put(NEXT_CURSOR, new SearchCursor(pitId, rawResponse.getLastSort()).encode());
+    }
+    return page;
+  }
+
+  @Override
+  public Future<Void> closeCursor(String cursor) {
+    try {
+      client.closePointInTime(SearchCursor.decode(cursor).getPitId());
+      return Future.succeededFuture();
+    } catch (EsQueryException ex) {
+      return Future.failedFuture(
+          failureResponse(400, ResponseUrn.INVALID_PARAM_VALUE_URN, INVALID_CURSOR));
+    }
+  }
+
+  /* a cursor of * opens a new point-in-time, any other is decoded */
+  private Future<SearchCursor> getCursor(String searchIndex, String token) {
+    if (SearchCursor.isNewCursor(token)) {
+      return client.openPointInTime(searchIndex).map(pitId -> new SearchCursor(pitId, null));
+    }
+    try {
+      return Future.succeededFuture(SearchCursor.decode(token));
+    } catch (EsQueryException ex) {
+      return Future.failedFuture(
+          failureResponse(400, ResponseUrn.INVALID_PARAM_VALUE_URN, INVALID_CURSOR));
+    }
+  }
+
+  private String cursorFailure(String token, Throwable failure) {
+    if (!SearchCursor.isNewCursor(token)
+        && failure instanceof ElasticsearchException
+        && ((ElasticsearchException) failure).status() == 404) {
+      // point-in-time has expired or was never issued by this cluster
+      return failureResponse(400, ResponseUrn.INVALID_PARAM_VALUE_URN, INVALID_CURSOR);
+    }
+    return failure.getMessage();
+  }
+
+  /**
+   * checks whether more hits than the max search hits match a query. The total reported with
+   * search results settles it, unless it is only a lower bound short of the limit. Shards then
+   * count matching documents only till they are past the limit.
+   *
+   * @param index index searched
+   * @param query query searched
+   * @param totalHits total hits reported with search results
+   * @return true if hits are over the limit
+   */
+  Future<Boolean> exceedsMaxSearchHits(String index, Query query, long totalHits) {
+    if (totalHits > MAX_SEARCH_HITS || totalHits < trackTotalHitsUpTo) {
+      return Future.succeededFuture(totalHits > MAX_SEARCH_HITS);
+    }
+    return client
+        .asyncCount(index, query, (long) MAX_SEARCH_HITS + 1)
+        .map(
+            countJson ->
+                countJson.getJsonArray(RESULTS).getJsonObject(0).getLong(TOTAL_HITS)
+                    > MAX_SEARCH_HITS);
+  }
+
+  private String payloadTooLargeResponse() {
+    JsonObject json = new JsonObject();
+    json.put("type", 413);
+    json.put("title", ResponseUrn.PAYLOAD_TOO_LARGE_URN.getUrn());
+    json.put("details", ResponseUrn.PAYLOAD_TOO_LARGE_URN.getMessage());
+    return json.toString();
+  }
+
+  private String failureResponse(int type, ResponseUrn urn, String detail) {
+    JsonObject json = new JsonObject();
+    json.put("type", type);
+    json.put("title", urn.getUrn());
+    json.put("details", detail);
+    return json.toString();
+  }
+
   @Override
   public Future<JsonObject> count(JsonObject request) {
     Promise<JsonObject> promise = Promise.promise();
@@ -144,24 +443,21 @@ public class DatabaseServiceImpl implements DatabaseService {
               })
           .onSuccess(
               handler -> {
-                String searchType = request.getString(SEARCH_TYPE);
-                if (searchType.matches(RESPONSE_FILTER_REGEX)) {
+                QueryPlan plan = QueryPlan.forSearchType(request.getString(SEARCH_TYPE));
+                if (plan.isResponseFilter()) {
                   promise.fail(
                       new EsQueryException(
                           ResponseUrn.BAD_REQUEST_URN, "Count is not supported with filtering"));
                   return;
                 }
-                final String searchIndex;
-                String resourceGroup = handler.getString("resourceGroup");
-                StringBuilder tenantBuilder = new StringBuilder(tenantPrefix);
-                if (!this.tenantPrefix.equals("none")) {
-                  searchIndex = String.valueOf(tenantBuilder.append("__").append(resourceGroup));
-                } else {
-                  searchIndex = resourceGroup;
-                }
+                final TemporalWindow window = queryDecoder.getTemporalWindow(request);
+                final String searchIndex = resolveIndex(handler, window);
                 Query query = queryDecoder.getQuery(request);
-                LOGGER.info("query : " + query.toString());
-                Future<JsonObject> countFuture = client.asyncCount(searchIndex, query);
+                LOGGER.debug("query : {}", query);
+                String cacheKey = resultCache.getKey(COUNT, searchIndex, window, query);
+                Future<JsonObject> countFuture =
+                    resultCache.getOrLoadJson(
+                        cacheKey, () -> client.asyncCount(searchIndex, query));
                 countFuture
                     .onSuccess(
                         success -> {
@@ -181,11 +477,123 @@ public class DatabaseServiceImpl implements DatabaseService {
     return promise.future();
   }
 
+  @Override
+  public Future<JsonObject> aggregate(JsonObject request) {
+    Promise<JsonObject> promise = Promise.promise();
+
+    request.put(TIME_LIMIT, timeLimit);
+    JsonArray attributes = request.getJsonArray(RESPONSE_ATTRS);
+    JsonArray methods = request.getJsonArray(AGGR_METHODS);
+    String periodDuration = request.getString(AGGR_PERIOD_DURATION);
+    if (attributes == null || methods == null || periodDuration == null) {
+      promise.fail(
+          new EsQueryException(ResponseUrn.BAD_REQUEST_URN, AGGREGATION_PARAMS_MISSING)
+              .toString());
+      return promise.future();
+    }
+    if (request.getJsonArray(ID).size() > 1) {
+      promise.fail(
+          new EsQueryException(ResponseUrn.BAD_REQUEST_URN, AGGREGATION_MULTIPLE_IDS).toString());
+      return promise.future();
+    }
+    try {
+      Future<JsonObject> validationFuture = checkQuery(request);
+      validationFuture
+          .onFailure(
+              handler -> {
+                promise.fail(handler.toString());
+              })
+          .onSuccess(
+              handler -> {
+                final TemporalWindow window = queryDecoder.getTemporalWindow(request);
+                final String searchIndex = resolveIndex(handler, window);
+                Query query = queryDecoder.getQuery(request);
+                LOGGER.debug("query : {}", query);
+                String cacheKey =
+                    resultCache.getKey(
+                        AGGREGATE, searchIndex, window, query, periodDuration, methods, attributes);
+                resultCache
+                    .getOrLoadJson(
+                        cacheKey,
+                        () ->
+                            client
+                                .asyncAggregate(
+                                    searchIndex,
+                                    query,
+                                    Duration.parse(periodDuration),
+                                    toStringList(attributes),
+                                    toStringList(methods))
+                                .map(
+                                    aggregation -> {
+                                      aggregation
+                                          .getJsonArray(RESULTS)
+                                          .getJsonObject(0)
+                                          .put(ID, request.getJsonArray(ID).getString(0))
+                                          .put(AGGR_PERIOD_DURATION, periodDuration);
+                                      return aggregation;
+                                    }))
+                    .onSuccess(promise::complete)
+                    .onFailure(
+                        failure -> {
+                          LOGGER.info("failed to aggregate : " + failure);
+                          promise.fail(failure.getMessage());
+                        });
+              });
+    } catch (EsQueryException ex) {
+      ResponseUrn exceptionUrn = ResponseUrn.BAD_REQUEST_URN;
+      promise.fail(new EsQueryException(exceptionUrn, ex.getMessage()).toString());
+    } catch (Exception ex) {
+      promise.fail(new EsQueryException("Exception occured executing query").toString());
+    }
+    return promise.future();
+  }
+
+  private List<String> toStringList(JsonArray array) {
+    return array.stream().map(Object::toString).collect(Collectors.toList());
+  }
+
+  /**
+   * looks up every id of request in catalogue cache, all of them need to be resources.
+   *
+   * @param request query request
+   * @return Future catalogue item of first id, along with the distinct resource groups of all ids
+   */
   public Future<JsonObject> checkQuery(JsonObject request) {
+    List<Future> itemFutures =
+        request.getJsonArray(ID).stream()
+            .map(Object::toString)
+            .distinct()
+            .map(this::getResourceItem)
+            .collect(Collectors.toList());
+    return CompositeFuture.all(itemFutures)
+        .map(
+            items -> {
+              JsonArray resourceGroups = new JsonArray();
+              for (int i = 0; i < items.size(); i++) {
+                String resourceGroup = items.<JsonObject>resultAt(i).getString("resourceGroup");
+                if (!resourceGroups.contains(resourceGroup)) {
+                  resourceGroups.add(resourceGroup);
+                }
+              }
+              return items.<JsonObject>resultAt(0).copy().put(RESOURCE_GROUPS, resourceGroups);
+            });
+  }
+
+  /*
+   * ids spread across resource groups are searched together, a single search over the indices of
+   * all the groups keeps sorting, from/size and total hits the same as for a single group.
+   */
+  private String resolveIndex(JsonObject items, TemporalWindow window) {
+    return items.getJsonArray(RESOURCE_GROUPS).stream()
+        .map(resourceGroup -> indexResolver.resolve(resourceGroup.toString(), window))
+        .collect(Collectors.joining(","));
+  }
+
+  private Future<JsonObject> getResourceItem(String id) {
     Promise<JsonObject> promise = Promise.promise();
     JsonObject cacheRequest = new JsonObject();
     cacheRequest.put("type", CacheType.CATALOGUE_CACHE);
-    cacheRequest.put("key", request.getJsonArray(ID).getString(0));
+    cacheRequest.put("key", id);
     Future<JsonObject> getItemType = cacheService.get(cacheRequest);
     getItemType.onSuccess(
         itemType -> {
@@ -195,29 +603,14 @@ public class DatabaseServiceImpl implements DatabaseService {
           itemTypeSet.retainAll(ITEM_TYPES);
 
           if (!itemTypeSet.contains("Resource")) {
-            LOGGER.error("Malformed ID: " + request.getJsonArray(ID).getString(0));
+            LOGGER.error("Malformed ID: " + id);
             promise.fail(new EsQueryException(ResponseUrn.BAD_REQUEST_URN, MALFORMED_ID));
           } else {
             promise.complete(itemType);
           }
         });
+    getItemType.onFailure(promise::fail);
 
     return promise.future();
   }
-
-  private class CountResultPlaceholder {
-    private long count;
-
-    public CountResultPlaceholder() {
-      this.count = 0L;
-    }
-
-    public long getCount() {
-      return this.count;
-    }
-
-    public void setCount(long count) {
-      this.count = count;
-    }
-  }
 }
@@ -9,6 +9,7 @@ import io.vertx.core.json.JsonObject;
 import io.vertx.serviceproxy.ServiceBinder;
 import iudx.resource.server.cache.CacheService;
 import iudx.resource.server.database.elastic.ElasticClient;
+import iudx.resource.server.database.elastic.IndexResolver;
 
 /**
  * The Database Verticle.
@@ -51,10 +52,19 @@ public class DatabaseVerticle extends AbstractVerticle {
     password = config().getString("dbPassword");
     timeLimit = config().getString("timeLimit");
     tenantPrefix = config().getString("tenantPrefix");
+    int trackTotalHitsUpTo =
+        config().getInteger("trackTotalHitsUpTo", Constants.DEFAULT_TRACK_TOTAL_HITS);
     cacheService = CacheService.createProxy(vertx, CACHE_SERVICE_ADDRESS);
     client = new ElasticClient(databaseIp, databasePort, user, password);
     binder = new ServiceBinder(vertx);
-    database = new DatabaseServiceImpl(client, timeLimit, tenantPrefix, cacheService);
+    SearchResultCache resultCache =
+        SearchResultCache.create(config().getJsonObject("searchCache", new JsonObject()));
+    IndexResolver indexResolver =
+        new IndexResolver(
+            tenantPrefix, config().getJsonObject("indexPartitioning", new JsonObject()));
+    database =
+        new DatabaseServiceImpl(
+            client, timeLimit, indexResolver, cacheService, trackTotalHitsUpTo, resultCache);
 
     consumer =
         binder.setAddress(DATABASE_SERVICE_ADDRESS).register(DatabaseService.class, database);
@@ -0,0 +1,156 @@
+package iudx.resource.server.database.archives;
+
+import static iudx.resource.server.database.archives.Constants.DEFAULT_SETTLED_HORIZON_MINUTES;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.JsonpSerializable;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.backends.BackendRegistries;
+import iudx.resource.server.database.elastic.TemporalWindow;
+import jakarta.json.stream.JsonGenerator;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.function.Supplier;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Cache of serialized search/count responses for queries whose temporal window closed before the
+ * settled horizon. Data in such a window is not expected to change, so responses are kept until
+ * evicted by weight.
+ */
+public class SearchResultCache {
+
+  private static final Logger LOGGER = LogManager.getLogger(SearchResultCache.class);
+  private static final String CACHE_NAME = "rs.search.result.cache";
+  private static final JsonpMapper JSONP_MAPPER = new JacksonJsonpMapper();
+  private static SearchResultCache sharedInstance;
+
+  private final boolean enabled;
+  private final Duration settledHorizon;
+  private final Cache<String, Buffer> cache;
+
+  SearchResultCache(boolean enabled, long maxWeightBytes, Duration settledHorizon) {
+    this.enabled = enabled;
+    this.settledHorizon = settledHorizon;
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(maxWeightBytes)
+            .<String, Buffer>weigher((key, value) -> key.length() + value.length())
+            .recordStats()
+            .build();
+  }
+
+  public static SearchResultCache disabled() {
+    return new SearchResultCache(false, 0, Duration.ZERO);
+  }
+
+  /**
+   * One cache is shared by all DatabaseVerticle instances deployed in a JVM.
+   *
+   * @param config searchCache config
+   * @return SearchResultCache
+   */
+  public static synchronized SearchResultCache create(JsonObject config) {
+    if (sharedInstance == null) {
+      boolean enabled = config.getBoolean("enabled", false);
+      long maxWeightBytes = config.getLong("maxWeightMb", 256L) * 1024 * 1024;
+      Duration settledHorizon =
+          Duration.ofMinutes(
+              config.getLong("settledHorizonMinutes", DEFAULT_SETTLED_HORIZON_MINUTES));
+      sharedInstance = new SearchResultCache(enabled, maxWeightBytes, settledHorizon);
+      MeterRegistry registry = BackendRegistries.getDefaultNow();
+      if (enabled && registry != null) {
+        GuavaCacheMetrics.monitor(registry, sharedInstance.cache, CACHE_NAME);
+      }
+      LOGGER.info(
+          "search result cache enabled : {}, settled horizon : {}", enabled, settledHorizon);
+    }
+    return sharedInstance;
+  }
+
+  /**
+   * full JSON of a query, or of another part of a request. Unlike <i>toString()</i>, which is cut
+   * at 10000 characters, it can tell apart queries differing only in a long list of ids.
+   *
+   * @param value query or other request part
+   * @return JSON of value
+   */
+  public static String toJson(JsonpSerializable value) {
+    StringWriter writer = new StringWriter();
+    try (JsonGenerator generator = JSONP_MAPPER.jsonProvider().createGenerator(writer)) {
+      value.serialize(generator, JSONP_MAPPER);
+    }
+    return writer.toString();
+  }
+
+  /**
+   * cache key for a query, <i>null</i> if response for it must not be cached. Key is a hash of
+   * the full JSON of the query and params.
+   *
+   * @param operation search/count operation the response is for
+   * @param index index queried
+   * @param window temporal window of query
+   * @param query decoded query
+   * @param params paging and source filtering params used along with query
+   * @return cache key
+   */
+  public String getKey(
+      String operation, String index, TemporalWindow window, Query query, Object... params) {
+    if (!enabled || !window.endsBefore(ZonedDateTime.now().minus(settledHorizon))) {
+      return null;
+    }
+    StringBuilder key =
+        new StringBuilder(operation).append('|').append(index).append('|').append(toJson(query));
+    for (Object param : params) {
+      key.append('|')
+          .append(param instanceof JsonpSerializable ? toJson((JsonpSerializable) param) : param);
+    }
+    return Hashing.sha256().hashString(key, StandardCharsets.UTF_8).toString();
+  }
+
+  /**
+   * get cached response for key, or load and cache it.
+   *
+   * @param key cache key, loader is used without caching when <i>null</i>
+   * @param loader loads response from database
+   * @return response
+   */
+  public Future<Buffer> getOrLoad(String key, Supplier<Future<Buffer>> loader) {
+    if (key == null) {
+      return loader.get();
+    }
+    Buffer cached = cache.getIfPresent(key);
+    if (cached != null) {
+      LOGGER.debug("search result cache hit");
+      return Future.succeededFuture(cached);
+    }
+    return loader.get().onSuccess(response -> cache.put(key, response));
+  }
+
+  /**
+   * get cached JSON response for key, or load and cache it. Response is encoded only to be
+   * cached, it is passed through as it is when key is <i>null</i>.
+   *
+   * @param key cache key, loader is used without caching when <i>null</i>
+   * @param loader loads response from database
+   * @return response
+   */
+  public Future<JsonObject> getOrLoadJson(String key, Supplier<Future<JsonObject>> loader) {
+    if (key == null) {
+      return loader.get();
+    }
+    return getOrLoad(key, () -> loader.get().map(JsonObject::toBuffer)).map(JsonObject::new);
+  }
+}
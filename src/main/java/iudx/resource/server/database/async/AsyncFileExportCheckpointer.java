@@ -0,0 +1,124 @@
+package iudx.resource.server.database.async;
+
+import static iudx.resource.server.database.async.util.Constants.CHECKPOINT_OBJECT_ID;
+import static iudx.resource.server.database.async.util.Constants.CHECKPOINT_POSITION;
+import static iudx.resource.server.database.async.util.Constants.CHECKPOINT_UPLOAD;
+import static iudx.resource.server.database.postgres.Constants.UPDATE_S3_CHECKPOINT_SQL;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.database.async.util.ResumableUploadStream;
+import iudx.resource.server.database.postgres.PostgresService;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.CompletableFuture;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Checkpoints an export to S3 in the s3 upload table, a checkpoint is taken with every part of
+ * the upload.
+ *
+ * <p>A checkpoint holds the object uploaded to, the upload id, bytes written and ETags of the
+ * parts uploaded, and the position of the search after the pages in those parts. It is saved
+ * once its parts are uploaded, checkpoints are saved one at a time and in order.
+ */
+public class AsyncFileExportCheckpointer implements ExportCheckpointer {
+
+  private static final Logger LOGGER = LogManager.getLogger(AsyncFileExportCheckpointer.class);
+
+  private final String searchId;
+  private final String objectId;
+  private final ResumableUploadStream uploadStream;
+  private final PostgresService postgresService;
+  private Future<Void> lastSave = Future.succeededFuture();
+  private volatile JsonObject lastCheckpoint;
+
+  /**
+   * checkpointer of an export.
+   *
+   * @param searchId search id of export
+   * @param objectId object uploaded to
+   * @param uploadStream stream to the upload
+   * @param postgresService service to save checkpoints with
+   * @param resumedFrom checkpoint the export is resumed from, <i>null</i> for a new export
+   */
+  public AsyncFileExportCheckpointer(
+      String searchId,
+      String objectId,
+      ResumableUploadStream uploadStream,
+      PostgresService postgresService,
+      JsonObject resumedFrom) {
+    this.searchId = searchId;
+    this.objectId = objectId;
+    this.uploadStream = uploadStream;
+    this.postgresService = postgresService;
+    this.lastCheckpoint = resumedFrom;
+  }
+
+  @Override
+  public boolean isCheckpointDue() {
+    return uploadStream.isPartDue();
+  }
+
+  @Override
+  public void checkpoint(JsonObject position) {
+    CompletableFuture<JsonObject> uploadState;
+    try {
+      uploadState = uploadStream.endPart();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (position == null) {
+      return;
+    }
+    Future<JsonObject> partsUploaded = Future.fromCompletionStage(uploadState);
+    synchronized (this) {
+      lastSave =
+          lastSave
+              .transform(previousSave -> partsUploaded)
+              .compose(
+                  upload ->
+                      save(
+                          new JsonObject()
+                              .put(CHECKPOINT_OBJECT_ID, objectId)
+                              .put(CHECKPOINT_UPLOAD, upload)
+                              .put(CHECKPOINT_POSITION, position)))
+              .recover(
+                  failure -> {
+                    LOGGER.warn("checkpoint of {} not saved : {}", searchId, failure.getMessage());
+                    return Future.succeededFuture();
+                  });
+    }
+  }
+
+  /**
+   * last checkpoint saved, once checkpoints being saved are done.
+   *
+   * @return checkpoint, <i>null</i> if none is saved
+   */
+  public synchronized Future<JsonObject> getLastCheckpoint() {
+    return lastSave.map(saved -> lastCheckpoint);
+  }
+
+  private Future<Void> save(JsonObject checkpoint) {
+    Promise<Void> promise = Promise.promise();
+    String query =
+        UPDATE_S3_CHECKPOINT_SQL
+            .replace("$1", checkpoint.encode().replace("'", "''"))
+            .replace("$2", searchId);
+    postgresService.executeQuery(
+        query,
+        pgHandler -> {
+          if (pgHandler.succeeded()) {
+            LOGGER.debug("checkpoint of {} saved", searchId);
+            lastCheckpoint = checkpoint;
+            promise.complete();
+          } else {
+            promise.fail(pgHandler.cause());
+          }
+        });
+    return promise.future();
+  }
+}
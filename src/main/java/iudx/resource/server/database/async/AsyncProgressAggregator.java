@@ -0,0 +1,132 @@
+package iudx.resource.server.database.async;
+
+import static iudx.resource.server.database.postgres.Constants.UPDATE_S3_PROGRESS_BATCH_SQL;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import iudx.resource.server.database.postgres.PostgresService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Progress of the async exports running in a JVM, written to postgres in batches.
+ *
+ * <p>Exports report progress as often as they like, only the latest progress of each export is
+ * kept until the next flush. A flush writes progress of all exports in a single update, on a
+ * timer, so no thread is held per export and postgres sees one query per interval however many
+ * exports run. Progress is only ever raised, an update arriving after an export is complete
+ * leaves it complete. Progress of a failed flush is kept for the next one, unless a higher progress
+ * was recorded meanwhile or the export is done.
+ */
+public final class AsyncProgressAggregator {
+
+  private static final Logger LOGGER = LogManager.getLogger(AsyncProgressAggregator.class);
+  private static AsyncProgressAggregator sharedAggregator;
+
+  private final PostgresService postgresService;
+  private final Map<String, Double> pendingProgress = new ConcurrentHashMap<>();
+  // exports done while a flush runs, their progress isn't kept if it fails
+  private final Set<String> removedWhileFlushing = ConcurrentHashMap.newKeySet();
+  private final AtomicBoolean isFlushing = new AtomicBoolean();
+
+  AsyncProgressAggregator(PostgresService postgresService) {
+    this.postgresService = postgresService;
+  }
+
+  /**
+   * aggregator shared by all async exports in a JVM, created and scheduled on first use.
+   *
+   * @param vertx vertx instance
+   * @param postgresService service to write progress with
+   * @param flushIntervalMs interval between flushes
+   * @return AsyncProgressAggregator
+   */
+  static synchronized AsyncProgressAggregator shared(
+      Vertx vertx, PostgresService postgresService, long flushIntervalMs) {
+    if (sharedAggregator == null) {
+      AsyncProgressAggregator aggregator = new AsyncProgressAggregator(postgresService);
+      vertx.setPeriodic(flushIntervalMs, timerId -> aggregator.flush());
+      LOGGER.info("async progress flushed every {} ms", flushIntervalMs);
+      sharedAggregator = aggregator;
+    }
+    return sharedAggregator;
+  }
+
+  /**
+   * records progress of an export, to be written with the next flush.
+   *
+   * @param searchId search id of export
+   * @param progress fraction of export done, from 0 to 1
+   */
+  void update(String searchId, double progress) {
+    pendingProgress.merge(searchId, progress, Math::max);
+  }
+
+  /** drops progress of an export not yet written, e.g. of an export done. */
+  void remove(String searchId) {
+    if (isFlushing.get()) {
+      removedWhileFlushing.add(searchId);
+    }
+    pendingProgress.remove(searchId);
+  }
+
+  /**
+   * writes progress recorded since the last flush in a single update. A flush is skipped while the
+   * previous one is still running, its progress waits for the next one. Progress of a failed
+   * flush is recorded again, to be written with the next one.
+   *
+   * @return Future
+   */
+  Future<Void> flush() {
+    if (pendingProgress.isEmpty() || !isFlushing.compareAndSet(false, true)) {
+      return Future.succeededFuture();
+    }
+    removedWhileFlushing.clear();
+    Map<String, Double> flushed = new HashMap<>();
+    StringBuilder values = new StringBuilder();
+    for (String searchId : new ArrayList<>(pendingProgress.keySet())) {
+      Double progress = pendingProgress.remove(searchId);
+      if (progress == null) {
+        continue;
+      }
+      flushed.put(searchId, progress);
+      if (values.length() > 0) {
+        values.append(',');
+      }
+      values.append("('").append(searchId).append("',").append(progress * 100.0).append(')');
+    }
+    if (values.length() == 0) {
+      isFlushing.set(false);
+      return Future.succeededFuture();
+    }
+    Promise<Void> promise = Promise.promise();
+    String query = UPDATE_S3_PROGRESS_BATCH_SQL.replace("$1", values);
+    LOGGER.debug("updating progress : {}", query);
+    postgresService.executeQuery(
+        query,
+        pgHandler -> {
+          if (pgHandler.succeeded()) {
+            isFlushing.set(false);
+            promise.complete();
+          } else {
+            LOGGER.error("failed to update progress : {}", pgHandler.cause().getMessage());
+            flushed.forEach(
+                (searchId, progress) -> {
+                  if (!removedWhileFlushing.contains(searchId)) {
+                    pendingProgress.merge(searchId, progress, Math::max);
+                  }
+                });
+            isFlushing.set(false);
+            promise.fail(pgHandler.cause());
+          }
+        });
+    return promise.future();
+  }
+}
@@ -7,6 +7,7 @@ import io.vertx.codegen.annotations.VertxGen;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.json.JsonObject;
 
 /**
@@ -38,6 +39,19 @@ public interface AsyncService {
     return new AsyncServiceVertxEBProxy(vertx, address);
   }
 
+  /**
+   * proxy with delivery options, e.g. to wait longer than the default send timeout for replies.
+   *
+   * @param vertx which is the vertx instance
+   * @param address which is the proxy address
+   * @param options which are the delivery options of requests
+   * @return AsyncServiceVertxEBProxy which is a service proxy
+   */
+  @GenIgnore
+  static AsyncService createProxy(Vertx vertx, String address, DeliveryOptions options) {
+    return new AsyncServiceVertxEBProxy(vertx, address, options);
+  }
+
   /**
    * The asyncSearch performs asynchronous search for a resource.
    *
@@ -48,6 +62,7 @@ public interface AsyncService {
    * @param role which is a String
    * @param drl which is a String
    * @param did which is a String
+   * @param handler which is a Request Handler, completed once the search is done
    * @return AsyncService which is a service
    */
   @Fluent
@@ -59,7 +74,8 @@ public interface AsyncService {
       String format,
       String role,
       String drl,
-      String did);
+      String did,
+      Handler<AsyncResult<Void>> handler);
 
   /**
    * The asyncStatus checks on the status of the corresponding async search
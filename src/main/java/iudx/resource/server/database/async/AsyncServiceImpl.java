@@ -13,6 +13,7 @@ import static iudx.resource.server.metering.util.Constants.API;
 import static iudx.resource.server.metering.util.Constants.TYPE_KEY;
 
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import com.google.common.hash.Hashing;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
@@ -25,20 +26,34 @@ import iudx.resource.server.cache.CacheService;
 import iudx.resource.server.cache.cachelmpl.CacheType;
 import iudx.resource.server.common.ResponseUrn;
 import iudx.resource.server.database.archives.ResponseBuilder;
+import iudx.resource.server.database.archives.SearchResultCache;
+import iudx.resource.server.database.async.util.FileCompression;
 import iudx.resource.server.database.async.util.QueryProgress;
+import iudx.resource.server.database.async.util.ResumableUploadStream;
 import iudx.resource.server.database.async.util.S3FileOpsHelper;
+import iudx.resource.server.database.async.util.S3MultipartOutputStream;
 import iudx.resource.server.database.async.util.Util;
 import iudx.resource.server.database.elastic.ElasticClient;
+import iudx.resource.server.database.elastic.IndexResolver;
 import iudx.resource.server.database.elastic.QueryDecoder;
+import iudx.resource.server.database.elastic.TemporalWindow;
 import iudx.resource.server.database.postgres.PostgresService;
 import iudx.resource.server.metering.MeteringService;
-import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -47,6 +62,10 @@ public class AsyncServiceImpl implements AsyncService {
 
   private static final Logger LOGGER = LogManager.getLogger(AsyncServiceImpl.class);
 
+  /* exports running on this node by result key, identical queries wait for them */
+  private static final Map<String, Future<JsonObject>> IN_FLIGHT_EXPORTS =
+      new ConcurrentHashMap<>();
+
   private final ElasticClient client;
   private final PostgresService pgService;
   private final S3FileOpsHelper s3FileOpsHelper;
@@ -55,26 +74,94 @@ public class AsyncServiceImpl implements AsyncService {
   private final MeteringService meteringService;
   public CacheService cacheService;
   private ResponseBuilder responseBuilder;
-  private String filePath;
-  private String tenantPrefix;
+  private IndexResolver indexResolver;
+  private final AsyncProgressAggregator progressAggregator;
+  private final Duration settledHorizon;
+  private final Duration maxResultAge;
 
   public AsyncServiceImpl(
       Vertx vertx,
       ElasticClient client,
       PostgresService pgService,
       S3FileOpsHelper s3FileOpsHelper,
-      String filePath,
       String tenantPrefix,
       CacheService cacheService) {
+    this(
+        vertx,
+        client,
+        pgService,
+        s3FileOpsHelper,
+        new IndexResolver(tenantPrefix),
+        cacheService);
+  }
+
+  public AsyncServiceImpl(
+      Vertx vertx,
+      ElasticClient client,
+      PostgresService pgService,
+      S3FileOpsHelper s3FileOpsHelper,
+      IndexResolver indexResolver,
+      CacheService cacheService) {
+    this(
+        vertx,
+        client,
+        pgService,
+        s3FileOpsHelper,
+        indexResolver,
+        cacheService,
+        DEFAULT_PROGRESS_FLUSH_INTERVAL_MS);
+  }
+
+  public AsyncServiceImpl(
+      Vertx vertx,
+      ElasticClient client,
+      PostgresService pgService,
+      S3FileOpsHelper s3FileOpsHelper,
+      IndexResolver indexResolver,
+      CacheService cacheService,
+      long progressFlushIntervalMs) {
+    this(
+        vertx,
+        client,
+        pgService,
+        s3FileOpsHelper,
+        indexResolver,
+        cacheService,
+        progressFlushIntervalMs,
+        Duration.ofMinutes(DEFAULT_SETTLED_HORIZON_MINUTES),
+        Duration.ofMinutes(DEFAULT_RESULT_MAX_AGE_MINUTES));
+  }
+
+  /**
+   * async service.
+   *
+   * @param progressFlushIntervalMs interval progress of exports is written to database at
+   * @param settledHorizon time after which data of a closed window is settled, before that the
+   *     result of a query of the window isn't reused
+   * @param maxResultAge age after which the result of a query isn't reused anymore
+   */
+  public AsyncServiceImpl(
+      Vertx vertx,
+      ElasticClient client,
+      PostgresService pgService,
+      S3FileOpsHelper s3FileOpsHelper,
+      IndexResolver indexResolver,
+      CacheService cacheService,
+      long progressFlushIntervalMs,
+      Duration settledHorizon,
+      Duration maxResultAge) {
     this.vertx = vertx;
     this.client = client;
     this.pgService = pgService;
     this.s3FileOpsHelper = s3FileOpsHelper;
-    this.filePath = filePath;
     this.util = new Util(pgService);
     this.meteringService = MeteringService.createProxy(vertx, METERING_SERVICE_ADDRESS);
-    this.tenantPrefix = tenantPrefix;
+    this.indexResolver = indexResolver;
     this.cacheService = cacheService;
+    this.progressAggregator =
+        AsyncProgressAggregator.shared(vertx, pgService, progressFlushIntervalMs);
+    this.settledHorizon = settledHorizon;
+    this.maxResultAge = maxResultAge;
   }
 
   @Override
@@ -139,30 +226,160 @@ public class AsyncServiceImpl implements AsyncService {
       String format,
       String role,
       String drl,
-      String did) {
+      String did,
+      Handler<AsyncResult<Void>> handler) {
     String id = query.getJsonArray(ID).getString(0);
-    getRecord4RequestId(requestId)
+    Promise<Void> promise = Promise.promise();
+    promise.future().onComplete(handler);
+    String resultKey = getResultKey(query, format);
+    getRecord4RequestId(requestId, resultKey)
         .onSuccess(
-            handler -> {
+            recordHandler -> {
               process4ExistingRequestId(
-                  id, requestId, sub, searchId, handler, format, role, drl, did);
+                  id, requestId, sub, searchId, recordHandler, format, role, drl, did, promise);
             })
         .onFailure(
-            handler -> {
-              updateQueryExecutionStatus(searchId, QueryProgress.IN_PROGRESS)
-                  .onSuccess(
-                      statusHandler -> {
-                        process4NewRequestId(searchId, sub, query, format, role, drl, did);
-                      })
-                  .onFailure(
-                      statusHandler -> {
-                        LOGGER.error("");
-                      });
+            recordHandler -> {
+              process4NewResult(
+                  id, requestId, sub, searchId, query, format, role, drl, did, resultKey, promise);
             });
 
     return this;
   }
 
+  /*
+   * exports the result of a query, unless an identical query is being exported on this node, in
+   * which case the query waits for that export and reuses its object.
+   */
+  private void process4NewResult(
+      String id,
+      String requestId,
+      String sub,
+      String searchId,
+      JsonObject query,
+      String format,
+      String role,
+      String drl,
+      String did,
+      String resultKey,
+      Promise<Void> promise) {
+    Promise<JsonObject> export = Promise.promise();
+    Future<JsonObject> inFlightExport =
+        resultKey != null ? IN_FLIGHT_EXPORTS.putIfAbsent(resultKey, export.future()) : null;
+    if (inFlightExport != null) {
+      LOGGER.info("search {} waiting for export of identical query", searchId);
+      updateQueryExecutionStatus(searchId, QueryProgress.IN_PROGRESS)
+          .onSuccess(
+              statusHandler ->
+                  inFlightExport
+                      .onSuccess(
+                          result ->
+                              process4ExistingRequestId(
+                                  id,
+                                  requestId,
+                                  sub,
+                                  searchId,
+                                  new JsonArray().add(result),
+                                  format,
+                                  role,
+                                  drl,
+                                  did,
+                                  promise))
+                      .onFailure(
+                          // the export waited for is gone, the query is exported on its own
+                          inFlightFailure ->
+                              process4NewResult(
+                                  id,
+                                  requestId,
+                                  sub,
+                                  searchId,
+                                  query,
+                                  format,
+                                  role,
+                                  drl,
+                                  did,
+                                  resultKey,
+                                  promise)))
+          .onFailure(
+              statusHandler -> {
+                LOGGER.error("failed to start async search : {}", searchId);
+                promise.fail(statusHandler);
+              });
+      return;
+    }
+    if (resultKey != null) {
+      export
+          .future()
+          .onComplete(exported -> IN_FLIGHT_EXPORTS.remove(resultKey, export.future()));
+    }
+    export.future().<Void>mapEmpty().onComplete(promise);
+    updateQueryExecutionStatus(searchId, QueryProgress.IN_PROGRESS)
+        .compose(
+            statusHandler ->
+                resultKey != null
+                    ? executePgQuery(
+                        UPDATE_S3_RESULT_KEY_SQL.replace("$1", resultKey).replace("$2", searchId))
+                    : Future.succeededFuture())
+        .compose(statusHandler -> getCheckpoint4SearchId(searchId))
+        .onSuccess(
+            checkpoint -> {
+              process4NewRequestId(
+                  searchId, sub, query, format, role, drl, did, checkpoint, 0, export);
+            })
+        .onFailure(
+            statusHandler -> {
+              LOGGER.error("failed to start async search : {}", searchId);
+              export.fail(statusHandler);
+            });
+  }
+
+  /**
+   * This method will compute a key of the result of a query, the same for every query decoding to
+   * the same search, whatever the user or the request id. Only a search of a window closed
+   * before the settled horizon has a key, the result of a window closed later would still change
+   * with data arriving late in it.
+   *
+   * @param request query json
+   * @param format file format
+   * @return key, <i>null</i> if result of query can't be reused
+   */
+  String getResultKey(JsonObject request, String format) {
+    JsonObject searchRequest = request.copy().put("search", true);
+    if (!util.isValidQuery(searchRequest)) {
+      return null;
+    }
+    try {
+      QueryDecoder queryDecoder = new QueryDecoder();
+      TemporalWindow window = queryDecoder.getTemporalWindow(searchRequest, true);
+      if (!window.endsBefore(ZonedDateTime.now().minus(settledHorizon))) {
+        return null;
+      }
+      Query query = queryDecoder.getQuery(searchRequest, true);
+      String searchIndex =
+          indexResolver.resolve(searchRequest.getString("resourceGroup"), window);
+      List<String> attrs = new ArrayList<>();
+      if (searchRequest.containsKey(RESPONSE_ATTRS)) {
+        searchRequest.getJsonArray(RESPONSE_ATTRS).forEach(attr -> attrs.add((String) attr));
+        Collections.sort(attrs);
+      }
+      JsonObject search =
+          new JsonObject()
+              .put("index", searchIndex)
+              .put("query", SearchResultCache.toJson(query))
+              .put(RESPONSE_ATTRS, new JsonArray(attrs))
+              .put("format", format != null ? format : "json")
+              .put(
+                  HEADER_RESPONSE_FILE_COMPRESSION,
+                  FileCompression.fromHeader(
+                          searchRequest.getString(HEADER_RESPONSE_FILE_COMPRESSION))
+                      .name());
+      return Hashing.sha256().hashString(search.encode(), StandardCharsets.UTF_8).toString();
+    } catch (Exception e) {
+      LOGGER.debug("no result key for query : {}", e.getMessage());
+      return null;
+    }
+  }
+
   private Future<Void> updateQueryExecutionStatus(String searchId, QueryProgress status) {
     Promise<Void> promise = Promise.promise();
     StringBuilder querySb =
@@ -189,13 +406,29 @@ public class AsyncServiceImpl implements AsyncService {
    * @return Future
    */
   Future<JsonArray> getRecord4RequestId(String requestId) {
+    return getRecord4RequestId(requestId, null);
+  }
+
+  /**
+   * This method will fetch results from database for a provided requestId or result key, and
+   * status="COMPLETE". A result found by its key is reused only till it is as old as the max
+   * result age. This method returns a failed future if no record exist, else it will
+   * return a successful
+   *
+   * @param requestId String
+   * @param resultKey String, see {@link #getResultKey(JsonObject, String)}
+   * @return Future
+   */
+  Future<JsonArray> getRecord4RequestId(String requestId, String resultKey) {
     Promise<JsonArray> promise = Promise.promise();
 
     StringBuilder query =
         new StringBuilder(
-            SELECT_S3_SEARCH_SQL
+            (resultKey != null ? SELECT_S3_RESULT_SQL : SELECT_S3_SEARCH_SQL)
                 .replace("$1", requestId)
-                .replace("$2", QueryProgress.COMPLETE.toString()));
+                .replace("$2", QueryProgress.COMPLETE.toString())
+                .replace("$3", String.valueOf(resultKey))
+                .replace("$4", String.valueOf(maxResultAge.toMinutes())));
 
     pgService.executeQuery(
         query.toString(),
@@ -208,6 +441,41 @@ public class AsyncServiceImpl implements AsyncService {
               //          LOGGER.debug("record : " + results);
               promise.complete(results);
             }
+          } else {
+            promise.fail(pgHandler.cause());
+          }
+        });
+    return promise.future();
+  }
+
+  /**
+   * This method will fetch the checkpoint of an export left in progress, e.g. by a node stopped
+   * during the export. An export without checkpoint, or whose checkpoint can't be fetched, starts
+   * over.
+   *
+   * @param searchId String
+   * @return Future of checkpoint, <i>null</i> if there is none
+   */
+  Future<JsonObject> getCheckpoint4SearchId(String searchId) {
+    Promise<JsonObject> promise = Promise.promise();
+
+    pgService.executeQuery(
+        SELECT_S3_CHECKPOINT_SQL.replace("$1", searchId),
+        pgHandler -> {
+          if (pgHandler.succeeded()) {
+            JsonArray results = pgHandler.result().getJsonArray("result");
+            if (results.isEmpty()) {
+              promise.complete();
+            } else {
+              Object checkpoint = results.getJsonObject(0).getValue(CHECKPOINT);
+              promise.complete(
+                  checkpoint instanceof JsonObject
+                      ? (JsonObject) checkpoint
+                      : new JsonObject(String.valueOf(checkpoint)));
+            }
+          } else {
+            LOGGER.error("failed to get checkpoint of {} : {}", searchId, pgHandler.cause());
+            promise.complete();
           }
         });
     return promise.future();
@@ -238,7 +506,8 @@ public class AsyncServiceImpl implements AsyncService {
       String format,
       String role,
       String drl,
-      String did) {
+      String did,
+      Promise<Void> promise) {
     String objectId = record.getJsonObject(0).getString(OBJECT_ID);
     String expiry = LocalDateTime.now().plusDays(1).toString();
     long fileSize = record.getJsonObject(0).getLong(SIZE_KEY);
@@ -261,10 +530,12 @@ public class AsyncServiceImpl implements AsyncService {
             handler -> {
               LOGGER.info("Query completed with existing requestId & objectId");
               Future.future(fu -> updateAuditTable(id, sub, fileSize, role, drl, did));
+              promise.complete();
             })
         .onFailure(
             handler -> {
               LOGGER.error("Query execution failed for insert with existing requestId & objectId");
+              promise.fail(handler);
             });
   }
 
@@ -275,96 +546,157 @@ public class AsyncServiceImpl implements AsyncService {
       String format,
       String role,
       String drl,
-      String did) {
+      String did,
+      JsonObject checkpoint,
+      int resumeAttempts,
+      Promise<JsonObject> promise) {
     if (format == null) {
       format = "json";
     }
-    File file = new File(filePath + "/" + searchId + "." + format);
-    String objectId = UUID.randomUUID().toString();
+    final String fileFormat = format;
+    String objectId =
+        checkpoint != null
+            ? checkpoint.getString(CHECKPOINT_OBJECT_ID)
+            : UUID.randomUUID().toString();
     String id = query.getJsonArray(ID).getString(0);
+    FileCompression compression =
+        FileCompression.fromHeader(query.getString(HEADER_RESPONSE_FILE_COMPRESSION));
+    S3MultipartOutputStream upload =
+        s3FileOpsHelper.openResumableUploadStream(
+            objectId,
+            compression.fileName(searchId + "." + format),
+            compression.getContentType(),
+            checkpoint != null ? checkpoint.getJsonObject(CHECKPOINT_UPLOAD) : new JsonObject());
+    ResumableUploadStream uploadStream;
+    try {
+      uploadStream = new ResumableUploadStream(upload, compression);
+    } catch (IOException e) {
+      LOGGER.error("failed to create {} compressor : {}", compression, e.getMessage());
+      upload.abort();
+      updateFailedStatus(searchId);
+      promise.fail(e);
+      return;
+    }
+    if (checkpoint != null) {
+      LOGGER.info("resuming export {} after {} bytes", searchId, upload.getBytesWritten());
+    }
 
-    ProgressListener progressListener = new AsyncFileScrollProgressListener(searchId, pgService);
+    ProgressListener progressListener =
+        new AsyncFileScrollProgressListener(searchId, progressAggregator);
+    AsyncFileExportCheckpointer checkpointer =
+        new AsyncFileExportCheckpointer(searchId, objectId, uploadStream, pgService, checkpoint);
 
     scrollQuery(
-        file,
+        uploadStream,
         query,
         searchId,
         progressListener,
         format,
+        checkpointer,
+        checkpoint != null ? checkpoint.getJsonObject(CHECKPOINT_POSITION) : null,
         scrollHandler -> {
           if (scrollHandler.succeeded()) {
-            s3FileOpsHelper.s3Upload(
-                file,
-                objectId,
-                s3UploadHandler -> {
-                  if (s3UploadHandler.succeeded()) {
-                    JsonObject uploadResult = s3UploadHandler.result();
-                    String s3Url = uploadResult.getString("s3_url");
-                    String expiry = LocalDateTime.now().plusDays(1).toString();
-                    Long fileSize = file.length();
-                    // update DB for search ID and requestId;
-                    progressListener.finish();
-                    StringBuilder updateQuery =
-                        new StringBuilder(
-                            UPDATE_S3_URL_SQL
-                                .replace("$1", s3Url)
-                                .replace("$2", expiry)
-                                .replace("$3", QueryProgress.COMPLETE.toString())
-                                .replace("$4", objectId)
-                                .replace("$5", String.valueOf(100.0))
-                                .replace("$6", String.valueOf(fileSize))
-                                .replace("$7", searchId));
-
-                    executePgQuery(updateQuery.toString())
-                        .onSuccess(
-                            recordUpdateHandler -> {
-                              LOGGER.debug("updated status in postgres");
-                              Future.future(
-                                  fu -> updateAuditTable(id, userId, fileSize, role, drl, did));
-                              try {
-                                vertx.fileSystem().deleteBlocking(filePath + "/" + file.getName());
-                              } catch (Exception ex) {
-                                LOGGER.error(
-                                    "File deletion operation failed for fileName : "
-                                        + "{} try to delete manually to reclaim disk-space",
-                                    file.getName());
-                              }
-                            })
-                        .onFailure(
-                            recordInsertFailure -> {
-                              LOGGER.error(
-                                  "Postgres insert failure[COMPLETE status] {}",
-                                  recordInsertFailure);
-                            });
-
-                  } else {
-                    LOGGER.error("File upload to S3 failed for fileName : {}", file.getName());
-                    StringBuilder updateFailQuery =
-                        new StringBuilder(
-                            UPDATE_STATUS_SQL
-                                .replace("$1", QueryProgress.ERROR.toString())
-                                .replace("$2", searchId));
-                    Future.future(fu -> util.writeToDb(updateFailQuery));
-                  }
-                });
-          } else {
-            LOGGER.error("Scroll API operation failed for searchId : " + searchId);
-            StringBuilder updateFailQuery =
+            // stream is closed once scroll completes, which completes the upload
+            JsonObject uploadResult = s3FileOpsHelper.getUploadResult(objectId);
+            String s3Url = uploadResult.getString("s3_url");
+            String expiry = LocalDateTime.now().plusDays(1).toString();
+            Long fileSize = uploadStream.getBytesWritten();
+            // update DB for search ID and requestId;
+            progressListener.finish();
+            StringBuilder updateQuery =
                 new StringBuilder(
-                    UPDATE_STATUS_SQL
-                        .replace("$1", QueryProgress.ERROR.toString())
-                        .replace("$2", searchId));
-            Future.future(fu -> util.writeToDb(updateFailQuery));
+                    UPDATE_S3_URL_SQL
+                        .replace("$1", s3Url)
+                        .replace("$2", expiry)
+                        .replace("$3", QueryProgress.COMPLETE.toString())
+                        .replace("$4", objectId)
+                        .replace("$5", String.valueOf(100.0))
+                        .replace("$6", String.valueOf(fileSize))
+                        .replace("$7", searchId));
+
+            // checkpoints still being saved would be left behind the completed export
+            checkpointer
+                .getLastCheckpoint()
+                .compose(lastCheckpoint -> executePgQuery(updateQuery.toString()))
+                .onSuccess(
+                    recordUpdateHandler -> {
+                      LOGGER.debug("updated status in postgres");
+                      Future.future(fu -> updateAuditTable(id, userId, fileSize, role, drl, did));
+                      promise.complete(
+                          new JsonObject().put(OBJECT_ID, objectId).put(SIZE_KEY, fileSize));
+                    })
+                .onFailure(
+                    recordInsertFailure -> {
+                      LOGGER.error(
+                          "Postgres insert failure[COMPLETE status] {}", recordInsertFailure);
+                      promise.fail(recordInsertFailure);
+                    });
+          } else {
+            uploadStream.release();
+            progressListener.finish();
+            checkpointer
+                .getLastCheckpoint()
+                .onComplete(
+                    lastCheckpoint -> {
+                      if (lastCheckpoint.result() != null
+                          && resumeAttempts < MAX_EXPORT_RESUME_ATTEMPTS) {
+                        LOGGER.warn(
+                            "export {} failed, resuming from last checkpoint : {}",
+                            searchId,
+                            scrollHandler.cause().getMessage());
+                        process4NewRequestId(
+                            searchId,
+                            userId,
+                            query,
+                            fileFormat,
+                            role,
+                            drl,
+                            did,
+                            lastCheckpoint.result(),
+                            resumeAttempts + 1,
+                            promise);
+                        return;
+                      }
+                      LOGGER.error("Scroll or upload to S3 failed for searchId : " + searchId);
+                      uploadStream.abort();
+                      updateFailedStatus(searchId);
+                      promise.fail(scrollHandler.cause());
+                    });
           }
         });
   }
 
+  /* marks export failed, it isn't resumed after */
+  private void updateFailedStatus(String searchId) {
+    StringBuilder updateFailQuery =
+        new StringBuilder(
+            UPDATE_STATUS_SQL
+                .replace("$1", QueryProgress.ERROR.toString())
+                .replace("$2", searchId));
+    Future.future(fu -> util.writeToDb(updateFailQuery));
+    Future.future(
+        fu -> util.writeToDb(new StringBuilder(CLEAR_S3_CHECKPOINT_SQL.replace("$1", searchId))));
+  }
+
+  public AsyncService scrollQuery(
+      OutputStream outputStream,
+      JsonObject request,
+      String searchId,
+      ProgressListener progressListener,
+      String format,
+      Handler<AsyncResult<JsonObject>> handler) {
+    return scrollQuery(
+        outputStream, request, searchId, progressListener, format, null, null, handler);
+  }
+
   public AsyncService scrollQuery(
-      File file,
+      OutputStream outputStream,
       JsonObject request,
       String searchId,
       ProgressListener progressListener,
       String format,
+      ExportCheckpointer checkpointer,
+      JsonObject resumeFrom,
       Handler<AsyncResult<JsonObject>> handler) {
 
     Query query;
@@ -375,23 +707,14 @@ public class AsyncServiceImpl implements AsyncService {
       handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
       return this;
     }
-    LOGGER.info("tenant {}", tenantPrefix);
-    StringBuilder tenantBuilder = new StringBuilder(tenantPrefix);
     final String searchIndex;
+    final TemporalWindow window;
     String resourceGroup = request.getString("resourceGroup");
-    if (!this.tenantPrefix.equals("none")) {
-      searchIndex = String.valueOf(tenantBuilder.append("__").append(resourceGroup));
-    } else {
-      searchIndex = resourceGroup;
-    }
-    /*
-     * Example: searchIndex =
-     * iudx__datakaveri.org__b8bd3e3f39615c8ec96722131ae95056b5938f2f__rs.iudx.io__pune-env-aqm
-     */
-    LOGGER.info("Index name: " + searchIndex);
-
     try {
-      query = new QueryDecoder().getQuery(request, true);
+      QueryDecoder queryDecoder = new QueryDecoder();
+      query = queryDecoder.getQuery(request, true);
+      window = queryDecoder.getTemporalWindow(request, true);
+      searchIndex = indexResolver.resolve(resourceGroup, window);
     } catch (Exception e) {
       LOGGER.error(e);
       e.printStackTrace();
@@ -399,6 +722,11 @@ public class AsyncServiceImpl implements AsyncService {
       handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
       return this;
     }
+    /*
+     * Example: searchIndex =
+     * iudx__datakaveri.org__b8bd3e3f39615c8ec96722131ae95056b5938f2f__rs.iudx.io__pune-env-aqm
+     */
+    LOGGER.info("Index name: " + searchIndex);
 
     LOGGER.debug("Info: index: " + searchIndex);
     LOGGER.debug("Info: Query constructed: " + query.toString());
@@ -414,7 +742,16 @@ public class AsyncServiceImpl implements AsyncService {
     }
     Future<JsonObject> asyncFuture =
         client.asyncScroll(
-            file, searchIndex, query, sourceFilters, searchId, progressListener, format, filePath);
+            outputStream,
+            searchIndex,
+            query,
+            window,
+            sourceFilters,
+            searchId,
+            progressListener,
+            format,
+            checkpointer,
+            resumeFrom);
     asyncFuture.onComplete(
         scrollHandler -> {
           if (scrollHandler.succeeded()) {
@@ -1,6 +1,15 @@
 package iudx.resource.server.database.async;
 
 import static iudx.resource.server.common.Constants.*;
+import static iudx.resource.server.database.archives.Constants.DEFAULT_EXPORT_POOL_SIZE;
+import static iudx.resource.server.database.archives.Constants.DEFAULT_MAX_SCROLL_SLICES;
+import static iudx.resource.server.database.archives.Constants.DEFAULT_SCROLL_BUFFERED_PAGES;
+import static iudx.resource.server.database.archives.Constants.DEFAULT_SETTLED_HORIZON_MINUTES;
+import static iudx.resource.server.database.async.util.Constants.DEFAULT_PROGRESS_FLUSH_INTERVAL_MS;
+import static iudx.resource.server.database.async.util.Constants.DEFAULT_RESULT_MAX_AGE_MINUTES;
+import static iudx.resource.server.database.async.util.Constants.DEFAULT_S3_BUFFERED_PARTS;
+import static iudx.resource.server.database.async.util.Constants.DEFAULT_S3_PART_SIZE_MB;
+import static iudx.resource.server.database.async.util.Constants.DEFAULT_S3_UPLOAD_POOL_SIZE;
 
 import com.amazonaws.regions.Regions;
 import io.vertx.core.AbstractVerticle;
@@ -10,7 +19,9 @@ import io.vertx.serviceproxy.ServiceBinder;
 import iudx.resource.server.cache.CacheService;
 import iudx.resource.server.database.async.util.S3FileOpsHelper;
 import iudx.resource.server.database.elastic.ElasticClient;
+import iudx.resource.server.database.elastic.IndexResolver;
 import iudx.resource.server.database.postgres.PostgresService;
+import java.time.Duration;
 
 /**
  * The Async worker Verticle.
@@ -34,7 +45,6 @@ public class AsyncVerticle extends AbstractVerticle {
   private String user;
   private String password;
   private int databasePort;
-  private String filePath;
   private String bucketName;
   private ServiceBinder binder;
   private CacheService cacheService;
@@ -55,20 +65,54 @@ public class AsyncVerticle extends AbstractVerticle {
     databasePort = config().getInteger("databasePort");
     user = config().getString("dbUser");
     password = config().getString("dbPassword");
-    filePath = config().getString("filePath");
     clientRegion = Regions.AP_SOUTH_1;
     bucketName = config().getString("bucketName");
     tenantPrefix = config().getString("tenantPrefix");
 
     pgService = PostgresService.createProxy(vertx, PG_SERVICE_ADDRESS);
     cacheService = CacheService.createProxy(vertx, CACHE_SERVICE_ADDRESS);
-    client = new ElasticClient(databaseIp, databasePort, user, password);
-    fileOpsHelper = new S3FileOpsHelper(clientRegion, bucketName);
+    int exportPoolSize = config().getInteger("exportThreadPoolSize", DEFAULT_EXPORT_POOL_SIZE);
+    int scrollBufferedPages =
+        config().getInteger("scrollBufferedPages", DEFAULT_SCROLL_BUFFERED_PAGES);
+    int maxScrollSlices = config().getInteger("maxScrollSlices", DEFAULT_MAX_SCROLL_SLICES);
+    client =
+        new ElasticClient(
+            databaseIp,
+            databasePort,
+            user,
+            password,
+            exportPoolSize,
+            scrollBufferedPages,
+            maxScrollSlices);
+    fileOpsHelper =
+        new S3FileOpsHelper(
+            clientRegion,
+            bucketName,
+            config().getString("s3Endpoint"),
+            config().getInteger("s3PartSizeMb", DEFAULT_S3_PART_SIZE_MB),
+            config().getInteger("s3BufferedParts", DEFAULT_S3_BUFFERED_PARTS),
+            config().getInteger("s3UploadThreadPoolSize", DEFAULT_S3_UPLOAD_POOL_SIZE));
+
+    IndexResolver indexResolver =
+        new IndexResolver(
+            tenantPrefix, config().getJsonObject("indexPartitioning", new JsonObject()));
+
+    JsonObject resultReuse = config().getJsonObject("resultReuse", new JsonObject());
 
     binder = new ServiceBinder(vertx);
     asyncService =
         new AsyncServiceImpl(
-            vertx, client, pgService, fileOpsHelper, filePath, tenantPrefix, cacheService);
+            vertx,
+            client,
+            pgService,
+            fileOpsHelper,
+            indexResolver,
+            cacheService,
+            config().getLong("progressFlushIntervalMs", DEFAULT_PROGRESS_FLUSH_INTERVAL_MS),
+            Duration.ofMinutes(
+                resultReuse.getLong("settledHorizonMinutes", DEFAULT_SETTLED_HORIZON_MINUTES)),
+            Duration.ofMinutes(
+                resultReuse.getLong("maxAgeMinutes", DEFAULT_RESULT_MAX_AGE_MINUTES)));
 
     consumer = binder.setAddress(ASYNC_SERVICE_ADDRESS).register(AsyncService.class, asyncService);
   }
@@ -0,0 +1,18 @@
+package iudx.resource.server.database.async;
+
+import io.vertx.core.json.JsonObject;
+
+/** Takes checkpoints an export can be resumed from, it is asked after every page written. */
+public interface ExportCheckpointer {
+
+  /** true if enough is written since the last checkpoint to take a new one. */
+  boolean isCheckpointDue();
+
+  /**
+   * takes a checkpoint at the end of the pages written so far.
+   *
+   * @param position position of the search after the pages written, <i>null</i> if the export
+   *     can't be resumed, the file is only cut at this point then
+   */
+  void checkpoint(JsonObject position);
+}
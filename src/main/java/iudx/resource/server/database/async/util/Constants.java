@@ -10,4 +10,15 @@ public class Constants {
   public static final String FILE_DOWNLOAD_URL = "file-download-url";
   public static final String USER_ID = "user_id";
   public static final String STATUS = "status";
+  public static final int MIN_S3_PART_SIZE_MB = 5;
+  public static final int DEFAULT_S3_PART_SIZE_MB = 8;
+  public static final int DEFAULT_S3_BUFFERED_PARTS = 4;
+  public static final int DEFAULT_S3_UPLOAD_POOL_SIZE = 8;
+  public static final String CHECKPOINT = "checkpoint";
+  public static final String CHECKPOINT_OBJECT_ID = "objectId";
+  public static final String CHECKPOINT_UPLOAD = "upload";
+  public static final String CHECKPOINT_POSITION = "position";
+  public static final int MAX_EXPORT_RESUME_ATTEMPTS = 3;
+  public static final long DEFAULT_PROGRESS_FLUSH_INTERVAL_MS = 5000;
+  public static final long DEFAULT_RESULT_MAX_AGE_MINUTES = 24 * 60;
 }
@@ -0,0 +1,79 @@
+package iudx.resource.server.database.async.util;
+
+import static iudx.resource.server.apiserver.util.Constants.COMPRESSION_GZIP;
+import static iudx.resource.server.apiserver.util.Constants.COMPRESSION_ZSTD;
+
+import com.github.luben.zstd.ZstdOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression of an async search result file. A compressor wraps the upload stream, so the file
+ * is compressed as it is written and only compressed bytes are buffered and uploaded.
+ */
+public enum FileCompression {
+  NONE("", null) {
+    @Override
+    public OutputStream wrap(OutputStream outputStream) {
+      return outputStream;
+    }
+  },
+  GZIP(".gz", "application/gzip") {
+    @Override
+    public OutputStream wrap(OutputStream outputStream) throws IOException {
+      return new GZIPOutputStream(outputStream, COMPRESSION_BUFFER_SIZE);
+    }
+  },
+  ZSTD(".zst", "application/zstd") {
+    @Override
+    public OutputStream wrap(OutputStream outputStream) throws IOException {
+      return new ZstdOutputStream(outputStream, ZSTD_LEVEL);
+    }
+  };
+
+  private static final int COMPRESSION_BUFFER_SIZE = 64 * 1024;
+  private static final int ZSTD_LEVEL = 3;
+
+  private final String extension;
+  private final String contentType;
+
+  FileCompression(String extension, String contentType) {
+    this.extension = extension;
+    this.contentType = contentType;
+  }
+
+  /**
+   * compression requested through the compression header.
+   *
+   * @param compression header value, <i>null</i> for no compression
+   * @return FileCompression
+   */
+  public static FileCompression fromHeader(String compression) {
+    if (COMPRESSION_GZIP.equals(compression)) {
+      return GZIP;
+    } else if (COMPRESSION_ZSTD.equals(compression)) {
+      return ZSTD;
+    }
+    return NONE;
+  }
+
+  /**
+   * stream compressing bytes written to it into given stream, closing it closes given stream.
+   *
+   * @param outputStream stream to write compressed bytes to
+   * @return OutputStream
+   * @throws IOException if compressor can't be created
+   */
+  public abstract OutputStream wrap(OutputStream outputStream) throws IOException;
+
+  /** name of compressed file, <i>searchId.json</i> is downloaded as <i>searchId.json.gz</i>. */
+  public String fileName(String fileName) {
+    return fileName + extension;
+  }
+
+  /** content type of compressed file, <i>null</i> if not compressed. */
+  public String getContentType() {
+    return contentType;
+  }
+}
@@ -0,0 +1,114 @@
+package iudx.resource.server.database.async.util;
+
+import io.vertx.core.json.JsonObject;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Compressed stream to a resumable S3 upload, parts of the upload hold whole compressed frames.
+ *
+ * <p>The gzip member or zstd frame being written is ended with the part and a new one is started
+ * for the next part. So an upload continued from a part by a new compressor, on this or another
+ * node, is still a valid file, decompressors read concatenated members or frames as one stream.
+ */
+public class ResumableUploadStream extends OutputStream {
+
+  private static final Logger LOGGER = LogManager.getLogger(ResumableUploadStream.class);
+
+  private final S3MultipartOutputStream upload;
+  private final FileCompression compression;
+  private final OutputStream partStream;
+  private OutputStream compressor;
+
+  /**
+   * stream compressing bytes into a resumable upload.
+   *
+   * @param upload resumable upload
+   * @param compression compression of file
+   * @throws IOException if compressor can't be created
+   */
+  public ResumableUploadStream(S3MultipartOutputStream upload, FileCompression compression)
+      throws IOException {
+    this.upload = upload;
+    this.compression = compression;
+    // closing a compressor ends its frame, the upload stays open for the next one
+    this.partStream =
+        new FilterOutputStream(upload) {
+          @Override
+          public void write(byte[] bytes, int offset, int length) throws IOException {
+            out.write(bytes, offset, length);
+          }
+
+          @Override
+          public void close() throws IOException {
+            flush();
+          }
+        };
+    this.compressor = compression.wrap(partStream);
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    compressor.write(b);
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    compressor.write(bytes, offset, length);
+  }
+
+  @Override
+  public void flush() throws IOException {
+    compressor.flush();
+  }
+
+  /** true once the bytes written since the last part make a full part. */
+  public boolean isPartDue() {
+    return upload.getBufferedBytes() >= upload.getPartSize();
+  }
+
+  /**
+   * ends the compressed frame and uploads it as a part, see {@link
+   * S3MultipartOutputStream#endPart()}.
+   *
+   * @return state of the upload, completed once all parts so far are uploaded
+   * @throws IOException if the frame can't be ended or a part has failed
+   */
+  public CompletableFuture<JsonObject> endPart() throws IOException {
+    compressor.close();
+    CompletableFuture<JsonObject> uploadState = upload.endPart();
+    compressor = compression.wrap(partStream);
+    return uploadState;
+  }
+
+  /** bytes written to the upload, compressed. */
+  public long getBytesWritten() {
+    return upload.getBytesWritten();
+  }
+
+  /** completes the upload. */
+  @Override
+  public void close() throws IOException {
+    compressor.close();
+    upload.close();
+  }
+
+  /** discards the upload and any parts already uploaded. */
+  public void abort() {
+    upload.abort();
+    release();
+  }
+
+  /** releases the compressor, the upload is left to be continued from its last part. */
+  public void release() {
+    try {
+      compressor.close();
+    } catch (IOException e) {
+      LOGGER.debug("released compressor of closed upload : {}", e.getMessage());
+    }
+  }
+}
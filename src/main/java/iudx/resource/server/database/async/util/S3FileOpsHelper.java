@@ -1,11 +1,14 @@
 package iudx.resource.server.database.async.util;
 
+import static iudx.resource.server.database.async.util.Constants.*;
+
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.HttpMethod;
 import com.amazonaws.SdkClientException;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.client.builder.AwsClientBuilder.EndpointConfiguration;
 import com.amazonaws.regions.Regions;
 import com.amazonaws.retry.RetryPolicy;
 import com.amazonaws.services.s3.AmazonS3;
@@ -26,6 +29,9 @@ import java.io.IOException;
 import java.net.URL;
 import java.time.ZonedDateTime;
 import java.util.Date;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -33,12 +39,78 @@ public class S3FileOpsHelper {
 
   private static final Logger LOGGER = LogManager.getLogger(S3FileOpsHelper.class);
   static FileInputStream fileInputStream;
+  private static ExecutorService uploadExecutor;
   private final Regions clientRegion;
   private final String bucketName;
+  private final String endpoint;
+  private final int partSize;
+  private final int bufferedParts;
+  private final int uploadPoolSize;
 
   public S3FileOpsHelper(Regions clientRegion, String bucketName) {
+    this(
+        clientRegion,
+        bucketName,
+        null,
+        DEFAULT_S3_PART_SIZE_MB,
+        DEFAULT_S3_BUFFERED_PARTS,
+        DEFAULT_S3_UPLOAD_POOL_SIZE);
+  }
+
+  /**
+   * helper for a bucket, an endpoint other than AWS can be given to use an S3 compatible store.
+   *
+   * @param clientRegion region of bucket
+   * @param bucketName bucket to upload to
+   * @param endpoint S3 compatible endpoint, <i>null</i> for AWS
+   * @param partSizeMb size of a part of a multipart upload in MB, at least 5
+   * @param bufferedParts parts of a stream uploading at a time
+   * @param uploadPoolSize threads uploading parts, shared by all streams
+   */
+  public S3FileOpsHelper(
+      Regions clientRegion,
+      String bucketName,
+      String endpoint,
+      int partSizeMb,
+      int bufferedParts,
+      int uploadPoolSize) {
     this.clientRegion = clientRegion;
     this.bucketName = bucketName;
+    this.endpoint = endpoint;
+    this.partSize = Math.max(partSizeMb, MIN_S3_PART_SIZE_MB) * 1024 * 1024;
+    this.bufferedParts = bufferedParts;
+    this.uploadPoolSize = uploadPoolSize;
+  }
+
+  private static synchronized ExecutorService getUploadExecutor(int poolSize) {
+    if (uploadExecutor == null) {
+      AtomicInteger threadCount = new AtomicInteger();
+      uploadExecutor =
+          Executors.newFixedThreadPool(
+              poolSize,
+              runnable -> {
+                Thread thread =
+                    new Thread(runnable, "rs-s3-upload-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+              });
+    }
+    return uploadExecutor;
+  }
+
+  private AmazonS3 getS3Client(ClientConfiguration clientConfiguration) {
+    AmazonS3ClientBuilder builder =
+        AmazonS3ClientBuilder.standard()
+            .withCredentials(new DefaultAWSCredentialsProviderChain())
+            .withClientConfiguration(clientConfiguration);
+    if (endpoint != null && !endpoint.isBlank()) {
+      builder
+          .withEndpointConfiguration(new EndpointConfiguration(endpoint, clientRegion.getName()))
+          .withPathStyleAccessEnabled(true);
+    } else {
+      builder.withRegion(clientRegion);
+    }
+    return builder.build();
   }
 
   private ClientConfiguration getClientConfiguration() {
@@ -49,16 +121,8 @@ public class S3FileOpsHelper {
 
   public void s3Upload(File file, String objectKey, Handler<AsyncResult<JsonObject>> handler) {
 
-    DefaultAWSCredentialsProviderChain credentialProviderChain =
-        new DefaultAWSCredentialsProviderChain();
-
     try (FileInputStream fileInputStream = new FileInputStream(file)) {
-      AmazonS3 s3Client =
-          AmazonS3ClientBuilder.standard()
-              .withRegion(clientRegion)
-              .withCredentials(credentialProviderChain)
-              .withClientConfiguration(getClientConfiguration())
-              .build();
+      AmazonS3 s3Client = getS3Client(getClientConfiguration());
 
       TransferManager tm = TransferManagerBuilder.standard().withS3Client(s3Client).build();
       ObjectMetadata objectMetadata = new ObjectMetadata();
@@ -72,15 +136,7 @@ public class S3FileOpsHelper {
       upload.waitForCompletion();
 
       LOGGER.info("Object upload complete");
-      ZonedDateTime zdt = ZonedDateTime.now();
-      zdt = zdt.plusDays(1);
-      Long expiry = zdt.toEpochSecond() * 1000;
-      JsonObject result =
-          new JsonObject()
-              .put("s3_url", generatePreSignedUrl(expiry, objectKey))
-              .put("expiry", zdt.toLocalDateTime().toString())
-              .put("object_id", objectKey);
-      handler.handle(Future.succeededFuture(result));
+      handler.handle(Future.succeededFuture(getUploadResult(objectKey)));
     } catch (AmazonServiceException e) {
       // The call was transmitted successfully, but Amazon S3 couldn't process
       // it, so it returned an error response.
@@ -106,11 +162,71 @@ public class S3FileOpsHelper {
     }
   }
 
+  /**
+   * stream to upload an object in parts while it is written, upload completes when the stream is
+   * closed.
+   *
+   * @param objectKey key of object
+   * @param fileName name the object is downloaded as
+   * @param contentType content type of object, <i>null</i> to leave it unset
+   * @return S3MultipartOutputStream
+   */
+  public S3MultipartOutputStream openUploadStream(
+      String objectKey, String fileName, String contentType) {
+    return openUploadStream(objectKey, fileName, contentType, null);
+  }
+
+  /**
+   * resumable stream to upload an object, parts are ended by the writer.
+   *
+   * @param objectKey key of object
+   * @param fileName name the object is downloaded as
+   * @param contentType content type of object, <i>null</i> to leave it unset
+   * @param uploadState state of an upload to continue, empty to start a new upload
+   * @return S3MultipartOutputStream
+   */
+  public S3MultipartOutputStream openResumableUploadStream(
+      String objectKey, String fileName, String contentType, JsonObject uploadState) {
+    return openUploadStream(objectKey, fileName, contentType, uploadState);
+  }
+
+  private S3MultipartOutputStream openUploadStream(
+      String objectKey, String fileName, String contentType, JsonObject uploadState) {
+    ObjectMetadata objectMetadata = new ObjectMetadata();
+    objectMetadata.setContentDisposition("attachment; filename=" + fileName);
+    if (contentType != null) {
+      objectMetadata.setContentType(contentType);
+    }
+    return new S3MultipartOutputStream(
+        getS3Client(getClientConfiguration()),
+        bucketName,
+        objectKey,
+        objectMetadata,
+        partSize,
+        bufferedParts,
+        getUploadExecutor(uploadPoolSize),
+        uploadState);
+  }
+
+  /**
+   * pre-signed url of an uploaded object, valid for a day.
+   *
+   * @param objectKey key of object
+   * @return JsonObject with s3_url, expiry and object_id
+   */
+  public JsonObject getUploadResult(String objectKey) {
+    ZonedDateTime zdt = ZonedDateTime.now();
+    zdt = zdt.plusDays(1);
+    Long expiry = zdt.toEpochSecond() * 1000;
+    return new JsonObject()
+        .put("s3_url", generatePreSignedUrl(expiry, objectKey))
+        .put("expiry", zdt.toLocalDateTime().toString())
+        .put("object_id", objectKey);
+  }
+
   public URL generatePreSignedUrl(long expiryTimeMillis, String objectKey) {
 
     URL url = null;
-    DefaultAWSCredentialsProviderChain credentialProviderChain =
-        new DefaultAWSCredentialsProviderChain();
 
     try {
 
@@ -126,11 +242,7 @@ public class S3FileOpsHelper {
           new GeneratePresignedUrlRequest(bucketName, objectKey)
               .withMethod(HttpMethod.GET)
               .withExpiration(expiration);
-      AmazonS3 s3Client =
-          AmazonS3ClientBuilder.standard()
-              .withRegion(clientRegion)
-              .withCredentials(credentialProviderChain)
-              .build();
+      AmazonS3 s3Client = getS3Client(new ClientConfiguration());
 
       url = s3Client.generatePresignedUrl(generatePresignedUrlRequest);
 
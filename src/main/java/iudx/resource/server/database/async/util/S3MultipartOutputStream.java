@@ -0,0 +1,354 @@
+package iudx.resource.server.database.async.util;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Streams bytes to an S3 object as a multipart upload, parts are uploaded while the stream is
+ * still being written.
+ *
+ * <p>Bytes are collected in a part buffer, a full buffer is uploaded on the upload executor and a
+ * new one is started. At most <i>bufferedParts</i> parts are uploading at a time, a write blocks
+ * until one of them is done, so memory held by a stream is bounded by <i>bufferedParts + 1</i>
+ * part buffers. {@link #close()} uploads the last part and completes the upload, an object smaller
+ * than a part is put in a single request. On failure the multipart upload is aborted so that no
+ * parts are left behind in the bucket.
+ *
+ * <p>A resumable stream doesn't cut parts at the part size, parts are ended by the writer with
+ * {@link #endPart()} at points it can resume from, and the buffer grows until then. The returned
+ * upload state can be given to a new stream to continue the upload from that part, e.g. on
+ * another node after a restart.
+ */
+public class S3MultipartOutputStream extends OutputStream {
+
+  private static final Logger LOGGER = LogManager.getLogger(S3MultipartOutputStream.class);
+  private static final String UPLOAD_ID = "uploadId";
+  private static final String BYTES_WRITTEN = "bytesWritten";
+  private static final String PARTS = "parts";
+  private static final String PART_NUMBER = "partNumber";
+  private static final String ETAG = "eTag";
+
+  private final AmazonS3 s3Client;
+  private final String bucketName;
+  private final String objectKey;
+  private final ObjectMetadata objectMetadata;
+  private final int partSize;
+  private final Executor executor;
+  private final Semaphore uploadSlots;
+  private final boolean isResumable;
+  private final List<CompletableFuture<PartETag>> parts = new ArrayList<>();
+  private byte[] buffer;
+  private int position;
+  private long bytesWritten;
+  private String uploadId;
+  private boolean closed;
+  private boolean finished;
+
+  /**
+   * stream to an S3 object.
+   *
+   * @param s3Client S3 client
+   * @param bucketName bucket to upload to
+   * @param objectKey key of object
+   * @param objectMetadata metadata of object
+   * @param partSize size of a part in bytes, at least 5MB except for the last part
+   * @param bufferedParts parts uploading at a time
+   * @param executor executor parts are uploaded on
+   */
+  public S3MultipartOutputStream(
+      AmazonS3 s3Client,
+      String bucketName,
+      String objectKey,
+      ObjectMetadata objectMetadata,
+      int partSize,
+      int bufferedParts,
+      Executor executor) {
+    this(
+        s3Client, bucketName, objectKey, objectMetadata, partSize, bufferedParts, executor, null);
+  }
+
+  /**
+   * resumable stream to an S3 object, parts are ended by {@link #endPart()}.
+   *
+   * @param s3Client S3 client
+   * @param bucketName bucket to upload to
+   * @param objectKey key of object
+   * @param objectMetadata metadata of object
+   * @param partSize initial size of the part buffer in bytes
+   * @param bufferedParts parts uploading at a time
+   * @param executor executor parts are uploaded on
+   * @param uploadState state returned by {@link #endPart()} to continue an upload from, empty for
+   *     a new upload, <i>null</i> for a stream whose parts are cut at the part size
+   */
+  public S3MultipartOutputStream(
+      AmazonS3 s3Client,
+      String bucketName,
+      String objectKey,
+      ObjectMetadata objectMetadata,
+      int partSize,
+      int bufferedParts,
+      Executor executor,
+      JsonObject uploadState) {
+    this.s3Client = s3Client;
+    this.bucketName = bucketName;
+    this.objectKey = objectKey;
+    this.objectMetadata = objectMetadata;
+    this.partSize = partSize;
+    this.executor = executor;
+    this.uploadSlots = new Semaphore(Math.max(bufferedParts, 1));
+    this.buffer = new byte[partSize];
+    this.isResumable = uploadState != null;
+    if (isResumable && uploadState.containsKey(UPLOAD_ID)) {
+      this.uploadId = uploadState.getString(UPLOAD_ID);
+      this.bytesWritten = uploadState.getLong(BYTES_WRITTEN);
+      for (Object part : uploadState.getJsonArray(PARTS)) {
+        JsonObject partJson = (JsonObject) part;
+        PartETag partETag =
+            new PartETag(partJson.getInteger(PART_NUMBER), partJson.getString(ETAG));
+        parts.add(CompletableFuture.completedFuture(partETag));
+      }
+      LOGGER.info("upload of {} resumed after {} parts", objectKey, parts.size());
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    ensureOpen();
+    if (isResumable && position == buffer.length) {
+      buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    }
+    buffer[position++] = (byte) b;
+    bytesWritten++;
+    if (position == partSize && !isResumable) {
+      uploadPart(false);
+    }
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    ensureOpen();
+    if (isResumable) {
+      if (position + length > buffer.length) {
+        buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, position + length));
+      }
+      System.arraycopy(bytes, offset, buffer, position, length);
+      position += length;
+      bytesWritten += length;
+      return;
+    }
+    while (length > 0) {
+      int count = Math.min(length, partSize - position);
+      System.arraycopy(bytes, offset, buffer, position, count);
+      position += count;
+      offset += count;
+      length -= count;
+      bytesWritten += count;
+      if (position == partSize) {
+        uploadPart(false);
+      }
+    }
+  }
+
+  /**
+   * completes the upload, the stream is aborted if any of its parts failed to upload. A failed
+   * resumable upload is left to be resumed or aborted by the writer.
+   */
+  @Override
+  public void close() throws IOException {
+    if (finished) {
+      return;
+    }
+    ensureOpen();
+    try {
+      if (uploadId == null) {
+        putObject();
+      } else {
+        if (position > 0) {
+          uploadPart(true);
+        }
+        List<PartETag> partETags = new ArrayList<>();
+        for (CompletableFuture<PartETag> part : parts) {
+          partETags.add(part.join());
+        }
+        s3Client.completeMultipartUpload(
+            new CompleteMultipartUploadRequest(bucketName, objectKey, uploadId, partETags));
+        LOGGER.info("upload of {} complete in {} parts", objectKey, partETags.size());
+      }
+      closed = true;
+      finished = true;
+      buffer = null;
+    } catch (RuntimeException e) {
+      fail();
+      throw new IOException("upload of " + objectKey + " failed", unwrap(e));
+    }
+  }
+
+  /** discards the upload and any parts already uploaded, the stream can't be written after. */
+  public void abort() {
+    if (finished) {
+      return;
+    }
+    finished = true;
+    closed = true;
+    buffer = null;
+    if (uploadId != null) {
+      try {
+        // parts still uploading would be left behind if upload is aborted before they finish
+        CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new))
+            .handle((result, exception) -> null)
+            .join();
+        s3Client.abortMultipartUpload(
+            new AbortMultipartUploadRequest(bucketName, objectKey, uploadId));
+        LOGGER.info("upload of {} aborted", objectKey);
+      } catch (RuntimeException e) {
+        LOGGER.error("failed to abort upload of {} : {}", objectKey, e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * uploads bytes written since the last part as a part, the upload can be continued after them
+   * from the returned state. A part other than the last must be at least 5MB.
+   *
+   * @return state of the upload, completed once all parts so far are uploaded
+   * @throws IOException if a part has failed
+   */
+  public CompletableFuture<JsonObject> endPart() throws IOException {
+    ensureOpen();
+    if (position > 0) {
+      uploadPart(false);
+    }
+    final String partsUploadId = uploadId;
+    final long partsBytesWritten = bytesWritten;
+    List<CompletableFuture<PartETag>> uploadedParts = new ArrayList<>(parts);
+    return CompletableFuture.allOf(uploadedParts.toArray(CompletableFuture[]::new))
+        .thenApply(
+            allUploaded -> {
+              JsonArray partsJson = new JsonArray();
+              for (CompletableFuture<PartETag> part : uploadedParts) {
+                PartETag partETag = part.join();
+                partsJson.add(
+                    new JsonObject()
+                        .put(PART_NUMBER, partETag.getPartNumber())
+                        .put(ETAG, partETag.getETag()));
+              }
+              return new JsonObject()
+                  .put(UPLOAD_ID, partsUploadId)
+                  .put(BYTES_WRITTEN, partsBytesWritten)
+                  .put(PARTS, partsJson);
+            });
+  }
+
+  /** bytes written to the stream, the size of the object once the stream is closed. */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  /** bytes written since the last part was started. */
+  public int getBufferedBytes() {
+    return position;
+  }
+
+  public int getPartSize() {
+    return partSize;
+  }
+
+  private void uploadPart(boolean isLastPart) throws IOException {
+    if (uploadId == null) {
+      uploadId =
+          s3Client
+              .initiateMultipartUpload(
+                  new InitiateMultipartUploadRequest(bucketName, objectKey, objectMetadata))
+              .getUploadId();
+      LOGGER.debug("multipart upload of {} started with id {}", objectKey, uploadId);
+    }
+    checkFailedParts();
+    try {
+      uploadSlots.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      fail();
+      throw new IOException("upload of " + objectKey + " interrupted", e);
+    }
+    UploadPartRequest uploadPartRequest =
+        new UploadPartRequest()
+            .withBucketName(bucketName)
+            .withKey(objectKey)
+            .withUploadId(uploadId)
+            .withPartNumber(parts.size() + 1)
+            .withInputStream(new ByteArrayInputStream(buffer, 0, position))
+            .withPartSize(position)
+            .withLastPart(isLastPart);
+    parts.add(
+        CompletableFuture.supplyAsync(
+                () -> s3Client.uploadPart(uploadPartRequest).getPartETag(), executor)
+            .whenComplete((partETag, exception) -> uploadSlots.release()));
+    buffer = isLastPart ? null : new byte[partSize];
+    position = 0;
+  }
+
+  /* a failed part fails the stream on next part instead of after the last one */
+  private void checkFailedParts() throws IOException {
+    for (CompletableFuture<PartETag> part : parts) {
+      if (part.isCompletedExceptionally()) {
+        try {
+          part.join();
+        } catch (RuntimeException e) {
+          fail();
+          throw new IOException("upload of " + objectKey + " failed", unwrap(e));
+        }
+      }
+    }
+  }
+
+  private void putObject() {
+    ObjectMetadata metadata = objectMetadata.clone();
+    metadata.setContentLength(position);
+    s3Client.putObject(
+        new PutObjectRequest(
+            bucketName, objectKey, new ByteArrayInputStream(buffer, 0, position), metadata));
+    LOGGER.info("upload of {} complete", objectKey);
+  }
+
+  /* a failed resumable upload is left to be resumed or aborted by the writer */
+  private void fail() {
+    if (isResumable) {
+      closed = true;
+      buffer = null;
+    } else {
+      abort();
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("stream to " + objectKey + " is closed");
+    }
+  }
+
+  private static Throwable unwrap(Throwable throwable) {
+    return throwable instanceof CompletionException && throwable.getCause() != null
+        ? throwable.getCause()
+        : throwable;
+  }
+}
@@ -8,4 +8,7 @@ public abstract class AbstractEsSearchResponseFormatter implements EsResponseFor
   public AbstractEsSearchResponseFormatter(File file) {
     this.file = file;
   }
+
+  /** formatter writing to a stream rather than a file. */
+  public AbstractEsSearchResponseFormatter() {}
 }
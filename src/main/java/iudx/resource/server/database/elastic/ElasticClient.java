@@ -4,12 +4,18 @@ import static iudx.resource.server.database.archives.Constants.*;
 
 import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.SortOptions;
+import co.elastic.clients.elasticsearch._types.SortOrder;
 import co.elastic.clients.elasticsearch._types.Time;
+import co.elastic.clients.elasticsearch._types.aggregations.Aggregation;
+import co.elastic.clients.elasticsearch._types.aggregations.DateHistogramBucket;
+import co.elastic.clients.elasticsearch._types.aggregations.StatsAggregate;
+import co.elastic.clients.elasticsearch._types.mapping.FieldType;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
-import co.elastic.clients.elasticsearch.core.ClearScrollRequest;
+import co.elastic.clients.elasticsearch.core.ClosePointInTimeRequest;
 import co.elastic.clients.elasticsearch.core.CountRequest;
-import co.elastic.clients.elasticsearch.core.ScrollRequest;
-import co.elastic.clients.elasticsearch.core.ScrollResponse;
+import co.elastic.clients.elasticsearch.core.OpenPointInTimeRequest;
 import co.elastic.clients.elasticsearch.core.SearchRequest;
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import co.elastic.clients.elasticsearch.core.search.SourceConfig;
@@ -22,10 +28,17 @@ import io.vertx.core.Promise;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import iudx.resource.server.database.archives.ResponseBuilder;
+import iudx.resource.server.database.async.ExportCheckpointer;
 import iudx.resource.server.database.async.ProgressListener;
-import java.io.File;
+import jakarta.json.stream.JsonGenerator;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
 import org.apache.http.HttpHost;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
@@ -33,6 +46,11 @@ import org.apache.http.client.CredentialsProvider;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseException;
+import org.elasticsearch.client.ResponseListener;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
 
@@ -40,9 +58,13 @@ public class ElasticClient {
 
   private static final Logger LOGGER = LogManager.getLogger(ElasticClient.class);
   private final RestClient client;
+  private final JacksonJsonpMapper jsonpMapper = new JacksonJsonpMapper();
   ElasticsearchClient esClient;
   ElasticsearchAsyncClient asyncClient;
   private ResponseBuilder responseBuilder;
+  private final ExecutorService exportExecutor;
+  private final int scrollBufferedPages;
+  private final int maxScrollSlices;
 
   /**
    * ElasticClient - Elastic Low level wrapper.
@@ -51,6 +73,36 @@ public class ElasticClient {
    * @param databasePort Port of the ElasticDB
    */
   public ElasticClient(String databaseIp, int databasePort, String user, String password) {
+    this(
+        databaseIp,
+        databasePort,
+        user,
+        password,
+        DEFAULT_EXPORT_POOL_SIZE,
+        DEFAULT_SCROLL_BUFFERED_PAGES,
+        DEFAULT_MAX_SCROLL_SLICES);
+  }
+
+  /**
+   * ElasticClient - Elastic Low level wrapper.
+   *
+   * @param databaseIp IP of the ElasticDB
+   * @param databasePort Port of the ElasticDB
+   * @param exportPoolSize threads async exports are written on, the pool is shared by all clients
+   * @param scrollBufferedPages max pages of an async export fetched ahead of the file writer
+   * @param maxScrollSlices max slices an async export is scrolled in concurrently
+   */
+  public ElasticClient(
+      String databaseIp,
+      int databasePort,
+      String user,
+      String password,
+      int exportPoolSize,
+      int scrollBufferedPages,
+      int maxScrollSlices) {
+    this.exportExecutor = ScrollPipeline.sharedExecutor(exportPoolSize);
+    this.scrollBufferedPages = scrollBufferedPages;
+    this.maxScrollSlices = maxScrollSlices;
     CredentialsProvider credentials = new BasicCredentialsProvider();
     credentials.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(user, password));
     RestClientBuilder restClientBuilder =
@@ -59,122 +111,192 @@ public class ElasticClient {
                 httpClientBuilder -> httpClientBuilder.setDefaultCredentialsProvider(credentials));
     client = restClientBuilder.build();
 
-    ElasticsearchTransport transport = new RestClientTransport(client, new JacksonJsonpMapper());
+    ElasticsearchTransport transport = new RestClientTransport(client, jsonpMapper);
     // And create the API client
     esClient = new ElasticsearchClient(transport);
     asyncClient = new ElasticsearchAsyncClient(transport);
   }
 
+  /**
+   * Export all hits of query to a stream. Pages are fetched and written by a {@link
+   * ScrollPipeline}, writing happens on the export executor so that no event loop or common pool
+   * thread is held. Large exports are split in lanes over parts of the temporal window paged
+   * through concurrently, see {@link #getScrollSlices}. Pages are searched in a point-in-time
+   * opened for the export and sorted on observationDateTime, id and shard doc, unique for a hit in
+   * the point-in-time. An export can be resumed from a checkpoint after its last written hits, in
+   * a new point-in-time, see {@link ExportLane}. A csv header has the fields mapped in the indices
+   * searched once the point-in-time is open, see {@link #getMappedFields}. The stream is closed
+   * once all hits are written, it is left open if the export fails so that the caller can discard
+   * it or resume it.
+   *
+   * @param window temporal window of query, split in lanes
+   * @param checkpointer checkpointer asked after every page, <i>null</i> for no checkpoints
+   * @param resumeFrom position of a checkpoint to continue the stream from, <i>null</i> to start
+   *     the export
+   * @return Future completed once stream is written and closed
+   */
   public Future<JsonObject> asyncScroll(
-      File file,
+      OutputStream outputStream,
       String index,
       Query query,
+      TemporalWindow window,
       String[] source,
       String searchId,
       ProgressListener progressListener,
       String format,
-      String filePath) {
+      ExportCheckpointer checkpointer,
+      JsonObject resumeFrom) {
     Promise<JsonObject> promise = Promise.promise();
-    SearchRequest searchRequest =
-        SearchRequest.of(
-            e -> e.index(index).query(query).size(10000).scroll(scr -> scr.time("5m")));
+    EsResponseFormatter instance =
+        new EsResponseFormatterFactory(format, outputStream).createInstance();
 
+    AtomicReference<String> pitId = new AtomicReference<>();
+    AtomicReference<List<String>> mappedFields = new AtomicReference<>();
+    OpenPointInTimeRequest pitRequest =
+        OpenPointInTimeRequest.of(
+            e -> e.index(index).keepAlive(Time.of(t -> t.time(CURSOR_KEEP_ALIVE))));
     asyncClient
-        .search(searchRequest, ObjectNode.class)
-        .whenCompleteAsync(
-            (response, ex) -> {
-              String scrollId = null;
-              try {
-                // LOGGER.info("response : {}",response.toString());
-                scrollId = response.scrollId();
-
-                long totalHits = response.hits().total().value();
-                LOGGER.debug("Total documents to be downloaded : " + totalHits);
-
-                List<Hit<ObjectNode>> searchHits = response.hits().hits();
-                LOGGER.debug("Total records : {}", searchHits.size());
-
-                EsResponseFormatterFactory convertFactory =
-                    new EsResponseFormatterFactory(format, file);
-                EsResponseFormatter instance = convertFactory.createInstance();
-
-                LOGGER.debug(file.getAbsolutePath());
-
-                int totaldocsDownloaded = 0;
-                Set<String> headers = null;
-
-                if (format.equalsIgnoreCase("json")) {
-                  instance.write(searchHits);
-                } else {
-                  headers = instance.writeToCsv(searchHits);
-                }
-
-                int totalIterations = totalHits < 10000 ? 1 : (int) Math.ceil(totalHits / 10000.0);
-                double iterationCount = 0.0;
-                double progress;
-                boolean appendComma = false;
-                while (searchHits != null && searchHits.size() > 0) {
-                  long downloadedDocs = searchHits.size();
-                  totaldocsDownloaded += downloadedDocs;
-
-                  String downloadLogMessage = "downloaded {} docs of {} total [{} new]";
-                  LOGGER.debug(downloadLogMessage, totaldocsDownloaded, totalHits, downloadedDocs);
-                  iterationCount += 1;
-                  progress = iterationCount / totalIterations;
-                  // keeping progress at 90% of actual to update the last 10% after upload to
-                  // external (s3)
-                  double finalProgress = progress * 0.9;
-                  Future.future(handler -> progressListener.updateProgress(finalProgress));
-
-                  if (format.equalsIgnoreCase("json")) {
-                    instance.append(searchHits, appendComma);
-                  } else {
-                    instance.append(searchHits, appendComma, headers);
-                  }
-
-                  ScrollRequest scrollRequest = nextScrollRequest(scrollId);
-                  CompletableFuture<ScrollResponse<ObjectNode>> future =
-                      asyncClient.scroll(scrollRequest, ObjectNode.class);
-                  ScrollResponse<ObjectNode> scrollResponse = future.get();
-                  scrollId = scrollResponse.scrollId();
-                  searchHits = scrollResponse.hits().hits();
-                  appendComma = true;
-                }
-
-                instance.finish();
-                promise.complete();
-
-              } catch (Exception exception) {
+        .openPointInTime(pitRequest)
+        .thenCompose(
+            pitResponse -> {
+              pitId.set(pitResponse.id());
+              return getMappedFields(index, source, format, resumeFrom);
+            })
+        .thenCompose(
+            fields -> {
+              mappedFields.set(fields);
+              // total hits and shards searched decide how many lanes the export is split in
+              SearchRequest countRequest =
+                  SearchRequest.of(
+                      e ->
+                          e.pit(p -> p.id(pitId.get()).keepAlive(t -> t.time(CURSOR_KEEP_ALIVE)))
+                              .query(query)
+                              .size(0)
+                              .trackTotalHits(t -> t.enabled(true)));
+              return asyncClient.search(countRequest, ObjectNode.class);
+            })
+        .thenCompose(
+            countResponse -> {
+              long totalHits = countResponse.hits().total().value();
+              List<ExportLane> lanes;
+              if (resumeFrom != null) {
+                lanes = ScrollPageWriter.getLanes(resumeFrom);
+              } else {
+                int slices = getScrollSlices(totalHits, countResponse.shards().total().intValue());
+                lanes = ExportLane.partition(window, slices);
+              }
+              LOGGER.debug("export {} docs for {} in {} lanes", totalHits, searchId, lanes.size());
+              ScrollPageWriter pageWriter =
+                  new ScrollPageWriter(
+                      instance, format, progressListener, totalHits, lanes, checkpointer)
+                      .mappedFields(mappedFields.get());
+              if (resumeFrom != null) {
+                pageWriter.resume(resumeFrom);
+              }
+              ScrollPipeline pipeline =
+                  new ScrollPipeline(asyncClient, exportExecutor, scrollBufferedPages, pageWriter)
+                      .pitIdHandler(pitId::set);
+              return pipeline
+                  .run(
+                      lanes,
+                      (lane, after) -> exportRequest(pitId.get(), query, source, lane, after))
+                  .thenRunAsync(pageWriter::finish, exportExecutor);
+            })
+        .whenComplete(
+            (result, exception) -> {
+              closePointInTime(pitId.get());
+              if (exception != null) {
+                LOGGER.error("scroll for {} failed : {}", searchId, exception.getMessage());
                 promise.fail("failed for some exception");
-                exception.printStackTrace();
-              } finally {
-                clearScrollRequest(scrollId);
+              } else {
+                promise.complete();
               }
             });
     return promise.future();
   }
 
-  private ScrollRequest nextScrollRequest(final String scrollId) {
-    return ScrollRequest.of(
-        scrollRequest -> scrollRequest.scrollId(scrollId).scroll(Time.of(t -> t.time("5m"))));
+  /**
+   * leaf fields mapped in the indices of a csv export, limited to the source fields of the export.
+   * Fields are listed by the field capabilities API, so a field missing from the first page still
+   * gets a column in the header. A resumed export keeps the header already written.
+   *
+   * @param index indices searched
+   * @param source source fields of the export, all fields if empty
+   * @param format format of the export
+   * @param resumeFrom position of the checkpoint the export is resumed from, <i>null</i> if none
+   * @return mapped fields, empty if the export has no csv header to write
+   */
+  CompletableFuture<List<String>> getMappedFields(
+      String index, String[] source, String format, JsonObject resumeFrom) {
+    if (!format.equalsIgnoreCase("csv") || resumeFrom != null) {
+      return CompletableFuture.completedFuture(List.of());
+    }
+    List<String> fields = new ArrayList<>();
+    if (source == null || source.length == 0) {
+      fields.add("*");
+    } else {
+      for (String field : source) {
+        fields.add(field);
+        fields.add(field + ".*");
+      }
+    }
+    return asyncClient
+        .fieldCaps(f -> f.index(index).fields(fields))
+        .thenApply(response -> EsResponseFormatterToCsv.getMappedFields(response.fields()));
   }
 
-  private void clearScrollRequest(String scrollId) {
-    if (scrollId != null) {
-      LOGGER.debug("Closing scroll request with id : {}", scrollId);
-      final String finalScroll = scrollId;
-      ClearScrollRequest clearScrollRequest = ClearScrollRequest.of(f -> f.scrollId(finalScroll));
-      try {
-        asyncClient.clearScroll(clearScrollRequest);
-      } catch (Exception e) {
-        LOGGER.error(e);
-        LOGGER.error(e.getMessage());
-      }
+  /**
+   * number of slices to scroll an export in. A slice is not worth it for less than a couple of
+   * pages, and more slices than shards searched or cores available only add overhead.
+   *
+   * @param totalHits hits to export
+   * @param shards shards searched
+   * @return number of slices, 1 for a plain scroll
+   */
+  int getScrollSlices(long totalHits, int shards) {
+    long pages = (totalHits + SCROLL_PAGE_SIZE - 1) / SCROLL_PAGE_SIZE;
+    int cores = Runtime.getRuntime().availableProcessors();
+    long slices = Math.min(Math.min(pages / 2, shards), Math.min(cores, maxScrollSlices));
+    return (int) Math.max(1, slices);
+  }
+
+  SearchRequest exportRequest(
+      String pitId, Query query, String[] source, ExportLane lane, List<FieldValue> after) {
+    SearchRequest.Builder searchRequestBuilder =
+        new SearchRequest.Builder()
+            .pit(p -> p.id(pitId).keepAlive(t -> t.time(CURSOR_KEEP_ALIVE)))
+            .query(lane.restrict(query))
+            .size(SCROLL_PAGE_SIZE)
+            .sort(exportSortOptions())
+            .trackTotalHits(t -> t.enabled(false));
+    if (!after.isEmpty()) {
+      searchRequestBuilder.searchAfter(after);
+    }
+    if (source != null && source.length > 0) {
+      searchRequestBuilder.source(s -> s.filter(f -> f.includes(Arrays.asList(source))));
     }
+    return searchRequestBuilder.build();
   }
 
+  /**
+   * Search hits and total hit count in a single request.
+   *
+   * @param index index to search
+   * @param query query
+   * @param size page size
+   * @param from page offset
+   * @param sourceFilterConfig source filter
+   * @param trackTotalHitsUpTo hits are counted accurately up to this value, totalHits in response
+   *     is a lower bound beyond it
+   * @return search response with hits as results and totalHits
+   */
   public Future<JsonObject> asyncSearch(
-      String index, Query query, int size, int from, SourceConfig sourceFilterConfig) {
+      String index,
+      Query query,
+      int size,
+      int from,
+      SourceConfig sourceFilterConfig,
+      int trackTotalHitsUpTo) {
     Promise<JsonObject> promise = Promise.promise();
     SearchRequest searchRequest =
         SearchRequest.of(
@@ -184,6 +306,7 @@ public class ElasticClient {
                     .size(size)
                     .from(from)
                     .source(sourceFilterConfig)
+                    .trackTotalHits(t -> t.count(trackTotalHitsUpTo))
                     .timeout("180s"));
     asyncClient
         .search(searchRequest, ObjectNode.class)
@@ -214,7 +337,8 @@ public class ElasticClient {
 
                 responseBuilder = new ResponseBuilder(SUCCESS).setTypeAndTitle(200);
                 responseBuilder.setMessage(dbResponse);
-                promise.complete(responseBuilder.getResponse());
+                promise.complete(
+                    responseBuilder.getResponse().put(TOTAL_HITS, response.hits().total().value()));
               } catch (Exception ex) {
                 LOGGER.error("Exception occurred while executing query: {}", ex);
                 JsonObject dbException = new JsonObject(ex.getMessage());
@@ -226,9 +350,409 @@ public class ElasticClient {
     return promise.future();
   }
 
+  /**
+   * Open a point-in-time on index, used as a consistent snapshot for cursor based pagination.
+   *
+   * @param index index to open point-in-time on
+   * @return point-in-time id
+   */
+  public Future<String> openPointInTime(String index) {
+    Promise<String> promise = Promise.promise();
+    OpenPointInTimeRequest pitRequest =
+        OpenPointInTimeRequest.of(
+            e -> e.index(index).keepAlive(Time.of(t -> t.time(CURSOR_KEEP_ALIVE))));
+    asyncClient
+        .openPointInTime(pitRequest)
+        .whenCompleteAsync(
+            (response, exception) -> {
+              if (exception != null) {
+                LOGGER.error("open point-in-time failed : {}", exception);
+                promise.fail(exception);
+                return;
+              }
+              promise.complete(response.id());
+            });
+    return promise.future();
+  }
+
+  /**
+   * Search a page within a point-in-time, sorted on observationDateTime with a shard doc
+   * tiebreaker. When the page is full, a <i>next</i> cursor pointing after the last hit is added
+   * to the response, otherwise the point-in-time is released.
+   *
+   * @param cursor cursor holding point-in-time id and search_after values of previous page
+   * @param query query
+   * @param size page size
+   * @param sourceFilterConfig source filter
+   * @return search response
+   */
+  public Future<JsonObject> asyncSearchAfter(
+      SearchCursor cursor, Query query, int size, SourceConfig sourceFilterConfig) {
+    Promise<JsonObject> promise = Promise.promise();
+    boolean isFirstPage = cursor.getSearchAfter().isEmpty();
+    SearchRequest.Builder searchRequestBuilder =
+        new SearchRequest.Builder()
+            .pit(p -> p.id(cursor.getPitId()).keepAlive(t -> t.time(CURSOR_KEEP_ALIVE)))
+            .query(query)
+            .size(size)
+            .source(sourceFilterConfig)
+            .sort(cursorSortOptions())
+            .trackTotalHits(t -> t.enabled(isFirstPage))
+            .timeout("180s");
+    if (!isFirstPage) {
+      searchRequestBuilder.searchAfter(cursor.getSearchAfter());
+    }
+    asyncClient
+        .search(searchRequestBuilder.build(), ObjectNode.class)
+        .whenCompleteAsync(
+            (response, exception) -> {
+              if (exception != null) {
+                LOGGER.error("async search_after query failed : {}", exception);
+                promise.fail(exception);
+                return;
+              }
+              try {
+                List<Hit<ObjectNode>> hits = response.hits().hits();
+                String pitId = response.pitId() != null ? response.pitId() : cursor.getPitId();
+                if (isFirstPage && hits.isEmpty()) {
+                  closePointInTime(pitId);
+                  responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(204);
+                  responseBuilder.setMessage(EMPTY_RESPONSE);
+                  promise.fail(responseBuilder.getResponse().toString());
+                  return;
+                }
+                JsonArray dbResponse = new JsonArray();
+                for (Hit<ObjectNode> esHitResponse : hits) {
+                  dbResponse.add(new JsonObject(esHitResponse.source().toString()));
+                }
+                responseBuilder = new ResponseBuilder(SUCCESS).setTypeAndTitle(200);
+                responseBuilder.setMessage(dbResponse);
+                JsonObject result = responseBuilder.getResponse();
+                if (isFirstPage && response.hits().total() != null) {
+                  result.put(TOTAL_HITS, response.hits().total().value());
+                }
+                if (hits.size() == size) {
+                  List<FieldValue> lastSort = hits.get(hits.size() - 1).sort();
+                  result.put(NEXT_CURSOR, new SearchCursor(pitId, lastSort).encode());
+                } else {
+                  closePointInTime(pitId);
+                }
+                promise.complete(result);
+              } catch (Exception ex) {
+                LOGGER.error("Exception occurred while executing query: {}", ex);
+                responseBuilder =
+                    new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(ex.getMessage());
+                promise.fail(responseBuilder.getResponse().toString());
+              }
+            });
+    return promise.future();
+  }
+
+  /**
+   * Release a point-in-time before its keep alive expires.
+   *
+   * @param pitId point-in-time id
+   */
+  public void closePointInTime(String pitId) {
+    if (pitId != null) {
+      LOGGER.debug("Closing point-in-time");
+      ClosePointInTimeRequest closePitRequest = ClosePointInTimeRequest.of(e -> e.id(pitId));
+      asyncClient
+          .closePointInTime(closePitRequest)
+          .whenComplete(
+              (response, exception) -> {
+                if (exception != null) {
+                  LOGGER.error("close point-in-time failed : {}", exception.getMessage());
+                }
+              });
+    }
+  }
+
+  private List<SortOptions> cursorSortOptions() {
+    return List.of(
+        SortOptions.of(
+            s ->
+                s.field(
+                    f ->
+                        f.field(SORT_FIELD_TIME)
+                            .order(SortOrder.Asc)
+                            .unmappedType(FieldType.Date))),
+        SortOptions.of(s -> s.field(f -> f.field(SORT_FIELD_TIEBREAKER).order(SortOrder.Asc))));
+  }
+
+  private List<SortOptions> exportSortOptions() {
+    return List.of(
+        SortOptions.of(
+            s ->
+                s.field(
+                    f ->
+                        f.field(SORT_FIELD_TIME)
+                            .order(SortOrder.Asc)
+                            .unmappedType(FieldType.Date))),
+        SortOptions.of(s -> s.field(f -> f.field(SORT_FIELD_ID).order(SortOrder.Asc))),
+        SortOptions.of(s -> s.field(f -> f.field(SORT_FIELD_TIEBREAKER).order(SortOrder.Asc))));
+  }
+
+  /**
+   * Same search as {@link #asyncSearch(String, Query, int, int, SourceConfig, int)}, but sent
+   * through the low level client. The hit sources in the response are copied byte for byte into
+   * a buffer instead of being parsed into objects.
+   *
+   * @return raw search response holding hit sources as a JSON array buffer
+   */
+  public Future<RawSearchResponse> asyncSearchRaw(
+      String index,
+      Query query,
+      int size,
+      int from,
+      SourceConfig sourceFilterConfig,
+      int trackTotalHitsUpTo) {
+    SearchRequest searchRequest =
+        SearchRequest.of(
+            e ->
+                e.query(query)
+                    .size(size)
+                    .from(from)
+                    .source(sourceFilterConfig)
+                    .trackTotalHits(t -> t.count(trackTotalHitsUpTo))
+                    .timeout("180s"));
+    return performRawSearch("/" + index + "/_search", FILTER_PATH_VAL_RAW, searchRequest, false)
+        .compose(
+            rawResponse -> {
+              if (rawResponse.getTotalHits() == 0) {
+                responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(204);
+                responseBuilder.setMessage(EMPTY_RESPONSE);
+                return Future.failedFuture(responseBuilder.getResponse().toString());
+              }
+              return Future.succeededFuture(rawResponse);
+            });
+  }
+
+  /**
+   * Same search as {@link #asyncSearchAfter(SearchCursor, Query, int, SourceConfig)}, but sent
+   * through the low level client. The hit sources of the page are copied byte for byte as lines of
+   * newline delimited json, along with the sort values of its last hit. The point-in-time is
+   * closed once a page isn't full, it has no page after it.
+   *
+   * @return raw search response holding hit sources as lines
+   */
+  public Future<RawSearchResponse> asyncSearchAfterRaw(
+      SearchCursor cursor, Query query, int size, SourceConfig sourceFilterConfig) {
+    boolean isFirstPage = cursor.getSearchAfter().isEmpty();
+    SearchRequest.Builder searchRequestBuilder =
+        new SearchRequest.Builder()
+            .pit(p -> p.id(cursor.getPitId()).keepAlive(t -> t.time(CURSOR_KEEP_ALIVE)))
+            .query(query)
+            .size(size)
+            .source(sourceFilterConfig)
+            .sort(cursorSortOptions())
+            .trackTotalHits(t -> t.enabled(false))
+            .timeout("180s");
+    if (!isFirstPage) {
+      searchRequestBuilder.searchAfter(cursor.getSearchAfter());
+    }
+    return performRawSearch(
+            "/_search", FILTER_PATH_VAL_CURSOR_RAW, searchRequestBuilder.build(), true)
+        .compose(
+            rawResponse -> {
+              String pitId =
+                  rawResponse.getPitId() != null ? rawResponse.getPitId() : cursor.getPitId();
+              if (rawResponse.getHitCount() < size) {
+                closePointInTime(pitId);
+              }
+              if (isFirstPage && rawResponse.getHitCount() == 0) {
+                responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(204);
+                responseBuilder.setMessage(EMPTY_RESPONSE);
+                return Future.failedFuture(responseBuilder.getResponse().toString());
+              }
+              return Future.succeededFuture(rawResponse);
+            });
+  }
+
+  /* search sent through the low level client, hit sources of the response aren't parsed */
+  private Future<RawSearchResponse> performRawSearch(
+      String endpoint, String filterPath, SearchRequest searchRequest, boolean isLines) {
+    Promise<RawSearchResponse> promise = Promise.promise();
+    Request request = new Request("POST", endpoint);
+    request.addParameter("filter_path", filterPath);
+    request.setJsonEntity(toJson(searchRequest));
+    client.performRequestAsync(
+        request,
+        new ResponseListener() {
+          @Override
+          public void onSuccess(Response response) {
+            try {
+              byte[] body = EntityUtils.toByteArray(response.getEntity());
+              promise.complete(
+                  isLines ? RawSearchResponse.parseLines(body) : RawSearchResponse.parse(body));
+            } catch (Exception ex) {
+              LOGGER.error("Exception occurred while reading search response: {}", ex);
+              responseBuilder =
+                  new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(ex.getMessage());
+              promise.fail(responseBuilder.getResponse().toString());
+            }
+          }
+
+          @Override
+          public void onFailure(Exception exception) {
+            LOGGER.error("async raw search query failed : {}", exception);
+            if (exception instanceof ResponseException) {
+              try {
+                JsonObject dbException =
+                    new JsonObject(
+                        EntityUtils.toString(
+                            ((ResponseException) exception).getResponse().getEntity()));
+                responseBuilder =
+                    new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(dbException);
+                promise.fail(responseBuilder.getResponse().toString());
+                return;
+              } catch (Exception ex) {
+                LOGGER.error("unable to read error response : {}", ex.getMessage());
+              }
+            }
+            promise.fail(exception);
+          }
+        });
+    return promise.future();
+  }
+
+  private String toJson(SearchRequest searchRequest) {
+    StringWriter writer = new StringWriter();
+    try (JsonGenerator generator = jsonpMapper.jsonProvider().createGenerator(writer)) {
+      searchRequest.serialize(generator, jsonpMapper);
+    }
+    return writer.toString();
+  }
+
+  /**
+   * Aggregate numeric attributes of documents matching query into fixed observationDateTime
+   * buckets. Each requested method of an attribute is returned as one array with a value per
+   * bucket, aligned with the <i>observationDateTime</i> array of bucket start times.
+   *
+   * @param index index to aggregate on
+   * @param query query
+   * @param period bucket length
+   * @param attributes numeric attributes to aggregate
+   * @param methods aggregation methods, totalCount/sum/avg/min/max
+   * @return aggregation response
+   */
+  public Future<JsonObject> asyncAggregate(
+      String index, Query query, Duration period, List<String> attributes, List<String> methods) {
+    Promise<JsonObject> promise = Promise.promise();
+    String interval = period.getSeconds() + "s";
+    SearchRequest searchRequest =
+        SearchRequest.of(
+            s ->
+                s.index(index)
+                    .query(query)
+                    .size(0)
+                    .aggregations(
+                        AGGR_BUCKETS,
+                        a -> {
+                          Aggregation.Builder.ContainerBuilder histogram =
+                              a.dateHistogram(
+                                  d ->
+                                      d.field(SORT_FIELD_TIME)
+                                          .fixedInterval(t -> t.time(interval))
+                                          .minDocCount(1));
+                          for (String attribute : attributes) {
+                            histogram.aggregations(
+                                attribute, sub -> sub.stats(st -> st.field(attribute)));
+                          }
+                          return histogram;
+                        }));
+    asyncClient
+        .search(searchRequest, ObjectNode.class)
+        .whenCompleteAsync(
+            (response, exception) -> {
+              if (exception != null) {
+                LOGGER.error("async aggregation query failed : {}", exception);
+                promise.fail(exception);
+                return;
+              }
+              try {
+                List<DateHistogramBucket> buckets =
+                    response.aggregations().get(AGGR_BUCKETS).dateHistogram().buckets().array();
+                if (buckets.isEmpty()) {
+                  responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(204);
+                  responseBuilder.setMessage(EMPTY_RESPONSE);
+                  promise.fail(responseBuilder.getResponse().toString());
+                  return;
+                }
+                JsonArray bucketTimes = new JsonArray();
+                JsonObject result = new JsonObject().put(SORT_FIELD_TIME, bucketTimes);
+                for (String attribute : attributes) {
+                  JsonObject attributeResult = new JsonObject();
+                  methods.forEach(method -> attributeResult.put(method, new JsonArray()));
+                  result.put(attribute, attributeResult);
+                }
+                for (DateHistogramBucket bucket : buckets) {
+                  bucketTimes.add(
+                      bucket.keyAsString() != null
+                          ? bucket.keyAsString()
+                          : Instant.ofEpochMilli(bucket.key()).toString());
+                  for (String attribute : attributes) {
+                    StatsAggregate stats = bucket.aggregations().get(attribute).stats();
+                    JsonObject attributeResult = result.getJsonObject(attribute);
+                    for (String method : methods) {
+                      attributeResult.getJsonArray(method).add(getStatsValue(stats, method));
+                    }
+                  }
+                }
+                responseBuilder =
+                    new ResponseBuilder(SUCCESS)
+                        .setTypeAndTitle(200)
+                        .setMessage(new JsonArray().add(result));
+                promise.complete(responseBuilder.getResponse());
+              } catch (Exception ex) {
+                LOGGER.error("Exception occurred while executing query: {}", ex);
+                responseBuilder =
+                    new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(ex.getMessage());
+                promise.fail(responseBuilder.getResponse().toString());
+              }
+            });
+    return promise.future();
+  }
+
+  private Object getStatsValue(StatsAggregate stats, String method) {
+    if (AGGR_TOTAL_COUNT.equals(method)) {
+      return stats.count();
+    }
+    if (stats.count() == 0) {
+      return null;
+    }
+    switch (method) {
+      case AGGR_SUM:
+        return stats.sum();
+      case AGGR_AVG:
+        return stats.avg();
+      case AGGR_MIN:
+        return stats.min();
+      case AGGR_MAX:
+        return stats.max();
+      default:
+        throw new IllegalArgumentException("invalid aggregation method : " + method);
+    }
+  }
+
   public Future<JsonObject> asyncCount(String index, Query query) {
+    return asyncCount(index, query, null);
+  }
+
+  /**
+   * Count documents matching query, stopping early on each shard once terminateAfter documents
+   * are matched. Use it when only a threshold check is needed, count is a lower bound when
+   * threshold is reached.
+   *
+   * @param index index to count on
+   * @param query query
+   * @param terminateAfter max documents to count per shard, <i>null</i> for an exact count
+   * @return count response
+   */
+  public Future<JsonObject> asyncCount(String index, Query query, Long terminateAfter) {
     Promise<JsonObject> promise = Promise.promise();
-    CountRequest countRequest = CountRequest.of(e -> e.index(index).query(query));
+    CountRequest countRequest =
+        CountRequest.of(e -> e.index(index).query(query).terminateAfter(terminateAfter));
     asyncClient
         .count(countRequest)
         .whenCompleteAsync(
@@ -2,6 +2,7 @@ package iudx.resource.server.database.elastic;
 
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.vertx.core.json.JsonObject;
 import java.util.List;
 import java.util.Set;
 
@@ -10,9 +11,33 @@ public interface EsResponseFormatter {
 
   Set<String> writeToCsv(List<Hit<ObjectNode>> searchHits);
 
+  /**
+   * writes the csv header from the fields of the first batch and the fields mapped in the indices
+   * searched, so that fields missing from the first batch still get a column.
+   *
+   * @param searchHits first batch of hits
+   * @param mappedFields leaf fields mapped in the indices searched
+   * @return columns of the header, <i>null</i> if the format has no header
+   */
+  Set<String> writeToCsv(List<Hit<ObjectNode>> searchHits, List<String> mappedFields);
+
   void finish();
 
   void append(List<Hit<ObjectNode>> searchHits, boolean appendComma);
 
   void append(List<Hit<ObjectNode>> searchHits, boolean appendComma, Set<String> headers);
+
+  /**
+   * flushes records appended so far and returns what is needed to resume writing after them.
+   *
+   * @return state of formatter, <i>null</i> if writing can't be resumed
+   */
+  JsonObject checkpoint();
+
+  /**
+   * continues a file from a checkpoint, in place of writing its start.
+   *
+   * @param state state returned by {@link #checkpoint()}
+   */
+  void resume(JsonObject state);
 }
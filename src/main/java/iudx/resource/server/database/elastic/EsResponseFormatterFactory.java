@@ -1,28 +1,59 @@
 package iudx.resource.server.database.elastic;
 
 import static iudx.resource.server.apiserver.util.Constants.HEADER_CSV;
+import static iudx.resource.server.apiserver.util.Constants.HEADER_PARQUET;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 
 public class EsResponseFormatterFactory {
   private AbstractEsSearchResponseFormatter responseToCsv;
-  // private AbstractConvertElasticSearchResponse responseToParquet;
+  private AbstractEsSearchResponseFormatter responseToParquet;
   private AbstractEsSearchResponseFormatter responseToJson;
   private String format;
 
   public EsResponseFormatterFactory(String format, File file) {
     this.format = format;
-    responseToCsv = new EsResponseFormatterToCsv(file);
-    // responseToParquet = new ConvertElasticResponseToParquet(file);
-    responseToJson = new EsResponseFormatterToJson(file);
+    if (HEADER_CSV.equals(format)) {
+      responseToCsv = new EsResponseFormatterToCsv(file);
+    } else if (HEADER_PARQUET.equals(format)) {
+      responseToParquet = new EsResponseFormatterToParquet(file);
+    } else {
+      responseToJson = new EsResponseFormatterToJson(file);
+    }
+  }
+
+  /**
+   * formatter writing to a stream, only the formatter for the requested format is created as
+   * the stream can be written by one formatter.
+   *
+   * @param format format of response
+   * @param outputStream stream to write formatted response to, closed on finish
+   */
+  public EsResponseFormatterFactory(String format, OutputStream outputStream) {
+    this.format = format;
+    if (HEADER_PARQUET.equals(format)) {
+      responseToParquet = new EsResponseFormatterToParquet(outputStream);
+      return;
+    }
+    BufferedWriter writer =
+        new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+    if (HEADER_CSV.equals(format)) {
+      responseToCsv = new EsResponseFormatterToCsv(writer);
+    } else {
+      responseToJson = new EsResponseFormatterToJson(writer);
+    }
   }
 
   public EsResponseFormatter createInstance() {
     switch (format) {
       case HEADER_CSV:
         return responseToCsv;
-        //            case HEADER_PARQUET:
-        //                return responseToParquet;
+      case HEADER_PARQUET:
+        return responseToParquet;
       default:
         return responseToJson;
     }
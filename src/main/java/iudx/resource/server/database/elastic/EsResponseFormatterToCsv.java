@@ -1,20 +1,54 @@
 package iudx.resource.server.database.elastic;
 
+import co.elastic.clients.elasticsearch.core.field_caps.FieldCapability;
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.util.LinkedHashMap;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
+/**
+ * Writes records as CSV rows, nested objects and arrays are flattened into columns named by the
+ * path of the field, e.g. <i>location.coordinates.0</i>.
+ *
+ * <p>Columns are the union of the fields of the records in the first batch, followed by the
+ * fields mapped in the indices searched that the first batch has no value for. A mapped field
+ * gets a single column, a record with an object or array in it has the value written as JSON in
+ * the cell. Each record is walked once along a tree of the fields seen so far, so flattening a
+ * record doesn't build field names or maps, and cell values are written straight to the writer.
+ * A field neither in the first batch nor in the mapping, e.g. an array item past those of the
+ * first batch, can't be added to the header already written and is left out, such fields are
+ * logged when the file is finished. A file resumed from a checkpoint keeps the columns of its
+ * header.
+ */
 public class EsResponseFormatterToCsv extends AbstractEsSearchResponseFormatter {
-  static JsonFlatten jsonFlatten;
-  static LinkedHashMap<String, Object> map;
-  FileWriter fileWriter;
+  private static final Logger LOGGER = LogManager.getLogger(EsResponseFormatterToCsv.class);
+  private static final String COLUMNS = "columns";
+  private static final String MAPPED_COLUMNS = "mappedColumns";
+  private static final Set<String> OBJECT_TYPES = Set.of("object", "nested");
+  private final Field root = new Field(null);
+  private final List<String> columns = new ArrayList<>();
+  private final Set<String> droppedColumns = new LinkedHashSet<>();
+  private final Set<String> mappedColumns = new HashSet<>();
+  private JsonNode[] cells = new JsonNode[0];
+  private Map<String, Integer> namedColumns;
+  Writer fileWriter;
 
   /**
    * Converts JSON records from Elasticsearch batch response to CSV format and writes it into a CSV
@@ -25,90 +59,207 @@ public class EsResponseFormatterToCsv extends AbstractEsSearchResponseFormatter
   public EsResponseFormatterToCsv(File file) {
     super(file);
     try {
-      this.fileWriter = new FileWriter(file);
+      this.fileWriter = new BufferedWriter(new FileWriter(file));
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
   }
 
+  /**
+   * Converts JSON records from Elasticsearch batch response to CSV format and writes it to a
+   * stream
+   *
+   * @param writer Writer to write csv records to
+   */
+  public EsResponseFormatterToCsv(Writer writer) {
+    this.fileWriter = writer;
+  }
+
   /**
    * Flattens each record from Elastic search response and appends it to the file
    *
    * @param searchHits ElasticSearch response searchHits
    */
-  public void flattenRecord(List<Hit<ObjectNode>> searchHits, Set<String> headers) {
-    for (Hit hit : searchHits) {
-      jsonFlatten = new JsonFlatten((JsonNode) hit.source());
-      map = jsonFlatten.flatten();
-      /*Set<String> header = map.keySet();*/
-      /*appendToCsvFile(map, header);*/
-      appendToCsvFile(map, headers);
+  public void flattenRecord(List<Hit<ObjectNode>> searchHits) {
+    try {
+      for (Hit<ObjectNode> hit : searchHits) {
+        if (hit.source() != null) {
+          collect(hit.source(), root, false);
+          writeRow();
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
     }
   }
 
   /**
-   * Produces set of headers from the first record or row of the data
+   * leaf fields of a field capabilities response, the fields a record can have a value for.
+   * Objects, metadata fields and multi-fields, e.g. <i>name.keyword</i>, are not in the source of a
+   * record and are left out.
+   *
+   * @param fieldCaps fields of a field capabilities response, by name and type
+   * @return names of the leaf fields, sorted
+   */
+  public static List<String> getMappedFields(Map<String, Map<String, FieldCapability>> fieldCaps) {
+    List<String> mappedFields = new ArrayList<>();
+    for (Map.Entry<String, Map<String, FieldCapability>> field : fieldCaps.entrySet()) {
+      String name = field.getKey();
+      int dot = name.lastIndexOf('.');
+      Map<String, FieldCapability> parent = dot > 0 ? fieldCaps.get(name.substring(0, dot)) : null;
+      boolean isMultiField = parent != null && !isObject(parent);
+      boolean isMetadata =
+          field.getValue().values().stream()
+              .anyMatch(capability -> Boolean.TRUE.equals(capability.metadataField()));
+      if (!isMultiField && !isMetadata && !OBJECT_TYPES.containsAll(field.getValue().keySet())) {
+        mappedFields.add(name);
+      }
+    }
+    Collections.sort(mappedFields);
+    return mappedFields;
+  }
+
+  private static boolean isObject(Map<String, FieldCapability> types) {
+    return types.keySet().stream().anyMatch(OBJECT_TYPES::contains);
+  }
+
+  /**
+   * Produces set of headers from the fields of all records of the batch and writes them as the
+   * first row
    *
    * @param searchHits Elastic search scroll response
    */
   public Set<String> getHeader(List<Hit<ObjectNode>> searchHits) {
-    Hit<ObjectNode> firstHit = searchHits.get(0);
-    if (jsonFlatten == null) {
-      jsonFlatten = new JsonFlatten((JsonNode) firstHit.source());
-    }
-    map = jsonFlatten.flatten();
-    Set<String> header = map.keySet();
-    simpleFileWriter(header);
-    return header;
+    return getHeader(searchHits, List.of());
   }
 
   /**
-   * Appends the values from the records to the csv file according to the header
+   * Produces set of headers from the fields of all records of the batch and the mapped fields the
+   * batch has no value for, and writes them as the first row
    *
-   * @param map Data to be appended
-   * @param header Set of headers
+   * @param searchHits Elastic search scroll response
+   * @param mappedFields leaf fields mapped in the indices searched, see {@link #getMappedFields}
    */
-  public void appendToCsvFile(Map<String, Object> map, Set<String> header) {
+  public Set<String> getHeader(List<Hit<ObjectNode>> searchHits, List<String> mappedFields) {
+    for (Hit<ObjectNode> hit : searchHits) {
+      if (hit.source() != null) {
+        collect(hit.source(), root, true);
+      }
+    }
+    addMappedColumns(mappedFields);
+    cells = new JsonNode[columns.size()];
+    try {
+      for (int i = 0; i < columns.size(); i++) {
+        if (i > 0) {
+          fileWriter.write(',');
+        }
+        writeCell(columns.get(i));
+      }
+      fileWriter.write('\n');
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return new LinkedHashSet<>(columns);
+  }
 
-    StringBuilder stringBuilder = new StringBuilder();
+  /* a mapped field gets a column unless the first batch has a column for it or one nested in it */
+  private void addMappedColumns(List<String> mappedFields) {
+    Set<String> seenFields = new HashSet<>();
+    for (String column : columns) {
+      for (int dot = column.indexOf('.'); dot > 0; dot = column.indexOf('.', dot + 1)) {
+        seenFields.add(column.substring(0, dot));
+      }
+      seenFields.add(column);
+    }
+    for (String mappedField : mappedFields) {
+      if (!seenFields.contains(mappedField)) {
+        addNamedColumn(mappedField);
+        mappedColumns.add(mappedField);
+      }
+    }
+  }
 
-    for (String field : header) {
-      Object cell = map.get(field);
-      if (cell == null) {
-        stringBuilder.append("").append(",");
-      } else {
-        String cellValue = cell.toString();
-        if (cellValue.contains(",") || cellValue.contains("\"")) {
-          cellValue = "\"" + cellValue.replace("\"", "\"\"") + "\"";
+  private void addNamedColumn(String name) {
+    if (namedColumns == null) {
+      namedColumns = new HashMap<>();
+    }
+    namedColumns.put(name, columns.size());
+    columns.add(name);
+  }
+
+  /* walks a record, adding its fields as columns or putting its values in the cells of the row */
+  private void collect(JsonNode node, Field field, boolean isHeader) {
+    if (!field.isNamed && namedColumns != null) {
+      // columns of a resumed header or of mapped fields are looked up once per field
+      field.isNamed = true;
+      field.column = Math.max(field.column, namedColumns.getOrDefault(field.name, -1));
+      field.isMapped = mappedColumns.contains(field.name);
+    }
+    if (field.isMapped && !isHeader && node.isContainerNode()) {
+      cells[field.column] = node;
+    } else if (node.isObject()) {
+      for (Iterator<Map.Entry<String, JsonNode>> it = node.fields(); it.hasNext(); ) {
+        Map.Entry<String, JsonNode> child = it.next();
+        collect(child.getValue(), field.child(child.getKey()), isHeader);
+      }
+    } else if (node.isArray()) {
+      for (int i = 0; i < node.size(); i++) {
+        collect(node.get(i), field.item(i), isHeader);
+      }
+    } else if (node.isValueNode() && !node.isNull()) {
+      if (field.column >= 0) {
+        if (!isHeader) {
+          cells[field.column] = node;
         }
-        stringBuilder.append(cellValue).append(",");
+      } else if (isHeader) {
+        field.column = columns.size();
+        columns.add(field.name);
+      } else {
+        droppedColumns.add(field.name);
       }
     }
+  }
 
-    String row = stringBuilder.substring(0, stringBuilder.length() - 1);
-    try {
-      fileWriter.append(row).append("\n");
-    } catch (IOException ex) {
-      throw new RuntimeException(ex);
+  private void writeRow() throws IOException {
+    for (int i = 0; i < cells.length; i++) {
+      if (i > 0) {
+        fileWriter.write(',');
+      }
+      JsonNode cell = cells[i];
+      if (cell != null) {
+        // an object or array of a mapped field is written as JSON
+        writeCell(
+            cell.isTextual()
+                ? cell.textValue()
+                : cell.isValueNode() ? cell.asText() : cell.toString());
+        cells[i] = null;
+      }
     }
+    fileWriter.write('\n');
   }
 
-  /**
-   * Writes the column names or the header for the csv file
-   *
-   * @param header Set of headers to be written
-   */
-  private void simpleFileWriter(Set<String> header) {
-    StringBuilder stringBuilder = new StringBuilder();
-    for (String obj : header) {
-      stringBuilder.append(obj + ",");
+  /* a value with a separator, quote or line break is quoted, quotes in it are doubled */
+  private void writeCell(String value) throws IOException {
+    boolean isQuoted = false;
+    for (int i = 0; i < value.length() && !isQuoted; i++) {
+      char c = value.charAt(i);
+      isQuoted = c == ',' || c == '"' || c == '\n' || c == '\r';
     }
-    String data = stringBuilder.substring(0, stringBuilder.length() - 1);
-    try {
-      fileWriter.write(data + "\n");
-    } catch (IOException e) {
-      throw new RuntimeException(e);
+    if (!isQuoted) {
+      fileWriter.write(value);
+      return;
     }
+    fileWriter.write('"');
+    int start = 0;
+    for (int i = 0; i < value.length(); i++) {
+      if (value.charAt(i) == '"') {
+        fileWriter.write(value, start, i + 1 - start);
+        fileWriter.write('"');
+        start = i + 1;
+      }
+    }
+    fileWriter.write(value, start, value.length() - start);
+    fileWriter.write('"');
   }
 
   @Override
@@ -119,8 +270,43 @@ public class EsResponseFormatterToCsv extends AbstractEsSearchResponseFormatter
     return this.getHeader(searchHits);
   }
 
+  @Override
+  public Set<String> writeToCsv(List<Hit<ObjectNode>> searchHits, List<String> mappedFields) {
+    return this.getHeader(searchHits, mappedFields);
+  }
+
+  @Override
+  public JsonObject checkpoint() {
+    try {
+      fileWriter.flush();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return new JsonObject()
+        .put(COLUMNS, new JsonArray(new ArrayList<>(columns)))
+        .put(MAPPED_COLUMNS, new JsonArray(new ArrayList<>(mappedColumns)));
+  }
+
+  /** rows are written with the columns of the header written before the checkpoint. */
+  @Override
+  public void resume(JsonObject state) {
+    for (Object column : state.getJsonArray(COLUMNS)) {
+      addNamedColumn((String) column);
+    }
+    for (Object column : state.getJsonArray(MAPPED_COLUMNS, new JsonArray())) {
+      mappedColumns.add((String) column);
+    }
+    cells = new JsonNode[columns.size()];
+  }
+
   @Override
   public void finish() {
+    if (!droppedColumns.isEmpty()) {
+      LOGGER.warn(
+          "{} fields not in the first batch or the mapping are left out of csv : {}",
+          droppedColumns.size(),
+          droppedColumns);
+    }
     try {
       fileWriter.close();
     } catch (IOException e) {
@@ -131,8 +317,46 @@ public class EsResponseFormatterToCsv extends AbstractEsSearchResponseFormatter
   @Override
   public void append(List<Hit<ObjectNode>> searchHits, boolean appendComma) {}
 
+  /** appends records as rows, columns are the headers returned by {@link #writeToCsv(List)}. */
   @Override
   public void append(List<Hit<ObjectNode>> searchHits, boolean appendComma, Set<String> headers) {
-    this.flattenRecord(searchHits, headers);
+    this.flattenRecord(searchHits);
+  }
+
+  /* field of a record, children are created on first sight so that their name is built once */
+  private static final class Field {
+    private final String name;
+    private Map<String, Field> children;
+    private List<Field> items;
+    private int column = -1;
+    private boolean isNamed;
+    private boolean isMapped;
+
+    Field(String name) {
+      this.name = name;
+    }
+
+    Field child(String key) {
+      if (children == null) {
+        children = new HashMap<>();
+      }
+      Field child = children.get(key);
+      if (child == null) {
+        child = new Field(name == null ? key : name + "." + key);
+        children.put(key, child);
+      }
+      return child;
+    }
+
+    Field item(int index) {
+      if (items == null) {
+        items = new ArrayList<>();
+      }
+      while (items.size() <= index) {
+        String item = String.valueOf(items.size());
+        items.add(new Field(name == null ? item : name + "." + item));
+      }
+      return items.get(index);
+    }
   }
 }
@@ -2,9 +2,11 @@ package iudx.resource.server.database.elastic;
 
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.vertx.core.json.JsonObject;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.util.List;
 import java.util.Set;
 import org.apache.logging.log4j.LogManager;
@@ -12,7 +14,7 @@ import org.apache.logging.log4j.Logger;
 
 public class EsResponseFormatterToJson extends AbstractEsSearchResponseFormatter {
   /*private static final Logger LOGGER = LogManager.getLogger(EsResponseFormatterToJson.class);*/
-  FileWriter fileWriter;
+  Writer fileWriter;
 
   /**
    * Writes ElasticSearch response batch response into a JSON File
@@ -28,6 +30,15 @@ public class EsResponseFormatterToJson extends AbstractEsSearchResponseFormatter
     }
   }
 
+  /**
+   * Writes ElasticSearch response batch response as JSON to a stream
+   *
+   * @param writer Writer to write JSON response
+   */
+  public EsResponseFormatterToJson(Writer writer) {
+    this.fileWriter = writer;
+  }
+
   @Override
   public void write(List<Hit<ObjectNode>> searchHits) {
     try {
@@ -42,6 +53,11 @@ public class EsResponseFormatterToJson extends AbstractEsSearchResponseFormatter
     return null;
   }
 
+  @Override
+  public Set<String> writeToCsv(List<Hit<ObjectNode>> searchHits, List<String> mappedFields) {
+    return null;
+  }
+
   @Override
   public void finish() {
     try {
@@ -73,4 +89,18 @@ public class EsResponseFormatterToJson extends AbstractEsSearchResponseFormatter
 
   @Override
   public void append(List<Hit<ObjectNode>> searchHits, boolean appendComma, Set<String> headers) {}
+
+  @Override
+  public JsonObject checkpoint() {
+    try {
+      fileWriter.flush();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return new JsonObject();
+  }
+
+  /** the array is already open, records are appended to it. */
+  @Override
+  public void resume(JsonObject state) {}
 }
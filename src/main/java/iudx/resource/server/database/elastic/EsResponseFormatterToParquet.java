@@ -2,32 +2,50 @@ package iudx.resource.server.database.elastic;
 
 import co.elastic.clients.elasticsearch.core.search.Hit;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.vertx.core.json.JsonObject;
 import java.io.File;
-import java.util.*;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class EsResponseFormatterToParquet extends AbstractEsSearchResponseFormatter {
-  //    private File file;
-  //    private static final Logger LOGGER =
-  // LogManager.getLogger(ConvertElasticResponseToParquet.class);
+  ParquetStreamWriter parquetWriter;
 
+  /**
+   * Writes ElasticSearch response batch response into a Parquet File
+   *
+   * @param file File to write Parquet response
+   */
   public EsResponseFormatterToParquet(File file) {
     super(file);
-    this.file = file;
+    try {
+      this.parquetWriter = new ParquetStreamWriter(new FileOutputStream(file));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Writes ElasticSearch response batch response as Parquet to a stream, each batch is written as
+   * a row group.
+   *
+   * @param outputStream stream to write Parquet response
+   */
+  public EsResponseFormatterToParquet(OutputStream outputStream) {
+    this.parquetWriter = new ParquetStreamWriter(outputStream);
   }
 
   @Override
   public void write(List<Hit<ObjectNode>> searchHits) {
-    //        Schema arrowSchema = this.getSchema(searchHits);
-    //        SchemaMapping parquetSchema = this.getParquetSchema(arrowSchema);
-    //        MessageType messageTypeParquetSchema = parquetSchema.getParquetSchema();
-
-    //        LOGGER.debug("message type parquet schema {}", messageTypeParquetSchema);
-    //        LOGGER.debug("Whats the parquet schema heree ? : {}",parquetSchema.toString());
-    //        LOGGER.debug("\n\n\n\n");
-    //        LOGGER.debug("What is the schema : {} ", parquetSchema.getChildren());
-    //        LOGGER.debug("\n\n\n\n");
-
-    //        ParquetWriter parquetWriter = this.getParquetWriter(file, messageTypeParquetSchema);
+    try {
+      parquetWriter.start();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
   }
 
   @Override
@@ -36,91 +54,50 @@ public class EsResponseFormatterToParquet extends AbstractEsSearchResponseFormat
   }
 
   @Override
-  public void finish() {}
+  public Set<String> writeToCsv(List<Hit<ObjectNode>> searchHits, List<String> mappedFields) {
+    return null;
+  }
 
   @Override
-  public void append(List<Hit<ObjectNode>> searchHits, boolean appendComma) {}
+  public void finish() {
+    try {
+      parquetWriter.finish();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
 
   @Override
-  public void append(List<Hit<ObjectNode>> searchHits, boolean appendComma, Set<String> headers) {}
-
-  /*    private SchemaMapping getParquetSchema(Schema arrowSchema) {
-      SchemaConverter schemaConverter = new SchemaConverter();
-      return schemaConverter.fromArrow(arrowSchema);
-
-  }*/
-
-  /*
-      private ParquetWriter getParquetWriter(File file, MessageType parquetSchema) {
-          Configuration configuration = new Configuration();
-  //        LOGGER.debug("whats the file path : ");
-          Path path = new Path(file.getPath());
-          try {
-              HadoopOutputFile hadoopOutputFile = HadoopOutputFile.fromPath(path,configuration);
-              ParquetFileWriter p = new ParquetFileWriter(
-                      hadoopOutputFile,
-                      parquetSchema,
-                      ParquetFileWriter.Mode.CREATE, 1024, 1024, 1024, 1024, true
-              );
-
-          } catch (IOException e) {
-              throw new RuntimeException(e);
-          }
-
-          return null;
-      }
-  */
-
-  /*    public Schema getSchema(List<Hit<ObjectNode>> searchHits) {
-          for (Hit hit : searchHits) {
-              JsonObject jsonSource = new JsonObject(hit.source().toString());
-              List<Field> fields = new ArrayList<>();
-              Set<String> firstHit = jsonSource.fieldNames();
-              for(String s : firstHit)
-              {
-                  var value = jsonSource.getValue(s);
-                  LOGGER.debug("value : {} ", value);
-                  Field field;
-                  FieldType fieldType;
-                  fieldType = getFieldType(value);
-                  field = new Field(s,fieldType,null);
-                  fields.add(field);
-              }
-              Schema schema = new Schema(fields);
-  //            LOGGER.debug("whats the schema ? ::::::: ");
-  //            LOGGER.debug("{}", schema);
-              return schema;
-          }
-          return null;
-      }*/
-
-  /*    private FieldType getFieldType(Object value) {
-      FieldType fieldType;
-      if(value instanceof Integer)
-      {
-          fieldType = new FieldType(true,new ArrowType.Int(32, true),null);
-      }else if(value instanceof Long)
-      {
-          fieldType = new FieldType(true,new ArrowType.Int(64, true),null);
-
+  public void append(List<Hit<ObjectNode>> searchHits, boolean appendComma) {
+    List<Map<String, Object>> rows = new ArrayList<>(searchHits.size());
+    for (Hit<ObjectNode> hit : searchHits) {
+      if (hit.source() != null) {
+        rows.add(new JsonFlatten(hit.source()).flatten());
       }
-      else if(value instanceof Double)
-      {
-          fieldType = new FieldType(true,new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE),null);
+    }
+    try {
+      parquetWriter.writeRowGroup(rows);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
 
-      }
-      else if (value instanceof Boolean)
-      {
-          fieldType = new FieldType(true,ArrowType.Bool.INSTANCE,null);
-      }
-      else if (value instanceof String)
-      {
-          fieldType = new FieldType(true,new ArrowType.Utf8(),null);
+  @Override
+  public void append(List<Hit<ObjectNode>> searchHits, boolean appendComma, Set<String> headers) {}
 
-      }else {
-          fieldType = new FieldType(true,new ArrowType.Binary(),null);
-      }
-      return fieldType;
-  }*/
+  /** row groups are flushed, a file can't be resumed as its footer describes all row groups. */
+  @Override
+  public JsonObject checkpoint() {
+    try {
+      parquetWriter.flush();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return null;
+  }
 
+  @Override
+  public void resume(JsonObject state) {
+    throw new UnsupportedOperationException("parquet file can't be resumed");
+  }
 }
@@ -0,0 +1,191 @@
+package iudx.resource.server.database.elastic;
+
+import static iudx.resource.server.database.archives.Constants.SORT_FIELD_TIME;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch._types.query_dsl.RangeQuery;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.json.JsonData;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Part of an export paged through by its own lane, the hits in a range of observationDateTime.
+ *
+ * <p>A lane keeps the sort values of the last hit written, observationDateTime, id and shard doc,
+ * and the number of hits written with its time and id, so that an export can be resumed after it.
+ * The shard doc tells hits of a same time and id apart only in the point-in-time it came from, so
+ * a lane resumed in another one pages from the first hit of that time and id, and skips as many
+ * of them as were written. Hits of a same time and id are taken as duplicates of one another.
+ */
+final class ExportLane {
+
+  private static final String START = "start";
+  private static final String END = "end";
+  private static final String IS_END_INCLUDED = "endIncluded";
+  private static final String AFTER = "after";
+  private static final String TIES = "ties";
+
+  private final String start;
+  private final String end;
+  private final boolean isEndIncluded;
+  private volatile List<FieldValue> writtenAfter;
+  private volatile long tiesWritten;
+
+  ExportLane(String start, String end, boolean isEndIncluded, List<FieldValue> writtenAfter) {
+    this(start, end, isEndIncluded, writtenAfter, 0);
+  }
+
+  ExportLane(
+      String start,
+      String end,
+      boolean isEndIncluded,
+      List<FieldValue> writtenAfter,
+      long tiesWritten) {
+    this.start = start;
+    this.end = end;
+    this.isEndIncluded = isEndIncluded;
+    this.writtenAfter = writtenAfter;
+    this.tiesWritten = tiesWritten;
+  }
+
+  /**
+   * splits a window in lanes of equal length, a window open at either end is a single lane.
+   *
+   * @param window window of query
+   * @param lanes number of lanes
+   * @return lanes, none written yet
+   */
+  static List<ExportLane> partition(TemporalWindow window, int lanes) {
+    ZonedDateTime startDateTime = window.getStartDateTime();
+    ZonedDateTime endDateTime = window.getEndDateTime();
+    if (lanes <= 1
+        || startDateTime == null
+        || endDateTime == null
+        || !endDateTime.isAfter(startDateTime)) {
+      return List.of(new ExportLane(null, null, true, List.of()));
+    }
+    long windowMillis = Duration.between(startDateTime, endDateTime).toMillis();
+    List<ExportLane> partition = new ArrayList<>(lanes);
+    String laneStart = window.getStart();
+    for (int i = 1; i <= lanes; i++) {
+      String laneEnd =
+          i == lanes
+              ? window.getEnd()
+              : startDateTime
+                  .plus(Duration.ofMillis(windowMillis * i / lanes))
+                  .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+      partition.add(new ExportLane(laneStart, laneEnd, i == lanes, List.of()));
+      laneStart = laneEnd;
+    }
+    return partition;
+  }
+
+  static ExportLane fromJson(JsonObject json) {
+    List<FieldValue> after = new ArrayList<>();
+    for (Object value : json.getJsonArray(AFTER)) {
+      after.add(SearchCursor.toFieldValue(value));
+    }
+    return new ExportLane(
+        json.getString(START),
+        json.getString(END),
+        json.getBoolean(IS_END_INCLUDED),
+        after,
+        json.getLong(TIES, 0L));
+  }
+
+  JsonObject toJson() {
+    JsonArray after = new JsonArray();
+    for (FieldValue value : writtenAfter) {
+      after.add(value.isNull() ? null : value._get());
+    }
+    return new JsonObject()
+        .put(START, start)
+        .put(END, end)
+        .put(IS_END_INCLUDED, isEndIncluded)
+        .put(AFTER, after)
+        .put(TIES, tiesWritten);
+  }
+
+  /** query restricted to the range of the lane. */
+  Query restrict(Query query) {
+    if (start == null && end == null) {
+      return query;
+    }
+    Query range =
+        RangeQuery.of(
+                r -> {
+                  r.field(SORT_FIELD_TIME).gte(JsonData.of(start));
+                  return isEndIncluded ? r.lte(JsonData.of(end)) : r.lt(JsonData.of(end));
+                })
+            ._toQuery();
+    return Query.of(q -> q.bool(b -> b.must(query).filter(range)));
+  }
+
+  /** sort values of the last hit written, empty if none is written. */
+  List<FieldValue> getWrittenAfter() {
+    return writtenAfter;
+  }
+
+  /** hits written with the time and id of the last hit written. */
+  long getTiesWritten() {
+    return tiesWritten;
+  }
+
+  /**
+   * sort values to page after in a new point-in-time, before the first hit of the time and id of
+   * the last hit written, as shard docs are always positive.
+   *
+   * @return sort values, empty if none is written
+   */
+  List<FieldValue> getResumeAfter() {
+    if (writtenAfter.isEmpty()) {
+      return writtenAfter;
+    }
+    List<FieldValue> resumeAfter = new ArrayList<>(writtenAfter);
+    resumeAfter.set(resumeAfter.size() - 1, FieldValue.of(-1L));
+    return resumeAfter;
+  }
+
+  /** true if sort values have the time and id of the last hit written. */
+  boolean isTie(List<FieldValue> sort) {
+    List<FieldValue> after = writtenAfter;
+    return sort.size() == after.size() && sameKey(sort, after);
+  }
+
+  /**
+   * moves the lane after a page written.
+   *
+   * @param hits hits of the page, not empty
+   */
+  void written(List<? extends Hit<?>> hits) {
+    List<FieldValue> last = hits.get(hits.size() - 1).sort();
+    int ties = 1;
+    while (ties < hits.size() && sameKey(hits.get(hits.size() - 1 - ties).sort(), last)) {
+      ties++;
+    }
+    boolean isTieOfWritten = ties == hits.size() && isTie(last);
+    tiesWritten = isTieOfWritten ? tiesWritten + ties : ties;
+    writtenAfter = last;
+  }
+
+  private static boolean sameKey(List<FieldValue> sort, List<FieldValue> other) {
+    for (int i = 0; i < sort.size() - 1; i++) {
+      if (!Objects.equals(value(sort.get(i)), value(other.get(i)))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static Object value(FieldValue value) {
+    return value.isNull() ? null : value._get();
+  }
+}
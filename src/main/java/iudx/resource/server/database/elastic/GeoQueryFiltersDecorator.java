@@ -2,12 +2,16 @@ package iudx.resource.server.database.elastic;
 
 import static iudx.resource.server.database.archives.Constants.*;
 
+import co.elastic.clients.elasticsearch._types.GeoLocation;
+import co.elastic.clients.elasticsearch._types.GeoShapeRelation;
+import co.elastic.clients.elasticsearch._types.query_dsl.GeoDistanceQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.GeoShapeQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.Query;
-import co.elastic.clients.elasticsearch._types.query_dsl.WrapperQuery;
+import co.elastic.clients.json.JsonData;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
+import iudx.resource.server.common.ResponseUrn;
 import iudx.resource.server.database.elastic.exception.EsQueryException;
-import java.util.Base64;
 import java.util.List;
 import java.util.Map;
 import org.apache.logging.log4j.LogManager;
@@ -18,8 +22,6 @@ public class GeoQueryFiltersDecorator implements ElasticsearchQueryDecorator {
   private static final Logger LOGGER = LogManager.getLogger(GeoQueryFiltersDecorator.class);
   private Map<FilterType, List<Query>> queryFilters;
   private JsonObject requestQuery;
-  private String geoQuery =
-      "{ \"geo_shape\": { \"%s\": { \"shape\": %s, \"relation\": \"%s\" } } }";
 
   public GeoQueryFiltersDecorator(
       Map<FilterType, List<Query>> queryFilters, JsonObject requestQuery) {
@@ -29,16 +31,13 @@ public class GeoQueryFiltersDecorator implements ElasticsearchQueryDecorator {
 
   @Override
   public Map<FilterType, List<Query>> add() {
-    Query geoWrapperQuery;
+    Query geoQuery;
     if (requestQuery.containsKey(LON)
         && requestQuery.containsKey(LAT)
         && requestQuery.containsKey(GEO_RADIUS)) {
       // circle
-      requestQuery.put(GEOMETRY, "Point");
       String relation = requestQuery.containsKey(GEOREL) ? requestQuery.getString(GEOREL) : WITHIN;
-      String query = String.format(geoQuery, "location", getGeoJson(requestQuery), relation);
-      String encodedString = Base64.getEncoder().encodeToString(query.getBytes());
-      geoWrapperQuery = WrapperQuery.of(w -> w.query(encodedString))._toQuery();
+      geoQuery = getCircleQuery(getGeoShapeRelation(relation));
 
     } else if (requestQuery.containsKey(GEOMETRY)
         && (requestQuery.getString(GEOMETRY).equalsIgnoreCase(POLYGON)
@@ -47,15 +46,13 @@ public class GeoQueryFiltersDecorator implements ElasticsearchQueryDecorator {
         && requestQuery.containsKey(COORDINATES_KEY)
         && requestQuery.containsKey(GEO_PROPERTY)) {
       // polygon & linestring
-      String relation = requestQuery.getString(GEOREL);
+      GeoShapeRelation relation = getGeoShapeRelation(requestQuery.getString(GEOREL));
+      JsonArray coordinates = new JsonArray(requestQuery.getString(COORDINATES_KEY));
 
-      if (!isValidCoordinates(
-          requestQuery.getString(GEOMETRY), new JsonArray(requestQuery.getString("coordinates")))) {
+      if (!isValidCoordinates(requestQuery.getString(GEOMETRY), coordinates)) {
         throw new EsQueryException("Coordinate mismatch (Polygon)");
       }
-      String query = String.format(geoQuery, "location", getGeoJson(requestQuery), relation);
-      String encodedString = Base64.getEncoder().encodeToString(query.getBytes());
-      geoWrapperQuery = WrapperQuery.of(w -> w.query(encodedString))._toQuery();
+      geoQuery = getGeoShapeQuery(requestQuery.getString(GEOMETRY), coordinates, relation);
 
     } else if (requestQuery.containsKey(GEOMETRY)
         && requestQuery.getString(GEOMETRY).equalsIgnoreCase(BBOX)
@@ -63,40 +60,61 @@ public class GeoQueryFiltersDecorator implements ElasticsearchQueryDecorator {
         && requestQuery.containsKey(COORDINATES_KEY)
         && requestQuery.containsKey(GEO_PROPERTY)) {
       // bbox
-      String relation = requestQuery.getString(GEOREL);
-      String query = String.format(geoQuery, "location", getGeoJson(requestQuery), relation);
-      String encodedString = Base64.getEncoder().encodeToString(query.getBytes());
-      geoWrapperQuery = WrapperQuery.of(w -> w.query(encodedString))._toQuery();
+      GeoShapeRelation relation = getGeoShapeRelation(requestQuery.getString(GEOREL));
+      JsonArray coordinates = new JsonArray(requestQuery.getString(COORDINATES_KEY));
+      geoQuery = getGeoShapeQuery(GEO_BBOX, coordinates, relation);
     } else {
       throw new EsQueryException("Missing/Invalid geo parameters");
     }
     List<Query> queryList = queryFilters.get(FilterType.FILTER);
-    queryList.add(geoWrapperQuery);
+    queryList.add(geoQuery);
     return queryFilters;
   }
 
-  private JsonObject getGeoJson(JsonObject json) {
-    LOGGER.debug(json);
-    JsonObject geoJson = new JsonObject();
-    String geom;
-    JsonArray coordinates;
-    if ("Point".equalsIgnoreCase(json.getString(GEOMETRY))) {
-      double lat = json.getDouble(LAT);
-      double lon = json.getDouble(LON);
-      geom = "Circle";
-      geoJson.put("radius", json.getString("radius") + "m");
-      coordinates = new JsonArray().add(lon).add(lat);
-    } else if ("bbox".equalsIgnoreCase(json.getString(GEOMETRY))) {
-      geom = "envelope";
-      coordinates = new JsonArray(json.getString("coordinates"));
-    } else {
-      geom = json.getString(GEOMETRY);
-      coordinates = new JsonArray(json.getString("coordinates"));
+  /**
+   * near;maxDistance query. Locations are points, so <i>within</i> and <i>intersects</i> a circle
+   * are both a distance check, which is answered by a native geo_distance filter instead of a
+   * shape intersection.
+   */
+  private Query getCircleQuery(GeoShapeRelation relation) {
+    double lat = requestQuery.getDouble(LAT);
+    double lon = requestQuery.getDouble(LON);
+    String radius = requestQuery.getValue(GEO_RADIUS) + "m";
+
+    if (GeoShapeRelation.Within.equals(relation) || GeoShapeRelation.Intersects.equals(relation)) {
+      GeoLocation location = GeoLocation.of(l -> l.latlon(ll -> ll.lat(lat).lon(lon)));
+      return GeoDistanceQuery.of(g -> g.field(GEO_KEY).location(location).distance(radius))
+          ._toQuery();
+    }
+    JsonObject circle =
+        new JsonObject()
+            .put("type", GEO_CIRCLE)
+            .put(COORDINATES_KEY, List.of(lon, lat))
+            .put(GEO_RADIUS, radius);
+    return getGeoShapeQuery(circle, relation);
+  }
+
+  private Query getGeoShapeQuery(String type, JsonArray coordinates, GeoShapeRelation relation) {
+    JsonObject shape =
+        new JsonObject().put("type", type).put(COORDINATES_KEY, coordinates.getList());
+    return getGeoShapeQuery(shape, relation);
+  }
+
+  private Query getGeoShapeQuery(JsonObject shape, GeoShapeRelation relation) {
+    LOGGER.debug("shape : {}, relation : {}", shape, relation);
+    JsonData shapeData = JsonData.of(shape.getMap());
+    return GeoShapeQuery.of(
+            g -> g.field(GEO_KEY).shape(s -> s.shape(shapeData).relation(relation)))
+        ._toQuery();
+  }
+
+  private GeoShapeRelation getGeoShapeRelation(String relation) {
+    for (GeoShapeRelation geoShapeRelation : GeoShapeRelation.values()) {
+      if (geoShapeRelation.jsonValue().equalsIgnoreCase(relation)) {
+        return geoShapeRelation;
+      }
     }
-    geoJson.put("type", geom);
-    geoJson.put("coordinates", coordinates);
-    LOGGER.debug(geoJson);
-    return geoJson;
+    throw new EsQueryException(ResponseUrn.INVALID_GEO_PARAM_URN, "invalid georel : " + relation);
   }
 
   private boolean isValidCoordinates(String geometry, JsonArray coordinates) {
@@ -0,0 +1,93 @@
+package iudx.resource.server.database.elastic;
+
+import io.vertx.core.json.JsonObject;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.StringJoiner;
+
+/**
+ * Resolves the indices a query on a resource group has to search.
+ *
+ * <p>With partitioning enabled the data of a resource group is expected in monthly slices named
+ * <i>index-yyyy.MM</i> by observationDateTime (UTC), e.g. written through a date_index_name
+ * ingest pipeline, optionally followed by a rollover suffix. Only the slices overlapping the
+ * temporal window of a query are searched, each as a wildcard so a month with no data is skipped
+ * instead of failing the query.
+ */
+public class IndexResolver {
+
+  private static final DateTimeFormatter SLICE_FORMAT = DateTimeFormatter.ofPattern("yyyy.MM");
+  private static final String SLICE_SEPARATOR = "-";
+  private static final String ALL_SLICES = SLICE_SEPARATOR + "*";
+
+  private final String tenantPrefix;
+  private final boolean partitioned;
+  private final int maxSlices;
+
+  public IndexResolver(String tenantPrefix) {
+    this(tenantPrefix, new JsonObject());
+  }
+
+  /**
+   * IndexResolver.
+   *
+   * @param tenantPrefix prefix of index names, <i>none</i> for no prefix
+   * @param config indexPartitioning config
+   */
+  public IndexResolver(String tenantPrefix, JsonObject config) {
+    this.tenantPrefix = tenantPrefix;
+    this.partitioned = config.getBoolean("enabled", false);
+    this.maxSlices = config.getInteger("maxSlices", 24);
+  }
+
+  /**
+   * index (or alias) holding all data of a resource group.
+   *
+   * @param resourceGroup resource group
+   * @return index name
+   */
+  public String getIndex(String resourceGroup) {
+    if (!"none".equals(tenantPrefix)) {
+      return tenantPrefix + "__" + resourceGroup;
+    }
+    return resourceGroup;
+  }
+
+  /**
+   * comma separated index expression covering the given window of a resource group.
+   *
+   * @param resourceGroup resource group
+   * @param window temporal window of query
+   * @return index expression to search
+   */
+  public String resolve(String resourceGroup, TemporalWindow window) {
+    String index = getIndex(resourceGroup);
+    if (!partitioned) {
+      return index;
+    }
+    ZonedDateTime start = window.getStartDateTime();
+    if (start == null) {
+      return index + ALL_SLICES;
+    }
+    ZonedDateTime end = window.getEndDateTime();
+    YearMonth first = YearMonth.from(start.withZoneSameInstant(ZoneOffset.UTC));
+    YearMonth last =
+        end != null
+            ? YearMonth.from(end.withZoneSameInstant(ZoneOffset.UTC))
+            : YearMonth.now(ZoneOffset.UTC);
+    if (last.isBefore(first)) {
+      last = first;
+    }
+    if (ChronoUnit.MONTHS.between(first, last) >= maxSlices) {
+      return index + ALL_SLICES;
+    }
+    StringJoiner indices = new StringJoiner(",");
+    for (YearMonth slice = first; !slice.isAfter(last); slice = slice.plusMonths(1)) {
+      indices.add(index + SLICE_SEPARATOR + slice.format(SLICE_FORMAT) + "*");
+    }
+    return indices.toString();
+  }
+}
@@ -0,0 +1,379 @@
+package iudx.resource.server.database.elastic;
+
+import static iudx.resource.server.database.elastic.ThriftCompactWriter.*;
+
+import com.github.luben.zstd.Zstd;
+import com.google.common.io.CountingOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Streams flattened records to a Parquet file, one row group at a time.
+ *
+ * <p>Every field of a record is an optional column of type boolean, double or string, inferred
+ * from its values. A column holding values of mixed types in a row group is widened to string.
+ * Columns first seen in a later row group are added to the schema, the row groups written before
+ * them get a column chunk of nulls when the file is finished. Column chunks of a row group are
+ * written as soon as the row group is complete, so only the rows of a single group are held in
+ * memory.
+ *
+ * <p>Chunks already written can't be widened, so a field whose type changes after its boolean or
+ * double values were written falls back to a new string column, holding its values from that row
+ * group on. The column written so far is kept, renamed after its type, e.g. <i>speed_double</i>.
+ *
+ * <p>Each column chunk is a single PLAIN encoded data page compressed with ZSTD.
+ */
+final class ParquetStreamWriter {
+
+  private static final Logger LOGGER = LogManager.getLogger(ParquetStreamWriter.class);
+  private static final byte[] MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+  private static final String CREATED_BY = "iudx-resource-server";
+  private static final int ZSTD_LEVEL = 3;
+
+  // parquet.thrift enum values
+  private static final int PAGE_TYPE_DATA_PAGE = 0;
+  private static final int ENCODING_PLAIN = 0;
+  private static final int ENCODING_RLE = 3;
+  private static final int CODEC_ZSTD = 6;
+  private static final int REPETITION_OPTIONAL = 1;
+  private static final int CONVERTED_TYPE_UTF8 = 0;
+
+  private final CountingOutputStream out;
+  // column each field is written to
+  private final Map<String, Column> columns = new LinkedHashMap<>();
+  // columns of the file, with those a field fell back to string from
+  private final List<Column> schema = new ArrayList<>();
+  private final List<Long> rowGroupSizes = new ArrayList<>();
+  private long numRows;
+
+  ParquetStreamWriter(OutputStream outputStream) {
+    this.out = new CountingOutputStream(new BufferedOutputStream(outputStream));
+  }
+
+  void start() throws IOException {
+    out.write(MAGIC);
+  }
+
+  /** flushes row groups written so far to the stream. */
+  void flush() throws IOException {
+    out.flush();
+  }
+
+  /**
+   * writes rows as a row group.
+   *
+   * @param rows flattened records, field name to boolean, number or string value
+   * @throws IOException if writing fails
+   */
+  void writeRowGroup(List<Map<String, Object>> rows) throws IOException {
+    if (rows.isEmpty()) {
+      return;
+    }
+    for (Map<String, Object> row : rows) {
+      for (Map.Entry<String, Object> field : row.entrySet()) {
+        Column column = columns.get(field.getKey());
+        if (column == null) {
+          column = new Column(field.getKey());
+          columns.put(column.name, column);
+          schema.add(column);
+        }
+        if (field.getValue() == null) {
+          continue;
+        }
+        ColumnType type = ColumnType.of(field.getValue());
+        if (column.writtenType != null
+            && column.writtenType != ColumnType.STRING
+            && type != column.writtenType) {
+          column = fallBackToString(column);
+        }
+        column.type = ColumnType.widen(column.type, type);
+      }
+    }
+    int rowGroup = rowGroupSizes.size();
+    for (Column column : columns.values()) {
+      List<Object> values = new ArrayList<>(rows.size());
+      for (Map<String, Object> row : rows) {
+        values.add(coerce(row.get(column.name), column.type));
+      }
+      column.chunks.put(rowGroup, writeChunk(column.type, values));
+      column.writtenType = column.type;
+    }
+    rowGroupSizes.add((long) rows.size());
+    numRows += rows.size();
+  }
+
+  /* a string column for the field of a column whose values were written with another type */
+  private Column fallBackToString(Column column) {
+    Column fallback = new Column(column.name);
+    fallback.type = ColumnType.STRING;
+    columns.put(fallback.name, fallback);
+    schema.add(schema.indexOf(column) + 1, fallback);
+    column.name = column.name + "_" + column.type.name().toLowerCase(Locale.ROOT);
+    LOGGER.debug(
+        "column {} falls back to string from row group {}", fallback.name, rowGroupSizes.size());
+    return fallback;
+  }
+
+  /** writes missing column chunks and the footer, and closes the stream. */
+  void finish() throws IOException {
+    for (Column column : schema) {
+      if (column.type == null) {
+        // a column of nulls only
+        column.type = ColumnType.STRING;
+      }
+    }
+    for (int rowGroup = 0; rowGroup < rowGroupSizes.size(); rowGroup++) {
+      for (Column column : schema) {
+        if (!column.chunks.containsKey(rowGroup)) {
+          int size = rowGroupSizes.get(rowGroup).intValue();
+          column.chunks.put(rowGroup, writeChunk(column.type, Collections.nCopies(size, null)));
+        }
+      }
+    }
+    uniqueNames();
+    byte[] footer = footer();
+    out.write(footer);
+    writeIntLittleEndian(out, footer.length);
+    out.write(MAGIC);
+    out.close();
+  }
+
+  /* a column a field fell back to string from is renamed, a field may have its name too */
+  private void uniqueNames() {
+    Set<String> names = new HashSet<>(columns.keySet());
+    for (Column column : schema) {
+      if (columns.get(column.name) != column) {
+        while (!names.add(column.name)) {
+          column.name = column.name + "_";
+        }
+      }
+    }
+  }
+
+  private Chunk writeChunk(ColumnType type, List<Object> values) throws IOException {
+    ByteArrayOutputStream page = new ByteArrayOutputStream();
+    byte[] definitionLevels = definitionLevels(values);
+    writeIntLittleEndian(page, definitionLevels.length);
+    page.write(definitionLevels);
+    if (type != null) {
+      type.writeValues(page, values);
+    }
+
+    byte[] uncompressed = page.toByteArray();
+    byte[] compressed = Zstd.compress(uncompressed, ZSTD_LEVEL);
+    byte[] pageHeader =
+        new ThriftCompactWriter()
+            .i32(1, PAGE_TYPE_DATA_PAGE)
+            .i32(2, uncompressed.length)
+            .i32(3, compressed.length)
+            .structBegin(5)
+            .i32(1, values.size())
+            .i32(2, ENCODING_PLAIN)
+            .i32(3, ENCODING_RLE)
+            .i32(4, ENCODING_RLE)
+            .structEnd()
+            .toByteArray();
+
+    Chunk chunk = new Chunk();
+    chunk.offset = out.getCount();
+    chunk.numValues = values.size();
+    chunk.uncompressedSize = pageHeader.length + uncompressed.length;
+    chunk.compressedSize = pageHeader.length + compressed.length;
+    out.write(pageHeader);
+    out.write(compressed);
+    return chunk;
+  }
+
+  /* definition level is 1 for a value and 0 for null, written as RLE runs of bit width 1 */
+  private static byte[] definitionLevels(List<Object> values) {
+    ByteArrayOutputStream levels = new ByteArrayOutputStream();
+    int i = 0;
+    while (i < values.size()) {
+      boolean isDefined = values.get(i) != null;
+      int run = 1;
+      while (i + run < values.size() && (values.get(i + run) != null) == isDefined) {
+        run++;
+      }
+      writeUnsignedVarint(levels, run << 1);
+      levels.write(isDefined ? 1 : 0);
+      i += run;
+    }
+    return levels.toByteArray();
+  }
+
+  private byte[] footer() {
+    ThriftCompactWriter footer =
+        new ThriftCompactWriter()
+            .i32(1, 1)
+            .listBegin(2, TYPE_STRUCT, schema.size() + 1)
+            .listStruct()
+            .string(4, "schema")
+            .i32(5, schema.size())
+            .structEnd();
+    for (Column column : schema) {
+      footer
+          .listStruct()
+          .i32(1, column.type.physicalType)
+          .i32(3, REPETITION_OPTIONAL)
+          .string(4, column.name);
+      if (column.type == ColumnType.STRING) {
+        // converted type UTF8 and logical type STRING
+        footer.i32(6, CONVERTED_TYPE_UTF8).structBegin(10).structBegin(1).structEnd().structEnd();
+      }
+      footer.structEnd();
+    }
+    footer.i64(3, numRows).listBegin(4, TYPE_STRUCT, rowGroupSizes.size());
+    for (int rowGroup = 0; rowGroup < rowGroupSizes.size(); rowGroup++) {
+      long totalByteSize = 0;
+      footer.listStruct().listBegin(1, TYPE_STRUCT, schema.size());
+      for (Column column : schema) {
+        Chunk chunk = column.chunks.get(rowGroup);
+        totalByteSize += chunk.uncompressedSize;
+        footer
+            .listStruct()
+            .i64(2, chunk.offset)
+            .structBegin(3)
+            .i32(1, column.type.physicalType)
+            .listBegin(2, TYPE_I32, 2)
+            .listI32(ENCODING_PLAIN)
+            .listI32(ENCODING_RLE)
+            .listBegin(3, TYPE_BINARY, 1)
+            .listString(column.name)
+            .i32(4, CODEC_ZSTD)
+            .i64(5, chunk.numValues)
+            .i64(6, chunk.uncompressedSize)
+            .i64(7, chunk.compressedSize)
+            .i64(9, chunk.offset)
+            .structEnd()
+            .structEnd();
+      }
+      footer.i64(2, totalByteSize).i64(3, rowGroupSizes.get(rowGroup)).structEnd();
+    }
+    return footer.string(6, CREATED_BY).toByteArray();
+  }
+
+  /* a value of a column, as text if the column is a string column */
+  private static Object coerce(Object value, ColumnType type) {
+    return value == null || type != ColumnType.STRING ? value : value.toString();
+  }
+
+  private static void writeIntLittleEndian(OutputStream outputStream, int value)
+      throws IOException {
+    outputStream.write(value & 0xff);
+    outputStream.write((value >>> 8) & 0xff);
+    outputStream.write((value >>> 16) & 0xff);
+    outputStream.write((value >>> 24) & 0xff);
+  }
+
+  private static void writeUnsignedVarint(ByteArrayOutputStream outputStream, int value) {
+    while ((value & ~0x7f) != 0) {
+      outputStream.write((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    outputStream.write(value);
+  }
+
+  private enum ColumnType {
+    BOOLEAN(0) {
+      @Override
+      void writeValues(ByteArrayOutputStream page, List<Object> values) {
+        int bits = 0;
+        int count = 0;
+        for (Object value : values) {
+          if (value != null) {
+            if ((Boolean) value) {
+              bits |= 1 << count;
+            }
+            if (++count == 8) {
+              page.write(bits);
+              bits = 0;
+              count = 0;
+            }
+          }
+        }
+        if (count > 0) {
+          page.write(bits);
+        }
+      }
+    },
+    DOUBLE(5) {
+      @Override
+      void writeValues(ByteArrayOutputStream page, List<Object> values) {
+        for (Object value : values) {
+          if (value != null) {
+            long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+            for (int i = 0; i < 8; i++) {
+              page.write((int) (bits >>> (8 * i)) & 0xff);
+            }
+          }
+        }
+      }
+    },
+    STRING(6) {
+      @Override
+      void writeValues(ByteArrayOutputStream page, List<Object> values) throws IOException {
+        for (Object value : values) {
+          if (value != null) {
+            byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+            writeIntLittleEndian(page, bytes.length);
+            page.write(bytes);
+          }
+        }
+      }
+    };
+
+    private final int physicalType;
+
+    ColumnType(int physicalType) {
+      this.physicalType = physicalType;
+    }
+
+    static ColumnType of(Object value) {
+      if (value instanceof Boolean) {
+        return BOOLEAN;
+      } else if (value instanceof Number) {
+        return DOUBLE;
+      }
+      return STRING;
+    }
+
+    static ColumnType widen(ColumnType type, ColumnType other) {
+      return type == null || type == other ? other : STRING;
+    }
+
+    abstract void writeValues(ByteArrayOutputStream page, List<Object> values) throws IOException;
+  }
+
+  private static final class Column {
+    private final Map<Integer, Chunk> chunks = new HashMap<>();
+    private String name;
+    private ColumnType type;
+    // type of the values in chunks written, null till a value is written
+    private ColumnType writtenType;
+
+    Column(String name) {
+      this.name = name;
+    }
+  }
+
+  private static final class Chunk {
+    private long offset;
+    private long numValues;
+    private long uncompressedSize;
+    private long compressedSize;
+  }
+}
@@ -10,14 +10,13 @@ import co.elastic.clients.elasticsearch._types.query_dsl.TermsQuery;
 import co.elastic.clients.elasticsearch._types.query_dsl.TermsQueryField;
 import co.elastic.clients.elasticsearch.core.search.SourceConfig;
 import co.elastic.clients.elasticsearch.core.search.SourceFilter;
-import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import iudx.resource.server.database.elastic.exception.EsQueryException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -31,54 +30,52 @@ public class QueryDecoder {
 
   public Query getQuery(JsonObject jsonQuery, boolean isAsyncQuery) {
 
-    String searchType = jsonQuery.getString(SEARCH_TYPE);
-    Boolean isValidQuery = false;
+    QueryPlan plan = QueryPlan.forSearchType(jsonQuery.getString(SEARCH_TYPE));
+    if (!plan.isValid()) {
+      throw new EsQueryException("Invalid search query");
+    }
     boolean temporalQuery = false;
 
     String[] timeLimitConfig = getTimeLimitArray(jsonQuery, isAsyncQuery);
     int defaultDateForDevDeployment = 0;
 
-    Map<FilterType, List<Query>> queryLists = new HashMap<>();
+    Map<FilterType, List<Query>> queryLists = new EnumMap<>(FilterType.class);
 
     for (FilterType filterType : FilterType.values()) {
       queryLists.put(filterType, new ArrayList<Query>());
     }
 
-    // add id to every elastic query
-    JsonArray id = jsonQuery.getJsonArray("id");
-    FieldValue field = FieldValue.of(id.getString(0));
-    TermsQueryField termQueryField = TermsQueryField.of(e -> e.value(List.of(field)));
+    // add ids to every elastic query, all of them matched by a single terms filter
+    List<FieldValue> ids =
+        jsonQuery.getJsonArray("id").stream()
+            .map(Object::toString)
+            .distinct()
+            .map(FieldValue::of)
+            .collect(Collectors.toList());
+    TermsQueryField termQueryField = TermsQueryField.of(e -> e.value(ids));
     Query idTermsQuery = TermsQuery.of(query -> query.field("id").terms(termQueryField))._toQuery();
 
     queryLists.get(FilterType.FILTER).add(idTermsQuery);
-    ElasticsearchQueryDecorator queryDecorator = null;
-    if (searchType.matches(TEMPORAL_SEARCH_REGEX)
+    if (plan.isTemporalSearch()
         && jsonQuery.containsKey(REQ_TIMEREL)
         && jsonQuery.containsKey(TIME_KEY)) {
 
       if (!isAsyncQuery) {
         defaultDateForDevDeployment = Integer.valueOf(timeLimitConfig[2]);
       }
-      queryDecorator =
-          new TemporalQueryFiltersDecorator(queryLists, jsonQuery, defaultDateForDevDeployment);
-      queryDecorator.add();
+      new TemporalQueryFiltersDecorator(queryLists, jsonQuery, defaultDateForDevDeployment).add();
       temporalQuery = true;
-      isValidQuery = true;
     }
 
-    if (searchType.matches(ATTRIBUTE_SEARCH_REGEX)) {
-      queryDecorator = new AttributeQueryFiltersDecorator(queryLists, jsonQuery);
-      queryDecorator.add();
-      isValidQuery = true;
+    if (plan.isAttributeSearch()) {
+      new AttributeQueryFiltersDecorator(queryLists, jsonQuery).add();
     }
 
-    if (searchType.matches(GEOSEARCH_REGEX)) {
-      queryDecorator = new GeoQueryFiltersDecorator(queryLists, jsonQuery);
-      queryDecorator.add();
-      isValidQuery = true;
+    if (plan.isGeoSearch()) {
+      new GeoQueryFiltersDecorator(queryLists, jsonQuery).add();
     }
 
-    if (!isValidQuery) {
+    if (!temporalQuery && !plan.isAttributeSearch() && !plan.isGeoSearch()) {
       throw new EsQueryException("Invalid search query");
     }
 
@@ -91,10 +88,44 @@ public class QueryDecoder {
 
     Query q = getBoolQuery(queryLists);
 
-    LOGGER.info("query : {}", q.toString());
+    LOGGER.debug("query : {}", q);
     return q;
   }
 
+  /**
+   * observationDateTime window the query built by {@link #getQuery(JsonObject)} is restricted to.
+   *
+   * @param jsonQuery request json
+   * @return TemporalWindow, {@link TemporalWindow#UNBOUNDED} if query has no temporal filter
+   */
+  public TemporalWindow getTemporalWindow(JsonObject jsonQuery) {
+    return getTemporalWindow(jsonQuery, false);
+  }
+
+  /**
+   * observationDateTime window the query built by {@link #getQuery(JsonObject, boolean)} is
+   * restricted to.
+   *
+   * @param jsonQuery request json
+   * @param isAsyncQuery true for async queries, which get no default window
+   * @return TemporalWindow, {@link TemporalWindow#UNBOUNDED} if query has no temporal filter
+   */
+  public TemporalWindow getTemporalWindow(JsonObject jsonQuery, boolean isAsyncQuery) {
+    QueryPlan plan = QueryPlan.forSearchType(jsonQuery.getString(SEARCH_TYPE));
+    String[] timeLimitConfig = getTimeLimitArray(jsonQuery, isAsyncQuery);
+    if (plan.isTemporalSearch()
+        && jsonQuery.containsKey(REQ_TIMEREL)
+        && jsonQuery.containsKey(TIME_KEY)) {
+      int defaultDateLimit = isAsyncQuery ? 0 : Integer.valueOf(timeLimitConfig[2]);
+      return TemporalWindow.forRelation(jsonQuery, defaultDateLimit);
+    }
+    boolean isTemporalResource = jsonQuery.getJsonArray("applicableFilters").contains("TEMPORAL");
+    if (!isAsyncQuery && isTemporalResource) {
+      return TemporalWindow.forDefault(timeLimitConfig, Integer.valueOf(timeLimitConfig[2]));
+    }
+    return TemporalWindow.UNBOUNDED;
+  }
+
   private String[] getTimeLimitArray(JsonObject jsonQuery, boolean isAsyncQuery) {
     if (isAsyncQuery) {
       return new String[] {};
@@ -104,19 +135,13 @@ public class QueryDecoder {
   }
 
   public SourceConfig getSourceConfigFilters(JsonObject queryJson) {
-    String searchType = queryJson.getString(SEARCH_TYPE);
-
-    if (!searchType.matches(RESPONSE_FILTER_REGEX)) {
-      return getSourceFilter(Collections.emptyList());
+    QueryPlan plan = QueryPlan.forSearchType(queryJson.getString(SEARCH_TYPE));
+    try {
+      return getSourceFilter(plan.getResponseAttrs(queryJson));
+    } catch (EsQueryException e) {
+      LOGGER.error(e.getMessage());
+      throw e;
     }
-
-    JsonArray responseFilteringFileds = queryJson.getJsonArray(RESPONSE_ATTRS);
-    if (responseFilteringFileds == null) {
-      LOGGER.error("response filtering fields are not passed in attrs parameter");
-      throw new EsQueryException("response filtering fields are not passed in attrs parameter");
-    }
-
-    return getSourceFilter(responseFilteringFileds.getList());
   }
 
   private SourceConfig getSourceFilter(List<String> sourceFilterList) {
@@ -129,25 +154,17 @@ public class QueryDecoder {
 
     Builder boolQuery = new BoolQuery.Builder();
 
-    for (Map.Entry<FilterType, List<Query>> entry : filterQueries.entrySet()) {
-      if (FilterType.FILTER.equals(entry.getKey())
-          && filterQueries.get(FilterType.FILTER).size() > 0) {
-        boolQuery.filter(filterQueries.get(FilterType.FILTER));
-      }
-
-      if (FilterType.MUST_NOT.equals(entry.getKey())
-          && filterQueries.get(FilterType.MUST_NOT).size() > 0) {
-        boolQuery.mustNot(filterQueries.get(FilterType.MUST_NOT));
-      }
-
-      if (FilterType.MUST.equals(entry.getKey()) && filterQueries.get(FilterType.MUST).size() > 0) {
-        boolQuery.must(filterQueries.get(FilterType.MUST));
-      }
-
-      if (FilterType.SHOULD.equals(entry.getKey())
-          && filterQueries.get(FilterType.SHOULD).size() > 0) {
-        boolQuery.should(filterQueries.get(FilterType.SHOULD));
-      }
+    if (!filterQueries.get(FilterType.FILTER).isEmpty()) {
+      boolQuery.filter(filterQueries.get(FilterType.FILTER));
+    }
+    if (!filterQueries.get(FilterType.MUST_NOT).isEmpty()) {
+      boolQuery.mustNot(filterQueries.get(FilterType.MUST_NOT));
+    }
+    if (!filterQueries.get(FilterType.MUST).isEmpty()) {
+      boolQuery.must(filterQueries.get(FilterType.MUST));
+    }
+    if (!filterQueries.get(FilterType.SHOULD).isEmpty()) {
+      boolQuery.should(filterQueries.get(FilterType.SHOULD));
     }
 
     return boolQuery.build()._toQuery();
@@ -0,0 +1,106 @@
+package iudx.resource.server.database.elastic;
+
+import static iudx.resource.server.database.archives.Constants.*;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.database.elastic.exception.EsQueryException;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Filters a searchType is decoded into. searchType values are drawn from a small set of
+ * combinations, so each one is classified once and the resulting plan is reused by every request
+ * of the same shape, leaving only the literal values to be bound per request.
+ */
+public final class QueryPlan {
+
+  private static final Pattern TEMPORAL_SEARCH = Pattern.compile(TEMPORAL_SEARCH_REGEX);
+  private static final Pattern ATTRIBUTE_SEARCH = Pattern.compile(ATTRIBUTE_SEARCH_REGEX);
+  private static final Pattern GEO_SEARCH = Pattern.compile(GEOSEARCH_REGEX);
+  private static final Pattern RESPONSE_FILTER = Pattern.compile(RESPONSE_FILTER_REGEX);
+
+  private static final Cache<String, QueryPlan> PLANS =
+      CacheBuilder.newBuilder().maximumSize(256).build();
+
+  private final boolean temporalSearch;
+  private final boolean attributeSearch;
+  private final boolean geoSearch;
+  private final boolean responseFilter;
+
+  private QueryPlan(String searchType) {
+    this.temporalSearch = TEMPORAL_SEARCH.matcher(searchType).matches();
+    this.attributeSearch = ATTRIBUTE_SEARCH.matcher(searchType).matches();
+    this.geoSearch = GEO_SEARCH.matcher(searchType).matches();
+    this.responseFilter = RESPONSE_FILTER.matcher(searchType).matches();
+  }
+
+  /**
+   * plan for a searchType, classified on first use.
+   *
+   * @param searchType searchType of request
+   * @return QueryPlan
+   */
+  public static QueryPlan forSearchType(String searchType) {
+    QueryPlan plan = PLANS.getIfPresent(searchType);
+    if (plan == null) {
+      plan = new QueryPlan(searchType);
+      PLANS.put(searchType, plan);
+    }
+    return plan;
+  }
+
+  public boolean isTemporalSearch() {
+    return temporalSearch;
+  }
+
+  public boolean isAttributeSearch() {
+    return attributeSearch;
+  }
+
+  public boolean isGeoSearch() {
+    return geoSearch;
+  }
+
+  public boolean isResponseFilter() {
+    return responseFilter;
+  }
+
+  /**
+   * attributes a response is projected to, shared by temporal and latest queries.
+   *
+   * @param queryJson request
+   * @return attributes of attrs parameter, empty if the response isn't filtered
+   */
+  public List<String> getResponseAttrs(JsonObject queryJson) {
+    if (!responseFilter) {
+      return Collections.emptyList();
+    }
+    JsonArray responseFilteringFileds = queryJson.getJsonArray(RESPONSE_ATTRS);
+    if (responseFilteringFileds == null) {
+      throw new EsQueryException("response filtering fields are not passed in attrs parameter");
+    }
+    return responseFilteringFileds.getList();
+  }
+
+  /** true if searchType selects at least one filter. */
+  public boolean isValid() {
+    return temporalSearch || attributeSearch || geoSearch;
+  }
+
+  @Override
+  public String toString() {
+    return "QueryPlan [temporalSearch="
+        + temporalSearch
+        + ", attributeSearch="
+        + attributeSearch
+        + ", geoSearch="
+        + geoSearch
+        + ", responseFilter="
+        + responseFilter
+        + "]";
+  }
+}
@@ -0,0 +1,198 @@
+package iudx.resource.server.database.elastic;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.vertx.core.buffer.Buffer;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Search response read straight from the bytes returned by Elasticsearch. The <i>_source</i> of
+ * every hit is located with a streaming parser and its byte range is copied as-is into a JSON
+ * array buffer, no object tree is built for hits. A page of a point-in-time search can have its
+ * hit sources written as lines of newline delimited json instead, and keeps the point-in-time id
+ * and the sort values of its last hit to search after.
+ */
+public final class RawSearchResponse {
+
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+  private static final String HITS = "hits";
+  private static final String TOTAL = "total";
+  private static final String VALUE = "value";
+  private static final String SOURCE = "_source";
+  private static final String SORT = "sort";
+  private static final String PIT_ID = "pit_id";
+
+  private final long totalHits;
+  private final int hitCount;
+  private final Buffer hits;
+  private final String pitId;
+  private final List<FieldValue> lastSort;
+
+  private RawSearchResponse(
+      long totalHits, int hitCount, Buffer hits, String pitId, List<FieldValue> lastSort) {
+    this.totalHits = totalHits;
+    this.hitCount = hitCount;
+    this.hits = hits;
+    this.pitId = pitId;
+    this.lastSort = lastSort;
+  }
+
+  /** total hits as reported by Elasticsearch. */
+  public long getTotalHits() {
+    return totalHits;
+  }
+
+  /** number of hits in this page. */
+  public int getHitCount() {
+    return hitCount;
+  }
+
+  /** JSON array of hit sources, or lines of hit sources if parsed with {@link #parseLines}. */
+  public Buffer getHits() {
+    return hits;
+  }
+
+  /** point-in-time id returned with the page, <i>null</i> if not a point-in-time search. */
+  public String getPitId() {
+    return pitId;
+  }
+
+  /** sort values of the last hit of the page, empty if hits aren't sorted. */
+  public List<FieldValue> getLastSort() {
+    return lastSort;
+  }
+
+  /**
+   * parse a search response body.
+   *
+   * @param body raw search response body
+   * @return RawSearchResponse
+   * @throws IOException if body is not a valid search response
+   */
+  public static RawSearchResponse parse(byte[] body) throws IOException {
+    return parse(body, false);
+  }
+
+  /**
+   * parse a search response body, hit sources are written one per line as newline delimited json.
+   *
+   * @param body raw search response body
+   * @return RawSearchResponse
+   * @throws IOException if body is not a valid search response
+   */
+  public static RawSearchResponse parseLines(byte[] body) throws IOException {
+    return parse(body, true);
+  }
+
+  private static RawSearchResponse parse(byte[] body, boolean isLines) throws IOException {
+    long totalHits = 0;
+    int hitCount = 0;
+    String pitId = null;
+    List<FieldValue> lastSort = Collections.emptyList();
+    Buffer hits = Buffer.buffer(body.length);
+    if (!isLines) {
+      hits.appendByte((byte) '[');
+    }
+    try (JsonParser parser = JSON_FACTORY.createParser(body)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("search response is not a json object");
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+        if (PIT_ID.equals(field) && parser.currentToken() == JsonToken.VALUE_STRING) {
+          pitId = parser.getText();
+          continue;
+        }
+        if (!HITS.equals(field) || parser.currentToken() != JsonToken.START_OBJECT) {
+          parser.skipChildren();
+          continue;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+          String hitsField = parser.getCurrentName();
+          JsonToken token = parser.nextToken();
+          if (TOTAL.equals(hitsField)) {
+            totalHits = readTotal(parser, token);
+          } else if (HITS.equals(hitsField) && token == JsonToken.START_ARRAY) {
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+              while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String hitField = parser.getCurrentName();
+                JsonToken hitToken = parser.nextToken();
+                if (SOURCE.equals(hitField) && hitToken == JsonToken.START_OBJECT) {
+                  int start = (int) parser.getTokenLocation().getByteOffset();
+                  parser.skipChildren();
+                  int end = (int) parser.getCurrentLocation().getByteOffset();
+                  if (hitCount > 0 && !isLines) {
+                    hits.appendByte((byte) ',');
+                  }
+                  hits.appendBytes(body, start, end - start);
+                  if (isLines) {
+                    hits.appendByte((byte) '\n');
+                  }
+                  hitCount++;
+                } else if (SORT.equals(hitField) && hitToken == JsonToken.START_ARRAY) {
+                  lastSort = readSort(parser);
+                } else {
+                  parser.skipChildren();
+                }
+              }
+            }
+          } else {
+            parser.skipChildren();
+          }
+        }
+      }
+    }
+    if (!isLines) {
+      hits.appendByte((byte) ']');
+    }
+    return new RawSearchResponse(totalHits, hitCount, hits, pitId, lastSort);
+  }
+
+  private static List<FieldValue> readSort(JsonParser parser) throws IOException {
+    List<FieldValue> sort = new ArrayList<>();
+    for (JsonToken token = parser.nextToken();
+        token != JsonToken.END_ARRAY;
+        token = parser.nextToken()) {
+      if (token == JsonToken.VALUE_NUMBER_INT) {
+        sort.add(FieldValue.of(parser.getLongValue()));
+      } else if (token == JsonToken.VALUE_NUMBER_FLOAT) {
+        sort.add(FieldValue.of(parser.getDoubleValue()));
+      } else if (token == JsonToken.VALUE_STRING) {
+        sort.add(FieldValue.of(parser.getText()));
+      } else if (token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE) {
+        sort.add(FieldValue.of(token == JsonToken.VALUE_TRUE));
+      } else if (token == JsonToken.VALUE_NULL) {
+        sort.add(FieldValue.NULL);
+      } else {
+        parser.skipChildren();
+      }
+    }
+    return sort;
+  }
+
+  private static long readTotal(JsonParser parser, JsonToken token) throws IOException {
+    if (token == JsonToken.VALUE_NUMBER_INT) {
+      // rest_total_hits_as_int style response
+      return parser.getLongValue();
+    }
+    long total = 0;
+    if (token == JsonToken.START_OBJECT) {
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+        if (VALUE.equals(field)) {
+          total = parser.getLongValue();
+        } else {
+          parser.skipChildren();
+        }
+      }
+    }
+    return total;
+  }
+}
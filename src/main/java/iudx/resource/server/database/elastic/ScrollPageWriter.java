@@ -0,0 +1,144 @@
+package iudx.resource.server.database.elastic;
+
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.database.async.ExportCheckpointer;
+import iudx.resource.server.database.async.ProgressListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Writes pages of a scroll to the export stream in the requested format. Pages of all slices go
+ * through a single writer, so progress is reported for the scroll as a whole.
+ *
+ * <p>After a page the writer takes a checkpoint if one is due, holding the sort values of the last
+ * hit written by each lane and the state of the formatter. An export resumed from the checkpoint
+ * continues the file after that page.
+ *
+ * <p>A csv header is written with the first page, from the fields of the page and the fields
+ * mapped in the indices searched, see {@link #mappedFields(List)}.
+ */
+final class ScrollPageWriter implements ScrollPipeline.PageWriter {
+
+  private static final Logger LOGGER = LogManager.getLogger(ScrollPageWriter.class);
+  private static final String LANES = "lanes";
+  private static final String DOCS_WRITTEN = "docsWritten";
+  private static final String FORMATTER = "formatter";
+
+  private final EsResponseFormatter formatter;
+  private final boolean isCsv;
+  private final ProgressListener progressListener;
+  private final long totalHits;
+  private final List<ExportLane> lanes;
+  private final ExportCheckpointer checkpointer;
+  private List<String> mappedFields = List.of();
+  private Set<String> headers;
+  private long docsWritten;
+  private boolean isFirstPage = true;
+
+  ScrollPageWriter(
+      EsResponseFormatter formatter, String format, ProgressListener listener, long totalHits) {
+    this(formatter, format, listener, totalHits, List.of(), null);
+  }
+
+  ScrollPageWriter(
+      EsResponseFormatter formatter,
+      String format,
+      ProgressListener listener,
+      long totalHits,
+      List<ExportLane> lanes,
+      ExportCheckpointer checkpointer) {
+    this.formatter = formatter;
+    this.isCsv = format.equalsIgnoreCase("csv");
+    this.progressListener = listener;
+    this.totalHits = totalHits;
+    this.lanes = lanes;
+    this.checkpointer = checkpointer;
+  }
+
+  /**
+   * fields mapped in the indices searched, columns of the csv header besides those of the first
+   * page.
+   *
+   * @param mappedFields leaf fields mapped, see {@link EsResponseFormatterToCsv#getMappedFields}
+   * @return this writer
+   */
+  ScrollPageWriter mappedFields(List<String> mappedFields) {
+    this.mappedFields = mappedFields;
+    return this;
+  }
+
+  /** lanes of an export resumed from a checkpoint, each continues after its last hit written. */
+  static List<ExportLane> getLanes(JsonObject position) {
+    List<ExportLane> lanes = new ArrayList<>();
+    for (Object lane : position.getJsonArray(LANES)) {
+      lanes.add(ExportLane.fromJson((JsonObject) lane));
+    }
+    return lanes;
+  }
+
+  /**
+   * continues the file of an export from a checkpoint, the start of the file is already written.
+   *
+   * @param position position taken at the checkpoint
+   */
+  void resume(JsonObject position) {
+    formatter.resume(position.getJsonObject(FORMATTER));
+    docsWritten = position.getLong(DOCS_WRITTEN);
+    isFirstPage = false;
+  }
+
+  @Override
+  public void write(ExportLane lane, List<Hit<ObjectNode>> hits) {
+    if (isCsv) {
+      if (isFirstPage) {
+        headers = formatter.writeToCsv(hits, mappedFields);
+      }
+      formatter.append(hits, !isFirstPage, headers);
+    } else {
+      if (isFirstPage) {
+        formatter.write(hits);
+      }
+      formatter.append(hits, !isFirstPage);
+    }
+    isFirstPage = false;
+    docsWritten += hits.size();
+    LOGGER.debug("downloaded {} docs of {} total [{} new]", docsWritten, totalHits, hits.size());
+
+    // keeping progress at 90% of actual to update the last 10% after upload to external (s3)
+    double progress = totalHits > 0 ? Math.min(1.0, (double) docsWritten / totalHits) : 1.0;
+    progressListener.updateProgress(progress * 0.9);
+
+    lane.written(hits);
+    if (checkpointer != null && checkpointer.isCheckpointDue()) {
+      checkpointer.checkpoint(getPosition());
+    }
+  }
+
+  /* position after the pages written, null if the file can't be resumed */
+  private JsonObject getPosition() {
+    JsonObject formatterState = formatter.checkpoint();
+    if (formatterState == null) {
+      return null;
+    }
+    JsonArray lanesJson = new JsonArray();
+    lanes.forEach(lane -> lanesJson.add(lane.toJson()));
+    return new JsonObject()
+        .put(LANES, lanesJson)
+        .put(DOCS_WRITTEN, docsWritten)
+        .put(FORMATTER, formatterState);
+  }
+
+  /** completes the file, an empty document is written if there were no pages. */
+  void finish() {
+    if (!isCsv && isFirstPage) {
+      formatter.write(List.of());
+    }
+    formatter.finish();
+  }
+}
@@ -0,0 +1,229 @@
+package iudx.resource.server.database.elastic;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Pipelined export of a search, pages are fetched and written concurrently.
+ *
+ * <p>An export is split in lanes, each paging through its part of the search with
+ * <i>search_after</i>. A lane requests its next page as soon as a page arrives, while pages of all
+ * lanes are handed to the writer one at a time, in order of arrival, on the export executor. No
+ * thread waits on Elasticsearch. At most <i>bufferedPages</i> pages of a lane are held waiting to
+ * be written, the lane pauses until the writer catches up, so an export runs at the pace of the
+ * slower of Elasticsearch and the writer. Lanes page through a point-in-time, kept alive by every
+ * page requested.
+ *
+ * <p>A lane resumed after hits written starts before the first hit of the time and id of the last
+ * one written, and skips as many hits of that time and id as were written, see {@link
+ * ExportLane}.
+ */
+final class ScrollPipeline {
+
+  private static final Logger LOGGER = LogManager.getLogger(ScrollPipeline.class);
+  private static ExecutorService sharedExecutor;
+
+  private final ElasticsearchAsyncClient asyncClient;
+  private final Executor executor;
+  private final int bufferedPages;
+  private final PageWriter writer;
+  private CompletableFuture<Void> lastWrite = CompletableFuture.completedFuture(null);
+  private volatile Throwable failure;
+  private Consumer<String> pitIdHandler = pitId -> {};
+
+  ScrollPipeline(
+      ElasticsearchAsyncClient asyncClient,
+      Executor executor,
+      int bufferedPages,
+      PageWriter writer) {
+    this.asyncClient = asyncClient;
+    this.executor = executor;
+    this.bufferedPages = Math.max(bufferedPages, 1);
+    this.writer = writer;
+  }
+
+  /**
+   * executor shared by all scroll exports in a JVM, created on first use.
+   *
+   * @param poolSize number of threads
+   * @return ExecutorService
+   */
+  static synchronized ExecutorService sharedExecutor(int poolSize) {
+    if (sharedExecutor == null) {
+      AtomicInteger threadCount = new AtomicInteger();
+      sharedExecutor =
+          Executors.newFixedThreadPool(
+              poolSize,
+              runnable -> {
+                Thread thread =
+                    new Thread(runnable, "rs-scroll-export-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+              });
+      LOGGER.info("scroll export executor created with {} threads", poolSize);
+    }
+    return sharedExecutor;
+  }
+
+  /** handler of the point-in-time id of every page, to search the next pages with. */
+  ScrollPipeline pitIdHandler(Consumer<String> pitIdHandler) {
+    this.pitIdHandler = pitIdHandler;
+    return this;
+  }
+
+  /**
+   * page through all hits of the lanes of an export, each lane concurrently. Completes once every
+   * page is written.
+   *
+   * @param lanes lanes of export, a lane continues after the last hit written
+   * @param requestForLane search request of a lane for the page after given sort values, sorted
+   *     on unique values
+   * @return CompletableFuture
+   */
+  CompletableFuture<Void> run(
+      List<ExportLane> lanes,
+      BiFunction<ExportLane, List<FieldValue>, SearchRequest> requestForLane) {
+    CompletableFuture<?>[] fetched =
+        lanes.stream()
+            .map(lane -> new Lane(lane, requestForLane).start())
+            .toArray(CompletableFuture[]::new);
+
+    CompletableFuture<Void> done = new CompletableFuture<>();
+    CompletableFuture.allOf(fetched)
+        .whenComplete(
+            (fetchResult, fetchFailure) ->
+                getLastWrite()
+                    .whenComplete(
+                        (writeResult, writeFailure) -> {
+                          Throwable cause = fetchFailure != null ? fetchFailure : writeFailure;
+                          if (cause != null) {
+                            done.completeExceptionally(cause);
+                          } else {
+                            done.complete(null);
+                          }
+                        }));
+    return done;
+  }
+
+  private synchronized CompletableFuture<Void> getLastWrite() {
+    return lastWrite;
+  }
+
+  /* pages of all lanes share a single chain of writes, so that only one is written at a time */
+  private synchronized CompletableFuture<Void> enqueueWrite(
+      ExportLane lane, List<Hit<ObjectNode>> hits) {
+    lastWrite = lastWrite.thenRunAsync(() -> writer.write(lane, hits), executor);
+    lastWrite.whenComplete(
+        (result, exception) -> {
+          if (exception != null) {
+            failure = exception;
+          }
+        });
+    return lastWrite;
+  }
+
+  /** pages of a single lane. */
+  private final class Lane {
+
+    private final ExportLane exportLane;
+    private final BiFunction<ExportLane, List<FieldValue>, SearchRequest> requestForLane;
+    private final Deque<CompletableFuture<Void>> pendingWrites = new ArrayDeque<>();
+    private List<FieldValue> after;
+    private long tiesToSkip;
+
+    Lane(
+        ExportLane exportLane,
+        BiFunction<ExportLane, List<FieldValue>, SearchRequest> requestForLane) {
+      this.exportLane = exportLane;
+      this.requestForLane = requestForLane;
+      this.after = exportLane.getResumeAfter();
+      this.tiesToSkip = exportLane.getTiesWritten();
+    }
+
+    CompletableFuture<Void> start() {
+      return fetch()
+          .whenComplete(
+              (result, exception) -> {
+                if (exception != null) {
+                  failure = exception;
+                }
+              });
+    }
+
+    private CompletableFuture<Void> fetch() {
+      SearchRequest searchRequest = requestForLane.apply(exportLane, after);
+      return asyncClient
+          .search(searchRequest, ObjectNode.class)
+          .thenCompose(
+              response -> {
+                if (response.pitId() != null) {
+                  pitIdHandler.accept(response.pitId());
+                }
+                return onPage(response.hits().hits(), searchRequest.size());
+              });
+    }
+
+    private CompletableFuture<Void> onPage(List<Hit<ObjectNode>> hits, Integer pageSize) {
+      if (hits.isEmpty()) {
+        return CompletableFuture.completedFuture(null);
+      }
+      if (failure != null) {
+        // another lane or the writer has failed, no point in fetching further
+        return CompletableFuture.failedFuture(failure);
+      }
+      List<Hit<ObjectNode>> unwritten = skipWrittenTies(hits);
+      if (!unwritten.isEmpty()) {
+        pendingWrites.addLast(enqueueWrite(exportLane, unwritten));
+      }
+      if (pageSize != null && hits.size() < pageSize) {
+        LOGGER.debug("last page of lane fetched");
+        return CompletableFuture.completedFuture(null);
+      }
+      after = hits.get(hits.size() - 1).sort();
+      while (!pendingWrites.isEmpty() && pendingWrites.peekFirst().isDone()) {
+        pendingWrites.removeFirst();
+      }
+      CompletableFuture<Void> writerCaughtUp = CompletableFuture.completedFuture(null);
+      while (pendingWrites.size() > bufferedPages) {
+        writerCaughtUp = pendingWrites.removeFirst();
+      }
+      return writerCaughtUp.thenCompose(ignored -> fetch());
+    }
+
+    /* hits of a resumed lane after the ones of the last time and id already written */
+    private List<Hit<ObjectNode>> skipWrittenTies(List<Hit<ObjectNode>> hits) {
+      int skipped = 0;
+      while (tiesToSkip > 0
+          && skipped < hits.size()
+          && exportLane.isTie(hits.get(skipped).sort())) {
+        tiesToSkip--;
+        skipped++;
+      }
+      if (skipped < hits.size()) {
+        tiesToSkip = 0;
+      }
+      return hits.subList(skipped, hits.size());
+    }
+  }
+
+  /** writes pages of an export, called for one page at a time. */
+  @FunctionalInterface
+  interface PageWriter {
+    void write(ExportLane lane, List<Hit<ObjectNode>> hits);
+  }
+}
@@ -0,0 +1,96 @@
+package iudx.resource.server.database.elastic;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.common.ResponseUrn;
+import iudx.resource.server.database.elastic.exception.EsQueryException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Opaque pagination cursor handed out to clients as <i>next</i>. It carries the point-in-time id
+ * and the sort values of the last hit served, so the following page can be fetched with
+ * <i>search_after</i> instead of an ever growing <i>from</i>.
+ */
+public final class SearchCursor {
+
+  public static final String NEW_CURSOR = "*";
+  private static final String PIT_KEY = "pit";
+  private static final String SEARCH_AFTER_KEY = "after";
+
+  private final String pitId;
+  private final List<FieldValue> searchAfter;
+
+  public SearchCursor(String pitId, List<FieldValue> searchAfter) {
+    this.pitId = pitId;
+    this.searchAfter = searchAfter == null ? Collections.emptyList() : searchAfter;
+  }
+
+  public String getPitId() {
+    return pitId;
+  }
+
+  public List<FieldValue> getSearchAfter() {
+    return searchAfter;
+  }
+
+  /** url-safe base64 encoding of the cursor, returned to the client as-is. */
+  public String encode() {
+    JsonArray after = new JsonArray();
+    for (FieldValue value : searchAfter) {
+      after.add(value.isNull() ? null : value._get());
+    }
+    JsonObject json = new JsonObject().put(PIT_KEY, pitId).put(SEARCH_AFTER_KEY, after);
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(json.encode().getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * decode a cursor token received from client.
+   *
+   * @param token token returned as <i>next</i> in an earlier response
+   * @return SearchCursor
+   * @throws EsQueryException if token is not a cursor issued by this server
+   */
+  public static SearchCursor decode(String token) {
+    try {
+      String decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+      JsonObject json = new JsonObject(decoded);
+      String pitId = json.getString(PIT_KEY);
+      JsonArray after = json.getJsonArray(SEARCH_AFTER_KEY);
+      if (pitId == null || pitId.isBlank() || after == null) {
+        throw new IllegalArgumentException("incomplete cursor");
+      }
+      List<FieldValue> searchAfter = new ArrayList<>(after.size());
+      for (Object value : after) {
+        searchAfter.add(toFieldValue(value));
+      }
+      return new SearchCursor(pitId, searchAfter);
+    } catch (Exception ex) {
+      throw new EsQueryException(ResponseUrn.INVALID_PARAM_VALUE_URN, "Invalid cursor");
+    }
+  }
+
+  public static boolean isNewCursor(String token) {
+    return NEW_CURSOR.equals(token);
+  }
+
+  static FieldValue toFieldValue(Object value) {
+    if (value == null) {
+      return FieldValue.NULL;
+    } else if (value instanceof Integer || value instanceof Long) {
+      return FieldValue.of(((Number) value).longValue());
+    } else if (value instanceof Number) {
+      return FieldValue.of(((Number) value).doubleValue());
+    } else if (value instanceof Boolean) {
+      return FieldValue.of((Boolean) value);
+    } else {
+      return FieldValue.of(value.toString());
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package iudx.resource.server.database.elastic;
+
+import static iudx.resource.server.database.archives.Constants.*;
+
+import io.vertx.core.json.JsonObject;
+import iudx.resource.server.database.elastic.exception.EsQueryException;
+import java.time.OffsetDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+
+/**
+ * observationDateTime range a query is restricted to. A <i>null</i> start or end means the range
+ * is open on that side.
+ */
+public final class TemporalWindow {
+
+  public static final TemporalWindow UNBOUNDED = new TemporalWindow(null, null);
+
+  private final String start;
+  private final String end;
+
+  private TemporalWindow(String start, String end) {
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * window for a request carrying timerel/time/endtime.
+   *
+   * @param requestQuery request json
+   * @param defaultDateLimit days used to close before/after queries
+   * @return TemporalWindow
+   */
+  public static TemporalWindow forRelation(JsonObject requestQuery, int defaultDateLimit) {
+    String queryRequestTimeRelation = requestQuery.getString(REQ_TIMEREL);
+    String queryRequestStartTime = requestQuery.getString(TIME_KEY);
+    String queryRequestEndTime = requestQuery.getString(END_TIME);
+
+    ZonedDateTime startDateTime = getZonedDateTime(queryRequestStartTime);
+    ZonedDateTime endDateTime =
+        (queryRequestEndTime != null) ? getZonedDateTime(queryRequestEndTime) : null;
+
+    if (DURING.equalsIgnoreCase(queryRequestTimeRelation)
+        || BETWEEN.equalsIgnoreCase(queryRequestTimeRelation)) {
+      validateTemporalPeriod(startDateTime, endDateTime);
+    } else if (BEFORE.equalsIgnoreCase(queryRequestTimeRelation)) {
+      queryRequestStartTime = startDateTime.minusDays(defaultDateLimit).toString();
+      queryRequestEndTime = startDateTime.toString();
+    } else if (AFTER.equalsIgnoreCase(queryRequestTimeRelation)) {
+      queryRequestStartTime = startDateTime.toString();
+      queryRequestEndTime = getEndDateForAfterQuery(startDateTime, defaultDateLimit);
+    } else {
+      throw new EsQueryException("exception while parsing date/time");
+    }
+    return new TemporalWindow(queryRequestStartTime, queryRequestEndTime);
+  }
+
+  /**
+   * default window applied to non temporal queries on temporal resources.
+   *
+   * @param timeLimitConfig timeLimit config as <i>deploymentType,devDate,days</i>
+   * @param defaultDateLimit days to look back
+   * @return TemporalWindow
+   */
+  public static TemporalWindow forDefault(String[] timeLimitConfig, int defaultDateLimit) {
+    String deploymentType = timeLimitConfig[0];
+    if (PROD_INSTANCE.equalsIgnoreCase(deploymentType)) {
+      OffsetDateTime startTime = OffsetDateTime.now().minusDays(defaultDateLimit);
+      return new TemporalWindow(startTime.toString(), null);
+    } else if (TEST_INSTANCE.equalsIgnoreCase(deploymentType)) {
+      ZonedDateTime endTime = getZonedDateTime(timeLimitConfig[1]);
+      ZonedDateTime startTime = endTime.minusDays(defaultDateLimit);
+      return new TemporalWindow(startTime.toString(), endTime.toString());
+    } else {
+      throw new EsQueryException("invalid timeLimit config passed");
+    }
+  }
+
+  public String getStart() {
+    return start;
+  }
+
+  public String getEnd() {
+    return end;
+  }
+
+  /** start of window, <i>null</i> if window is open at start. */
+  public ZonedDateTime getStartDateTime() {
+    return start != null ? getZonedDateTime(start) : null;
+  }
+
+  /** end of window, <i>null</i> if window is open at end. */
+  public ZonedDateTime getEndDateTime() {
+    return end != null ? getZonedDateTime(end) : null;
+  }
+
+  /** true if window is closed and ends before given instant. */
+  public boolean endsBefore(ZonedDateTime instant) {
+    return end != null && getZonedDateTime(end).isBefore(instant);
+  }
+
+  private static String getEndDateForAfterQuery(ZonedDateTime startDateTime, int days) {
+    ZonedDateTime endDateTime;
+    endDateTime = startDateTime.plusDays(days);
+    ZonedDateTime now = ZonedDateTime.now();
+    long difference = endDateTime.compareTo(now);
+    if (difference > 0) {
+      return now.toString();
+    } else {
+      return endDateTime.toString();
+    }
+  }
+
+  private static void validateTemporalPeriod(
+      ZonedDateTime startDateTime, ZonedDateTime endDateTime) {
+    if (endDateTime == null) {
+      throw new EsQueryException("No endDate[required mandatory field] provided for query");
+    }
+
+    if (startDateTime.isAfter(endDateTime)) {
+      throw new EsQueryException("end date is before start date");
+    }
+  }
+
+  private static ZonedDateTime getZonedDateTime(String time) {
+    try {
+      return ZonedDateTime.parse(time);
+    } catch (DateTimeParseException e) {
+      throw new EsQueryException("exception while parsing date/time");
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "TemporalWindow [start=" + start + ", end=" + end + "]";
+  }
+}
@@ -0,0 +1,121 @@
+package iudx.resource.server.database.elastic;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Writes a thrift struct in the compact protocol, as used by Parquet page headers and file
+ * footer. Only the field types Parquet metadata needs are supported.
+ */
+final class ThriftCompactWriter {
+
+  static final byte TYPE_I32 = 5;
+  static final byte TYPE_I64 = 6;
+  static final byte TYPE_BINARY = 8;
+  static final byte TYPE_LIST = 9;
+  static final byte TYPE_STRUCT = 12;
+
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+  private final Deque<Integer> parentFieldIds = new ArrayDeque<>();
+  private int lastFieldId;
+
+  ThriftCompactWriter i32(int fieldId, int value) {
+    fieldHeader(fieldId, TYPE_I32);
+    writeVarint(zigzag(value));
+    return this;
+  }
+
+  ThriftCompactWriter i64(int fieldId, long value) {
+    fieldHeader(fieldId, TYPE_I64);
+    writeVarint(zigzag(value));
+    return this;
+  }
+
+  ThriftCompactWriter string(int fieldId, String value) {
+    fieldHeader(fieldId, TYPE_BINARY);
+    writeString(value);
+    return this;
+  }
+
+  /** starts a struct field, ended by {@link #structEnd()}. */
+  ThriftCompactWriter structBegin(int fieldId) {
+    fieldHeader(fieldId, TYPE_STRUCT);
+    return listStruct();
+  }
+
+  ThriftCompactWriter structEnd() {
+    out.write(0);
+    lastFieldId = parentFieldIds.pop();
+    return this;
+  }
+
+  /** starts a list field, followed by <i>size</i> list elements. */
+  ThriftCompactWriter listBegin(int fieldId, byte elementType, int size) {
+    fieldHeader(fieldId, TYPE_LIST);
+    if (size < 15) {
+      out.write((size << 4) | elementType);
+    } else {
+      out.write(0xf0 | elementType);
+      writeVarint(size);
+    }
+    return this;
+  }
+
+  /** starts a struct element of a list, ended by {@link #structEnd()}. */
+  ThriftCompactWriter listStruct() {
+    parentFieldIds.push(lastFieldId);
+    lastFieldId = 0;
+    return this;
+  }
+
+  ThriftCompactWriter listI32(int value) {
+    writeVarint(zigzag(value));
+    return this;
+  }
+
+  ThriftCompactWriter listString(String value) {
+    writeString(value);
+    return this;
+  }
+
+  /** ends the top level struct. */
+  byte[] toByteArray() {
+    out.write(0);
+    return out.toByteArray();
+  }
+
+  private void fieldHeader(int fieldId, byte type) {
+    int delta = fieldId - lastFieldId;
+    if (delta > 0 && delta <= 15) {
+      out.write((delta << 4) | type);
+    } else {
+      out.write(type);
+      writeVarint(zigzag(fieldId));
+    }
+    lastFieldId = fieldId;
+  }
+
+  private void writeString(String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    writeVarint(bytes.length);
+    out.write(bytes, 0, bytes.length);
+  }
+
+  private void writeVarint(long value) {
+    while ((value & ~0x7fL) != 0) {
+      out.write((int) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  private static long zigzag(int value) {
+    return Integer.toUnsignedLong((value << 1) ^ (value >> 31));
+  }
+
+  private static long zigzag(long value) {
+    return (value << 1) ^ (value >> 63);
+  }
+}
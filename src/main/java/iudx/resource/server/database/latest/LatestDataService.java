@@ -47,4 +47,15 @@ public interface LatestDataService {
    */
   @Fluent
   LatestDataService getLatestData(JsonObject request, Handler<AsyncResult<JsonObject>> handler);
+
+  /**
+   * The getLatestDataEncoded retrieves the latest data as an encoded response, the data isn't
+   * parsed on its way from Redis.
+   *
+   * @param request which is a JsonObject
+   * @param handler which is a Request Handler
+   * @return LatestDataService which is a Service
+   */
+  @Fluent
+  LatestDataService getLatestDataEncoded(JsonObject request, Handler<AsyncResult<String>> handler);
 }
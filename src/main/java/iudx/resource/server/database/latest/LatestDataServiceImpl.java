@@ -1,8 +1,10 @@
 package iudx.resource.server.database.latest;
 
+import static iudx.resource.server.common.Constants.GROUP_RESOURCES;
 import static iudx.resource.server.database.archives.Constants.*;
 
 import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Promise;
@@ -11,6 +13,10 @@ import io.vertx.core.json.JsonObject;
 import iudx.resource.server.cache.CacheService;
 import iudx.resource.server.cache.cachelmpl.CacheType;
 import iudx.resource.server.database.archives.ResponseBuilder;
+import iudx.resource.server.database.elastic.QueryPlan;
+import iudx.resource.server.database.elastic.exception.EsQueryException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -36,12 +42,30 @@ public class LatestDataServiceImpl implements LatestDataService {
   private String tenantPrefix;
   // private RedisAPI redisAPI;
   private RedisCommandArgsBuilder redisCmdBuilder = new RedisCommandArgsBuilder();
+  private final LatestNearCache nearCache;
 
   public LatestDataServiceImpl(
       RedisClient client, final CacheService cacheService, String tenantPrefix) {
+    this(client, cacheService, tenantPrefix, null);
+  }
+
+  /**
+   * LatestData service reading values through a near-cache.
+   *
+   * @param client Redis client
+   * @param cacheService cache service
+   * @param tenantPrefix namespace of Redis keys
+   * @param nearCache near-cache of latest values, <i>null</i> to read all values from Redis
+   */
+  public LatestDataServiceImpl(
+      RedisClient client,
+      final CacheService cacheService,
+      String tenantPrefix,
+      LatestNearCache nearCache) {
     this.redisClient = client;
     this.cache = cacheService;
     this.tenantPrefix = tenantPrefix;
+    this.nearCache = nearCache;
   }
 
   /**
@@ -54,6 +78,56 @@ public class LatestDataServiceImpl implements LatestDataService {
   @Override
   public LatestDataService getLatestData(
       JsonObject request, Handler<AsyncResult<JsonObject>> handler) {
+    getLatestResults(request)
+        .map(
+            results -> {
+              responseBuilder =
+                  new ResponseBuilder(SUCCESS)
+                      .setTypeAndTitle(200)
+                      .setMessage(new JsonArray(results));
+              return responseBuilder.getResponse();
+            })
+        .onComplete(handler);
+    return this;
+  }
+
+  /**
+   * Performs a Latest search query using the Redis JReJSON client, the values are spliced into
+   * the response as they are stored in Redis.
+   *
+   * @param request Json object received from the ApiServerVerticle
+   * @param handler Handler to return encoded redis response in case of success and appropriate
+   *     error message in case of failure
+   */
+  @Override
+  public LatestDataService getLatestDataEncoded(
+      JsonObject request, Handler<AsyncResult<String>> handler) {
+    getLatestResults(request)
+        .map(
+            results -> {
+              String head =
+                  new ResponseBuilder(SUCCESS).setTypeAndTitle(200).getResponse().encode();
+              // results take the place of the closing brace of the response
+              return new StringBuilder(head.length() + results.length() + RESULTS.length() + 5)
+                  .append(head, 0, head.length() - 1)
+                  .append(",\"")
+                  .append(RESULTS)
+                  .append("\":")
+                  .append(results)
+                  .append('}')
+                  .toString();
+            })
+        .onComplete(handler);
+    return this;
+  }
+
+  /**
+   * latest values of the ids of a request.
+   *
+   * @param request Json object received from the ApiServerVerticle
+   * @return values as an encoded JSON array
+   */
+  private Future<String> getLatestResults(JsonObject request) {
 
     request.put(ATTRIBUTE_LIST, attributeList);
 
@@ -61,66 +135,255 @@ public class LatestDataServiceImpl implements LatestDataService {
     if (!request.containsKey(ID)) {
       LOGGER.debug("Info: " + ID_NOT_FOUND);
       responseBuilder = new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(ID_NOT_FOUND);
-      handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
-      return null;
+      return Future.failedFuture(responseBuilder.getResponse().toString());
     }
 
     if (request.getJsonArray(ID).isEmpty()) {
       LOGGER.debug("Info: " + EMPTY_RESOURCE_ID);
       responseBuilder =
           new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(EMPTY_RESOURCE_ID);
-      handler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
-      return null;
+      return Future.failedFuture(responseBuilder.getResponse().toString());
+    }
+
+    List<String> attrs;
+    try {
+      attrs =
+          QueryPlan.forSearchType(request.getString(SEARCH_TYPE, LATEST_SEARCH))
+              .getResponseAttrs(request);
+    } catch (EsQueryException e) {
+      LOGGER.debug("Info: " + e.getMessage());
+      responseBuilder =
+          new ResponseBuilder(FAILED).setTypeAndTitle(400).setMessage(e.getMessage());
+      return Future.failedFuture(responseBuilder.getResponse().toString());
     }
-    String id = request.getJsonArray(ID).getString(0);
-
-    isUniqueAttrRecordExist(id)
-        .onComplete(
-            uaHandler -> {
-              if (uaHandler.succeeded()) {
-                LOGGER.debug("unique_attribute for id :" + id + " is :" + uaHandler.result());
-                getLatestValue(id, true, handler);
-              } else {
-                getLatestValue(id, false, handler);
+
+    if (nearCache != null && attrs.isEmpty() && request.getJsonArray(ID).size() == 1) {
+      String values = nearCache.get(request.getJsonArray(ID).getString(0));
+      if (values != null) {
+        return Future.succeededFuture(values);
+      }
+    }
+
+    return resolveIds(request.getJsonArray(ID))
+        .compose(
+            ids -> {
+              if (ids.size() > 1 || !attrs.isEmpty()) {
+                return getLatestValues(ids, attrs);
               }
+              String id = ids.get(0);
+              return isUniqueAttrRecordExist(id)
+                  .map(
+                      uniqueAttr -> {
+                        LOGGER.debug("unique_attribute for id :" + id + " is :" + uniqueAttr);
+                        return true;
+                      })
+                  .otherwise(false)
+                  .compose(isUniqueAttrRecordExist -> getLatestValue(id, isUniqueAttrRecordExist));
             });
-    return this;
   }
 
-  private JsonArray extractValues(String key, JsonObject result, boolean groupSnapshot) {
+  /**
+   * ids to get latest values of, a single resource group is resolved to its resources.
+   *
+   * @param requestIds ids of request
+   * @return ids of resources, or of request if not a group
+   */
+  private Future<List<String>> resolveIds(JsonArray requestIds) {
+    List<String> ids =
+        requestIds.stream().map(Object::toString).distinct().collect(Collectors.toList());
+    if (ids.size() > 1) {
+      return Future.succeededFuture(ids);
+    }
+    JsonObject cacheRequest = new JsonObject();
+    cacheRequest.put("type", CacheType.CATALOGUE_CACHE);
+    cacheRequest.put("key", ids.get(0));
+    return cache
+        .get(cacheRequest)
+        .map(
+            item -> {
+              JsonArray resources = item.getJsonArray(GROUP_RESOURCES);
+              if (resources == null || resources.isEmpty()) {
+                return ids;
+              }
+              LOGGER.debug("group {} has {} resources", ids.get(0), resources.size());
+              return resources.stream().map(Object::toString).collect(Collectors.toList());
+            })
+        .otherwise(ids);
+  }
+
+  /**
+   * latest values of a key as an encoded JSON array, a single value is spliced in without parsing
+   * it.
+   */
+  private String encodeValues(String key, String result, boolean groupSnapshot) {
     if (groupSnapshot) {
-      result.remove(key);
-      return new JsonArray(result.stream().map(e -> e.getValue()).collect(Collectors.toList()));
+      JsonObject values = new JsonObject(result);
+      values.remove(key);
+      return new JsonArray(values.stream().map(e -> e.getValue()).collect(Collectors.toList()))
+          .encode();
     }
-    return new JsonArray().add(result);
+    return "[" + result + "]";
   }
 
-  private void getLatestValue(
-      final String id,
-      final boolean isUniqueAttrRecordExist,
-      Handler<AsyncResult<JsonObject>> handler) {
+  /** values projected to some attributes, as temporal responses are filtered to attrs. */
+  private static String projectValues(String values, List<String> attrs) {
+    JsonArray projected = new JsonArray();
+    new JsonArray(values)
+        .forEach(
+            value -> {
+              JsonObject record = new JsonObject();
+              attrs.stream()
+                  .filter(((JsonObject) value)::containsKey)
+                  .forEach(attr -> record.put(attr, ((JsonObject) value).getValue(attr)));
+              projected.add(record);
+            });
+    return projected.encode();
+  }
+
+  /** value of attributes got with a JSONPath each, an attribute matching nothing is left out. */
+  private static String projectPaths(RedisArgs args, String result, List<String> attrs) {
+    List<String> paths = args.getPaths();
+    // matches of a single JSONPath are replied as they are, of a number of them by path
+    JsonObject matchesByPath =
+        paths.size() == 1
+            ? new JsonObject().put(paths.get(0), new JsonArray(result))
+            : new JsonObject(result);
+    JsonObject value = new JsonObject();
+    for (int i = 0; i < attrs.size(); i++) {
+      JsonArray matches = matchesByPath.getJsonArray(paths.get(i));
+      if (matches != null && !matches.isEmpty()) {
+        value.put(attrs.get(i), matches.getValue(0));
+      }
+    }
+    return new JsonArray().add(value).encode();
+  }
+
+  /** encoded JSON arrays of values joined in a single array, without parsing them. */
+  private static String joinValues(String[] values) {
+    StringBuilder results = new StringBuilder("[");
+    for (String idValues : values) {
+      // an empty array is encoded as []
+      if (idValues == null || idValues.length() <= 2) {
+        continue;
+      }
+      if (results.length() > 1) {
+        results.append(',');
+      }
+      results.append(idValues, 1, idValues.length() - 1);
+    }
+    return results.append(']').toString();
+  }
+
+  private Future<String> getLatestValue(final String id, final boolean isUniqueAttrRecordExist) {
 
     RedisArgs args =
         redisCmdBuilder.getRedisCommandArgs(id, isUniqueAttrRecordExist, this.tenantPrefix);
 
     LOGGER.debug("key : " + args.getKey() + " path : " + args.getPath());
-    JsonArray response = new JsonArray();
-    redisClient.searchAsync(
-        args.getKey(),
-        args.getPath(),
-        searchRes -> {
-          if (searchRes.succeeded()) {
-            LOGGER.debug("Success: Successful Redis request");
-            response.addAll(
-                extractValues(args.getKey(), searchRes.result(), isUniqueAttrRecordExist));
-            responseBuilder =
-                new ResponseBuilder(SUCCESS).setTypeAndTitle(200).setMessage(response);
-            handler.handle(Future.succeededFuture(responseBuilder.getResponse()));
-          } else {
-            LOGGER.error("Fail: Redis Cache Request;" + searchRes.cause().getMessage());
-            handler.handle(Future.failedFuture(searchRes.cause().getMessage()));
-          }
-        });
+    long stamp = stamp();
+    return redisClient
+        .searchEncoded(args.getKey(), args.getPath())
+        .map(
+            result -> {
+              LOGGER.debug("Success: Successful Redis request");
+              String values = encodeValues(args.getKey(), result, isUniqueAttrRecordExist);
+              cacheValues(id, values, stamp);
+              return values;
+            })
+        .onFailure(
+            failure -> LOGGER.error("Fail: Redis Cache Request;" + failure.getMessage()));
+  }
+
+  /**
+   * latest values of a number of ids, got with pipelined JSON.MGET batches for the ids not in the
+   * near-cache. Values projected to some attributes are got with a JSON.GET of their paths for
+   * each id instead, pipelined as well.
+   *
+   * @param ids ids of resources
+   * @param attrs attributes to project values to, all if empty
+   * @return values of all ids as a single encoded JSON array
+   */
+  private Future<String> getLatestValues(List<String> ids, List<String> attrs) {
+    String[] values = new String[ids.size()];
+    List<Integer> misses = new ArrayList<>();
+    List<Future> uniqueAttrFutures = new ArrayList<>();
+    for (int i = 0; i < ids.size(); i++) {
+      values[i] = nearCache == null ? null : nearCache.get(ids.get(i));
+      if (values[i] != null && !attrs.isEmpty()) {
+        values[i] = projectValues(values[i], attrs);
+      }
+      if (values[i] == null) {
+        misses.add(i);
+        uniqueAttrFutures.add(isUniqueAttrRecordExist(ids.get(i)).map(true).otherwise(false));
+      }
+    }
+    return CompositeFuture.all(uniqueAttrFutures)
+        .compose(
+            uniqueAttrs -> {
+              List<RedisArgs> args = new ArrayList<>();
+              for (int j = 0; j < misses.size(); j++) {
+                args.add(
+                    redisCmdBuilder.getRedisCommandArgs(
+                        ids.get(misses.get(j)),
+                        uniqueAttrs.resultAt(j),
+                        this.tenantPrefix,
+                        attrs));
+              }
+              long stamp = stamp();
+              return (attrs.isEmpty() ? redisClient.mget(args) : redisClient.getPaths(args))
+                  .map(
+                      results -> {
+                        for (int j = 0; j < results.size(); j++) {
+                          if (results.get(j) == null) {
+                            continue;
+                          }
+                          int i = misses.get(j);
+                          boolean isUniqueAttr = uniqueAttrs.resultAt(j);
+                          if (!attrs.isEmpty() && !isUniqueAttr) {
+                            values[i] = projectPaths(args.get(j), results.get(j), attrs);
+                            continue;
+                          }
+                          // snapshots are got whole, cached and then projected
+                          values[i] =
+                              encodeValues(args.get(j).getKey(), results.get(j), isUniqueAttr);
+                          cacheValues(ids.get(i), values[i], stamp);
+                          if (!attrs.isEmpty()) {
+                            values[i] = projectValues(values[i], attrs);
+                          }
+                        }
+                        return joinValues(values);
+                      });
+            })
+        .recover(
+            failure -> {
+              LOGGER.error("Fail: Redis Cache Request;" + failure.getMessage());
+              responseBuilder =
+                  new ResponseBuilder(FAILED)
+                      .setTypeAndTitle(204)
+                      .setMessage(failure.getLocalizedMessage());
+              return Future.failedFuture(responseBuilder.getResponse().toString());
+            })
+        .compose(
+            results -> {
+              if (results.length() == 2) {
+                LOGGER.error("Fail: Redis Cache Request; keys of {} ids not found", ids.size());
+                responseBuilder =
+                    new ResponseBuilder(FAILED).setTypeAndTitle(204).setMessage(ID_NOT_PRESENT);
+                return Future.failedFuture(responseBuilder.getResponse().toString());
+              }
+              LOGGER.debug("Success: Successful Redis request for {} ids", ids.size());
+              return Future.succeededFuture(results);
+            });
+  }
+
+  private long stamp() {
+    return nearCache == null ? 0 : nearCache.stamp();
+  }
+
+  private void cacheValues(String id, String values, long stamp) {
+    if (nearCache != null) {
+      nearCache.put(id, values, stamp);
+    }
   }
 
   public Future<JsonObject> isUniqueAttrRecordExist(String id) {
@@ -0,0 +1,161 @@
+package iudx.resource.server.database.latest;
+
+import static iudx.resource.server.database.archives.Constants.NEAR_CACHE_UPDATE_GRACE_MS;
+import static iudx.resource.server.database.archives.Constants.NEAR_CACHE_UPDATED_IDS;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import io.vertx.core.Handler;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Near-cache of the latest values of resources, held in memory by a latest verticle.
+ *
+ * <p>Values are cached by resource id as encoded JSON arrays, so they can be spliced into a
+ * response as they are, bounded by their length. They are invalidated when an update of the
+ * resource is published to the broker, and expire after a time to live in case an update is
+ * missed. Values read in a short grace period after an update aren't cached, as the update may not
+ * be written to Redis yet.
+ *
+ * <p>Values of a resource are cached only once it is watched for updates, see {@link
+ * #watchHandler(Handler)}. The first value read asks for the resource to be watched and is
+ * dropped, as are values read before the watch was confirmed with {@link #watched(String)}, since
+ * an update published meanwhile wouldn't be received. Reads are ordered against confirmations
+ * with the stamp taken by {@link #stamp()} before a read.
+ */
+public final class LatestNearCache {
+
+  private final Cache<String, String> cache;
+  private final Cache<String, Boolean> updatedIds;
+  // stamps of the confirmation of the resources watched
+  private final Map<String, Long> watchedIds = new ConcurrentHashMap<>();
+  private final AtomicLong stamps = new AtomicLong();
+  private Handler<String> watchHandler = id -> {};
+  private Handler<String> unwatchHandler = id -> {};
+
+  /**
+   * near-cache of latest values.
+   *
+   * @param maxWeight max length of the encoded values cached
+   * @param ttlSeconds time a value is cached for
+   */
+  public LatestNearCache(long maxWeight, long ttlSeconds) {
+    this.cache =
+        CacheBuilder.newBuilder()
+            // used on the context of a verticle, a single segment holds the whole weight
+            .concurrencyLevel(1)
+            .maximumWeight(maxWeight)
+            .<String, String>weigher((id, values) -> id.length() + values.length())
+            .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+            .removalListener(
+                removal -> {
+                  if (removal.getCause() == RemovalCause.SIZE
+                      || removal.getCause() == RemovalCause.EXPIRED) {
+                    watchedIds.remove(removal.getKey());
+                    unwatchHandler.handle(removal.getKey());
+                  }
+                })
+            .build();
+    this.updatedIds =
+        CacheBuilder.newBuilder()
+            .maximumSize(NEAR_CACHE_UPDATED_IDS)
+            .expireAfterWrite(NEAR_CACHE_UPDATE_GRACE_MS, TimeUnit.MILLISECONDS)
+            .build();
+  }
+
+  /**
+   * latest values of a resource.
+   *
+   * @param id id of resource
+   * @return values as an encoded JSON array, <i>null</i> if not cached
+   */
+  public String get(String id) {
+    return cache.getIfPresent(id);
+  }
+
+  /**
+   * stamp to take before reading values from Redis, to put them with.
+   *
+   * @return stamp
+   */
+  public long stamp() {
+    return stamps.incrementAndGet();
+  }
+
+  /**
+   * caches latest values of a resource read from Redis, if it was watched before they were read.
+   * The resource is asked to be watched if it isn't.
+   *
+   * @param id id of resource
+   * @param values values read, as an encoded JSON array
+   * @param stamp stamp taken before values were read
+   */
+  public void put(String id, String values, long stamp) {
+    Long watchedStamp = watchedIds.get(id);
+    if (watchedStamp == null) {
+      watchHandler.handle(id);
+      return;
+    }
+    if (watchedStamp > stamp || updatedIds.getIfPresent(id) != null) {
+      return;
+    }
+    cache.put(id, values);
+  }
+
+  /**
+   * confirms a resource is watched for updates, values read from now on are cached.
+   *
+   * @param id id of resource
+   */
+  public void watched(String id) {
+    watchedIds.put(id, stamps.incrementAndGet());
+  }
+
+  /**
+   * a resource isn't watched for updates anymore, its values aren't cached till it is again.
+   *
+   * @param id id of resource
+   */
+  public void unwatched(String id) {
+    watchedIds.remove(id);
+    cache.invalidate(id);
+  }
+
+  /**
+   * invalidates values of a resource on an update.
+   *
+   * @param id id of resource
+   * @return true if values of the resource were cached
+   */
+  public boolean invalidate(String id) {
+    updatedIds.put(id, Boolean.TRUE);
+    return cache.asMap().remove(id) != null;
+  }
+
+  /** invalidates all values and watches, updates may have been missed. */
+  public void invalidateAll() {
+    watchedIds.clear();
+    cache.invalidateAll();
+  }
+
+  /** handler of resources to be watched for updates, before their values are cached. */
+  public LatestNearCache watchHandler(Handler<String> watchHandler) {
+    this.watchHandler = watchHandler;
+    return this;
+  }
+
+  /** handler of resources evicted, they needn't be watched for updates anymore. */
+  public LatestNearCache unwatchHandler(Handler<String> unwatchHandler) {
+    this.unwatchHandler = unwatchHandler;
+    return this;
+  }
+
+  long size() {
+    cache.cleanUp();
+    return cache.size();
+  }
+}
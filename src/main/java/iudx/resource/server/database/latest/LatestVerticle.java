@@ -2,12 +2,17 @@ package iudx.resource.server.database.latest;
 
 import static iudx.resource.server.common.Constants.CACHE_SERVICE_ADDRESS;
 import static iudx.resource.server.common.Constants.LATEST_SERVICE_ADDRESS;
+import static iudx.resource.server.database.archives.Constants.DEFAULT_NEAR_CACHE_MAX_WEIGHT;
+import static iudx.resource.server.database.archives.Constants.DEFAULT_NEAR_CACHE_TTL_SECONDS;
 
 import io.vertx.core.AbstractVerticle;
 import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonObject;
+import io.vertx.rabbitmq.RabbitMQOptions;
 import io.vertx.serviceproxy.ServiceBinder;
 import iudx.resource.server.cache.CacheService;
+import iudx.resource.server.common.Vhosts;
+import iudx.resource.server.databroker.listeners.LatestUpdateListener;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -52,7 +57,9 @@ public class LatestVerticle extends AbstractVerticle {
               redisClient = handler;
               cacheService = CacheService.createProxy(vertx, CACHE_SERVICE_ADDRESS);
               binder = new ServiceBinder(vertx);
-              latestData = new LatestDataServiceImpl(redisClient, cacheService, tenantPrefix);
+              latestData =
+                  new LatestDataServiceImpl(
+                      redisClient, cacheService, tenantPrefix, createNearCache());
               consumer =
                   binder
                       .setAddress(LATEST_SERVICE_ADDRESS)
@@ -65,6 +72,40 @@ public class LatestVerticle extends AbstractVerticle {
             });
   }
 
+  /**
+   * near-cache of latest values, fed by updates published by adaptors, if configured.
+   *
+   * @return near-cache, <i>null</i> if not configured
+   */
+  private LatestNearCache createNearCache() {
+    JsonObject nearCacheConfig = config().getJsonObject("nearCache");
+    if (nearCacheConfig == null) {
+      return null;
+    }
+    LatestNearCache nearCache =
+        new LatestNearCache(
+            nearCacheConfig.getLong("maxWeight", DEFAULT_NEAR_CACHE_MAX_WEIGHT),
+            nearCacheConfig.getLong("ttlSeconds", DEFAULT_NEAR_CACHE_TTL_SECONDS));
+    RabbitMQOptions brokerConfig =
+        new RabbitMQOptions()
+            .setUser(nearCacheConfig.getString("dataBrokerUserName"))
+            .setPassword(nearCacheConfig.getString("dataBrokerPassword"))
+            .setHost(nearCacheConfig.getString("dataBrokerIP"))
+            .setPort(nearCacheConfig.getInteger("dataBrokerPort"))
+            .setAutomaticRecoveryEnabled(false)
+            .setReconnectAttempts(Integer.MAX_VALUE)
+            .setReconnectInterval(nearCacheConfig.getLong("networkRecoveryInterval", 500L));
+    new LatestUpdateListener(
+            vertx,
+            brokerConfig,
+            nearCacheConfig.getString(Vhosts.IUDX_PROD.value),
+            cacheService,
+            nearCache)
+        .start();
+    LOGGER.info("near-cache of latest values enabled");
+    return nearCache;
+  }
+
   @Override
   public void stop() {
     if (redisClient != null) {
@@ -1,9 +1,12 @@
 package iudx.resource.server.database.latest;
 
+import java.util.List;
+
 public class RedisArgs {
 
   private String key;
   private String path;
+  private List<String> paths;
 
   public String getKey() {
     return key;
@@ -20,4 +23,14 @@ public class RedisArgs {
   public void setPath(String path) {
     this.path = path;
   }
+
+  /** paths got at once with a single JSON.GET, the path if a single one is set. */
+  public List<String> getPaths() {
+    return paths == null ? List.of(path) : paths;
+  }
+
+  public void setPaths(List<String> paths) {
+    this.paths = paths;
+    this.path = paths.get(0);
+  }
 }
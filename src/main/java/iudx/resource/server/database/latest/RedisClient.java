@@ -1,20 +1,30 @@
 package iudx.resource.server.database.latest;
 
 import static iudx.resource.server.database.archives.Constants.FAILED;
+import static iudx.resource.server.database.archives.Constants.MGET_BATCH_SIZE;
 
 import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.backends.BackendRegistries;
 import io.vertx.redis.client.Command;
 import io.vertx.redis.client.Redis;
 import io.vertx.redis.client.RedisAPI;
 import io.vertx.redis.client.RedisClientType;
 import io.vertx.redis.client.RedisOptions;
 import io.vertx.redis.client.RedisReplicas;
+import io.vertx.redis.client.Response;
 import iudx.resource.server.database.archives.ResponseBuilder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -26,6 +36,7 @@ public class RedisClient {
   private RedisAPI redis;
   private Vertx vertx;
   private JsonObject config;
+  private boolean isCluster;
 
   /**
    * RedisClient - Redis vertx Client Low Level Wrapper
@@ -38,6 +49,11 @@ public class RedisClient {
     this.config = config;
   }
 
+  RedisClient(RedisAPI redis, boolean isCluster) {
+    this.redis = redis;
+    this.isCluster = isCluster;
+  }
+
   public Future<RedisClient> start() {
     Promise<RedisClient> promise = Promise.promise();
     StringBuilder redisuri = new StringBuilder();
@@ -56,6 +72,7 @@ public class RedisClient {
     if (mode.equals("CLUSTER")) {
       options =
           new RedisOptions().setType(RedisClientType.CLUSTER).setUseReplicas(RedisReplicas.SHARE);
+      isCluster = true;
     } else if (mode.equals("STANDALONE")) {
       options = new RedisOptions().setType(RedisClientType.STANDALONE);
     } else {
@@ -63,15 +80,34 @@ public class RedisClient {
       promise.fail("Invalid/Unsupported mode");
       return promise.future();
     }
+    int poolSize = config.getInteger("redisMaxPoolSize", options.getMaxPoolSize());
+    int poolWaiting = config.getInteger("redisMaxPoolWaiting", options.getMaxPoolWaiting());
     options
         .setMaxWaitingHandlers(config.getInteger("redisMaxWaitingHandlers"))
+        .setMaxPoolSize(poolSize)
+        .setMaxPoolWaiting(poolWaiting)
+        .setPoolRecycleTimeout(
+            config.getInteger("redisPoolRecycleTimeout", options.getPoolRecycleTimeout()))
         .setConnectionString(redisuri.toString());
     clusteredClient = Redis.createClient(vertx, options);
-    clusteredClient.connect(
-        conn -> {
-          redis = RedisAPI.api(conn.result());
-          promise.complete(this);
-        });
+    // commands are multiplexed on the connections of the pool, see RedisConnectionPool
+    RedisConnectionPool pool =
+        new RedisConnectionPool(
+            vertx,
+            clusteredClient,
+            poolSize,
+            poolWaiting,
+            options.getPoolRecycleTimeout(),
+            RedisClientMetrics.shared(BackendRegistries.getDefaultNow()));
+    redis = RedisAPI.api(pool);
+    pool.open()
+        .onSuccess(opened -> promise.complete(this))
+        .onFailure(
+            failure -> {
+              LOGGER.error("Redis connections failed to open : {}", failure.getMessage());
+              pool.close();
+              promise.fail(failure);
+            });
     return promise.future();
   }
 
@@ -84,25 +120,36 @@ public class RedisClient {
    */
   public RedisClient searchAsync(
       String key, String pathParam, Handler<AsyncResult<JsonObject>> searchHandler) {
+    searchEncoded(key, pathParam).map(JsonObject::new).onComplete(searchHandler);
+    return this;
+  }
+
+  /**
+   * searchEncoded - Wrapper around Redis async search requests, the result isn't parsed.
+   *
+   * @param key Redis Key
+   * @param pathParam Path Parameter for Redis Nested JSON object
+   * @return JSON of result as stored in Redis
+   */
+  public Future<String> searchEncoded(String key, String pathParam) {
+    Promise<String> promise = Promise.promise();
     // using get command
-    get(key, pathParam)
+    getEncoded(key, pathParam)
         .onComplete(
             resultRedis -> {
               if (resultRedis.succeeded()) {
                 LOGGER.debug("Key found!");
-                JsonObject fromRedis = resultRedis.result();
-                searchHandler.handle(Future.succeededFuture(fromRedis));
+                promise.complete(resultRedis.result());
               } else {
                 LOGGER.error("Redis Error: " + resultRedis.cause());
                 responseBuilder =
                     new ResponseBuilder(FAILED)
                         .setTypeAndTitle(204)
                         .setMessage(resultRedis.cause().getLocalizedMessage());
-                searchHandler.handle(Future.failedFuture(responseBuilder.getResponse().toString()));
+                promise.fail(responseBuilder.getResponse().toString());
               }
             });
-
-    return this;
+    return promise.future();
   }
 
   /**
@@ -121,7 +168,18 @@ public class RedisClient {
    * @param path Redis Path parameter returns Future Object with (JSON) result from Redis
    */
   public Future<JsonObject> get(String key, String path) {
-    Promise<JsonObject> promise = Promise.promise();
+    return getEncoded(key, path).map(JsonObject::new);
+  }
+
+  /**
+   * getEncoded - Redis vertx JSON.GET wrapper, the result isn't parsed.
+   *
+   * @param key Redis Key
+   * @param path Redis Path parameter
+   * @return JSON of result as stored in Redis
+   */
+  public Future<String> getEncoded(String key, String path) {
+    Promise<String> promise = Promise.promise();
     redis
         .send(Command.JSON_GET, key, path)
         .onFailure(
@@ -133,13 +191,122 @@ public class RedisClient {
               if (redisResponse == null) {
                 promise.fail(String.format(" %s key not found", key));
               } else {
-                promise.complete(new JsonObject(redisResponse.toString()));
+                promise.complete(redisResponse.toString());
               }
             });
 
     return promise.future();
   }
 
+  /**
+   * mget - Redis vertx JSON.MGET wrapper, gets keys in pipelined batches.
+   *
+   * <p>JSON.MGET takes a single path and, on a cluster, keys of a single hash slot. So keys are
+   * batched by path and slot, and all batches are sent at once without waiting for a reply. Keys
+   * without a common hash tag rarely share a slot, so on a cluster a group of n resources takes
+   * up to n single key batches, pipelined but not fewer round trips.
+   *
+   * @param args keys and paths to get
+   * @return JSON of results as stored in Redis, in the order of args, <i>null</i> for a key or path
+   *     not found
+   */
+  public Future<List<String>> mget(List<RedisArgs> args) {
+    Map<String, List<Integer>> batches = new LinkedHashMap<>();
+    for (int i = 0; i < args.size(); i++) {
+      RedisArgs arg = args.get(i);
+      String batch =
+          isCluster ? arg.getPath() + " " + slot(arg.getKey()) : arg.getPath();
+      batches.computeIfAbsent(batch, b -> new ArrayList<>()).add(i);
+    }
+    String[] results = new String[args.size()];
+    List<Future> sent = new ArrayList<>();
+    for (List<Integer> batch : batches.values()) {
+      for (int from = 0; from < batch.size(); from += MGET_BATCH_SIZE) {
+        int to = Math.min(from + MGET_BATCH_SIZE, batch.size());
+        sent.add(mget(args, batch.subList(from, to), results));
+      }
+    }
+    return CompositeFuture.all(sent).map(done -> Arrays.asList(results));
+  }
+
+  /**
+   * hash slot of a key on a Redis cluster, CRC16 (XMODEM) of its hash tag if it has one, or of the
+   * whole key, modulo 16384.
+   *
+   * @param key Redis Key
+   * @return hash slot
+   */
+  static int slot(String key) {
+    int start = key.indexOf('{');
+    if (start != -1) {
+      int end = key.indexOf('}', start + 1);
+      if (end > start + 1) {
+        key = key.substring(start + 1, end);
+      }
+    }
+    int crc = 0;
+    for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+      crc ^= (b & 0xff) << 8;
+      for (int i = 0; i < 8; i++) {
+        crc = (crc & 0x8000) != 0 ? (crc << 1) ^ 0x1021 : crc << 1;
+      }
+    }
+    return (crc & 0xffff) % 16384;
+  }
+
+  private Future<Void> mget(List<RedisArgs> args, List<Integer> batch, String[] results) {
+    String[] cmdArgs = new String[batch.size() + 1];
+    for (int i = 0; i < batch.size(); i++) {
+      cmdArgs[i] = args.get(batch.get(i)).getKey();
+    }
+    cmdArgs[batch.size()] = args.get(batch.get(0)).getPath();
+    return redis
+        .send(Command.JSON_MGET, cmdArgs)
+        .recover(
+            res ->
+                Future.failedFuture(String.format("JSONMGET did not work: %s", res.getMessage())))
+        .map(
+            redisResponse -> {
+              for (int i = 0; i < batch.size(); i++) {
+                Response value = redisResponse.get(i);
+                results[batch.get(i)] = value == null ? null : value.toString();
+              }
+              return null;
+            });
+  }
+
+  /**
+   * getPaths - Redis vertx JSON.GET wrapper, gets a number of paths of each key at once.
+   *
+   * <p>JSON.MGET takes a single path, so keys are got with a JSON.GET each, all sent at once
+   * without waiting for a reply.
+   *
+   * @param args keys and paths to get
+   * @return JSON of results as replied by Redis, in the order of args, <i>null</i> for a key not
+   *     found
+   */
+  public Future<List<String>> getPaths(List<RedisArgs> args) {
+    String[] results = new String[args.size()];
+    List<Future> sent = new ArrayList<>();
+    for (int i = 0; i < args.size(); i++) {
+      int index = i;
+      List<String> cmdArgs = new ArrayList<>();
+      cmdArgs.add(args.get(i).getKey());
+      cmdArgs.addAll(args.get(i).getPaths());
+      sent.add(
+          redis
+              .send(Command.JSON_GET, cmdArgs.toArray(new String[0]))
+              .recover(
+                  res ->
+                      Future.failedFuture(
+                          String.format("JSONGET did not work: %s", res.getMessage())))
+              .onSuccess(
+                  redisResponse ->
+                      results[index] = redisResponse == null ? null : redisResponse.toString()));
+    }
+    return CompositeFuture.all(sent).map(done -> Arrays.asList(results));
+  }
+
   public void close() {
     redis.close();
   }
@@ -0,0 +1,116 @@
+package iudx.resource.server.database.latest;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Pool utilization and command latency of the Redis connection pools of a node.
+ *
+ * <p>Metrics are shared by the pools of all latest verticle instances. Utilization is the share of
+ * open connections with commands waiting for a reply.
+ */
+final class RedisClientMetrics {
+
+  private static RedisClientMetrics shared;
+
+  private final AtomicInteger openConnections = new AtomicInteger();
+  private final AtomicInteger busyConnections = new AtomicInteger();
+  private final AtomicInteger waitingCommands = new AtomicInteger();
+  private final AtomicInteger runningCommands = new AtomicInteger();
+  private final MeterRegistry registry;
+
+  RedisClientMetrics(MeterRegistry registry) {
+    this.registry = registry;
+    if (registry != null) {
+      Gauge.builder("rs.redis.pool.connections", openConnections, AtomicInteger::get)
+          .description("open connections of the Redis pools")
+          .register(registry);
+      Gauge.builder("rs.redis.pool.utilization", this, RedisClientMetrics::getUtilization)
+          .description("share of open Redis connections with commands waiting for a reply")
+          .register(registry);
+      Gauge.builder("rs.redis.pool.waiting", waitingCommands, AtomicInteger::get)
+          .description("Redis commands waiting for a connection to open")
+          .register(registry);
+      Gauge.builder("rs.redis.commands.running", runningCommands, AtomicInteger::get)
+          .description("Redis commands sent and not yet replied to")
+          .register(registry);
+    }
+  }
+
+  /**
+   * metrics of the node, created on first use.
+   *
+   * @param registry registry to publish metrics to, <i>null</i> to not publish them
+   * @return metrics shared by the pools of the node
+   */
+  static synchronized RedisClientMetrics shared(MeterRegistry registry) {
+    if (shared == null) {
+      shared = new RedisClientMetrics(registry);
+    }
+    return shared;
+  }
+
+  void connectionOpened() {
+    openConnections.incrementAndGet();
+  }
+
+  void connectionClosed() {
+    openConnections.decrementAndGet();
+  }
+
+  void connectionBusy(boolean isBusy) {
+    busyConnections.addAndGet(isBusy ? 1 : -1);
+  }
+
+  void commandWaiting(boolean isWaiting) {
+    waitingCommands.addAndGet(isWaiting ? 1 : -1);
+  }
+
+  /**
+   * sends a command, timing it till its reply.
+   *
+   * @param command name of command
+   * @param send sends the command
+   * @return reply of the command
+   */
+  <T> Future<T> record(String command, Supplier<Future<T>> send) {
+    long start = System.nanoTime();
+    runningCommands.incrementAndGet();
+    Future<T> reply;
+    try {
+      reply = send.get();
+    } catch (RuntimeException e) {
+      reply = Future.failedFuture(e);
+    }
+    return reply.onComplete(
+        done -> {
+          runningCommands.decrementAndGet();
+          if (registry != null) {
+            Timer.builder("rs.redis.commands")
+                .description("latency of Redis commands")
+                .tag("command", command)
+                .tag("outcome", done.succeeded() ? "success" : "failure")
+                .register(registry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+          }
+        });
+  }
+
+  int getOpenConnections() {
+    return openConnections.get();
+  }
+
+  int getWaitingCommands() {
+    return waitingCommands.get();
+  }
+
+  double getUtilization() {
+    int open = openConnections.get();
+    return open <= 0 ? 0 : Math.min(busyConnections.get(), open) / (double) open;
+  }
+}
@@ -2,6 +2,8 @@ package iudx.resource.server.database.latest;
 
 import static iudx.resource.server.database.archives.Constants.DEFAULT_ATTRIBUTE;
 
+import java.util.List;
+import java.util.stream.Collectors;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -43,4 +45,32 @@ public class RedisCommandArgsBuilder {
     args.setPath(pathParam.toString());
     return args;
   }
+
+  /**
+   * args to get only some attributes of the latest value of a resource.
+   *
+   * <p>Attributes are got with a JSONPath each, a missing attribute matches nothing instead of
+   * failing the whole JSON.GET as a legacy path does. A unique attribute snapshot is got whole, its
+   * values are projected once read.
+   *
+   * @param id id of resource
+   * @param isUniqueAttribueExist true if the resource has a unique attribute
+   * @param tenantPrefix namespace of Redis keys
+   * @param attrs attributes to get, all if empty
+   * @return RedisArgs
+   */
+  public RedisArgs getRedisCommandArgs(
+      String id, boolean isUniqueAttribueExist, String tenantPrefix, List<String> attrs) {
+    RedisArgs args = getRedisCommandArgs(id, isUniqueAttribueExist, tenantPrefix);
+    if (attrs.isEmpty() || isUniqueAttribueExist) {
+      return args;
+    }
+    // legacy path ._<sha> of the value is $._<sha> as a JSONPath
+    String valuePath = "$" + args.getPath();
+    args.setPaths(
+        attrs.stream()
+            .map(attr -> valuePath + "['" + attr + "']")
+            .collect(Collectors.toList()));
+    return args;
+  }
 }
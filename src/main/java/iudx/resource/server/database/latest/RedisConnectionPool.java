@@ -0,0 +1,304 @@
+package iudx.resource.server.database.latest;
+
+import static iudx.resource.server.database.archives.Constants.REDIS_POOL_WAIT_TIMEOUT_MS;
+import static iudx.resource.server.database.archives.Constants.REDIS_RECONNECT_BACKOFF_MS;
+import static iudx.resource.server.database.archives.Constants.REDIS_RECONNECT_MAX_BACKOFF_MS;
+
+import io.vertx.core.Future;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.redis.client.Redis;
+import io.vertx.redis.client.RedisConnection;
+import io.vertx.redis.client.Request;
+import io.vertx.redis.client.Response;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Function;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Pool of Redis connections, each connection multiplexes the commands sent on it.
+ *
+ * <p>A command is pipelined on the open connection with the fewest commands waiting for a reply,
+ * so a few connections carry all the commands of a verticle without commands waiting for each
+ * other. A connection that fails or is closed is opened again with an exponential backoff. The
+ * pool fails to open if the first attempt of every connection fails.
+ *
+ * <p>A connection idle for the recycle timeout is closed, and opened again once commands are sent
+ * while no open connection is idle.
+ *
+ * <p>Commands sent while no connection is open wait for one, up to a limit. Commands beyond the
+ * limit, or sent while the pending queues of all open connections are full, fail right away.
+ *
+ * <p>The pool is used on the context of the verticle that opened it.
+ */
+final class RedisConnectionPool implements Redis {
+
+  private static final Logger LOGGER = LogManager.getLogger(RedisConnectionPool.class);
+
+  private final Vertx vertx;
+  private final Redis client;
+  private final int maxWaiting;
+  private final long recycleTimeoutMs;
+  private final RedisClientMetrics metrics;
+  private final List<PooledConnection> connections = new ArrayList<>();
+  private final Deque<Promise<PooledConnection>> waiting = new ArrayDeque<>();
+  private final Promise<Void> opened = Promise.promise();
+  private int failedFirstAttempts;
+  private long recycleTimerId = -1;
+  private boolean isClosed;
+
+  /**
+   * pool of connections of a client.
+   *
+   * @param vertx vertx instance
+   * @param client client to open connections with
+   * @param size connections of the pool
+   * @param maxWaiting commands allowed to wait for a connection to open
+   * @param metrics metrics of the pool
+   */
+  RedisConnectionPool(
+      Vertx vertx, Redis client, int size, int maxWaiting, RedisClientMetrics metrics) {
+    this(vertx, client, size, maxWaiting, -1, metrics);
+  }
+
+  /**
+   * pool of connections of a client, idle connections are recycled.
+   *
+   * @param vertx vertx instance
+   * @param client client to open connections with
+   * @param size connections of the pool
+   * @param maxWaiting commands allowed to wait for a connection to open
+   * @param recycleTimeoutMs idle time after which a connection is closed, not closed if negative
+   * @param metrics metrics of the pool
+   */
+  RedisConnectionPool(
+      Vertx vertx,
+      Redis client,
+      int size,
+      int maxWaiting,
+      long recycleTimeoutMs,
+      RedisClientMetrics metrics) {
+    this.vertx = vertx;
+    this.client = client;
+    this.maxWaiting = maxWaiting;
+    this.recycleTimeoutMs = recycleTimeoutMs;
+    this.metrics = metrics;
+    for (int i = 0; i < Math.max(size, 1); i++) {
+      connections.add(new PooledConnection());
+    }
+  }
+
+  /**
+   * opens the connections of the pool.
+   *
+   * @return completed once a connection is open, failed once the first attempt of every
+   *     connection failed
+   */
+  Future<Void> open() {
+    connections.forEach(pooled -> connect(pooled, REDIS_RECONNECT_BACKOFF_MS, true));
+    if (recycleTimeoutMs > 0) {
+      recycleTimerId =
+          vertx.setPeriodic(recycleTimeoutMs, id -> recycleIdle(System.currentTimeMillis()));
+    }
+    return opened.future();
+  }
+
+  /* closes connections idle for the recycle timeout */
+  void recycleIdle(long now) {
+    for (PooledConnection pooled : connections) {
+      if (pooled.connection != null
+          && pooled.running == 0
+          && now - pooled.idleSince >= recycleTimeoutMs) {
+        LOGGER.debug("Redis connection idle for {} ms, recycled", now - pooled.idleSince);
+        RedisConnection connection = pooled.connection;
+        pooled.connection = null;
+        metrics.connectionClosed();
+        connection.close();
+      }
+    }
+  }
+
+  /** connections of the pool are shared, a connection can't be taken out of it. */
+  @Override
+  public Future<RedisConnection> connect() {
+    return Future.failedFuture("connections of a Redis pool can't be taken out of it");
+  }
+
+  @Override
+  public Future<Response> send(Request request) {
+    return metrics.record(
+        request.command().toString(), () -> acquire().compose(pooled -> pooled.send(request)));
+  }
+
+  @Override
+  public Future<List<Response>> batch(List<Request> requests) {
+    return metrics.record(
+        "batch", () -> acquire().compose(pooled -> pooled.send(c -> c.batch(requests))));
+  }
+
+  @Override
+  public void close() {
+    isClosed = true;
+    if (recycleTimerId >= 0) {
+      vertx.cancelTimer(recycleTimerId);
+    }
+    while (!waiting.isEmpty()) {
+      metrics.commandWaiting(false);
+      waiting.poll().tryFail("Redis pool is closed");
+    }
+    for (PooledConnection pooled : connections) {
+      if (pooled.connection != null) {
+        RedisConnection connection = pooled.connection;
+        pooled.connection = null;
+        metrics.connectionClosed();
+        connection.close();
+      }
+    }
+    client.close();
+  }
+
+  private Future<PooledConnection> acquire() {
+    if (isClosed) {
+      return Future.failedFuture("Redis pool is closed");
+    }
+    PooledConnection leastBusy = null;
+    boolean isAnyOpen = false;
+    for (PooledConnection pooled : connections) {
+      if (pooled.connection == null) {
+        continue;
+      }
+      isAnyOpen = true;
+      if (!pooled.connection.pendingQueueFull()
+          && (leastBusy == null || pooled.running < leastBusy.running)) {
+        leastBusy = pooled;
+      }
+    }
+    if (leastBusy == null || leastBusy.running > 0) {
+      reopenRecycled();
+    }
+    if (leastBusy != null) {
+      return Future.succeededFuture(leastBusy);
+    }
+    if (isAnyOpen) {
+      return Future.failedFuture("Redis connections are busy, pending queues are full");
+    }
+    if (waiting.size() >= maxWaiting) {
+      return Future.failedFuture("Redis connections aren't open, max waiting commands reached");
+    }
+    Promise<PooledConnection> promise = Promise.promise();
+    waiting.add(promise);
+    metrics.commandWaiting(true);
+    vertx.setTimer(
+        REDIS_POOL_WAIT_TIMEOUT_MS,
+        id -> {
+          if (waiting.remove(promise)) {
+            metrics.commandWaiting(false);
+            promise.fail("Redis connections aren't open, timed out waiting for one");
+          }
+        });
+    return promise.future();
+  }
+
+  /* opens a connection closed for being idle, if the pool has one */
+  private void reopenRecycled() {
+    for (PooledConnection pooled : connections) {
+      if (pooled.connection == null && !pooled.isConnecting) {
+        connect(pooled, REDIS_RECONNECT_BACKOFF_MS, false);
+        return;
+      }
+    }
+  }
+
+  private void connect(PooledConnection pooled, long backoffMs, boolean isFirstAttempt) {
+    pooled.isConnecting = true;
+    client
+        .connect()
+        .onComplete(
+            connectHandler -> {
+              if (isClosed) {
+                if (connectHandler.succeeded()) {
+                  connectHandler.result().close();
+                }
+                return;
+              }
+              if (connectHandler.failed()) {
+                LOGGER.warn(
+                    "Redis connection failed, retrying in {} ms : {}",
+                    backoffMs,
+                    connectHandler.cause().getMessage());
+                if (isFirstAttempt && ++failedFirstAttempts == connections.size()) {
+                  opened.tryFail(connectHandler.cause());
+                }
+                vertx.setTimer(
+                    backoffMs,
+                    id ->
+                        connect(
+                            pooled,
+                            Math.min(backoffMs * 2, REDIS_RECONNECT_MAX_BACKOFF_MS),
+                            false));
+                return;
+              }
+              RedisConnection connection = connectHandler.result();
+              connection.exceptionHandler(
+                  failure -> reconnect(pooled, connection, failure.getMessage()));
+              connection.endHandler(end -> reconnect(pooled, connection, "connection closed"));
+              pooled.connection = connection;
+              pooled.isConnecting = false;
+              pooled.idleSince = System.currentTimeMillis();
+              metrics.connectionOpened();
+              LOGGER.debug("Redis connection opened");
+              opened.tryComplete();
+              while (!waiting.isEmpty()) {
+                metrics.commandWaiting(false);
+                waiting.poll().tryComplete(pooled);
+              }
+            });
+  }
+
+  private void reconnect(PooledConnection pooled, RedisConnection connection, String reason) {
+    if (pooled.connection != connection) {
+      return;
+    }
+    LOGGER.warn("Redis connection lost, reconnecting : {}", reason);
+    pooled.connection = null;
+    metrics.connectionClosed();
+    connection.close();
+    if (!isClosed) {
+      connect(pooled, REDIS_RECONNECT_BACKOFF_MS, false);
+    }
+  }
+
+  /** a connection of the pool and the commands it has waiting for a reply. */
+  private final class PooledConnection {
+    private RedisConnection connection;
+    private boolean isConnecting;
+    private int running;
+    private long idleSince;
+
+    Future<Response> send(Request request) {
+      return send(c -> c.send(request));
+    }
+
+    <T> Future<T> send(Function<RedisConnection, Future<T>> command) {
+      if (connection == null) {
+        return Future.failedFuture("Redis connection is closed");
+      }
+      if (running++ == 0) {
+        metrics.connectionBusy(true);
+      }
+      return command
+          .apply(connection)
+          .onComplete(
+              reply -> {
+                if (--running == 0) {
+                  metrics.connectionBusy(false);
+                  idleSince = System.currentTimeMillis();
+                }
+              });
+    }
+  }
+}
@@ -22,7 +22,7 @@ public class Constants {
 
   public static String UPDATE_S3_URL_SQL =
       "UPDATE s3_upload_url SET s3_url='$1', expiry='$2', status='$3', object_id='$4', "
-          + "progress=$5, size='$6' WHERE search_id='$7' and progress<$5";
+          + "progress=$5, size='$6', checkpoint=NULL WHERE search_id='$7' and progress<$5";
 
   public static String UPDATE_STATUS_SQL =
       "UPDATE s3_upload_url SET status='$1' WHERE search_id='$2'";
@@ -34,6 +34,40 @@ public class Constants {
       "SELECT search_id, status, s3_url, expiry, user_id, object_id,size "
           + "FROM s3_upload_url WHERE request_id='$1' and status='$2'";
 
+  public static String SELECT_S3_RESULT_SQL =
+      "SELECT search_id, status, s3_url, expiry, user_id, object_id,size "
+          + "FROM s3_upload_url WHERE (request_id='$1' or (result_key='$3' "
+          + "and modified_at > now() - interval '$4 minutes')) and status='$2'";
+
+  public static String UPDATE_S3_RESULT_KEY_SQL =
+      "UPDATE s3_upload_url SET result_key='$1' WHERE search_id='$2'";
+
   public static String UPDATE_S3_PROGRESS_SQL =
       "UPDATE s3_upload_url SET progress=$1 WHERE search_id='$2'";
+
+  public static String UPDATE_S3_PROGRESS_BATCH_SQL =
+      "UPDATE s3_upload_url AS s SET progress=v.progress "
+          + "FROM (VALUES $1) AS v(search_id, progress) "
+          + "WHERE s.search_id=v.search_id::uuid AND s.progress<v.progress";
+
+  public static String UPDATE_S3_CHECKPOINT_SQL =
+      "UPDATE s3_upload_url SET checkpoint='$1'::JSONB WHERE search_id='$2'";
+
+  public static String CLEAR_S3_CHECKPOINT_SQL =
+      "UPDATE s3_upload_url SET checkpoint=NULL WHERE search_id='$1'";
+
+  public static String SELECT_S3_CHECKPOINT_SQL =
+      "SELECT checkpoint FROM s3_upload_url WHERE search_id='$1' AND checkpoint IS NOT NULL";
+
+  public static String UPDATE_S3_MESSAGE_SQL =
+      "UPDATE s3_upload_url SET message='$1'::JSONB, heartbeat=now() WHERE search_id='$2'";
+
+  public static String UPDATE_S3_HEARTBEAT_SQL =
+      "UPDATE s3_upload_url SET heartbeat=now() WHERE search_id IN ($1)";
+
+  public static String CLAIM_S3_STALE_SQL =
+      "UPDATE s3_upload_url SET heartbeat=now() WHERE search_id IN "
+          + "(SELECT search_id FROM s3_upload_url WHERE status IN ('SUBMITTED','IN_PROGRESS') "
+          + "AND heartbeat < now() - interval '$1 minutes' ORDER BY heartbeat LIMIT $2 "
+          + "FOR UPDATE SKIP LOCKED) RETURNING message";
 }
@@ -3,8 +3,13 @@ package iudx.resource.server.databroker;
 import static iudx.resource.server.common.Constants.ASYNC_SERVICE_ADDRESS;
 import static iudx.resource.server.common.Constants.BROKER_SERVICE_ADDRESS;
 import static iudx.resource.server.common.Constants.CACHE_SERVICE_ADDRESS;
+import static iudx.resource.server.databroker.util.Constants.DEFAULT_ASYNC_JOB_TIMEOUT_MINUTES;
+import static iudx.resource.server.databroker.util.Constants.DEFAULT_ASYNC_QUERY_MAX_QUEUED_PER_USER;
+import static iudx.resource.server.databroker.util.Constants.DEFAULT_ASYNC_QUERY_PREFETCH;
+import static iudx.resource.server.databroker.util.Constants.DEFAULT_ASYNC_QUERY_WORKERS;
 
 import io.vertx.core.AbstractVerticle;
+import io.vertx.core.eventbus.DeliveryOptions;
 import io.vertx.core.eventbus.MessageConsumer;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.web.client.WebClient;
@@ -22,6 +27,7 @@ import iudx.resource.server.databroker.listeners.AsyncQueryListener;
 import iudx.resource.server.databroker.listeners.RevokeClientQlistener;
 import iudx.resource.server.databroker.listeners.RmqListeners;
 import iudx.resource.server.databroker.listeners.UniqueAttribQlistener;
+import java.util.concurrent.TimeUnit;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -183,14 +189,31 @@ public class DataBrokerVerticle extends AbstractVerticle {
     databroker =
         new DataBrokerServiceImpl(
             rabbitClient, pgClient, config(), cache, /*iudxConfig, vertx,*/ iudxRabbitMqClient);
-    asyncService = AsyncService.createProxy(vertx, ASYNC_SERVICE_ADDRESS);
+    // replies to async searches come once the search is done
+    long asyncJobTimeout =
+        config().getLong("asyncJobTimeoutMinutes", DEFAULT_ASYNC_JOB_TIMEOUT_MINUTES);
+    asyncService =
+        AsyncService.createProxy(
+            vertx,
+            ASYNC_SERVICE_ADDRESS,
+            new DeliveryOptions().setSendTimeout(TimeUnit.MINUTES.toMillis(asyncJobTimeout)));
 
     String internalVhost = config().getString(Vhosts.IUDX_INTERNAL.value);
     RmqListeners revokeQlistener = new RevokeClientQlistener(vertx, cache, config, internalVhost);
     RmqListeners uniqueAttrQlistener =
         new UniqueAttribQlistener(vertx, cache, config, internalVhost);
     RmqListeners asyncQueryQlistener =
-        new AsyncQueryListener(vertx, config, internalVhost, asyncService);
+        new AsyncQueryListener(
+            vertx,
+            config,
+            internalVhost,
+            asyncService,
+            pgClient,
+            config().getInteger("asyncQueryWorkers", DEFAULT_ASYNC_QUERY_WORKERS),
+            config().getInteger("asyncQueryPrefetch", DEFAULT_ASYNC_QUERY_PREFETCH),
+            config()
+                .getInteger(
+                    "asyncQueryMaxQueuedPerUser", DEFAULT_ASYNC_QUERY_MAX_QUEUED_PER_USER));
 
     // start
     revokeQlistener.start();
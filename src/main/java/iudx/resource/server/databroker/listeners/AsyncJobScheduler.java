@@ -0,0 +1,231 @@
+package iudx.resource.server.databroker.listeners;
+
+import static iudx.resource.server.database.archives.Constants.END_TIME;
+import static iudx.resource.server.database.archives.Constants.ID;
+import static iudx.resource.server.database.archives.Constants.TIME_KEY;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Runs async queries on a bounded number of workers.
+ *
+ * <p>Jobs waiting for a worker are queued per user and users take turns, a free worker starts the
+ * next job of the next user in turn. So a user submitting many exports gets one worker at a time
+ * while others are waiting, and can't hold back everyone else. Among the jobs of a user the
+ * smallest estimated job is started first, estimated by the number of ids and the length of the
+ * temporal window queried.
+ *
+ * <p>Jobs waiting are bounded per user, a job submitted beyond the bound isn't queued.
+ *
+ * <p>Queued and running jobs and the time jobs wait for a worker are published as <i>
+ * rs.async.jobs.queued</i>, <i>rs.async.jobs.running</i> and <i>rs.async.jobs.wait</i>.
+ *
+ * <p>The scheduler isn't thread safe, jobs are submitted and complete on the context of the
+ * listener.
+ */
+public class AsyncJobScheduler {
+
+  private static final Logger LOGGER = LogManager.getLogger(AsyncJobScheduler.class);
+  private static final Comparator<AsyncJob> SMALLEST_FIRST =
+      Comparator.comparingLong(AsyncJob::getEstimatedSize).thenComparingLong(job -> job.sequence);
+
+  private final int maxRunningJobs;
+  private final int maxQueuedJobsPerUser;
+  private final Function<AsyncJob, Future<Void>> runner;
+  private final Map<String, PriorityQueue<AsyncJob>> userQueues = new HashMap<>();
+  private final Deque<String> usersInTurn = new ArrayDeque<>();
+  private final AtomicInteger queuedJobs = new AtomicInteger();
+  private final AtomicInteger runningJobs = new AtomicInteger();
+  private final Timer waitTimer;
+  private long sequence;
+
+  public AsyncJobScheduler(
+      int maxRunningJobs, Function<AsyncJob, Future<Void>> runner, MeterRegistry registry) {
+    this(maxRunningJobs, Integer.MAX_VALUE, runner, registry);
+  }
+
+  /**
+   * scheduler of async jobs.
+   *
+   * @param maxRunningJobs jobs running at a time
+   * @param maxQueuedJobsPerUser jobs of a user waiting for a worker at a time
+   * @param runner starts a job, the future completes when the job is done
+   * @param registry registry to publish metrics to, <i>null</i> to not publish them
+   */
+  public AsyncJobScheduler(
+      int maxRunningJobs,
+      int maxQueuedJobsPerUser,
+      Function<AsyncJob, Future<Void>> runner,
+      MeterRegistry registry) {
+    this.maxRunningJobs = Math.max(maxRunningJobs, 1);
+    this.maxQueuedJobsPerUser = Math.max(maxQueuedJobsPerUser, 1);
+    this.runner = runner;
+    if (registry != null) {
+      Gauge.builder("rs.async.jobs.queued", queuedJobs, AtomicInteger::get)
+          .description("async jobs waiting for a worker")
+          .register(registry);
+      Gauge.builder("rs.async.jobs.running", runningJobs, AtomicInteger::get)
+          .description("async jobs running")
+          .register(registry);
+      waitTimer =
+          Timer.builder("rs.async.jobs.wait")
+              .description("time async jobs wait for a worker")
+              .register(registry);
+    } else {
+      waitTimer = null;
+    }
+  }
+
+  /**
+   * queues a job, it is started right away if a worker is free.
+   *
+   * @param job job to run
+   * @return false if the user has as many jobs queued as the bound, the job isn't queued
+   */
+  public boolean submit(AsyncJob job) {
+    PriorityQueue<AsyncJob> queue = userQueues.get(job.getUser());
+    if (queue != null && queue.size() >= maxQueuedJobsPerUser) {
+      return false;
+    }
+    job.sequence = sequence++;
+    job.queuedAt = System.nanoTime();
+    if (queue == null) {
+      queue = new PriorityQueue<>(SMALLEST_FIRST);
+      userQueues.put(job.getUser(), queue);
+      usersInTurn.add(job.getUser());
+    }
+    queue.add(job);
+    queuedJobs.incrementAndGet();
+    dispatch();
+    return true;
+  }
+
+  public int getQueuedJobs() {
+    return queuedJobs.get();
+  }
+
+  public int getRunningJobs() {
+    return runningJobs.get();
+  }
+
+  private void dispatch() {
+    while (runningJobs.get() < maxRunningJobs && !usersInTurn.isEmpty()) {
+      String user = usersInTurn.poll();
+      PriorityQueue<AsyncJob> queue = userQueues.get(user);
+      AsyncJob job = queue.poll();
+      if (queue.isEmpty()) {
+        userQueues.remove(user);
+      } else {
+        usersInTurn.add(user);
+      }
+      queuedJobs.decrementAndGet();
+      start(job);
+    }
+  }
+
+  private void start(AsyncJob job) {
+    runningJobs.incrementAndGet();
+    long waitNanos = System.nanoTime() - job.queuedAt;
+    if (waitTimer != null) {
+      waitTimer.record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+    LOGGER.debug(
+        "starting async job of user {} after {} ms, {} jobs queued",
+        job.getUser(),
+        TimeUnit.NANOSECONDS.toMillis(waitNanos),
+        queuedJobs.get());
+    Future<Void> result;
+    try {
+      result = runner.apply(job);
+    } catch (RuntimeException e) {
+      result = Future.failedFuture(e);
+    }
+    result.onComplete(
+        done -> {
+          if (done.failed()) {
+            LOGGER.error("async job of user {} failed : {}", job.getUser(), done.cause());
+          }
+          runningJobs.decrementAndGet();
+          dispatch();
+        });
+  }
+
+  /** an async query received from the queue. */
+  public static final class AsyncJob {
+    private final String user;
+    private final JsonObject message;
+    private final long estimatedSize;
+    private long sequence;
+    private long queuedAt;
+
+    /**
+     * job for a message of the async query queue.
+     *
+     * @param user user the query is run for
+     * @param message message received
+     */
+    public AsyncJob(String user, JsonObject message) {
+      this.user = user == null ? "" : user;
+      this.message = message;
+      this.estimatedSize = estimateSize(message.getJsonObject("query"));
+    }
+
+    public String getUser() {
+      return user;
+    }
+
+    public JsonObject getMessage() {
+      return message;
+    }
+
+    public String getSearchId() {
+      return message.getString("searchId");
+    }
+
+    public long getEstimatedSize() {
+      return estimatedSize;
+    }
+
+    /* ids queried times seconds of the temporal window, an open window is the largest size */
+    static long estimateSize(JsonObject query) {
+      if (query == null) {
+        return Long.MAX_VALUE;
+      }
+      String time = query.getString(TIME_KEY);
+      String endTime = query.getString(END_TIME);
+      if (time == null || endTime == null) {
+        return Long.MAX_VALUE;
+      }
+      JsonArray ids = query.getJsonArray(ID);
+      long idCount = ids == null || ids.isEmpty() ? 1 : ids.size();
+      try {
+        long windowSeconds =
+            Duration.between(ZonedDateTime.parse(time), ZonedDateTime.parse(endTime))
+                .abs()
+                .toSeconds();
+        return Math.multiplyExact(idCount, Math.max(windowSeconds, 1));
+      } catch (DateTimeParseException | ArithmeticException e) {
+        return Long.MAX_VALUE;
+      }
+    }
+  }
+}
@@ -3,32 +3,114 @@ package iudx.resource.server.databroker.listeners;
 import static iudx.resource.server.apiserver.util.Constants.HEADER_RESPONSE_FILE_FORMAT;
 import static iudx.resource.server.authenticator.Constants.*;
 import static iudx.resource.server.common.Constants.*;
+import static iudx.resource.server.database.postgres.Constants.CLAIM_S3_STALE_SQL;
+import static iudx.resource.server.database.postgres.Constants.UPDATE_S3_HEARTBEAT_SQL;
+import static iudx.resource.server.database.postgres.Constants.UPDATE_S3_MESSAGE_SQL;
+import static iudx.resource.server.databroker.util.Constants.ASYNC_JOB_HEARTBEAT_MINUTES;
+import static iudx.resource.server.databroker.util.Constants.ASYNC_JOB_STALE_MINUTES;
+import static iudx.resource.server.databroker.util.Constants.ASYNC_QUERY_REQUEUE_DELAY_SECONDS;
+import static iudx.resource.server.databroker.util.Constants.DEFAULT_ASYNC_QUERY_MAX_QUEUED_PER_USER;
+import static iudx.resource.server.databroker.util.Constants.DEFAULT_ASYNC_QUERY_PREFETCH;
+import static iudx.resource.server.databroker.util.Constants.DEFAULT_ASYNC_QUERY_WORKERS;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import io.vertx.core.Future;
+import io.vertx.core.Promise;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.JsonObject;
+import io.vertx.micrometer.backends.BackendRegistries;
 import io.vertx.rabbitmq.QueueOptions;
 import io.vertx.rabbitmq.RabbitMQClient;
 import io.vertx.rabbitmq.RabbitMQConsumer;
+import io.vertx.rabbitmq.RabbitMQMessage;
 import io.vertx.rabbitmq.RabbitMQOptions;
+import io.vertx.sqlclient.Row;
 import iudx.resource.server.database.async.AsyncService;
+import iudx.resource.server.databroker.PostgresClient;
+import iudx.resource.server.databroker.listeners.AsyncJobScheduler.AsyncJob;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+/**
+ * Consumes the async query queue and runs the queries through an {@link AsyncJobScheduler}.
+ *
+ * <p>A message is acknowledged once it is saved to the row of its query, and handed off to the
+ * scheduler. So the whole backlog is consumed and users take turns among all of it, and a query
+ * running for hours isn't redelivered on the <i>consumer_timeout</i> of the broker. A query beyond
+ * the bound of queued queries of its user is left in its row. A message that can't be saved is
+ * rejected back to the queue after a delay, it is delivered again rather than run without a row
+ * to recover it from.
+ *
+ * <p>The rows of queries held by the listener, queued or running, are stamped with a heartbeat.
+ * Queries of rows not done whose heartbeat is stale, of a listener gone away or left in their row,
+ * are claimed by a listener and run again, resuming from their checkpoint.
+ */
 public class AsyncQueryListener implements RmqListeners {
 
   private static final Logger LOGGER = LogManager.getLogger(AsyncQueryListener.class);
-  private final QueueOptions options =
-      new QueueOptions().setMaxInternalQueueSize(2).setKeepMostRecent(true);
+  private final Vertx vertx;
+  private final QueueOptions options;
   private final AsyncService asyncService;
+  private final PostgresClient pgClient;
+  private final AsyncJobScheduler scheduler;
+  private final int prefetch;
+  // search ids of the queries queued or running
+  private final Set<String> heldSearchIds = new HashSet<>();
   RabbitMQClient client;
 
   public AsyncQueryListener(
-      Vertx vertx, RabbitMQOptions config, String vhost, AsyncService asyncService) {
+      Vertx vertx,
+      RabbitMQOptions config,
+      String vhost,
+      AsyncService asyncService,
+      PostgresClient pgClient) {
+    this(
+        vertx,
+        config,
+        vhost,
+        asyncService,
+        pgClient,
+        DEFAULT_ASYNC_QUERY_WORKERS,
+        DEFAULT_ASYNC_QUERY_PREFETCH,
+        DEFAULT_ASYNC_QUERY_MAX_QUEUED_PER_USER);
+  }
+
+  /**
+   * listener running async queries on a bounded number of workers.
+   *
+   * @param vertx vertx instance
+   * @param config RabbitMQ options
+   * @param vhost vhost of the async query queue
+   * @param asyncService service running the queries
+   * @param pgClient client of the database the rows of queries are in
+   * @param workers queries running at a time
+   * @param prefetch unacknowledged messages delivered at a time, being saved to their rows
+   * @param maxQueuedPerUser queries of a user waiting for a worker at a time
+   */
+  public AsyncQueryListener(
+      Vertx vertx,
+      RabbitMQOptions config,
+      String vhost,
+      AsyncService asyncService,
+      PostgresClient pgClient,
+      int workers,
+      int prefetch,
+      int maxQueuedPerUser) {
     config.setVirtualHost(vhost);
+    this.vertx = vertx;
     this.client = RabbitMQClient.create(vertx, config);
     this.asyncService = asyncService;
+    this.pgClient = pgClient;
+    this.prefetch = Math.max(prefetch, 1);
+    this.options =
+        new QueueOptions().setAutoAck(false).setMaxInternalQueueSize(this.prefetch);
+    MeterRegistry registry = BackendRegistries.getDefaultNow();
+    this.scheduler = new AsyncJobScheduler(workers, maxQueuedPerUser, this::runJob, registry);
   }
 
   @Override
@@ -38,38 +120,120 @@ public class AsyncQueryListener implements RmqListeners {
         startHandler -> {
           if (startHandler.succeeded()) {
             LOGGER.trace("starting Q listener for Async query");
-            client.basicConsumer(
-                ASYNC_QUERY_Q,
-                options,
-                asyncQListenerHandler -> {
-                  if (asyncQListenerHandler.succeeded()) {
-                    RabbitMQConsumer mqConsumer = asyncQListenerHandler.result();
-                    mqConsumer.handler(
-                        message -> {
-                          Buffer body = message.body();
-                          if (body != null) {
-                            JsonObject asyncQueryJson = new JsonObject(body);
-                            LOGGER.debug("received message from async-query Q :" + asyncQueryJson);
-                            String requestId = asyncQueryJson.getString("requestId");
-                            String searchId = asyncQueryJson.getString("searchId");
-                            String user = asyncQueryJson.getString("user");
-                            String format = asyncQueryJson.getString(HEADER_RESPONSE_FILE_FORMAT);
-                            String role = asyncQueryJson.getString(ROLE);
-                            String drl = asyncQueryJson.getString(DRL);
-                            String did = asyncQueryJson.getString(DID);
-                            JsonObject query = asyncQueryJson.getJsonObject("query");
-                            LOGGER.debug("query received from RMQ : {}", query);
-                            asyncService.asyncSearch(
-                                requestId, user, searchId, query, format, role, drl, did);
-                          } else {
-                            LOGGER.error("Empty json received from async query queue");
-                          }
-                        });
-                  }
-                });
+            client
+                .basicQos(prefetch)
+                .onComplete(
+                    qosHandler -> {
+                      if (qosHandler.failed()) {
+                        LOGGER.error("failed to set prefetch of async query Q, {}", prefetch);
+                      }
+                      client.basicConsumer(
+                          ASYNC_QUERY_Q,
+                          options,
+                          asyncQListenerHandler -> {
+                            if (asyncQListenerHandler.succeeded()) {
+                              RabbitMQConsumer mqConsumer = asyncQListenerHandler.result();
+                              mqConsumer.handler(this::handleMessage);
+                            }
+                          });
+                    });
+            vertx.setPeriodic(
+                TimeUnit.MINUTES.toMillis(ASYNC_JOB_HEARTBEAT_MINUTES), timerId -> heartbeat());
+            vertx.setPeriodic(
+                TimeUnit.MINUTES.toMillis(ASYNC_JOB_STALE_MINUTES) / 2, timerId -> recover());
           } else {
             LOGGER.error("Rabbit client startup failed.");
           }
         });
   }
+
+  void handleMessage(RabbitMQMessage message) {
+    long deliveryTag = message.envelope().getDeliveryTag();
+    Buffer body = message.body();
+    if (body == null) {
+      LOGGER.error("Empty json received from async query queue");
+      client.basicAck(deliveryTag, false);
+      return;
+    }
+    JsonObject asyncQueryJson = new JsonObject(body);
+    LOGGER.debug("received message from async-query Q :" + asyncQueryJson);
+    String searchId = asyncQueryJson.getString("searchId");
+    pgClient
+        .executeAsync(
+            UPDATE_S3_MESSAGE_SQL
+                .replace("$2", searchId)
+                .replace("$1", asyncQueryJson.encode().replace("'", "''")))
+        .onComplete(
+            saved -> {
+              if (saved.failed()) {
+                LOGGER.warn("async query {} not saved, requeued : {}", searchId, saved.cause());
+                vertx.setTimer(
+                    TimeUnit.SECONDS.toMillis(ASYNC_QUERY_REQUEUE_DELAY_SECONDS),
+                    timerId -> client.basicNack(deliveryTag, false, true));
+                return;
+              }
+              client.basicAck(deliveryTag, false);
+              handOff(asyncQueryJson);
+            });
+  }
+
+  /* stamps the rows of the queries held, so they aren't claimed by another listener */
+  void heartbeat() {
+    if (heldSearchIds.isEmpty()) {
+      return;
+    }
+    String searchIds =
+        heldSearchIds.stream()
+            .map(searchId -> "'" + searchId.replace("'", "''") + "'")
+            .collect(Collectors.joining(","));
+    pgClient
+        .executeAsync(UPDATE_S3_HEARTBEAT_SQL.replace("$1", searchIds))
+        .onFailure(failure -> LOGGER.warn("failed to stamp async queries held : {}", failure));
+  }
+
+  /* claims queries of stale rows and runs them again */
+  void recover() {
+    pgClient
+        .executeAsync(
+            CLAIM_S3_STALE_SQL
+                .replace("$1", String.valueOf(ASYNC_JOB_STALE_MINUTES))
+                .replace("$2", String.valueOf(prefetch)))
+        .onSuccess(
+            rows -> {
+              for (Row row : rows) {
+                JsonObject asyncQueryJson = row.getJsonObject("message");
+                LOGGER.info("recovering async query {}", asyncQueryJson.getString("searchId"));
+                handOff(asyncQueryJson);
+              }
+            })
+        .onFailure(failure -> LOGGER.warn("failed to claim stale async queries : {}", failure));
+  }
+
+  private void handOff(JsonObject asyncQueryJson) {
+    AsyncJob job = new AsyncJob(asyncQueryJson.getString("user"), asyncQueryJson);
+    heldSearchIds.add(job.getSearchId());
+    if (!scheduler.submit(job)) {
+      // left in its row, it is claimed once stale
+      heldSearchIds.remove(job.getSearchId());
+      LOGGER.info(
+          "async query {} left in its row, its user has too many queued", job.getSearchId());
+    }
+  }
+
+  private Future<Void> runJob(AsyncJob job) {
+    JsonObject asyncQueryJson = job.getMessage();
+    String requestId = asyncQueryJson.getString("requestId");
+    String searchId = asyncQueryJson.getString("searchId");
+    String user = asyncQueryJson.getString("user");
+    String format = asyncQueryJson.getString(HEADER_RESPONSE_FILE_FORMAT);
+    String role = asyncQueryJson.getString(ROLE);
+    String drl = asyncQueryJson.getString(DRL);
+    String did = asyncQueryJson.getString(DID);
+    JsonObject query = asyncQueryJson.getJsonObject("query");
+    LOGGER.debug("query received from RMQ : {}", query);
+    Promise<Void> promise = Promise.promise();
+    asyncService.asyncSearch(requestId, user, searchId, query, format, role, drl, did, promise);
+    // a failed query has its status updated to error, it isn't retried
+    return promise.future().onComplete(done -> heldSearchIds.remove(searchId));
+  }
 }
@@ -0,0 +1,152 @@
+package iudx.resource.server.databroker.listeners;
+
+import static iudx.resource.server.databroker.util.Constants.ID;
+import static iudx.resource.server.databroker.util.Constants.JSON_RESOURCE_GROUP;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.rabbitmq.QueueOptions;
+import io.vertx.rabbitmq.RabbitMQClient;
+import io.vertx.rabbitmq.RabbitMQMessage;
+import io.vertx.rabbitmq.RabbitMQOptions;
+import iudx.resource.server.cache.CacheService;
+import iudx.resource.server.cache.cachelmpl.CacheType;
+import iudx.resource.server.database.latest.LatestNearCache;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Invalidates latest values of a {@link LatestNearCache} on updates published by adaptors.
+ *
+ * <p>Adaptors publish to the exchange of the resource group with the resource id as routing key.
+ * An exclusive queue is bound to the exchange for each resource read, and unbound once the
+ * resource is evicted or an update of it finds it no longer cached. So only updates of resources
+ * read are received, not all the ingested data. Values of a resource are cached only once its
+ * binding is made.
+ *
+ * <p>The queue goes with the connection, so on every connection to the broker all values are
+ * invalidated as updates may have been missed meanwhile.
+ */
+public class LatestUpdateListener implements RmqListeners {
+
+  private static final Logger LOGGER = LogManager.getLogger(LatestUpdateListener.class);
+  private static final String PENDING = "";
+  private final QueueOptions options = new QueueOptions().setMaxInternalQueueSize(1000);
+  private final CacheService cache;
+  private final LatestNearCache nearCache;
+  // exchanges bound to by resource id, pending while the binding is being made
+  private final Map<String, String> boundIds = new ConcurrentHashMap<>();
+  private volatile String queue;
+  RabbitMQClient client;
+
+  /**
+   * listener of updates of the resources of a near-cache.
+   *
+   * @param vertx vertx instance
+   * @param config RabbitMQ options
+   * @param vhost vhost adaptors publish to
+   * @param cache cache to resolve resource groups with
+   * @param nearCache near-cache to invalidate
+   */
+  public LatestUpdateListener(
+      Vertx vertx,
+      RabbitMQOptions config,
+      String vhost,
+      CacheService cache,
+      LatestNearCache nearCache) {
+    config.setVirtualHost(vhost);
+    this.client = RabbitMQClient.create(vertx, config);
+    this.cache = cache;
+    this.nearCache = nearCache;
+  }
+
+  @Override
+  public void start() {
+    client.addConnectionEstablishedCallback(
+        promise -> {
+          queue = null;
+          boundIds.clear();
+          nearCache.invalidateAll();
+          client
+              .queueDeclare("", false, true, true)
+              .compose(
+                  declareOk -> {
+                    queue = declareOk.getQueue();
+                    return client.basicConsumer(queue, options);
+                  })
+              .onSuccess(
+                  consumer -> {
+                    LOGGER.debug("listening to latest updates on {}", queue);
+                    consumer.handler(this::handleMessage);
+                  })
+              .<Void>mapEmpty()
+              .onComplete(promise);
+        });
+    nearCache.watchHandler(this::bind).unwatchHandler(this::unbind);
+    client
+        .start()
+        .onFailure(
+            startHandler ->
+                LOGGER.error(
+                    "Rabbit client startup failed for latest updates : {}",
+                    startHandler.getMessage()));
+  }
+
+  void handleMessage(RabbitMQMessage message) {
+    String id = message.envelope().getRoutingKey();
+    if (!nearCache.invalidate(id)) {
+      nearCache.unwatched(id);
+      unbind(id);
+    }
+  }
+
+  void bind(String id) {
+    if (queue == null) {
+      // updates can't be received, values aren't cached till they can
+      return;
+    }
+    if (boundIds.putIfAbsent(id, PENDING) != null) {
+      return;
+    }
+    String boundQueue = queue;
+    JsonObject cacheRequest = new JsonObject();
+    cacheRequest.put("type", CacheType.CATALOGUE_CACHE);
+    cacheRequest.put("key", id);
+    cache
+        .get(cacheRequest)
+        .compose(
+            item -> {
+              String exchange =
+                  item.containsKey(JSON_RESOURCE_GROUP)
+                      ? item.getString(JSON_RESOURCE_GROUP)
+                      : item.getString(ID);
+              return client.queueBind(boundQueue, exchange, id).map(exchange);
+            })
+        .onComplete(
+            bindHandler -> {
+              if (!boundQueue.equals(queue) || !boundIds.containsKey(id)) {
+                return;
+              }
+              if (bindHandler.succeeded()) {
+                boundIds.put(id, bindHandler.result());
+                nearCache.watched(id);
+              } else {
+                LOGGER.warn("latest updates of {} not bound : {}", id, bindHandler.cause());
+                boundIds.remove(id);
+              }
+            });
+  }
+
+  void unbind(String id) {
+    String exchange = boundIds.get(id);
+    if (queue == null || exchange == null || PENDING.equals(exchange)) {
+      return;
+    }
+    boundIds.remove(id);
+    client
+        .queueUnbind(queue, exchange, id)
+        .onFailure(failure -> LOGGER.warn("latest updates of {} not unbound : {}", id, failure));
+  }
+}
@@ -150,6 +150,15 @@ public class Constants {
   public static final String X_QUEUE_TYPE = "durable";
   public static final String X_QUEUE_ARGUMENTS = "arguments";
 
+  // async query queue consumer
+  public static final int DEFAULT_ASYNC_QUERY_WORKERS = 4;
+  public static final int DEFAULT_ASYNC_QUERY_PREFETCH = 16;
+  public static final long DEFAULT_ASYNC_JOB_TIMEOUT_MINUTES = 360;
+  public static final int DEFAULT_ASYNC_QUERY_MAX_QUEUED_PER_USER = 100;
+  public static final long ASYNC_JOB_HEARTBEAT_MINUTES = 1;
+  public static final long ASYNC_JOB_STALE_MINUTES = 10;
+  public static final long ASYNC_QUERY_REQUEUE_DELAY_SECONDS = 5;
+
   public static final int BAD_REQUEST_CODE = 400;
   public static final int INTERNAL_ERROR_CODE = 500;
   public static final int SUCCESS_CODE = 200;
@@ -0,0 +1,2 @@
+-- Add new column 'checkpoint' to s3_upload_url table, point an export in progress resumes from.
+ALTER TABLE s3_upload_url ADD COLUMN checkpoint JSONB;
@@ -0,0 +1,3 @@
+-- Add new column 'result_key' to s3_upload_url table, hash of the search exported.
+ALTER TABLE s3_upload_url ADD COLUMN result_key varchar;
+CREATE INDEX s3_upload_url_result_key_index ON s3_upload_url (result_key);
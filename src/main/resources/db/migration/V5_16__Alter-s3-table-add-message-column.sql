@@ -0,0 +1,3 @@
+-- Add new columns 'message' and 'heartbeat' to s3_upload_url table, async query handed off to a node and last time it was held there.
+ALTER TABLE s3_upload_url ADD COLUMN message JSONB, ADD COLUMN heartbeat timestamp without time zone;
+CREATE INDEX s3_upload_url_heartbeat_index ON s3_upload_url (heartbeat);
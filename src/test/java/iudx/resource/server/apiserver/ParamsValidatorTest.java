@@ -24,6 +24,7 @@ import java.util.List;
 import static iudx.resource.server.apiserver.util.Constants.MSG_BAD_QUERY;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
@@ -53,7 +54,7 @@ public class ParamsValidatorTest {
     public void test_validate(VertxTestContext vertxTestContext) {
 
         when(paramsMap.get(anyString())).thenReturn("Dummy/string/value", null);
-        when(catalogueService.getApplicableFilters(anyString())).thenReturn(listFuture);
+        when(catalogueService.getApplicableFilters(anyList())).thenReturn(listFuture);
         when(listFuture.result()).thenReturn(stringList);
         when(listAsyncResult.succeeded()).thenReturn(true);
         when(stringList.contains(anyString())).thenReturn(true);
@@ -81,7 +82,7 @@ public class ParamsValidatorTest {
     public void test_isValidQueryWithFilters(String value, VertxTestContext vertxTestContext) {
 
         when(paramsMap.get(anyString())).thenReturn("Dummy/string/value", null);
-        when(catalogueService.getApplicableFilters(anyString())).thenReturn(listFuture);
+        when(catalogueService.getApplicableFilters(anyList())).thenReturn(listFuture);
         when(listFuture.result()).thenReturn(stringList);
         when(listAsyncResult.succeeded()).thenReturn(true);
         if (value.equals("SPATIAL")) {
@@ -124,7 +125,7 @@ public class ParamsValidatorTest {
     @DisplayName("Test isValidQueryWithFilters method : Failure")
     public void test_isValidQueryWithFilters_failure(VertxTestContext vertxTestContext) {
         when(paramsMap.get(anyString())).thenReturn("Dummy/string/value", null);
-        when(catalogueService.getApplicableFilters(anyString())).thenReturn(listFuture);
+        when(catalogueService.getApplicableFilters(anyList())).thenReturn(listFuture);
         when(listAsyncResult.succeeded()).thenReturn(false);
         doAnswer(new Answer<AsyncResult<List<String>>>() {
             @Override
@@ -149,7 +150,7 @@ public class ParamsValidatorTest {
     public void test_isValidCoordinatesForGeometry_with_DxRuntimeException(String geo,VertxTestContext vertxTestContext)
     {
         when(paramsMap.get(anyString())).thenReturn("Dummy/string/value", geo,"[{ \"Polygon\" : \"some_value\"},{ \"Point\" : \"some_value\"},{ \"LineString\" : \"some_value\"},{ \"Polygon\" : \"some_value\"}]");
-        when(catalogueService.getApplicableFilters(anyString())).thenReturn(listFuture);
+        when(catalogueService.getApplicableFilters(anyList())).thenReturn(listFuture);
         when(listFuture.result()).thenReturn(stringList);
         when(listAsyncResult.succeeded()).thenReturn(true);
         when(stringList.contains(anyString())).thenReturn(true);
@@ -173,7 +174,7 @@ public class ParamsValidatorTest {
     public void test_validate_for_invalid_query(VertxTestContext vertxTestContext)
     {
         when(paramsMap.get(anyString())).thenReturn("Dummy/string/value", "geo","[{ \"Polygon\" : \"some_value\"},{ \"Point\" : \"some_value\"},{ \"LineString\" : \"some_value\"},{ \"Polygon\" : \"some_value\"}]");
-        when(catalogueService.getApplicableFilters(anyString())).thenReturn(listFuture);
+        when(catalogueService.getApplicableFilters(anyList())).thenReturn(listFuture);
         when(listFuture.result()).thenReturn(stringList);
         when(listAsyncResult.succeeded()).thenReturn(true);
         when(stringList.contains(anyString())).thenReturn(true);
@@ -200,7 +201,7 @@ public class ParamsValidatorTest {
     public void test_isValidCoordinatesForGeometry_for_bbox(VertxTestContext vertxTestContext)
     {
         when(paramsMap.get(anyString())).thenReturn("Dummy/string/value", "bbox","[{ \"Polygon\" : \"some_value\"},{ \"Point\" : \"some_value\"},{ \"LineString\" : \"some_value\"}]");
-        when(catalogueService.getApplicableFilters(anyString())).thenReturn(listFuture);
+        when(catalogueService.getApplicableFilters(anyList())).thenReturn(listFuture);
         when(listFuture.result()).thenReturn(stringList);
         when(listAsyncResult.succeeded()).thenReturn(true);
         when(stringList.contains(anyString())).thenReturn(true);
@@ -11,6 +11,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.Mockito.doAnswer;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -56,7 +57,7 @@ public class ValidatorTest {
     doAnswer(Answer -> Future
         .succeededFuture(new ArrayList<>(Arrays.asList("TEMPORAL", "SPATIAL", "ATTR"))))
             .when(catalogueServiceMock)
-            .getApplicableFilters(any(String.class));
+            .getApplicableFilters(anyList());
 
     testContext.completeNow();
   }
@@ -60,4 +60,20 @@ public class FailureHandlerTest {
         vertxTestContext.completeNow();
     }
 
+    @Test
+    @DisplayName("Test handle method when streamed response already started")
+    public void testHandleStreamStarted(VertxTestContext vertxTestContext)
+    {
+        when(routingContext.response()).thenReturn(httpServerResponse);
+        when(httpServerResponse.headWritten()).thenReturn(true);
+
+        FailureHandler failureHandler = new FailureHandler();
+        failureHandler.handle(routingContext);
+
+        verify(httpServerResponse, never()).setStatusCode(anyInt());
+        verify(httpServerResponse, never()).end(anyString());
+        verify(routingContext, never()).next();
+        vertxTestContext.completeNow();
+    }
+
 }
@@ -101,7 +101,7 @@ public class ValidationHandlerTest {
 
     validationHandler = new ValidationHandler(Vertx.vertx(), requestType);
     validationHandler.handle(routingContext);
-    verify(routingContext, times(4)).request();
+    verify(routingContext, times(5)).request();
     verify(httpServerRequest).params();
     verify(routingContext).body();
     verify(routingContext).pathParams();
@@ -1,5 +1,6 @@
 package iudx.resource.server.apiserver.service;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.Mockito.*;
 
 import io.vertx.core.Future;
@@ -256,4 +257,49 @@ public class CatalogueServiceTest {
     //        verify(httpRequest,times(6)).addQueryParam(anyString(),anyString());
     //        verify(httpRequest,times(4)).send(any());
   }
+
+  @Test
+  @DisplayName("Test getApplicableFilters for multiple ids gives filters common to all")
+  public void testGetApplicableFiltersMultipleIds(VertxTestContext vertxTestContext) {
+    JsonObject items =
+        new JsonObject()
+            .put(
+                "item-1",
+                new JsonObject()
+                    .put("type", new JsonArray().add("iudx:Resource"))
+                    .put("resourceGroup", "group-1"))
+            .put(
+                "item-2",
+                new JsonObject()
+                    .put("type", new JsonArray().add("iudx:Resource"))
+                    .put("resourceGroup", "group-2"))
+            .put(
+                "group-1",
+                new JsonObject()
+                    .put(
+                        "iudxResourceAPIs",
+                        new JsonArray().add("TEMPORAL").add("ATTR").add("SPATIAL")))
+            .put(
+                "group-2",
+                new JsonObject()
+                    .put("iudxResourceAPIs", new JsonArray().add("ATTR").add("TEMPORAL")));
+    when(cache.get(any()))
+        .thenAnswer(
+            invocation ->
+                Future.succeededFuture(
+                    items.getJsonObject(invocation.<JsonObject>getArgument(0).getString("key"))));
+
+    catalogueService
+        .getApplicableFilters(List.of("item-1", "item-2"))
+        .onComplete(
+            handler -> {
+              if (handler.succeeded()) {
+                assertEquals(List.of("TEMPORAL", "ATTR"), handler.result());
+                verify(cache, times(6)).get(any());
+                vertxTestContext.completeNow();
+              } else {
+                vertxTestContext.failNow(handler.cause());
+              }
+            });
+  }
 }
@@ -0,0 +1,70 @@
+package iudx.resource.server.apiserver.validation;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.cli.annotations.Description;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.resource.server.apiserver.exceptions.DxRuntimeException;
+import iudx.resource.server.apiserver.validation.types.AggrMethodsTypeValidator;
+
+@ExtendWith(VertxExtension.class)
+public class AggrMethodsTypeValidatorTest {
+
+  private AggrMethodsTypeValidator aggrMethodsTypeValidator;
+
+  @BeforeEach
+  public void setup(Vertx vertx, VertxTestContext testContext) {
+    testContext.completeNow();
+  }
+
+  static Stream<Arguments> allowedValues() {
+    // Add any valid value which will pass successfully.
+    return Stream.of(
+            Arguments.of(null, false),
+            Arguments.of("avg", false),
+            Arguments.of("min,max,avg", true),
+            Arguments.of("totalCount,sum", false));
+  }
+
+  @ParameterizedTest
+  @MethodSource("allowedValues")
+  @Description("aggrMethods type parameter allowed values.")
+  public void testValidAggrMethodsTypeValue(String value, boolean required, Vertx vertx,
+                                       VertxTestContext testContext) {
+    aggrMethodsTypeValidator = new AggrMethodsTypeValidator(value, required);
+    assertTrue(aggrMethodsTypeValidator.isValid());
+    testContext.completeNow();
+  }
+
+  static Stream<Arguments> invalidValues() {
+    return Stream.of(
+            Arguments.of("   ", false),
+            Arguments.of("median", false),
+            Arguments.of("avg,,max", false),
+            Arguments.of("AVG", false),
+            Arguments.of(null, true),
+            Arguments.of("", true)
+    );
+  }
+
+  @ParameterizedTest
+  @MethodSource("invalidValues")
+  @Description("aggrMethods type parameter invalid values.")
+  public void testInvalidAggrMethodsTypeValue(String value, boolean required, Vertx vertx,
+                                         VertxTestContext testContext) {
+    aggrMethodsTypeValidator = new AggrMethodsTypeValidator(value, required);
+    assertThrows(DxRuntimeException.class, () -> aggrMethodsTypeValidator.isValid());
+    testContext.completeNow();
+  }
+}
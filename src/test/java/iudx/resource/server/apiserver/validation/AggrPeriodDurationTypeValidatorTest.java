@@ -0,0 +1,72 @@
+package iudx.resource.server.apiserver.validation;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.cli.annotations.Description;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.resource.server.apiserver.exceptions.DxRuntimeException;
+import iudx.resource.server.apiserver.validation.types.AggrPeriodDurationTypeValidator;
+
+@ExtendWith(VertxExtension.class)
+public class AggrPeriodDurationTypeValidatorTest {
+
+  private AggrPeriodDurationTypeValidator aggrPeriodDurationTypeValidator;
+
+  @BeforeEach
+  public void setup(Vertx vertx, VertxTestContext testContext) {
+    testContext.completeNow();
+  }
+
+  static Stream<Arguments> allowedValues() {
+    // Add any valid value which will pass successfully.
+    return Stream.of(
+            Arguments.of(null, false),
+            Arguments.of("PT1M", false),
+            Arguments.of("PT1H", true),
+            Arguments.of("P1D", false),
+            Arguments.of("P10D", false));
+  }
+
+  @ParameterizedTest
+  @MethodSource("allowedValues")
+  @Description("aggrPeriodDuration type parameter allowed values.")
+  public void testValidAggrPeriodDurationTypeValue(String value, boolean required, Vertx vertx,
+                                       VertxTestContext testContext) {
+    aggrPeriodDurationTypeValidator = new AggrPeriodDurationTypeValidator(value, required);
+    assertTrue(aggrPeriodDurationTypeValidator.isValid());
+    testContext.completeNow();
+  }
+
+  static Stream<Arguments> invalidValues() {
+    return Stream.of(
+            Arguments.of("   ", false),
+            Arguments.of("PT30S", false),
+            Arguments.of("P11D", false),
+            Arguments.of("P1M", false),
+            Arguments.of("1h", false),
+            Arguments.of(null, true),
+            Arguments.of("", true)
+    );
+  }
+
+  @ParameterizedTest
+  @MethodSource("invalidValues")
+  @Description("aggrPeriodDuration type parameter invalid values.")
+  public void testInvalidAggrPeriodDurationTypeValue(String value, boolean required, Vertx vertx,
+                                         VertxTestContext testContext) {
+    aggrPeriodDurationTypeValidator = new AggrPeriodDurationTypeValidator(value, required);
+    assertThrows(DxRuntimeException.class, () -> aggrPeriodDurationTypeValidator.isValid());
+    testContext.completeNow();
+  }
+}
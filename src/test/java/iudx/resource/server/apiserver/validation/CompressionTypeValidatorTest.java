@@ -0,0 +1,57 @@
+package iudx.resource.server.apiserver.validation;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.resource.server.apiserver.exceptions.DxRuntimeException;
+import iudx.resource.server.apiserver.validation.types.CompressionTypeValidator;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+@ExtendWith(VertxExtension.class)
+public class CompressionTypeValidatorTest {
+  CompressionTypeValidator typeValidator;
+
+  static Stream<Arguments> input() {
+    return Stream.of(
+        Arguments.of(null, false),
+        Arguments.of("gzip", false),
+        Arguments.of("zstd", false),
+        Arguments.of("gzip", true),
+        Arguments.of("zstd", true));
+  }
+
+  static Stream<Arguments> inputValues() {
+    return Stream.of(
+        Arguments.of("br", false),
+        Arguments.of("GZIP", false),
+        Arguments.of("", false),
+        Arguments.of("", true),
+        Arguments.of(null, true));
+  }
+
+  @ParameterizedTest
+  @DisplayName("Test isValid method : Success")
+  @MethodSource("input")
+  public void testIsValid(String value, boolean required, VertxTestContext vertxTestContext) {
+    typeValidator = new CompressionTypeValidator(value, required);
+    assertTrue(typeValidator.isValid());
+    vertxTestContext.completeNow();
+  }
+
+  @ParameterizedTest
+  @DisplayName("Test isValid method : Failure")
+  @MethodSource("inputValues")
+  public void testIsValidFailure(
+      String value, boolean required, VertxTestContext vertxTestContext) {
+    typeValidator = new CompressionTypeValidator(value, required);
+    assertThrows(DxRuntimeException.class, () -> typeValidator.isValid());
+    vertxTestContext.completeNow();
+  }
+}
@@ -7,6 +7,7 @@ import java.util.stream.Stream;
 
 import org.apache.commons.lang3.RandomStringUtils;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
@@ -94,4 +95,16 @@ public class IdTypeValidatorTest {
     assertThrows(DxRuntimeException.class, () -> idTypeValidator.isValid());
     testContext.completeNow();
   }
+
+  @Test
+  @Description("id type parameter with multiple ids.")
+  public void testMultipleIDTypeValue(Vertx vertx, VertxTestContext testContext) {
+    String ids = "b58da193-23d9-43eb-b98a-a103d4b6103c,5b7556b5-0779-4c47-9cf2-3f209779aa22";
+    assertTrue(new IdTypeValidator(ids, true, 2).isValid());
+    assertThrows(DxRuntimeException.class, () -> new IdTypeValidator(ids, true).isValid());
+    assertThrows(
+        DxRuntimeException.class, () -> new IdTypeValidator(ids + ",bypass", true, 3).isValid());
+    assertThrows(DxRuntimeException.class, () -> new IdTypeValidator(ids + ",", true, 3).isValid());
+    testContext.completeNow();
+  }
 }
@@ -6,6 +6,9 @@ import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
@@ -34,6 +37,9 @@ import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
 import iudx.resource.server.configuration.Configuration;
 import iudx.resource.server.database.elastic.ElasticClient;
+import iudx.resource.server.database.elastic.IndexResolver;
+import iudx.resource.server.database.elastic.RawSearchResponse;
+import iudx.resource.server.database.elastic.SearchCursor;
 @ExtendWith({VertxExtension.class, MockitoExtension.class})
 public class DatabaseServiceTest {
   private static final Logger LOGGER = LogManager.getLogger(DatabaseServiceTest.class);
@@ -133,8 +139,7 @@ public class DatabaseServiceTest {
             .when(dbSpy).checkQuery(any());
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
 
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
-    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any(),anyInt())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
       testContext.completeNow();
@@ -338,8 +343,7 @@ public class DatabaseServiceTest {
             .when(dbSpy).checkQuery(any());
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
-    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any(),anyInt())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
       assertNotNull(handler.getJsonArray("results"));
@@ -452,8 +456,7 @@ public class DatabaseServiceTest {
             .when(dbSpy).checkQuery(any());
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
-    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any(),anyInt())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
       assertEquals(handler,esJson);
@@ -503,8 +506,7 @@ public class DatabaseServiceTest {
             .when(dbSpy).checkQuery(any());
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
-    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any(),anyInt())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
       assertNotNull(handler.getString("results"));
@@ -594,9 +596,8 @@ public class DatabaseServiceTest {
             .when(dbSpy).checkQuery(any());
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
 
-    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any(),anyInt())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
 
@@ -682,8 +683,7 @@ public class DatabaseServiceTest {
             .when(dbSpy).checkQuery(any());
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
-    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any(),anyInt())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
       assertEquals(esJson, handler);
@@ -775,9 +775,8 @@ public class DatabaseServiceTest {
             .when(dbSpy).checkQuery(any());
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
 
-    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any(),anyInt())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
       assertNotNull(handler.getString("results"));
@@ -823,9 +822,8 @@ public class DatabaseServiceTest {
             .when(dbSpy).checkQuery(any());
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
 
-    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any(),anyInt())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
       assertNotNull(handler.getString("results"));
@@ -872,9 +870,8 @@ public class DatabaseServiceTest {
             .when(dbSpy).checkQuery(any());
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
 
-    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any(),anyInt())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
       assertNotNull(handler.getString("results"));
@@ -1026,9 +1023,8 @@ public class DatabaseServiceTest {
             .when(dbSpy).checkQuery(any());
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
 
-    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any(),anyInt())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
       assertEquals(handler,esJson);
@@ -1272,9 +1268,8 @@ public class DatabaseServiceTest {
             .when(dbSpy).checkQuery(any());
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
 
-    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any(),anyInt())).thenReturn(Future.succeededFuture(esJson));
     dbSpy.search(request).onSuccess(handler -> {
       assertEquals(esJson, handler);
       testContext.completeNow();
@@ -1391,9 +1386,8 @@ public class DatabaseServiceTest {
             .when(dbSpy).checkQuery(any());
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
 
-    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any(),anyInt())).thenReturn(Future.succeededFuture(esJson));
     dbSpy.search(request).onSuccess(handler -> {
       assertNotNull(handler.getJsonArray("results"));
       testContext.completeNow();
@@ -1436,9 +1430,8 @@ public class DatabaseServiceTest {
             .when(dbSpy).checkQuery(any());
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
 
-    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any(),anyInt())).thenReturn(Future.succeededFuture(esJson));
     dbSpy.search(request).onSuccess(handler -> {
       assertNotNull(handler.getJsonArray("results"));
       testContext.completeNow();
@@ -1481,9 +1474,8 @@ public class DatabaseServiceTest {
             .when(dbSpy).checkQuery(any());
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
 
-    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any(),anyInt())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
       assertNotNull(handler.getJsonArray("results"));
@@ -1527,8 +1519,7 @@ public class DatabaseServiceTest {
             .when(dbSpy).checkQuery(any());
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
-    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any(),anyInt())).thenReturn(Future.succeededFuture(esJson));
 
 
     dbSpy.search(request).onSuccess(handler -> {
@@ -1574,8 +1565,7 @@ public class DatabaseServiceTest {
             .when(dbSpy).checkQuery(any());
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
-    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any(),anyInt())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
       assertNotNull(handler.getJsonArray("results"));
@@ -1637,8 +1627,7 @@ public class DatabaseServiceTest {
             .when(dbSpy).checkQuery(any());
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
-    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any(),anyInt())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
       assertNotNull(handler.getJsonArray("results"));
@@ -1682,8 +1671,7 @@ public class DatabaseServiceTest {
             .when(dbSpy).checkQuery(any());
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",1)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
-    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any(),anyInt())).thenReturn(Future.succeededFuture(esJson));
 
     dbSpy.search(request).onSuccess(handler -> {
       assertNotNull(handler.getJsonArray("results"));
@@ -2094,23 +2082,160 @@ public class DatabaseServiceTest {
 
    when(cacheService.get(any(JsonObject.class))).thenReturn(Future.succeededFuture(jsonObject));
 
-    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",60000)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
-JsonObject expectedJson = new JsonObject().put("type",413).put("title","urn:dx:rs:payloadTooLarge").put("details","Response size exceeds limit");
-    dbService
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("totalHits",60000).put("results", new JsonArray());
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any(),anyInt())).thenReturn(Future.succeededFuture(esJson));
+    JsonObject expectedJson = new JsonObject().put("type",413).put("title","urn:dx:rs:payloadTooLarge").put("details","Response size exceeds limit");
+    databaseServiceImpl
         .search(request)
-        .onFailure(
-            handler -> {
-              assertEquals(
-                  handler.getMessage(),
-                  expectedJson.toString());
-              testContext.completeNow();
+        .onComplete(
+            testContext.failing(
+                handler -> {
+                  testContext.verify(
+                      () -> assertEquals(expectedJson.toString(), handler.getMessage()));
+                  testContext.completeNow();
+                }));
+  }
+
+  @Test
+  @DisplayName("Testing Attribute Search total lower bound checked with threshold count")
+  void searchAttributeThresholdCount(VertxTestContext testContext) {
+    JsonObject request = new JsonObject()
+            .put("id", new JsonArray().add("b58da193-23d9-43eb-b98a-a103d4b6103c"))
+            .put("searchType", "attributeSearch_")
+            .put("attr-query",
+                    new JsonArray()
+                            .add(new JsonObject()
+                                    .put("attribute", "referenceLevel")
+                                    .put("operator", "!=")
+                                    .put("value", "5")))
+            .put("applicableFilters", new JsonArray().add("ATTR").add("TEMPORAL").add("SPATIAL"));
+    JsonObject jsonObject = new JsonObject()
+            .put("id", "b58da193-23d9-43eb-b98a-a103d4b6103c")
+            .put("type", List.of("iudx:Resource", "iudx:TransitManagement"))
+            .put("name","dummy_name")
+            .put("resourceGroup","5b7556b5-0779-4c47-9cf2-3f209779aa22");
+    when(cacheService.get(any(JsonObject.class))).thenReturn(Future.succeededFuture(jsonObject));
+    // total is tracked only up to 10000, so the one reported is a lower bound
+    JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("totalHits",10000).put("results", new JsonArray());
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any(),eq(10000))).thenReturn(Future.succeededFuture(esJson));
+    when(elasticClient.asyncCount(anyString(), any(), eq(50001L)))
+        .thenReturn(
+            Future.succeededFuture(
+                new JsonObject().put("results", new JsonArray().add(new JsonObject().put("totalHits", 50001)))));
+    DatabaseServiceImpl service =
+        new DatabaseServiceImpl(
+            elasticClient,
+            timeLimit,
+            new IndexResolver(tenantPrefix),
+            cacheService,
+            10000,
+            SearchResultCache.disabled());
+
+    service
+        .search(request)
+        .onComplete(
+            testContext.failing(
+                handler -> {
+                  testContext.verify(
+                      () -> {
+                        assertTrue(handler.getMessage().contains("urn:dx:rs:payloadTooLarge"));
+                        verify(elasticClient).asyncCount(anyString(), any(), eq(50001L));
+                      });
+                  testContext.completeNow();
+                }));
+  }
+
+  @Test
+  @DisplayName("Testing threshold count is needed only for a total short of the limit")
+  void exceedsMaxSearchHits(VertxTestContext testContext) {
+    DatabaseServiceImpl service =
+        new DatabaseServiceImpl(
+            elasticClient,
+            timeLimit,
+            new IndexResolver(tenantPrefix),
+            cacheService,
+            10000,
+            SearchResultCache.disabled());
+    when(elasticClient.asyncCount(anyString(), any(), eq(50001L)))
+        .thenReturn(
+            Future.succeededFuture(
+                new JsonObject().put("results", new JsonArray().add(new JsonObject().put("totalHits", 20000)))));
+
+    service
+        .exceedsMaxSearchHits("index", null, 9999)
+        .compose(
+            exact -> {
+              assertFalse(exact);
+              return service.exceedsMaxSearchHits("index", null, 60000);
             })
-        .onSuccess(
-            handler -> {
-              testContext.failed();
-            });
+        .compose(
+            over -> {
+              assertTrue(over);
+              verify(elasticClient, never()).asyncCount(anyString(), any(), anyLong());
+              return service.exceedsMaxSearchHits("index", null, 10000);
+            })
+        .onComplete(
+            testContext.succeeding(
+                counted -> {
+                  testContext.verify(
+                      () -> {
+                        assertFalse(counted);
+                        verify(elasticClient).asyncCount("index", null, 50001L);
+                      });
+                  testContext.completeNow();
+                }));
+  }
+
+  @Test
+  @DisplayName("Testing stream page is passed through as lines, with a cursor for the next page")
+  void searchStreamPage(VertxTestContext testContext) throws IOException {
+    JsonObject request = new JsonObject()
+            .put("id", new JsonArray().add("b58da193-23d9-43eb-b98a-a103d4b6103c"))
+            .put("searchType", "attributeSearch_")
+            .put("attr-query", new JsonArray().add(new JsonObject()
+                    .put("attribute", "referenceLevel").put("operator", "!=").put("value", "5")))
+            .put("applicableFilters", new JsonArray().add("ATTR").add("TEMPORAL").add("SPATIAL"))
+            .put("cursor", "*")
+            .put("limit", "2");
+    JsonObject item = new JsonObject()
+            .put("id", "b58da193-23d9-43eb-b98a-a103d4b6103c")
+            .put("type", List.of("iudx:Resource", "iudx:TransitManagement"))
+            .put("name", "dummy_name")
+            .put("resourceGroup", "5b7556b5-0779-4c47-9cf2-3f209779aa22");
+    String body = "{\"pit_id\":\"pit-2\",\"hits\":{\"hits\":["
+            + "{\"_source\":{\"id\":\"a\"},\"sort\":[1,1]},{\"_source\":{\"id\":\"b\"},\"sort\":[2,7]}]}}";
+    when(cacheService.get(any(JsonObject.class))).thenReturn(Future.succeededFuture(item));
+    when(elasticClient.openPointInTime(anyString())).thenReturn(Future.succeededFuture("pit-1"));
+    when(elasticClient.asyncSearchAfterRaw(any(), any(), eq(2), any()))
+            .thenReturn(Future.succeededFuture(
+                    RawSearchResponse.parseLines(body.getBytes(StandardCharsets.UTF_8))));
+
+    dbService.searchStreamPage(request).onComplete(testContext.succeeding(page -> {
+      testContext.verify(() -> {
+        assertEquals("{\"id\":\"a\"}\n{\"id\":\"b\"}\n", page.getBuffer("results").toString());
+        assertEquals(2, page.getInteger("hitCount"));
+        SearchCursor next = SearchCursor.decode(page.getString("next"));
+        assertEquals("pit-2", next.getPitId());
+        assertEquals(7L, next.getSearchAfter().get(1).longValue());
+      });
+      testContext.completeNow();
+    }));
+  }
+
+  @Test
+  @DisplayName("Testing closing a cursor closes its point-in-time")
+  void closeCursor(VertxTestContext testContext) {
+    String cursor = new SearchCursor("pit-1", List.of(FieldValue.of(1L))).encode();
+
+    dbService.closeCursor(cursor).compose(closed -> {
+      verify(elasticClient).closePointInTime("pit-1");
+      return dbService.closeCursor("not-a-cursor");
+    }).onComplete(testContext.failing(failure -> {
+      testContext.verify(() -> assertTrue(failure.getMessage().contains("Invalid or expired cursor")));
+      testContext.completeNow();
+    }));
   }
+
   @Test
   @DisplayName("Testing Attribute Search (property is not equal)")
   void searchAttribute2(VertxTestContext testContext) {
@@ -2139,8 +2264,7 @@ JsonObject expectedJson = new JsonObject().put("type",413).put("title","urn:dx:r
     when(cacheService.get(any(JsonObject.class))).thenReturn(Future.succeededFuture(jsonObject));
 
     JsonObject esJson = new JsonObject().put("type","urn:dx:rs:success").put("title","Success").put("results", new JsonArray().add(new JsonObject().put("totalHits",0)));
-    when(elasticClient.asyncCount(anyString(),any())).thenReturn(Future.succeededFuture(esJson));
-    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any())).thenReturn(Future.succeededFuture(esJson));
+    when(elasticClient.asyncSearch(anyString(),any(),anyInt(),anyInt(),any(),anyInt())).thenReturn(Future.succeededFuture(esJson));
 
     dbService.search(request).onSuccess(handler -> {
       assertNotNull(handler.getJsonArray("results"));
@@ -0,0 +1,155 @@
+package iudx.resource.server.database.archives;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.query_dsl.MatchAllQuery;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch._types.query_dsl.TermsQuery;
+import co.elastic.clients.elasticsearch.core.search.SourceConfig;
+import io.vertx.core.Future;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.resource.server.database.elastic.TemporalWindow;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class SearchResultCacheTest {
+
+  private final Query query = MatchAllQuery.of(q -> q)._toQuery();
+
+  private TemporalWindow window(ZonedDateTime end) {
+    JsonObject request =
+        new JsonObject()
+            .put("timerel", "during")
+            .put("time", end.minusDays(1).toString())
+            .put("endtime", end.toString());
+    return TemporalWindow.forRelation(request, 10);
+  }
+
+  @Test
+  @DisplayName("Test settled window response is loaded once")
+  public void testSettledWindowCached(VertxTestContext vertxTestContext) {
+    SearchResultCache cache = new SearchResultCache(true, 1024 * 1024, Duration.ofHours(1));
+    AtomicInteger loads = new AtomicInteger();
+    String key = cache.getKey("search", "idx", window(ZonedDateTime.now().minusDays(2)), query, 10);
+
+    assertNotNull(key);
+    cache
+        .getOrLoad(
+            key,
+            () -> Future.succeededFuture(Buffer.buffer("{\"a\":" + loads.incrementAndGet() + "}")))
+        .compose(first -> cache.getOrLoad(key, () -> Future.succeededFuture(Buffer.buffer("{}"))))
+        .onComplete(
+            vertxTestContext.succeeding(
+                second -> {
+                  assertEquals(1, loads.get());
+                  assertEquals("{\"a\":1}", second.toString());
+                  vertxTestContext.completeNow();
+                }));
+  }
+
+  @Test
+  @DisplayName("Test window closing within settled horizon is not cached")
+  public void testRecentWindowNotCached(VertxTestContext vertxTestContext) {
+    SearchResultCache cache = new SearchResultCache(true, 1024 * 1024, Duration.ofHours(1));
+
+    assertNull(cache.getKey("search", "idx", window(ZonedDateTime.now().minusMinutes(10)), query));
+    assertNull(cache.getKey("search", "idx", TemporalWindow.UNBOUNDED, query));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test keys differ on queries differing past the toString() cut")
+  public void testKeyOfLongQuery(VertxTestContext vertxTestContext) {
+    SearchResultCache cache = new SearchResultCache(true, 1024 * 1024, Duration.ofHours(1));
+    TemporalWindow window = window(ZonedDateTime.now().minusDays(2));
+    Query query = idsQuery("a");
+    Query otherQuery = idsQuery("b");
+
+    assertEquals(query.toString(), otherQuery.toString());
+    assertNotEquals(
+        cache.getKey("search", "idx", window, query),
+        cache.getKey("search", "idx", window, otherQuery));
+    assertNotEquals(
+        cache.getKey("search", "idx", window, query, SourceConfig.of(s -> s.fetch(true))),
+        cache.getKey("search", "idx", window, query, SourceConfig.of(s -> s.fetch(false))));
+    vertxTestContext.completeNow();
+  }
+
+  /* 25 ids of 512 characters, the most validators allow, differing only in the last character */
+  private Query idsQuery(String last) {
+    List<FieldValue> ids = new ArrayList<>();
+    for (int i = 0; i < 25; i++) {
+      ids.add(FieldValue.of(String.format("%03d", i) + "x".repeat(508) + (i < 24 ? "x" : last)));
+    }
+    return TermsQuery.of(t -> t.field("id").terms(v -> v.value(ids)))._toQuery();
+  }
+
+  @Test
+  @DisplayName("Test keys differ on paging")
+  public void testKeyIncludesParams(VertxTestContext vertxTestContext) {
+    SearchResultCache cache = new SearchResultCache(true, 1024 * 1024, Duration.ofHours(1));
+    TemporalWindow window = window(ZonedDateTime.now().minusDays(2));
+
+    assertNotEquals(
+        cache.getKey("search", "idx", window, query, 10, 0),
+        cache.getKey("search", "idx", window, query, 10, 10));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test failed loads are not cached and disabled cache never caches")
+  public void testFailureAndDisabled(VertxTestContext vertxTestContext) {
+    SearchResultCache cache = new SearchResultCache(true, 1024 * 1024, Duration.ofHours(1));
+    String key = cache.getKey("count", "idx", window(ZonedDateTime.now().minusDays(2)), query);
+
+    assertNull(
+        SearchResultCache.disabled()
+            .getKey("count", "idx", window(ZonedDateTime.now().minusDays(2)), query));
+    cache
+        .getOrLoad(key, () -> Future.failedFuture("es down"))
+        .recover(failure -> cache.getOrLoad(key, () -> Future.succeededFuture(Buffer.buffer("[]"))))
+        .onComplete(
+            vertxTestContext.succeeding(
+                result -> {
+                  assertEquals(new JsonArray(), new JsonArray(result));
+                  vertxTestContext.completeNow();
+                }));
+  }
+
+  @Test
+  @DisplayName("Test JSON responses are encoded only when cached")
+  public void testJsonPassedThroughUncached(VertxTestContext vertxTestContext) {
+    SearchResultCache cache = new SearchResultCache(true, 1024 * 1024, Duration.ofHours(1));
+    String key = cache.getKey("search", "idx", window(ZonedDateTime.now().minusDays(2)), query);
+    JsonObject response = new JsonObject().put("a", 1);
+
+    cache
+        .getOrLoadJson(null, () -> Future.succeededFuture(response))
+        .compose(
+            uncached -> {
+              assertSame(response, uncached);
+              return cache.getOrLoadJson(key, () -> Future.succeededFuture(response));
+            })
+        .compose(
+            first -> cache.getOrLoadJson(key, () -> Future.succeededFuture(new JsonObject())))
+        .onComplete(
+            vertxTestContext.succeeding(
+                cached -> {
+                  assertNotSame(response, cached);
+                  assertEquals(response, cached);
+                  vertxTestContext.completeNow();
+                }));
+  }
+}
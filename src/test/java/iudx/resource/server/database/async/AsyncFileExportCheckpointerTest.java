@@ -0,0 +1,124 @@
+package iudx.resource.server.database.async;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.resource.server.database.async.util.ResumableUploadStream;
+import iudx.resource.server.database.postgres.PostgresService;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class AsyncFileExportCheckpointerTest {
+
+  private static final String SEARCH_ID = "18cc743b-59a4-4c26-9f54-e243986ed709";
+
+  private ResumableUploadStream uploadStream;
+  private PostgresService postgresService;
+  private List<String> queries;
+  private boolean isPgFailing;
+
+  @BeforeEach
+  @SuppressWarnings("unchecked")
+  public void setUp(VertxTestContext vertxTestContext) throws IOException {
+    uploadStream = mock(ResumableUploadStream.class);
+    postgresService = mock(PostgresService.class);
+    queries = new ArrayList<>();
+    isPgFailing = false;
+    when(uploadStream.endPart())
+        .thenReturn(CompletableFuture.completedFuture(new JsonObject().put("uploadId", "1")));
+    doAnswer(
+            invocation -> {
+              queries.add(invocation.getArgument(0));
+              Handler<AsyncResult<JsonObject>> handler = invocation.getArgument(1);
+              handler.handle(
+                  isPgFailing
+                      ? Future.failedFuture("pg down")
+                      : Future.succeededFuture(new JsonObject()));
+              return null;
+            })
+        .when(postgresService)
+        .executeQuery(any(), any());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test checkpoint is saved with the upload state once its part is uploaded")
+  public void testCheckpoint(VertxTestContext vertxTestContext) {
+    AsyncFileExportCheckpointer checkpointer =
+        new AsyncFileExportCheckpointer(SEARCH_ID, "object", uploadStream, postgresService, null);
+
+    checkpointer.checkpoint(new JsonObject().put("formatter", "it's"));
+
+    JsonObject expected =
+        new JsonObject()
+            .put("objectId", "object")
+            .put("upload", new JsonObject().put("uploadId", "1"))
+            .put("position", new JsonObject().put("formatter", "it's"));
+    assertEquals(1, queries.size());
+    assertTrue(queries.get(0).contains("it''s"));
+    assertTrue(queries.get(0).contains(SEARCH_ID));
+    checkpointer
+        .getLastCheckpoint()
+        .onComplete(
+            vertxTestContext.succeeding(
+                checkpoint -> {
+                  assertEquals(expected, checkpoint);
+                  vertxTestContext.completeNow();
+                }));
+  }
+
+  @Test
+  @DisplayName("Test file is only cut without a position to resume from")
+  public void testCheckpointWithoutPosition(VertxTestContext vertxTestContext) throws IOException {
+    AsyncFileExportCheckpointer checkpointer =
+        new AsyncFileExportCheckpointer(SEARCH_ID, "object", uploadStream, postgresService, null);
+
+    checkpointer.checkpoint(null);
+
+    verify(uploadStream).endPart();
+    assertTrue(queries.isEmpty());
+    checkpointer
+        .getLastCheckpoint()
+        .onComplete(
+            vertxTestContext.succeeding(
+                checkpoint -> {
+                  assertNull(checkpoint);
+                  vertxTestContext.completeNow();
+                }));
+  }
+
+  @Test
+  @DisplayName("Test failed save keeps the last checkpoint saved")
+  public void testFailedSave(VertxTestContext vertxTestContext) {
+    JsonObject resumedFrom = new JsonObject().put("objectId", "object");
+    AsyncFileExportCheckpointer checkpointer =
+        new AsyncFileExportCheckpointer(
+            SEARCH_ID, "object", uploadStream, postgresService, resumedFrom);
+    isPgFailing = true;
+
+    checkpointer.checkpoint(new JsonObject());
+
+    checkpointer
+        .getLastCheckpoint()
+        .onComplete(
+            vertxTestContext.succeeding(
+                checkpoint -> {
+                  assertSame(resumedFrom, checkpoint);
+                  vertxTestContext.completeNow();
+                }));
+  }
+}
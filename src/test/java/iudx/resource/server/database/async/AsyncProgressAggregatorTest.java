@@ -0,0 +1,121 @@
+package iudx.resource.server.database.async;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.resource.server.database.postgres.PostgresService;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class AsyncProgressAggregatorTest {
+
+  private static final String SEARCH_ID_1 = "18cc743b-59a4-4c26-9f54-e243986ed709";
+  private static final String SEARCH_ID_2 = "4b25aa92-47bb-4c91-98c0-47a1c7a51fbe";
+
+  private PostgresService postgresService;
+  private List<String> queries;
+  private List<Handler<AsyncResult<JsonObject>>> pgHandlers;
+  private AsyncProgressAggregator progressAggregator;
+
+  @BeforeEach
+  public void setUp(VertxTestContext vertxTestContext) {
+    postgresService = mock(PostgresService.class);
+    queries = new ArrayList<>();
+    pgHandlers = new ArrayList<>();
+    doAnswer(
+            invocation -> {
+              queries.add(invocation.getArgument(0));
+              pgHandlers.add(invocation.getArgument(1));
+              return null;
+            })
+        .when(postgresService)
+        .executeQuery(any(), any());
+    progressAggregator = new AsyncProgressAggregator(postgresService);
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test latest progress of all exports is written in a single update")
+  public void testFlush(VertxTestContext vertxTestContext) {
+    ProgressListener listener1 =
+        new AsyncFileScrollProgressListener(SEARCH_ID_1, progressAggregator);
+    ProgressListener listener2 =
+        new AsyncFileScrollProgressListener(SEARCH_ID_2, progressAggregator);
+    listener1.updateProgress(0.2);
+    listener1.updateProgress(0.5);
+    listener1.updateProgress(0.4);
+    listener2.updateProgress(0.1);
+    listener2.updateProgress(1.5);
+
+    progressAggregator.flush();
+
+    assertEquals(1, queries.size());
+    assertTrue(queries.get(0).contains("('" + SEARCH_ID_1 + "',50.0)"));
+    assertTrue(queries.get(0).contains("('" + SEARCH_ID_2 + "',10.0)"));
+    assertTrue(queries.get(0).contains("s.progress<v.progress"));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test flush without progress, or while a flush is running, writes nothing")
+  public void testSkippedFlush(VertxTestContext vertxTestContext) {
+    progressAggregator.flush();
+    assertTrue(queries.isEmpty());
+
+    progressAggregator.update(SEARCH_ID_1, 0.2);
+    progressAggregator.flush();
+    progressAggregator.update(SEARCH_ID_1, 0.3);
+    progressAggregator.flush();
+    assertEquals(1, queries.size());
+
+    pgHandlers.get(0).handle(Future.failedFuture("pg down"));
+    progressAggregator.flush();
+    assertEquals(2, queries.size());
+    assertTrue(queries.get(1).contains("('" + SEARCH_ID_1 + "',30.0)"));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test progress of a finished export isn't written")
+  public void testFinish(VertxTestContext vertxTestContext) {
+    ProgressListener listener =
+        new AsyncFileScrollProgressListener(SEARCH_ID_1, progressAggregator);
+    listener.updateProgress(0.9);
+    listener.finish();
+
+    progressAggregator.flush();
+
+    assertTrue(queries.isEmpty());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test progress of a failed flush is written with the next one")
+  public void testFailedFlush(VertxTestContext vertxTestContext) {
+    progressAggregator.update(SEARCH_ID_1, 0.4);
+    progressAggregator.update(SEARCH_ID_2, 0.6);
+    progressAggregator.flush();
+    progressAggregator.update(SEARCH_ID_1, 0.2);
+    progressAggregator.remove(SEARCH_ID_2);
+
+    pgHandlers.get(0).handle(Future.failedFuture("pg down"));
+    progressAggregator.flush();
+
+    assertEquals(2, queries.size());
+    assertTrue(queries.get(1).contains("('" + SEARCH_ID_1 + "',40.0)"));
+    assertFalse(queries.get(1).contains(SEARCH_ID_2));
+    vertxTestContext.completeNow();
+  }
+}
@@ -2,15 +2,17 @@ package iudx.resource.server.database.async;
 
 import static iudx.resource.server.database.archives.Constants.RESPONSE_ATTRS;
 import static iudx.resource.server.metering.util.Constants.SUCCESS;
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 import static org.mockito.Mockito.lenient;
 
 import java.io.File;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.time.ZonedDateTime;
 
 import iudx.resource.server.cache.CacheService;
 import org.apache.logging.log4j.LogManager;
@@ -21,6 +23,7 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.invocation.InvocationOnMock;
@@ -37,6 +40,7 @@ import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
 import iudx.resource.server.configuration.Configuration;
 import iudx.resource.server.database.async.util.S3FileOpsHelper;
+import iudx.resource.server.database.async.util.S3MultipartOutputStream;
 import iudx.resource.server.database.async.util.Util;
 import iudx.resource.server.database.elastic.ElasticClient;
 import iudx.resource.server.database.postgres.PostgresService;
@@ -62,7 +66,6 @@ public class AsyncServiceTest {
   private static String password;
   private static String timeLimit;
   private static int databasePort;
-  private static String filePath;
   private static String bucketName;
   static AsyncServiceImpl asyncService2;
   private static AsyncResult<JsonObject> asyncResult1, asyncResult2;
@@ -86,7 +89,6 @@ public class AsyncServiceTest {
     asyncConfig = config.configLoader(8, vertx);
     asyncConfig.put("tenantPrefix","iudx");
     timeLimit = asyncConfig.getString("timeLimit");
-    filePath = asyncConfig.getString("filePath");
     tenantPrefix = asyncConfig.getString("tenantPrefix");
 
     file = mock(File.class);
@@ -97,7 +99,7 @@ public class AsyncServiceTest {
     cacheSer = mock(CacheService.class);
 
     asyncService =
-        new AsyncServiceImpl(vertx, client, pgService, fileOpsHelper, filePath, tenantPrefix,cacheSer);
+        new AsyncServiceImpl(vertx, client, pgService, fileOpsHelper, tenantPrefix,cacheSer);
     asyncServiceSpy = spy(asyncService);
     asyncService2 = spy(asyncService);
 
@@ -107,6 +109,8 @@ public class AsyncServiceTest {
 
     URL url = new URL("https://www.example.com");
     when(fileOpsHelper.generatePreSignedUrl(anyLong(), any())).thenReturn(url);
+    when(fileOpsHelper.openResumableUploadStream(any(), any(), any(), any()))
+        .thenReturn(mock(S3MultipartOutputStream.class));
 
     Mockito.doAnswer(
             new Answer<AsyncResult<JsonObject>>() {
@@ -130,7 +134,9 @@ public class AsyncServiceTest {
               }
             })
         .when(client)
-        .asyncScroll(any(File.class), any(), any(),any(), any(), any(), anyString(), anyString());
+        .asyncScroll(
+            any(OutputStream.class), any(), any(), any(), any(), any(), any(), anyString(), any(),
+            any());
 
     Mockito.doAnswer(
             new Answer<AsyncResult<JsonObject>>() {
@@ -202,7 +208,7 @@ public class AsyncServiceTest {
 
     doAnswer(Answer -> Future.succeededFuture(record))
         .when(asyncServiceSpy)
-        .getRecord4RequestId(any());
+        .getRecord4RequestId(any(), any());
     doAnswer(Answer -> Future.succeededFuture()).when(asyncServiceSpy).executePgQuery(any());
 
     JsonObject providerJson =
@@ -212,7 +218,7 @@ public class AsyncServiceTest {
                     .put("resourceGroup", "dummy_resource");
 
     when(cacheSer.get(any())).thenReturn(Future.succeededFuture(providerJson));
-    asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv","consumer","","");
+    asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv","consumer","","", handler -> {});
     testContext.completeNow();
   }
   //@Test
@@ -227,14 +233,14 @@ public class AsyncServiceTest {
 
     doAnswer(Answer -> Future.failedFuture("failed"))
             .when(asyncServiceSpy)
-            .getRecord4RequestId(any());
+            .getRecord4RequestId(any(), any());
 
     when(asyncResult1.succeeded()).thenReturn(true);
     when(asyncResult1.result()).thenReturn(jsonObject);
 
-    when(client.asyncScroll(any(),anyString(),any(),any(),anyString(),any(),anyString(),anyString())).thenReturn(Future.failedFuture(""));
+    when(client.asyncScroll(any(),anyString(),any(),any(),any(),anyString(),any(),anyString(),any(),any())).thenReturn(Future.failedFuture(""));
 
-    asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv","consumer","","");
+    asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv","consumer","","", handler -> {});
 
     testContext.completeNow();
   }
@@ -251,7 +257,7 @@ public class AsyncServiceTest {
 
     doAnswer(Answer -> Future.failedFuture("failed"))
             .when(asyncServiceSpy)
-            .getRecord4RequestId(any());
+            .getRecord4RequestId(any(), any());
 
     when(asyncResult1.succeeded()).thenReturn(true);
     when(asyncResult1.result()).thenReturn(jsonObject);
@@ -268,9 +274,9 @@ public class AsyncServiceTest {
             .put("size", 0);
     when(asyncResult2.succeeded()).thenReturn(true);
     when(asyncResult2.result()).thenReturn(jsonObject2);
-    when(client.asyncScroll(any(),anyString(),any(),any(),anyString(),any(),anyString(),anyString())).thenReturn(Future.succeededFuture(jsonObject2));
+    when(client.asyncScroll(any(),anyString(),any(),any(),any(),anyString(),any(),anyString(),any(),any())).thenReturn(Future.succeededFuture(jsonObject2));
 
-    asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv","consumer","","");
+    asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv","consumer","","", handler -> {});
 
     verify(asyncServiceSpy, times(1)).executePgQuery(any());
     testContext.completeNow();
@@ -286,10 +292,10 @@ public class AsyncServiceTest {
 
     doAnswer(Answer -> Future.succeededFuture(record))
         .when(asyncServiceSpy)
-        .getRecord4RequestId(any());
+        .getRecord4RequestId(any(), any());
     doAnswer(Answer -> Future.failedFuture("fail")).when(asyncServiceSpy).executePgQuery(any());
 
-    asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv","consumer","","");
+    asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv","consumer","","", handler -> {});
     testContext.completeNow();
   }
 
@@ -303,11 +309,11 @@ public class AsyncServiceTest {
 
     doAnswer(Answer -> Future.failedFuture("record doesn't exist"))
         .when(asyncServiceSpy)
-        .getRecord4RequestId(any());
+        .getRecord4RequestId(any(), any());
 
     when(asyncResult1.succeeded()).thenReturn(false);
 
-    asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv","consumer","","");
+    asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv","consumer","","", handler -> {});
     testContext.completeNow();
   }
 
@@ -322,7 +328,7 @@ public class AsyncServiceTest {
 //
 //    doAnswer(Answer -> Future.failedFuture("record doesn't exist"))
 //        .when(asyncServiceSpy)
-//        .getRecord4RequestId(any());
+//        .getRecord4RequestId(any(), any());
 //
 //    when(asyncResult1.succeeded()).thenReturn(true);
 //    when(asyncResult2.succeeded()).thenReturn(false);
@@ -439,6 +445,82 @@ public class AsyncServiceTest {
             });
   }
 
+  @Test
+  @DisplayName("Test identical searches of closed window have the same result key")
+  public void testGetResultKey(VertxTestContext vertxTestContext) {
+    JsonObject query = query().put(RESPONSE_ATTRS, new JsonArray().add("speed").add("id"));
+    JsonObject reordered = query().put(RESPONSE_ATTRS, new JsonArray().add("id").add("speed"));
+    JsonObject openWindow =
+        query().put("endtime", ZonedDateTime.now().plusDays(1).withNano(0).toString());
+
+    String resultKey = asyncService.getResultKey(query, "csv");
+
+    assertNotNull(resultKey);
+    assertEquals(resultKey, asyncService.getResultKey(reordered, "csv"));
+    assertNotEquals(resultKey, asyncService.getResultKey(query, "json"));
+    assertNull(asyncService.getResultKey(openWindow, "csv"));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test result of a window closed within the settled horizon has no result key")
+  public void testGetResultKeyUnsettled(VertxTestContext vertxTestContext) {
+    ZonedDateTime now = ZonedDateTime.now().withNano(0);
+    JsonObject unsettledWindow =
+        query()
+            .put("time", now.minusDays(1).toString())
+            .put("endtime", now.minusMinutes(10).toString());
+    JsonObject settledWindow =
+        query()
+            .put("time", now.minusDays(1).toString())
+            .put("endtime", now.minusMinutes(70).toString());
+
+    assertNull(asyncService.getResultKey(unsettledWindow, "csv"));
+    assertNotNull(asyncService.getResultKey(settledWindow, "csv"));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test result keys differ on queries differing past the toString() cut")
+  public void testGetResultKeyLongQuery(VertxTestContext vertxTestContext) {
+    assertNotEquals(
+        asyncService.getResultKey(query().put("id", ids("a")), "csv"),
+        asyncService.getResultKey(query().put("id", ids("b")), "csv"));
+    vertxTestContext.completeNow();
+  }
+
+  /* 25 ids, 24 of them of 512 characters, differing only in the last character */
+  private JsonArray ids(String last) {
+    JsonArray ids = new JsonArray().add("83c2e5c2-3574-4e11-9530-2b1fbdfce832");
+    for (int i = 1; i < 25; i++) {
+      ids.add(String.format("%03d", i) + "x".repeat(508) + (i < 24 ? "x" : last));
+    }
+    return ids;
+  }
+
+  @Test
+  @DisplayName("Test result found by key is reused only till max result age")
+  public void testGetRecord4ResultKey(VertxTestContext testContext) {
+    ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+    when(asyncResult1.succeeded()).thenReturn(true);
+    when(asyncResult1.result()).thenReturn(new JsonObject().put("result", record()));
+
+    asyncService
+        .getRecord4RequestId("request-id", "result-key")
+        .onComplete(
+            testContext.succeeding(
+                records -> {
+                  verify(pgService, atLeastOnce()).executeQuery(sql.capture(), any());
+                  assertTrue(
+                      sql.getAllValues().stream()
+                          .anyMatch(
+                              query ->
+                                  query.contains("result_key='result-key'")
+                                      && query.contains("interval '1440 minutes'")));
+                  testContext.completeNow();
+                }));
+  }
+
   @Test
   @DisplayName("Test getRecord4RequestId method : Failure")
   public void testGetRecord4RequestIdFailure(VertxTestContext vertxTestContext) {
@@ -454,7 +536,7 @@ public class AsyncServiceTest {
     }).when(postgresService).executeQuery(anyString(), any());
     when(jsonArray.isEmpty()).thenReturn(true);
     asyncService2 = new AsyncServiceImpl(Vertx.vertx(), client, postgresService, fileOpsHelper,
-        filePath, tenantPrefix,cacheService);
+        tenantPrefix,cacheService);
     asyncService2.getRecord4RequestId("Dummy ID").onComplete(handler -> {
       if (handler.failed()) {
         assertEquals("Record doesn't exist in db for requestId.", handler.cause().getMessage());
@@ -470,7 +552,7 @@ public class AsyncServiceTest {
   @DisplayName("Test executePGQuery method : failure")
   public void testExecutePgQueryFailure(VertxTestContext vertxTestContext) {
     asyncService2 = new AsyncServiceImpl(Vertx.vertx(), client, postgresService, fileOpsHelper,
-        filePath, tenantPrefix,cacheService);
+        tenantPrefix,cacheService);
     when(asyncResult2.succeeded()).thenReturn(false);
     when(asyncResult2.cause()).thenReturn(throwable);
     doAnswer(new Answer<AsyncResult<JsonObject>>() {
@@ -496,9 +578,9 @@ public class AsyncServiceTest {
   public void testScrollQueryWithInvalidQuery(VertxTestContext vertxTestContext) {
     ProgressListener progressListener = mock(ProgressListener.class);
     asyncService2 = new AsyncServiceImpl(Vertx.vertx(), client, postgresService, fileOpsHelper,
-        filePath, tenantPrefix,cacheService);
+        tenantPrefix,cacheService);
     when(jsonObject.put(anyString(), anyBoolean())).thenReturn(jsonObject);
-    asyncService2.scrollQuery(file, jsonObject, "Dummy SearchID", progressListener, "csv", handler -> {
+    asyncService2.scrollQuery(mock(OutputStream.class), jsonObject, "Dummy SearchID", progressListener, "csv", handler -> {
       if (handler.succeeded()) {
         vertxTestContext.failNow(handler.cause());
       } else {
@@ -514,7 +596,6 @@ public class AsyncServiceTest {
   @ValueSource(booleans = {true,false})
   @DisplayName("Test updateProgress method : Different boolean values")
   public void testUpdateProgressFailure(boolean value,VertxTestContext vertxTestContext) {
-    AsyncFileScrollProgressListener.executionCounter = mock(AsyncFileScrollProgressListener.ExecutionCounter.class);
     when(asyncResult2.succeeded()).thenReturn(value);
     lenient().when(asyncResult2.cause()).thenReturn(throwable);
     lenient().doAnswer(new Answer<AsyncResult<JsonObject>>() {
@@ -524,7 +605,9 @@ public class AsyncServiceTest {
         return null;
       }
     }).when(postgresService).executeQuery(anyString(), any());
-    listener = new AsyncFileScrollProgressListener("Dummy search ID", postgresService);
+    listener =
+        new AsyncFileScrollProgressListener(
+            "Dummy search ID", new AsyncProgressAggregator(postgresService));
     listener.updateProgress(0.55);
     vertxTestContext.completeNow();
   }
@@ -538,7 +621,7 @@ public class AsyncServiceTest {
 //
 //  doAnswer(Answer -> Future.failedFuture("fail"))
 //          .when(asyncServiceSpy)
-//          .getRecord4RequestId(any());
+//          .getRecord4RequestId(any(), any());
 //
 //  when(asyncResult1.succeeded()).thenReturn(true);
 //  when(asyncResult1.result()).thenReturn(jsonObject);
@@ -573,7 +656,7 @@ public void successfulAsyncSearchForExistingRecordTest2(VertxTestContext testCon
 
   doAnswer(Answer -> Future.succeededFuture(record))
           .when(asyncServiceSpy)
-          .getRecord4RequestId(any());
+          .getRecord4RequestId(any(), any());
   doAnswer(Answer -> Future.succeededFuture()).when(asyncServiceSpy).executePgQuery(any());
 
   JsonObject providerJson =
@@ -583,7 +666,7 @@ public void successfulAsyncSearchForExistingRecordTest2(VertxTestContext testCon
                   .put("resourceGroup", "dummy_resource");
 
   when(cacheSer.get(any())).thenReturn(Future.succeededFuture(providerJson));
-  asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv","delegate","dummy","dummy");
+  asyncServiceSpy.asyncSearch(requestId, sub, searchId, query, "csv","delegate","dummy","dummy", handler -> {});
   testContext.completeNow();
 }
 }
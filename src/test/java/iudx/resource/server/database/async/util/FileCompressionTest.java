@@ -0,0 +1,76 @@
+package iudx.resource.server.database.async.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.github.luben.zstd.ZstdInputStream;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class FileCompressionTest {
+
+  private static final String RECORD =
+      "{\"id\":\"suratmunicipal.org/6db486cb4f720e8585ba1f45a931c63c25dbbbda/rs.iudx.org.in/"
+          + "surat-itms-realtime-info/surat-itms-live-eta\",\"speed\":31.2}\n";
+
+  @Test
+  @DisplayName("Test compression is picked from header value")
+  public void testFromHeader(VertxTestContext vertxTestContext) {
+    assertEquals(FileCompression.NONE, FileCompression.fromHeader(null));
+    assertEquals(FileCompression.GZIP, FileCompression.fromHeader("gzip"));
+    assertEquals(FileCompression.ZSTD, FileCompression.fromHeader("zstd"));
+    assertEquals("search.csv", FileCompression.NONE.fileName("search.csv"));
+    assertEquals("search.csv.gz", FileCompression.GZIP.fileName("search.csv"));
+    assertEquals("search.json.zst", FileCompression.ZSTD.fileName("search.json"));
+    assertNull(FileCompression.NONE.getContentType());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test gzip stream is compressed and can be read back")
+  public void testGzip(VertxTestContext vertxTestContext) throws IOException {
+    byte[] compressed = compress(FileCompression.GZIP);
+
+    assertEquals(content(), decompress(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+    assertTrue(compressed.length < content().length() / 5);
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test zstd stream is compressed and can be read back")
+  public void testZstd(VertxTestContext vertxTestContext) throws IOException {
+    byte[] compressed = compress(FileCompression.ZSTD);
+
+    assertEquals(content(), decompress(new ZstdInputStream(new ByteArrayInputStream(compressed))));
+    assertTrue(compressed.length < content().length() / 5);
+    vertxTestContext.completeNow();
+  }
+
+  private byte[] compress(FileCompression compression) throws IOException {
+    ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (OutputStream outputStream = compression.wrap(compressed)) {
+      outputStream.write(content().getBytes(StandardCharsets.UTF_8));
+    }
+    return compressed.toByteArray();
+  }
+
+  private String decompress(InputStream inputStream) throws IOException {
+    try (inputStream) {
+      return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  private String content() {
+    return RECORD.repeat(1000);
+  }
+}
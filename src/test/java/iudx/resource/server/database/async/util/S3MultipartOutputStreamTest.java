@@ -0,0 +1,279 @@
+package iudx.resource.server.database.async.util;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder.EndpointConfiguration;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3ClientBuilder;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.http.HttpMethod;
+import io.vertx.core.http.HttpServer;
+import io.vertx.core.http.HttpServerOptions;
+import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+/** uploads are run against a minimal S3 compatible server running in the test. */
+@ExtendWith(VertxExtension.class)
+public class S3MultipartOutputStreamTest {
+
+  private static final String BUCKET = "bucket";
+  private static final String KEY = "search-id.json";
+  private static final int PART_SIZE = 1024;
+
+  private final Map<String, Buffer> objects = new ConcurrentHashMap<>();
+  private final Map<String, Map<Integer, Buffer>> uploads = new ConcurrentHashMap<>();
+  private final AtomicInteger abortedUploads = new AtomicInteger();
+  private final AtomicInteger partsInFlight = new AtomicInteger();
+  private final AtomicInteger maxPartsInFlight = new AtomicInteger();
+  private volatile int failingPart = -1;
+  private HttpServer server;
+  private AmazonS3 s3Client;
+  private ExecutorService executor;
+
+  @BeforeEach
+  public void setUp(Vertx vertx, VertxTestContext vertxTestContext) {
+    executor = Executors.newFixedThreadPool(4);
+    vertx
+        .createHttpServer(new HttpServerOptions().setHandle100ContinueAutomatically(true))
+        .requestHandler(request -> request.body().onSuccess(body -> handle(vertx, request, body)))
+        .listen(0)
+        .onComplete(
+            vertxTestContext.succeeding(
+                httpServer -> {
+                  server = httpServer;
+                  s3Client =
+                      AmazonS3ClientBuilder.standard()
+                          .withEndpointConfiguration(
+                              new EndpointConfiguration(
+                                  "http://localhost:" + httpServer.actualPort(), "ap-south-1"))
+                          .withPathStyleAccessEnabled(true)
+                          .withChunkedEncodingDisabled(true)
+                          .withCredentials(
+                              new AWSStaticCredentialsProvider(
+                                  new BasicAWSCredentials("access", "secret")))
+                          .withClientConfiguration(new ClientConfiguration().withMaxErrorRetry(0))
+                          .build();
+                  vertxTestContext.completeNow();
+                }));
+  }
+
+  @AfterEach
+  public void tearDown(VertxTestContext vertxTestContext) {
+    executor.shutdownNow();
+    s3Client.shutdown();
+    server.close().onComplete(vertxTestContext.succeedingThenComplete());
+  }
+
+  @Test
+  @DisplayName("Test stream is uploaded in parts and assembled on close")
+  public void testMultipartUpload(VertxTestContext vertxTestContext) throws IOException {
+    S3MultipartOutputStream outputStream = stream(2);
+    String content = content(10 * PART_SIZE + 100);
+
+    try (Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)) {
+      writer.write(content);
+    }
+
+    assertEquals(content, objects.get(KEY).toString());
+    assertEquals(content.length(), outputStream.getBytesWritten());
+    assertTrue(uploads.isEmpty());
+    assertTrue(maxPartsInFlight.get() <= 2);
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test stream smaller than a part is put in a single request")
+  public void testSmallUpload(VertxTestContext vertxTestContext) throws IOException {
+    S3MultipartOutputStream outputStream = stream(2);
+
+    try (Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8)) {
+      writer.write("[]");
+    }
+
+    assertEquals("[]", objects.get(KEY).toString());
+    assertEquals(0, maxPartsInFlight.get());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test failure of a part aborts the upload")
+  public void testFailedPart(VertxTestContext vertxTestContext) {
+    failingPart = 2;
+    S3MultipartOutputStream outputStream = stream(1);
+    byte[] page = content(PART_SIZE).getBytes(StandardCharsets.UTF_8);
+
+    assertThrows(
+        IOException.class,
+        () -> {
+          for (int i = 0; i < 10; i++) {
+            outputStream.write(page);
+          }
+          outputStream.close();
+        });
+
+    assertNull(objects.get(KEY));
+    assertEquals(1, abortedUploads.get());
+    assertTrue(uploads.isEmpty());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test aborted stream leaves no object")
+  public void testAbort(VertxTestContext vertxTestContext) throws IOException {
+    S3MultipartOutputStream outputStream = stream(2);
+    outputStream.write(content(3 * PART_SIZE).getBytes(StandardCharsets.UTF_8));
+
+    outputStream.abort();
+
+    assertThrows(IOException.class, () -> outputStream.write('a'));
+    assertNull(objects.get(KEY));
+    assertEquals(1, abortedUploads.get());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test resumable upload is continued by a new stream after its last part")
+  public void testResumedUpload(VertxTestContext vertxTestContext) throws IOException {
+    String firstPart = content(3 * PART_SIZE + 10);
+    String secondPart = content(PART_SIZE / 2);
+    S3MultipartOutputStream outputStream = stream(new JsonObject());
+    outputStream.write(firstPart.getBytes(StandardCharsets.UTF_8));
+    assertEquals(firstPart.length(), outputStream.getBufferedBytes());
+
+    JsonObject uploadState = outputStream.endPart().join();
+    // bytes written after the last part are lost with the stream
+    outputStream.write(content(PART_SIZE).getBytes(StandardCharsets.UTF_8));
+    S3MultipartOutputStream resumedStream = stream(uploadState);
+    resumedStream.write(secondPart.getBytes(StandardCharsets.UTF_8));
+    resumedStream.close();
+
+    assertEquals(1, uploadState.getJsonArray("parts").size());
+    assertEquals(firstPart + secondPart, objects.get(KEY).toString());
+    assertEquals(firstPart.length() + secondPart.length(), resumedStream.getBytesWritten());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test failed part of resumable upload leaves the upload to be resumed")
+  public void testFailedResumablePart(VertxTestContext vertxTestContext) throws IOException {
+    failingPart = 2;
+    S3MultipartOutputStream outputStream = stream(new JsonObject());
+    byte[] page = content(PART_SIZE).getBytes(StandardCharsets.UTF_8);
+    outputStream.write(page);
+    outputStream.endPart().join();
+    outputStream.write(page);
+
+    assertThrows(CompletionException.class, () -> outputStream.endPart().join());
+    assertThrows(IOException.class, outputStream::close);
+    assertEquals(0, abortedUploads.get());
+    assertEquals(1, uploads.size());
+
+    outputStream.abort();
+    assertEquals(1, abortedUploads.get());
+    vertxTestContext.completeNow();
+  }
+
+  private S3MultipartOutputStream stream(int bufferedParts) {
+    return new S3MultipartOutputStream(
+        s3Client, BUCKET, KEY, new ObjectMetadata(), PART_SIZE, bufferedParts, executor);
+  }
+
+  private S3MultipartOutputStream stream(JsonObject uploadState) {
+    return new S3MultipartOutputStream(
+        s3Client, BUCKET, KEY, new ObjectMetadata(), PART_SIZE, 2, executor, uploadState);
+  }
+
+  private String content(int length) {
+    StringBuilder content = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      content.append((char) ('a' + i % 26));
+    }
+    return content.toString();
+  }
+
+  private void handle(Vertx vertx, HttpServerRequest request, Buffer body) {
+    String key = request.path().substring(BUCKET.length() + 2);
+    String uploadId = request.getParam("uploadId");
+    if (request.method() == HttpMethod.POST && request.params().contains("uploads")) {
+      String id = String.valueOf(uploads.size() + 1);
+      uploads.put(id, new ConcurrentHashMap<>());
+      xml(request, "InitiateMultipartUploadResult", "<UploadId>" + id + "</UploadId>");
+    } else if (request.method() == HttpMethod.PUT && uploadId != null) {
+      int partNumber = Integer.parseInt(request.getParam("partNumber"));
+      maxPartsInFlight.accumulateAndGet(partsInFlight.incrementAndGet(), Math::max);
+      // parts take a while, so that the writer runs ahead of the upload
+      vertx.setTimer(
+          20,
+          timer -> {
+            partsInFlight.decrementAndGet();
+            if (partNumber == failingPart) {
+              request.response().setStatusCode(500).end();
+            } else {
+              uploads.get(uploadId).put(partNumber, body);
+              request.response().putHeader("ETag", "\"" + md5(body) + "\"").end();
+            }
+          });
+    } else if (request.method() == HttpMethod.POST && uploadId != null) {
+      Buffer object = Buffer.buffer();
+      new TreeMap<>(uploads.remove(uploadId)).values().forEach(object::appendBuffer);
+      objects.put(key, object);
+      xml(request, "CompleteMultipartUploadResult", "<ETag>\"" + md5(object) + "\"</ETag>");
+    } else if (request.method() == HttpMethod.DELETE && uploadId != null) {
+      uploads.remove(uploadId);
+      abortedUploads.incrementAndGet();
+      request.response().setStatusCode(204).end();
+    } else if (request.method() == HttpMethod.PUT) {
+      objects.put(key, body);
+      request.response().putHeader("ETag", "\"" + md5(body) + "\"").end();
+    } else {
+      request.response().setStatusCode(400).end();
+    }
+  }
+
+  private void xml(HttpServerRequest request, String element, String content) {
+    request
+        .response()
+        .putHeader("Content-Type", "application/xml")
+        .end(
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?><"
+                + element
+                + " xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\"><Bucket>"
+                + BUCKET
+                + "</Bucket><Key>"
+                + KEY
+                + "</Key>"
+                + content
+                + "</"
+                + element
+                + ">");
+  }
+
+  private String md5(Buffer buffer) {
+    return BinaryUtils.toHex(Md5Utils.computeMD5Hash(buffer.getBytes()));
+  }
+}
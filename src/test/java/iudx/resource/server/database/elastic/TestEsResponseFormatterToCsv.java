@@ -1,128 +1,222 @@
 package iudx.resource.server.database.elastic;
 
-import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.*;
 
+import co.elastic.clients.elasticsearch.core.field_caps.FieldCapability;
 import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import io.vertx.core.Vertx;
 import io.vertx.core.json.JsonObject;
 import io.vertx.junit5.VertxExtension;
 import io.vertx.junit5.VertxTestContext;
-import iudx.resource.server.configuration.Configuration;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.*;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.Mock;
-import org.mockito.junit.jupiter.MockitoExtension;
 
-@ExtendWith({MockitoExtension.class, VertxExtension.class})
+@ExtendWith(VertxExtension.class)
 public class TestEsResponseFormatterToCsv {
-    @Mock
-    FileWriter fileWriter;
-    private EsResponseFormatterToCsv responseFormatterToCsv;
-    private File file;
-    private Configuration configuration;
-    private JsonObject config;
-    @Mock
-    private List<Hit<ObjectNode>> searchHits;
-    @Mock
-    private Hit<ObjectNode> objectNodeHit;
-    @Mock
-    private ObjectNode objectNode;
-    private Set<String> stringSet;
-    private JsonFlatten jsonFlatten;
-    @Mock
-    private Map<String, Object> map;
-    private LinkedHashMap<String, Object> stringObjectMap;
-
-
-    @BeforeEach
-    public void setUp(VertxTestContext vertxTestContext)
-    {
-        configuration = new Configuration();
-        config = configuration.configLoader(8, Vertx.vertx());
-        String filePath = config.getString("filePath") + "dummy_file" + "." + "csv";
-        file = new File(filePath);
-        EsResponseFormatterToCsv.jsonFlatten = mock(JsonFlatten.class);
-        jsonFlatten = EsResponseFormatterToCsv.jsonFlatten;
-        EsResponseFormatterToCsv.map = mock(LinkedHashMap.class);
-        stringObjectMap = EsResponseFormatterToCsv.map;
-        stringSet = new HashSet<>(Arrays.asList("header1" ,"header2", "header3", "header4"));
-        lenient().when(searchHits.get(anyInt())).thenReturn(objectNodeHit);
-        lenient().when(objectNodeHit.source()).thenReturn(objectNode);
-        lenient().when(jsonFlatten.flatten()).thenReturn(stringObjectMap);
-        lenient().when(stringObjectMap.keySet()).thenReturn(stringSet);
-        responseFormatterToCsv = new EsResponseFormatterToCsv(file);
-        vertxTestContext.completeNow();
-    }
-
-    @Test
-    @DisplayName("Test method : Success")
-    public void testWriteMethod(VertxTestContext vertxTestContext)
-    {
-        responseFormatterToCsv.writeToCsv(searchHits);
-        verify(searchHits, times(1)).get(anyInt());
-        verify(jsonFlatten,times(1)).flatten();
-        verify(stringObjectMap,times(1)).keySet();
-        vertxTestContext.completeNow();
-    }
-    @Test
-    @DisplayName("Test method : Failure")
-    public void testWriteMethodFailure(VertxTestContext vertxTestContext) throws IOException {
-        responseFormatterToCsv.writeToCsv(searchHits);
-        responseFormatterToCsv.fileWriter = mock(fileWriter.getClass());
-        doThrow(new IOException()).when(responseFormatterToCsv.fileWriter).write(anyString());
-
-        verify(searchHits, times(1)).get(anyInt());
-        verify(jsonFlatten,times(1)).flatten();
-        verify(stringObjectMap,times(1)).keySet();
-
-        assertThrows(RuntimeException.class,()-> responseFormatterToCsv.writeToCsv(searchHits));
-        vertxTestContext.completeNow();
-    }
-
-    @Test
-    @DisplayName("Test finish method : Success")
-    public void testFinish(VertxTestContext vertxTestContext) throws IOException {
-        responseFormatterToCsv.fileWriter = mock(fileWriter.getClass());
-        responseFormatterToCsv.finish();
-        verify(responseFormatterToCsv.fileWriter, times(1)).close();
-        vertxTestContext.completeNow();
-    }
-    @Test
-    @DisplayName("Test finish method : Failure")
-    public void testFinishFailure(VertxTestContext vertxTestContext) throws IOException {
-        responseFormatterToCsv.fileWriter = mock(fileWriter.getClass());
-        doThrow(new IOException()).when(responseFormatterToCsv.fileWriter).close();
-        assertThrows(RuntimeException.class,()-> responseFormatterToCsv.finish());
-        verify(responseFormatterToCsv.fileWriter, times(1)).close();
-        vertxTestContext.completeNow();
-    }
-
-    @Test
-    @DisplayName("Test appendToCsvFile method : Success")
-    public void testAppend(VertxTestContext vertxTestContext)
-    {
-        when(map.get(anyString())).thenReturn("dummy");
-        responseFormatterToCsv.appendToCsvFile(map,stringSet);
-        verify(map, times(stringSet.size())).get(anyString());
-        vertxTestContext.completeNow();
-    }
-
-    @Test
-    @DisplayName("Test appendToCsvFile method : Failure")
-    public void testAppendFailure(VertxTestContext vertxTestContext) throws IOException {
-        responseFormatterToCsv.fileWriter = mock(fileWriter.getClass());
-        when(responseFormatterToCsv.fileWriter.append(anyString())).thenThrow(IOException.class);
-        when(map.get(anyString())).thenReturn("dummy");
-        assertThrows(RuntimeException.class,()-> responseFormatterToCsv.appendToCsvFile(map,stringSet));
-        vertxTestContext.completeNow();
-    }
+  private EsResponseFormatterToCsv responseFormatterToCsv;
+  private StringWriter writer;
+
+  @BeforeEach
+  public void setUp(VertxTestContext vertxTestContext) {
+    writer = new StringWriter();
+    responseFormatterToCsv = new EsResponseFormatterToCsv(writer);
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test header is the union of fields of the first batch")
+  public void testWriteMethod(VertxTestContext vertxTestContext) {
+    List<Hit<ObjectNode>> searchHits =
+        List.of(hit(source("a").put("speed", 12.5)), hit(source("b").put("license", "KA-01")));
+
+    Set<String> headers = responseFormatterToCsv.writeToCsv(searchHits);
+    responseFormatterToCsv.append(searchHits, false, headers);
+    responseFormatterToCsv.finish();
+
+    assertEquals(
+        List.of("id", "location.coordinates.0", "location.coordinates.1", "speed", "license"),
+        List.copyOf(headers));
+    assertEquals(
+        "id,location.coordinates.0,location.coordinates.1,speed,license\n"
+            + "a,77.5,12.9,12.5,\n"
+            + "b,77.5,12.9,,KA-01\n",
+        writer.toString());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test values with separators, quotes and line breaks are quoted")
+  public void testAppend(VertxTestContext vertxTestContext) {
+    List<Hit<ObjectNode>> searchHits =
+        List.of(
+            hit(
+                JsonNodeFactory.instance
+                    .objectNode()
+                    .put("plain", "text")
+                    .put("comma", "a,b")
+                    .put("quote", "say \"hi\"")
+                    .put("line", "a\nb")
+                    .put("active", true)));
+
+    responseFormatterToCsv.append(searchHits, false, responseFormatterToCsv.writeToCsv(searchHits));
+
+    assertEquals(
+        "plain,comma,quote,line,active\ntext,\"a,b\",\"say \"\"hi\"\"\",\"a\nb\",true\n",
+        writer.toString());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test fields first seen after the first batch are left out")
+  public void testLateField(VertxTestContext vertxTestContext) {
+    List<Hit<ObjectNode>> firstBatch = List.of(hit(source("a")));
+    Set<String> headers = responseFormatterToCsv.writeToCsv(firstBatch);
+
+    responseFormatterToCsv.append(firstBatch, false, headers);
+    responseFormatterToCsv.append(List.of(hit(source("b").put("speed", 1))), true, headers);
+
+    assertEquals(
+        "id,location.coordinates.0,location.coordinates.1\na,77.5,12.9\nb,77.5,12.9\n",
+        writer.toString());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test mapped fields not in the first batch get a column, objects written as JSON")
+  public void testMappedFields(VertxTestContext vertxTestContext) {
+    List<Hit<ObjectNode>> firstBatch = List.of(hit(source("a")));
+    Set<String> headers =
+        responseFormatterToCsv.writeToCsv(
+            firstBatch, List.of("id", "location", "speed", "vehicle.position"));
+
+    ObjectNode late = source("b").put("speed", 1);
+    late.putObject("vehicle").putObject("position").put("lat", 12.9).put("lon", 77.5);
+    responseFormatterToCsv.append(firstBatch, false, headers);
+    responseFormatterToCsv.append(List.of(hit(late)), true, headers);
+
+    assertEquals(
+        List.of(
+            "id", "location.coordinates.0", "location.coordinates.1", "speed", "vehicle.position"),
+        List.copyOf(headers));
+    assertEquals(
+        "id,location.coordinates.0,location.coordinates.1,speed,vehicle.position\n"
+            + "a,77.5,12.9,,\n"
+            + "b,77.5,12.9,1,\"{\"\"lat\"\":12.9,\"\"lon\"\":77.5}\"\n",
+        writer.toString());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test mapped fields are the leaf fields of field capabilities")
+  public void testGetMappedFields(VertxTestContext vertxTestContext) {
+    Map<String, Map<String, FieldCapability>> fieldCaps =
+        Map.of(
+            "_id", Map.of("_id", capability("_id", true)),
+            "id", Map.of("text", capability("text", false)),
+            "id.keyword", Map.of("keyword", capability("keyword", false)),
+            "location", Map.of("geo_shape", capability("geo_shape", false)),
+            "vehicle", Map.of("object", capability("object", false)),
+            "vehicle.speed", Map.of("float", capability("float", false)));
+
+    assertEquals(
+        List.of("id", "location", "vehicle.speed"),
+        EsResponseFormatterToCsv.getMappedFields(fieldCaps));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test resumed file keeps the columns of the header before the checkpoint")
+  public void testCheckpointResume(VertxTestContext vertxTestContext) {
+    List<Hit<ObjectNode>> firstBatch = List.of(hit(source("a").put("speed", 1)));
+    responseFormatterToCsv.append(firstBatch, false, responseFormatterToCsv.writeToCsv(firstBatch));
+    JsonObject state = responseFormatterToCsv.checkpoint();
+
+    StringWriter resumedWriter = new StringWriter();
+    EsResponseFormatterToCsv resumedFormatter = new EsResponseFormatterToCsv(resumedWriter);
+    resumedFormatter.resume(state);
+    resumedFormatter.append(
+        List.of(hit(source("b").put("license", "KA-01").put("speed", 2))), true, null);
+
+    assertEquals(
+        "id,location.coordinates.0,location.coordinates.1,speed\na,77.5,12.9,1\n",
+        writer.toString());
+    assertEquals("b,77.5,12.9,2\n", resumedWriter.toString());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test resumed file keeps writing objects of mapped fields as JSON")
+  public void testCheckpointResumeMapped(VertxTestContext vertxTestContext) {
+    List<Hit<ObjectNode>> firstBatch = List.of(hit(source("a")));
+    responseFormatterToCsv.append(
+        firstBatch, false, responseFormatterToCsv.writeToCsv(firstBatch, List.of("tags")));
+    JsonObject state = responseFormatterToCsv.checkpoint();
+
+    StringWriter resumedWriter = new StringWriter();
+    EsResponseFormatterToCsv resumedFormatter = new EsResponseFormatterToCsv(resumedWriter);
+    resumedFormatter.resume(state);
+    ObjectNode late = source("b");
+    late.putArray("tags").add("bus").add("ev");
+    resumedFormatter.append(List.of(hit(late)), true, null);
+
+    assertEquals("b,77.5,12.9,\"[\"\"bus\"\",\"\"ev\"\"]\"\n", resumedWriter.toString());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test method : Failure")
+  public void testWriteMethodFailure(VertxTestContext vertxTestContext) throws IOException {
+    responseFormatterToCsv.fileWriter = mock(Writer.class);
+    doThrow(new IOException()).when(responseFormatterToCsv.fileWriter).write(anyInt());
+
+    assertThrows(
+        RuntimeException.class,
+        () -> responseFormatterToCsv.writeToCsv(List.of(hit(source("a")))));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test finish method : Success")
+  public void testFinish(VertxTestContext vertxTestContext) throws IOException {
+    responseFormatterToCsv.fileWriter = mock(Writer.class);
+    responseFormatterToCsv.finish();
+    verify(responseFormatterToCsv.fileWriter, times(1)).close();
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test finish method : Failure")
+  public void testFinishFailure(VertxTestContext vertxTestContext) throws IOException {
+    responseFormatterToCsv.fileWriter = mock(Writer.class);
+    doThrow(new IOException()).when(responseFormatterToCsv.fileWriter).close();
+    assertThrows(RuntimeException.class, () -> responseFormatterToCsv.finish());
+    verify(responseFormatterToCsv.fileWriter, times(1)).close();
+    vertxTestContext.completeNow();
+  }
+
+  private ObjectNode source(String id) {
+    ObjectNode source = JsonNodeFactory.instance.objectNode().put("id", id);
+    source.putObject("location").putArray("coordinates").add(77.5).add(12.9);
+    return source;
+  }
+
+  private FieldCapability capability(String type, boolean isMetadata) {
+    return FieldCapability.of(
+        c -> c.type(type).aggregatable(false).searchable(true).metadataField(isMetadata));
+  }
+
+  private Hit<ObjectNode> hit(ObjectNode source) {
+    return Hit.of(h -> h.index("index").id("id").source(source));
+  }
 }
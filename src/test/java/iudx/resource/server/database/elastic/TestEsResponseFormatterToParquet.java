@@ -0,0 +1,230 @@
+package iudx.resource.server.database.elastic;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.resource.server.database.async.ProgressListener;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.apache.parquet.column.page.PageReadStore;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.convert.GroupRecordConverter;
+import org.apache.parquet.hadoop.ParquetFileReader;
+import org.apache.parquet.io.ColumnIOFactory;
+import org.apache.parquet.io.DelegatingSeekableInputStream;
+import org.apache.parquet.io.InputFile;
+import org.apache.parquet.io.RecordReader;
+import org.apache.parquet.io.SeekableInputStream;
+import org.apache.parquet.schema.LogicalTypeAnnotation;
+import org.apache.parquet.schema.MessageType;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class TestEsResponseFormatterToParquet {
+
+  private static final byte[] MAGIC = "PAR1".getBytes(StandardCharsets.US_ASCII);
+
+  @Test
+  @DisplayName("Test pages are written as row groups of a parquet file")
+  public void testWritePages(VertxTestContext vertxTestContext) {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    EsResponseFormatter formatter =
+        new EsResponseFormatterFactory("parquet", outputStream).createInstance();
+    List<Hit<ObjectNode>> firstPage = List.of(hit(source("a", 1.5)), hit(source("b", 2)));
+
+    formatter.write(firstPage);
+    formatter.append(firstPage, false);
+    formatter.append(List.of(hit(source("c", 3).put("late", true))), true);
+    formatter.finish();
+
+    byte[] file = outputStream.toByteArray();
+    String footer = new String(footer(file), StandardCharsets.UTF_8);
+    assertTrue(footer.contains("id"));
+    assertTrue(footer.contains("location.coordinates.0"));
+    assertTrue(footer.contains("late"));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test empty result is written as a parquet file without rows")
+  public void testEmpty(VertxTestContext vertxTestContext) {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    ScrollPageWriter pageWriter =
+        new ScrollPageWriter(
+            new EsResponseFormatterFactory("parquet", outputStream).createInstance(),
+            "parquet",
+            mock(ProgressListener.class),
+            0);
+
+    pageWriter.finish();
+
+    byte[] file = outputStream.toByteArray();
+    assertEquals(MAGIC.length * 2 + 4 + footer(file).length, file.length);
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test file read back by a parquet reader, columns widened, split and added late")
+  public void testReadBack(VertxTestContext vertxTestContext) throws IOException {
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    EsResponseFormatter formatter =
+        new EsResponseFormatterFactory("parquet", outputStream).createInstance();
+    List<Hit<ObjectNode>> firstPage =
+        List.of(
+            hit(node("a").put("value", 1.5).put("mixed", 1).put("flag", true)),
+            hit(node("b").put("value", 2.5).put("flag", false)));
+
+    formatter.write(firstPage);
+    formatter.append(firstPage, false);
+    formatter.append(List.of(hit(node("c").put("value", 3).put("mixed", "x"))), true);
+    formatter.append(
+        List.of(
+            hit(node("d").put("late", "l").put("both", true)),
+            hit(node("e").put("both", 2).put("mixed_double", "y"))),
+        true);
+    formatter.finish();
+
+    List<Group> rows = new ArrayList<>();
+    MessageType schema;
+    try (ParquetFileReader reader = ParquetFileReader.open(inputFile(outputStream.toByteArray()))) {
+      schema = reader.getFooter().getFileMetaData().getSchema();
+      assertEquals(3, reader.getRowGroups().size());
+      assertEquals(5, reader.getRecordCount());
+      PageReadStore rowGroup;
+      while ((rowGroup = reader.readNextRowGroup()) != null) {
+        RecordReader<Group> recordReader =
+            new ColumnIOFactory()
+                .getColumnIO(schema)
+                .getRecordReader(rowGroup, new GroupRecordConverter(schema));
+        for (long i = 0; i < rowGroup.getRowCount(); i++) {
+          rows.add(recordReader.read());
+        }
+      }
+    }
+
+    assertEquals(
+        List.of("id", "value", "mixed_double_", "mixed", "flag", "late", "both", "mixed_double"),
+        fieldNames(schema));
+    assertEquals(PrimitiveTypeName.DOUBLE, type(schema, "value").getPrimitiveTypeName());
+    assertEquals(PrimitiveTypeName.BOOLEAN, type(schema, "flag").getPrimitiveTypeName());
+    assertEquals(PrimitiveTypeName.DOUBLE, type(schema, "mixed_double_").getPrimitiveTypeName());
+    assertEquals(
+        LogicalTypeAnnotation.stringType(), type(schema, "mixed").getLogicalTypeAnnotation());
+    assertEquals(
+        LogicalTypeAnnotation.stringType(), type(schema, "both").getLogicalTypeAnnotation());
+    assertEquals(5, rows.size());
+    assertEquals(
+        List.of("a", "b", "c", "d", "e"),
+        List.of(
+            rows.get(0).getString("id", 0),
+            rows.get(1).getString("id", 0),
+            rows.get(2).getString("id", 0),
+            rows.get(3).getString("id", 0),
+            rows.get(4).getString("id", 0)));
+    assertEquals(3.0, rows.get(2).getDouble("value", 0));
+    // mixed was written as a double in the first row group, before its string showed up
+    assertEquals(1.0, rows.get(0).getDouble("mixed_double_", 0));
+    assertEquals(0, rows.get(1).getFieldRepetitionCount("mixed_double_"));
+    assertEquals(0, rows.get(2).getFieldRepetitionCount("mixed_double_"));
+    assertEquals(0, rows.get(0).getFieldRepetitionCount("mixed"));
+    assertEquals("x", rows.get(2).getString("mixed", 0));
+    assertTrue(rows.get(0).getBoolean("flag", 0));
+    assertFalse(rows.get(1).getBoolean("flag", 0));
+    assertEquals(0, rows.get(2).getFieldRepetitionCount("flag"));
+    assertEquals(0, rows.get(0).getFieldRepetitionCount("late"));
+    assertEquals("l", rows.get(3).getString("late", 0));
+    assertEquals("true", rows.get(3).getString("both", 0));
+    assertEquals("2", rows.get(4).getString("both", 0));
+    assertEquals("y", rows.get(4).getString("mixed_double", 0));
+    vertxTestContext.completeNow();
+  }
+
+  private List<String> fieldNames(MessageType schema) {
+    List<String> names = new ArrayList<>();
+    schema.getFields().forEach(field -> names.add(field.getName()));
+    return names;
+  }
+
+  private PrimitiveType type(MessageType schema, String field) {
+    return schema.getType(field).asPrimitiveType();
+  }
+
+  private InputFile inputFile(byte[] file) {
+    return new InputFile() {
+      @Override
+      public long getLength() {
+        return file.length;
+      }
+
+      @Override
+      public SeekableInputStream newStream() {
+        SeekableBytes bytes = new SeekableBytes(file);
+        return new DelegatingSeekableInputStream(bytes) {
+          @Override
+          public long getPos() {
+            return bytes.getPos();
+          }
+
+          @Override
+          public void seek(long newPos) {
+            bytes.seek(newPos);
+          }
+        };
+      }
+    };
+  }
+
+  private static final class SeekableBytes extends ByteArrayInputStream {
+    SeekableBytes(byte[] bytes) {
+      super(bytes);
+    }
+
+    long getPos() {
+      return pos;
+    }
+
+    void seek(long newPos) {
+      pos = (int) newPos;
+    }
+  }
+
+  private ObjectNode node(String id) {
+    return JsonNodeFactory.instance.objectNode().put("id", id);
+  }
+
+  /* checks magic at both ends of the file and returns the footer */
+  private byte[] footer(byte[] file) {
+    assertArrayEquals(MAGIC, Arrays.copyOfRange(file, 0, 4));
+    assertArrayEquals(MAGIC, Arrays.copyOfRange(file, file.length - 4, file.length));
+    int footerLength =
+        ByteBuffer.wrap(file, file.length - 8, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+    assertTrue(footerLength > 0 && footerLength <= file.length - 12);
+    return Arrays.copyOfRange(file, file.length - 8 - footerLength, file.length - 8);
+  }
+
+  private ObjectNode source(String id, Number longitude) {
+    ObjectNode source = JsonNodeFactory.instance.objectNode().put("id", id);
+    source.putObject("location").putArray("coordinates").add(longitude.doubleValue()).add(12.9);
+    return source;
+  }
+
+  private Hit<ObjectNode> hit(ObjectNode source) {
+    return Hit.of(h -> h.index("index").id(source.get("id").asText()).source(source));
+  }
+}
@@ -0,0 +1,102 @@
+package iudx.resource.server.database.elastic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class TestExportLane {
+
+  private final Query query = Query.of(q -> q.term(t -> t.field("id").value("id")));
+
+  @Test
+  @DisplayName("Test window is split in lanes of equal length")
+  public void testPartition(VertxTestContext vertxTestContext) {
+    TemporalWindow window =
+        TemporalWindow.forRelation(
+            new JsonObject()
+                .put("timerel", "during")
+                .put("time", "2020-10-10T00:00:00+05:30")
+                .put("endtime", "2020-10-11T00:00:00+05:30"),
+            10);
+
+    List<ExportLane> lanes = ExportLane.partition(window, 4);
+
+    assertEquals(4, lanes.size());
+    assertEquals("2020-10-10T00:00:00+05:30", lanes.get(0).toJson().getString("start"));
+    assertEquals("2020-10-10T06:00:00+05:30", lanes.get(0).toJson().getString("end"));
+    assertEquals("2020-10-10T06:00:00+05:30", lanes.get(1).toJson().getString("start"));
+    assertEquals("2020-10-11T00:00:00+05:30", lanes.get(3).toJson().getString("end"));
+    assertFalse(lanes.get(2).toJson().getBoolean("endIncluded"));
+    assertTrue(lanes.get(3).toJson().getBoolean("endIncluded"));
+    assertTrue(lanes.get(0).restrict(query).isBool());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test unbounded window is a single unrestricted lane")
+  public void testUnboundedWindow(VertxTestContext vertxTestContext) {
+    List<ExportLane> lanes = ExportLane.partition(TemporalWindow.UNBOUNDED, 4);
+
+    assertEquals(1, lanes.size());
+    assertSame(query, lanes.get(0).restrict(query));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test lane is restored from json after the last hit written")
+  public void testJson(VertxTestContext vertxTestContext) {
+    ExportLane lane = new ExportLane("2020-10-10T00:00Z", "2020-10-11T00:00Z", false, List.of());
+    lane.written(List.of(hit(1602288000000L, "id", 3), hit(1602288000000L, "id", 7)));
+
+    ExportLane restored = ExportLane.fromJson(new JsonObject(lane.toJson().encode()));
+
+    assertEquals(lane.toJson(), restored.toJson());
+    assertEquals(1602288000000L, restored.getWrittenAfter().get(0).longValue());
+    assertEquals("id", restored.getWrittenAfter().get(1).stringValue());
+    assertEquals(7L, restored.getWrittenAfter().get(2).longValue());
+    assertEquals(2, restored.getTiesWritten());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test hits of a same time and id are counted across pages")
+  public void testTiesWritten(VertxTestContext vertxTestContext) {
+    ExportLane lane = new ExportLane(null, null, true, List.of());
+    assertEquals(List.of(), lane.getResumeAfter());
+
+    lane.written(List.of(hit(1L, "a", 0), hit(2L, "b", 1), hit(2L, "b", 2)));
+    assertEquals(2, lane.getTiesWritten());
+    lane.written(List.of(hit(2L, "b", 5)));
+    assertEquals(3, lane.getTiesWritten());
+    assertTrue(lane.isTie(hit(2L, "b", 9).sort()));
+    assertFalse(lane.isTie(hit(2L, "c", 9).sort()));
+
+    List<FieldValue> resumeAfter = lane.getResumeAfter();
+    assertEquals(2L, resumeAfter.get(0).longValue());
+    assertEquals("b", resumeAfter.get(1).stringValue());
+    assertEquals(-1L, resumeAfter.get(2).longValue());
+
+    lane.written(List.of(hit(2L, "b", 6), hit(3L, "c", 7)));
+    assertEquals(1, lane.getTiesWritten());
+    vertxTestContext.completeNow();
+  }
+
+  private Hit<ObjectNode> hit(long time, String id, long shardDoc) {
+    return Hit.of(
+        h ->
+            h.index("index")
+                .id(id + shardDoc)
+                .sort(FieldValue.of(time), FieldValue.of(id), FieldValue.of(shardDoc)));
+  }
+}
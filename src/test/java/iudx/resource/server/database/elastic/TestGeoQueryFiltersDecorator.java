@@ -0,0 +1,106 @@
+package iudx.resource.server.database.elastic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.json.JsonpMapper;
+import co.elastic.clients.json.jackson.JacksonJsonpMapper;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.resource.server.database.elastic.exception.EsQueryException;
+import jakarta.json.stream.JsonGenerator;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class TestGeoQueryFiltersDecorator {
+
+  private final JsonpMapper mapper = new JacksonJsonpMapper();
+
+  private JsonObject decode(JsonObject request) {
+    Map<FilterType, List<Query>> queryFilters = new EnumMap<>(FilterType.class);
+    for (FilterType filterType : FilterType.values()) {
+      queryFilters.put(filterType, new ArrayList<>());
+    }
+    new GeoQueryFiltersDecorator(queryFilters, request).add();
+    Query query = queryFilters.get(FilterType.FILTER).get(0);
+
+    StringWriter writer = new StringWriter();
+    JsonGenerator generator = mapper.jsonProvider().createGenerator(writer);
+    query.serialize(generator, mapper);
+    generator.close();
+    return new JsonObject(writer.toString());
+  }
+
+  @Test
+  @DisplayName("Test near query is a geo_distance filter")
+  public void testNearQuery(VertxTestContext vertxTestContext) {
+    JsonObject request = new JsonObject().put("lat", 21.2).put("lon", 72.8296).put("radius", 1000);
+
+    JsonObject geoDistance = decode(request).getJsonObject("geo_distance");
+
+    assertEquals("1000m", geoDistance.getString("distance"));
+    assertEquals(21.2, geoDistance.getJsonObject("location").getDouble("lat"));
+    assertEquals(72.8296, geoDistance.getJsonObject("location").getDouble("lon"));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test polygon query is a geo_shape filter")
+  public void testPolygonQuery(VertxTestContext vertxTestContext) {
+    JsonObject request =
+        new JsonObject()
+            .put("geometry", "Polygon")
+            .put("georel", "intersects")
+            .put("geoproperty", "location")
+            .put("coordinates", "[[[72.7,21.1],[72.8,21.2],[72.9,21.1],[72.7,21.1]]]");
+
+    JsonObject location = decode(request).getJsonObject("geo_shape").getJsonObject("location");
+
+    assertEquals("intersects", location.getString("relation"));
+    assertEquals("Polygon", location.getJsonObject("shape").getString("type"));
+    assertEquals(
+        new JsonArray("[[[72.7,21.1],[72.8,21.2],[72.9,21.1],[72.7,21.1]]]"),
+        location.getJsonObject("shape").getJsonArray("coordinates"));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test bbox query is a geo_shape envelope filter")
+  public void testBboxQuery(VertxTestContext vertxTestContext) {
+    JsonObject request =
+        new JsonObject()
+            .put("geometry", "bbox")
+            .put("georel", "within")
+            .put("geoproperty", "location")
+            .put("coordinates", "[[72.7,21.2],[72.9,21.1]]");
+
+    JsonObject location = decode(request).getJsonObject("geo_shape").getJsonObject("location");
+
+    assertEquals("within", location.getString("relation"));
+    assertEquals("envelope", location.getJsonObject("shape").getString("type"));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test invalid georel fails")
+  public void testInvalidGeoRel(VertxTestContext vertxTestContext) {
+    JsonObject request =
+        new JsonObject()
+            .put("geometry", "bbox")
+            .put("georel", "overlaps")
+            .put("geoproperty", "location")
+            .put("coordinates", "[[72.7,21.2],[72.9,21.1]]");
+
+    assertThrows(EsQueryException.class, () -> decode(request));
+    vertxTestContext.completeNow();
+  }
+}
@@ -0,0 +1,70 @@
+package iudx.resource.server.database.elastic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class TestIndexResolver {
+
+  private static final String RESOURCE_GROUP = "surat-itms-realtime-information";
+
+  private final IndexResolver partitioned =
+      new IndexResolver("iudx", new JsonObject().put("enabled", true).put("maxSlices", 12));
+
+  private TemporalWindow during(String time, String endtime) {
+    JsonObject request =
+        new JsonObject()
+            .put("searchType", "temporalSearch")
+            .put("timerel", "during")
+            .put("time", time)
+            .put("endtime", endtime)
+            .put("timeLimit", "production,2020-10-22T00:00:00Z,10")
+            .put("applicableFilters", new JsonArray().add("TEMPORAL"));
+    return new QueryDecoder().getTemporalWindow(request);
+  }
+
+  @Test
+  @DisplayName("Test index name without partitioning")
+  public void testUnpartitioned(VertxTestContext vertxTestContext) {
+    TemporalWindow window = during("2020-10-10T14:20:00Z", "2020-12-12T14:20:00Z");
+
+    assertEquals(
+        "iudx__" + RESOURCE_GROUP, new IndexResolver("iudx").resolve(RESOURCE_GROUP, window));
+    assertEquals(RESOURCE_GROUP, new IndexResolver("none").resolve(RESOURCE_GROUP, window));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test only overlapping monthly slices are resolved")
+  public void testOverlappingSlices(VertxTestContext vertxTestContext) {
+    TemporalWindow window = during("2020-11-30T14:20:00Z", "2021-01-01T03:20:00+05:30");
+
+    assertEquals(
+        "iudx__"
+            + RESOURCE_GROUP
+            + "-2020.11*,iudx__"
+            + RESOURCE_GROUP
+            + "-2020.12*",
+        partitioned.resolve(RESOURCE_GROUP, window));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test unbounded or too wide window resolves all slices")
+  public void testAllSlices(VertxTestContext vertxTestContext) {
+    TemporalWindow wide = during("2019-01-01T00:00:00Z", "2021-01-01T00:00:00Z");
+
+    assertEquals(
+        "iudx__" + RESOURCE_GROUP + "-*",
+        partitioned.resolve(RESOURCE_GROUP, TemporalWindow.UNBOUNDED));
+    assertEquals("iudx__" + RESOURCE_GROUP + "-*", partitioned.resolve(RESOURCE_GROUP, wide));
+    vertxTestContext.completeNow();
+  }
+}
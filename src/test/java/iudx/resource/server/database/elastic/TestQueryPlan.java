@@ -0,0 +1,64 @@
+package iudx.resource.server.database.elastic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.resource.server.database.elastic.exception.EsQueryException;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class TestQueryPlan {
+
+  @Test
+  @DisplayName("Test plan classifies combined search type")
+  public void testCombinedSearchType(VertxTestContext vertxTestContext) {
+    QueryPlan plan = QueryPlan.forSearchType("temporalSearch_geoSearch_responseFilter_");
+
+    assertTrue(plan.isTemporalSearch());
+    assertTrue(plan.isGeoSearch());
+    assertTrue(plan.isResponseFilter());
+    assertFalse(plan.isAttributeSearch());
+    assertTrue(plan.isValid());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test plan is reused for same search type")
+  public void testPlanReused(VertxTestContext vertxTestContext) {
+    assertSame(
+        QueryPlan.forSearchType("attributeSearch_"), QueryPlan.forSearchType("attributeSearch_"));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test plan without filters is invalid")
+  public void testInvalidSearchType(VertxTestContext vertxTestContext) {
+    QueryPlan plan = QueryPlan.forSearchType("responseFilter_");
+
+    assertFalse(plan.isValid());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test response attributes are projected only with a response filter")
+  public void testResponseAttrs(VertxTestContext vertxTestContext) {
+    JsonObject queryJson = new JsonObject().put("attrs", new JsonArray().add("a").add("b"));
+
+    assertEquals(
+        List.of("a", "b"),
+        QueryPlan.forSearchType("latestSearch_responseFilter").getResponseAttrs(queryJson));
+    assertTrue(QueryPlan.forSearchType("latestSearch").getResponseAttrs(queryJson).isEmpty());
+    assertThrows(
+        EsQueryException.class,
+        () ->
+            QueryPlan.forSearchType("temporalSearch_responseFilter_")
+                .getResponseAttrs(new JsonObject()));
+    vertxTestContext.completeNow();
+  }
+}
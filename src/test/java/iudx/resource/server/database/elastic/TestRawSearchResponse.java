@@ -0,0 +1,95 @@
+package iudx.resource.server.database.elastic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class TestRawSearchResponse {
+
+  @Test
+  @DisplayName("Test hit sources are copied as-is into results array")
+  public void testParseHits(VertxTestContext vertxTestContext) throws IOException {
+    String body =
+        "{\"hits\":{\"total\":{\"value\":2,\"relation\":\"eq\"},\"hits\":["
+            + "{\"_source\":{\"id\":\"a\",\"observationDateTime\":\"2020-10-10T14:20:00+05:30\","
+            + "\"location\":{\"type\":\"Point\",\"coordinates\":[72.8,21.1]}}},"
+            + "{\"_index\":\"idx\",\"_source\":{\"id\":\"b\",\"speed\":12.5,\"tags\":[\"x\",{}]}}"
+            + "]}}";
+
+    RawSearchResponse response = RawSearchResponse.parse(body.getBytes(StandardCharsets.UTF_8));
+
+    assertEquals(2, response.getTotalHits());
+    assertEquals(2, response.getHitCount());
+    JsonArray hits = new JsonArray(response.getHits());
+    assertEquals("a", hits.getJsonObject(0).getString("id"));
+    assertEquals(21.1, hits.getJsonObject(0).getJsonObject("location")
+        .getJsonArray("coordinates").getDouble(1));
+    assertEquals(12.5, hits.getJsonObject(1).getDouble("speed"));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test multi byte characters in hit sources")
+  public void testParseMultiByte(VertxTestContext vertxTestContext) throws IOException {
+    String body =
+        "{\"hits\":{\"total\":{\"value\":1,\"relation\":\"eq\"},\"hits\":["
+            + "{\"_source\":{\"name\":\"सूरत ₹\"}}]}}";
+
+    RawSearchResponse response = RawSearchResponse.parse(body.getBytes(StandardCharsets.UTF_8));
+
+    assertEquals("सूरत ₹", new JsonArray(response.getHits()).getJsonObject(0).getString("name"));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test hit sources of a point-in-time page as lines, with sort of the last hit")
+  public void testParseLines(VertxTestContext vertxTestContext) throws IOException {
+    String body =
+        "{\"pit_id\":\"pit-2\",\"hits\":{\"hits\":["
+            + "{\"_source\":{\"id\":\"a\"},\"sort\":[1602319800000,4]},"
+            + "{\"sort\":[1602319900000,\"b\",null],\"_source\":{\"id\":\"b\",\"tags\":[1]}}"
+            + "]}}";
+
+    RawSearchResponse response =
+        RawSearchResponse.parseLines(body.getBytes(StandardCharsets.UTF_8));
+
+    assertEquals(2, response.getHitCount());
+    assertEquals(
+        "{\"id\":\"a\"}\n{\"id\":\"b\",\"tags\":[1]}\n", response.getHits().toString());
+    assertEquals("pit-2", response.getPitId());
+    assertEquals(3, response.getLastSort().size());
+    assertEquals(1602319900000L, response.getLastSort().get(0).longValue());
+    assertEquals("b", response.getLastSort().get(1).stringValue());
+    assertTrue(response.getLastSort().get(2).isNull());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test response without hits")
+  public void testParseEmpty(VertxTestContext vertxTestContext) throws IOException {
+    String body = "{\"hits\":{\"total\":{\"value\":0,\"relation\":\"eq\"}}}";
+
+    RawSearchResponse response = RawSearchResponse.parse(body.getBytes(StandardCharsets.UTF_8));
+
+    assertEquals(0, response.getTotalHits());
+    assertEquals(0, response.getHitCount());
+    assertEquals("[]", response.getHits().toString());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test invalid response")
+  public void testParseInvalid(VertxTestContext vertxTestContext) {
+    assertThrows(
+        IOException.class, () -> RawSearchResponse.parse("[1,2]".getBytes(StandardCharsets.UTF_8)));
+    vertxTestContext.completeNow();
+  }
+}
@@ -0,0 +1,339 @@
+package iudx.resource.server.database.elastic;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import co.elastic.clients.elasticsearch._types.ShardStatistics;
+import co.elastic.clients.elasticsearch._types.query_dsl.Query;
+import co.elastic.clients.elasticsearch.core.SearchRequest;
+import co.elastic.clients.elasticsearch.core.SearchResponse;
+import co.elastic.clients.elasticsearch.core.search.Hit;
+import co.elastic.clients.elasticsearch.core.search.HitsMetadata;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class TestScrollPipeline {
+
+  private ElasticsearchAsyncClient asyncClient;
+  private ExecutorService executor;
+  private final ExportLane lane = new ExportLane(null, null, true, List.of());
+  private final SearchRequest searchRequest = SearchRequest.of(s -> s.index("index").size(2));
+
+  @BeforeEach
+  public void setUp(VertxTestContext vertxTestContext) {
+    asyncClient = mock(ElasticsearchAsyncClient.class);
+    executor = Executors.newSingleThreadExecutor();
+    when(asyncClient.search(any(SearchRequest.class), eq(ObjectNode.class)))
+        .thenReturn(
+            CompletableFuture.completedFuture(searchResponse(page("a", "b"))),
+            CompletableFuture.completedFuture(searchResponse(page("c", "d"))),
+            CompletableFuture.completedFuture(searchResponse(page("e"))));
+    vertxTestContext.completeNow();
+  }
+
+  @AfterEach
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  @DisplayName("Test all pages are written in order, a short page ends the lane")
+  public void testWritesAllPages(VertxTestContext vertxTestContext) throws Exception {
+    List<String> written = Collections.synchronizedList(new ArrayList<>());
+    List<String> requestedAfter = Collections.synchronizedList(new ArrayList<>());
+    ScrollPipeline pipeline =
+        new ScrollPipeline(
+            asyncClient,
+            executor,
+            2,
+            (exportLane, hits) -> hits.forEach(hit -> written.add(hit.id())));
+
+    pipeline
+        .run(
+            List.of(lane),
+            (exportLane, after) -> {
+              requestedAfter.add(after.isEmpty() ? null : after.get(0).stringValue());
+              return searchRequest;
+            })
+        .get(10, TimeUnit.SECONDS);
+
+    assertEquals(List.of("a", "b", "c", "d", "e"), written);
+    assertEquals(Arrays.asList(null, "b", "d"), requestedAfter);
+    verify(asyncClient, times(3)).search(any(SearchRequest.class), eq(ObjectNode.class));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test next page is fetched while writer is busy, up to buffered pages")
+  public void testFetchesAheadOfWriter(VertxTestContext vertxTestContext) throws Exception {
+    CountDownLatch firstPageWriting = new CountDownLatch(1);
+    CountDownLatch releaseWriter = new CountDownLatch(1);
+    ScrollPipeline pipeline =
+        new ScrollPipeline(
+            asyncClient,
+            executor,
+            1,
+            (exportLane, hits) -> {
+              firstPageWriting.countDown();
+              try {
+                releaseWriter.await();
+              } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+              }
+            });
+
+    CompletableFuture<Void> result =
+        pipeline.run(List.of(lane), (exportLane, after) -> searchRequest);
+    assertTrue(firstPageWriting.await(10, TimeUnit.SECONDS));
+
+    // second page is fetched while first one is written, third waits for the writer
+    verify(asyncClient, timeout(1000).times(2))
+        .search(any(SearchRequest.class), eq(ObjectNode.class));
+    assertFalse(result.isDone());
+
+    releaseWriter.countDown();
+    result.get(10, TimeUnit.SECONDS);
+    verify(asyncClient, times(3)).search(any(SearchRequest.class), eq(ObjectNode.class));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test failure of writer fails the export")
+  public void testWriterFailure(VertxTestContext vertxTestContext) {
+    ScrollPipeline pipeline =
+        new ScrollPipeline(
+            asyncClient,
+            executor,
+            2,
+            (exportLane, hits) -> {
+              throw new IllegalStateException("disk full");
+            });
+
+    ExecutionException exception =
+        assertThrows(
+            ExecutionException.class,
+            () ->
+                pipeline
+                    .run(List.of(lane), (exportLane, after) -> searchRequest)
+                    .get(10, TimeUnit.SECONDS));
+
+    assertTrue(exception.getCause().getMessage().contains("disk full"));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test lanes are paged concurrently into a single writer, after hits written")
+  public void testLanes(VertxTestContext vertxTestContext) throws Exception {
+    ExportLane resumedLane =
+        new ExportLane(
+            "2020-10-18T00:00:00+05:30",
+            "2020-10-19T00:00:00+05:30",
+            true,
+            List.of(FieldValue.of(1603045800000L), FieldValue.of("x"), FieldValue.of(4L)));
+    SearchRequest resumedRequest = SearchRequest.of(s -> s.index("resumed").size(2));
+    when(asyncClient.search(eq(resumedRequest), eq(ObjectNode.class)))
+        .thenReturn(CompletableFuture.completedFuture(searchResponse(page())));
+    List<List<FieldValue>> resumedAfter = Collections.synchronizedList(new ArrayList<>());
+    List<String> written = Collections.synchronizedList(new ArrayList<>());
+    ScrollPipeline pipeline =
+        new ScrollPipeline(
+            asyncClient,
+            executor,
+            2,
+            (exportLane, hits) -> {
+              assertSame(lane, exportLane);
+              hits.forEach(hit -> written.add(hit.id()));
+            });
+
+    pipeline
+        .run(
+            List.of(lane, resumedLane),
+            (exportLane, after) -> {
+              if (exportLane == resumedLane) {
+                resumedAfter.add(after);
+                return resumedRequest;
+              }
+              return searchRequest;
+            })
+        .get(10, TimeUnit.SECONDS);
+
+    assertEquals(List.of("a", "b", "c", "d", "e"), written);
+    assertEquals(1, resumedAfter.size());
+    assertEquals("x", resumedAfter.get(0).get(1).stringValue());
+    assertEquals(-1L, resumedAfter.get(0).get(2).longValue());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test hits of a same time and id straddling pages are all written")
+  public void testTiesStraddlingPages(VertxTestContext vertxTestContext) throws Exception {
+    ExportLane exportLane = new ExportLane(null, null, true, List.of());
+    when(asyncClient.search(any(SearchRequest.class), eq(ObjectNode.class)))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                searchResponse(tiedPage(new String[] {"x-1", "x-2"}, 1, 2), "pit-2")),
+            CompletableFuture.completedFuture(
+                searchResponse(tiedPage(new String[] {"x-3"}, 3), "pit-2")));
+    List<String> written = Collections.synchronizedList(new ArrayList<>());
+    List<Long> requestedAfter = Collections.synchronizedList(new ArrayList<>());
+    List<String> pitIds = Collections.synchronizedList(new ArrayList<>());
+    ScrollPipeline pipeline =
+        new ScrollPipeline(
+                asyncClient,
+                executor,
+                2,
+                (lane, hits) -> {
+                  hits.forEach(hit -> written.add(hit.id()));
+                  lane.written(hits);
+                })
+            .pitIdHandler(pitIds::add);
+
+    pipeline
+        .run(
+            List.of(exportLane),
+            (lane, after) -> {
+              requestedAfter.add(after.isEmpty() ? null : after.get(2).longValue());
+              return searchRequest;
+            })
+        .get(10, TimeUnit.SECONDS);
+
+    // the shard doc tells apart hits of a same time and id on either side of the page boundary
+    assertEquals(List.of("x-1", "x-2", "x-3"), written);
+    assertEquals(Arrays.asList(null, 2L), requestedAfter);
+    assertEquals(3, exportLane.getTiesWritten());
+    assertEquals(List.of("pit-2", "pit-2"), pitIds);
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test resumed lane skips hits of a same time and id already written")
+  public void testResumeSkipsWrittenTies(VertxTestContext vertxTestContext) throws Exception {
+    // x-1 and x-2 were written before the checkpoint, in a point-in-time gone since
+    ExportLane resumedLane =
+        new ExportLane(
+            null,
+            null,
+            true,
+            List.of(FieldValue.of(1603045800000L), FieldValue.of("x"), FieldValue.of(9L)),
+            2);
+    when(asyncClient.search(any(SearchRequest.class), eq(ObjectNode.class)))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                searchResponse(tiedPage(new String[] {"x-1", "x-2"}, 0, 1))),
+            CompletableFuture.completedFuture(
+                searchResponse(tiedPage(new String[] {"x-3"}, 2))));
+    List<String> written = Collections.synchronizedList(new ArrayList<>());
+    List<List<FieldValue>> requestedAfter = Collections.synchronizedList(new ArrayList<>());
+    ScrollPipeline pipeline =
+        new ScrollPipeline(
+            asyncClient,
+            executor,
+            2,
+            (lane, hits) -> {
+              hits.forEach(hit -> written.add(hit.id()));
+              lane.written(hits);
+            });
+
+    pipeline
+        .run(
+            List.of(resumedLane),
+            (lane, after) -> {
+              requestedAfter.add(after);
+              return searchRequest;
+            })
+        .get(10, TimeUnit.SECONDS);
+
+    assertEquals(List.of("x-3"), written);
+    assertEquals(-1L, requestedAfter.get(0).get(2).longValue());
+    assertEquals(1L, requestedAfter.get(1).get(2).longValue());
+    assertEquals(3, resumedLane.getTiesWritten());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test export pages are searched in a point-in-time with a shard doc tiebreaker")
+  public void testExportRequest(VertxTestContext vertxTestContext) {
+    ElasticClient client = new ElasticClient("localhost", 9200, "user", "password", 1, 2, 4);
+    Query query = Query.of(q -> q.term(t -> t.field("id").value("id")));
+
+    SearchRequest request = client.exportRequest("pit-1", query, null, lane, List.of());
+
+    assertEquals("pit-1", request.pit().id());
+    assertTrue(request.index().isEmpty());
+    assertEquals(
+        List.of("observationDateTime", "id", "_shard_doc"),
+        request.sort().stream().map(sort -> sort.field().field()).collect(Collectors.toList()));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test slices are bounded by pages, shards, cores and max slices")
+  public void testScrollSlices(VertxTestContext vertxTestContext) {
+    ElasticClient client = new ElasticClient("localhost", 9200, "user", "password", 1, 2, 4);
+    int cores = Runtime.getRuntime().availableProcessors();
+
+    assertEquals(1, client.getScrollSlices(0, 5));
+    assertEquals(1, client.getScrollSlices(15000, 5));
+    assertEquals(1, client.getScrollSlices(1000000, 1));
+    assertEquals(Math.min(cores, 4), client.getScrollSlices(1000000, 5));
+    assertEquals(Math.min(cores, 2), client.getScrollSlices(40000, 5));
+    vertxTestContext.completeNow();
+  }
+
+  private HitsMetadata<ObjectNode> page(String... ids) {
+    List<Hit<ObjectNode>> hits = new ArrayList<>();
+    for (String id : ids) {
+      ObjectNode source = JsonNodeFactory.instance.objectNode().put("id", id);
+      hits.add(Hit.of(h -> h.index("index").id(id).source(source).sort(FieldValue.of(id))));
+    }
+    return HitsMetadata.of(h -> h.hits(hits));
+  }
+
+  /* hits of a same time and id, told apart by their shard doc */
+  private HitsMetadata<ObjectNode> tiedPage(String[] ids, long... shardDocs) {
+    List<Hit<ObjectNode>> hits = new ArrayList<>();
+    for (int i = 0; i < ids.length; i++) {
+      String id = ids[i];
+      ObjectNode source = JsonNodeFactory.instance.objectNode().put("id", "x");
+      List<FieldValue> sort =
+          List.of(FieldValue.of(1603045800000L), FieldValue.of("x"), FieldValue.of(shardDocs[i]));
+      hits.add(Hit.of(h -> h.index("index").id(id).source(source).sort(sort)));
+    }
+    return HitsMetadata.of(h -> h.hits(hits));
+  }
+
+  private SearchResponse<ObjectNode> searchResponse(HitsMetadata<ObjectNode> hits) {
+    return SearchResponse.of(r -> r.took(1).timedOut(false).shards(shards()).hits(hits));
+  }
+
+  private SearchResponse<ObjectNode> searchResponse(HitsMetadata<ObjectNode> hits, String pitId) {
+    return SearchResponse.of(
+        r -> r.took(1).timedOut(false).shards(shards()).hits(hits).pitId(pitId));
+  }
+
+  private ShardStatistics shards() {
+    return ShardStatistics.of(s -> s.total(1).successful(1).failed(0));
+  }
+}
@@ -0,0 +1,65 @@
+package iudx.resource.server.database.elastic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import co.elastic.clients.elasticsearch._types.FieldValue;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.resource.server.database.elastic.exception.EsQueryException;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class TestSearchCursor {
+
+  @Test
+  @DisplayName("Test encode and decode of cursor retains pit id and sort values")
+  public void testEncodeDecode(VertxTestContext vertxTestContext) {
+    SearchCursor cursor =
+        new SearchCursor(
+            "46ToAwMDaWR5BXV1aWQy", List.of(FieldValue.of(1700000000000L), FieldValue.of(42L)));
+
+    String token = cursor.encode();
+    SearchCursor decoded = SearchCursor.decode(token);
+
+    assertTrue(token.matches("^[A-Za-z0-9_-]+$"));
+    assertEquals("46ToAwMDaWR5BXV1aWQy", decoded.getPitId());
+    assertEquals(2, decoded.getSearchAfter().size());
+    assertEquals(1700000000000L, decoded.getSearchAfter().get(0).longValue());
+    assertEquals(42L, decoded.getSearchAfter().get(1).longValue());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test decode of mixed sort values")
+  public void testDecodeMixedValues(VertxTestContext vertxTestContext) {
+    SearchCursor cursor =
+        new SearchCursor(
+            "pit", List.of(FieldValue.of("abc"), FieldValue.of(1.5), FieldValue.NULL));
+
+    SearchCursor decoded = SearchCursor.decode(cursor.encode());
+
+    assertEquals("abc", decoded.getSearchAfter().get(0).stringValue());
+    assertEquals(1.5, decoded.getSearchAfter().get(1).doubleValue());
+    assertTrue(decoded.getSearchAfter().get(2).isNull());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test decode of invalid cursor")
+  public void testDecodeInvalid(VertxTestContext vertxTestContext) {
+    assertThrows(EsQueryException.class, () -> SearchCursor.decode("bm90LWpzb24"));
+    assertThrows(EsQueryException.class, () -> SearchCursor.decode("e30"));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test new cursor marker")
+  public void testIsNewCursor(VertxTestContext vertxTestContext) {
+    assertTrue(SearchCursor.isNewCursor("*"));
+    assertFalse(SearchCursor.isNewCursor("e30"));
+    vertxTestContext.completeNow();
+  }
+}
@@ -0,0 +1,107 @@
+package iudx.resource.server.database.elastic;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.resource.server.database.elastic.exception.EsQueryException;
+import java.time.ZonedDateTime;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class TestTemporalWindow {
+
+  private JsonObject temporalRequest(String timerel, String time, String endtime) {
+    JsonObject request =
+        new JsonObject()
+            .put("searchType", "temporalSearch")
+            .put("timerel", timerel)
+            .put("time", time)
+            .put("timeLimit", "production,2020-10-22T00:00:00Z,10")
+            .put("applicableFilters", new JsonArray().add("TEMPORAL"));
+    if (endtime != null) {
+      request.put("endtime", endtime);
+    }
+    return request;
+  }
+
+  @Test
+  @DisplayName("Test during window keeps requested time range")
+  public void testDuringWindow(VertxTestContext vertxTestContext) {
+    TemporalWindow window =
+        new QueryDecoder()
+            .getTemporalWindow(
+                temporalRequest(
+                    "during", "2020-10-10T14:20:00+05:30", "2020-10-12T14:20:00+05:30"));
+
+    assertEquals("2020-10-10T14:20:00+05:30", window.getStart());
+    assertEquals("2020-10-12T14:20:00+05:30", window.getEnd());
+    assertTrue(window.endsBefore(ZonedDateTime.now()));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test before window is closed by default days")
+  public void testBeforeWindow(VertxTestContext vertxTestContext) {
+    TemporalWindow window =
+        new QueryDecoder().getTemporalWindow(temporalRequest("before", "2020-10-20T00:00Z", null));
+
+    assertEquals("2020-10-10T00:00Z", window.getStart());
+    assertEquals("2020-10-20T00:00Z", window.getEnd());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test after window is capped at now")
+  public void testAfterWindow(VertxTestContext vertxTestContext) {
+    String start = ZonedDateTime.now().minusDays(1).toString();
+    TemporalWindow window =
+        new QueryDecoder().getTemporalWindow(temporalRequest("after", start, null));
+
+    assertFalse(window.endsBefore(ZonedDateTime.now().minusMinutes(1)));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test default window for production is open ended")
+  public void testDefaultProductionWindow(VertxTestContext vertxTestContext) {
+    JsonObject request =
+        new JsonObject()
+            .put("searchType", "geoSearch")
+            .put("timeLimit", "production,2020-10-22T00:00:00Z,10")
+            .put("applicableFilters", new JsonArray().add("TEMPORAL").add("SPATIAL"));
+
+    TemporalWindow window = new QueryDecoder().getTemporalWindow(request);
+
+    assertNotNull(window.getStart());
+    assertNull(window.getEnd());
+    assertFalse(window.endsBefore(ZonedDateTime.now()));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test window for non temporal resource is unbounded")
+  public void testUnboundedWindow(VertxTestContext vertxTestContext) {
+    JsonObject request =
+        new JsonObject()
+            .put("searchType", "geoSearch")
+            .put("timeLimit", "")
+            .put("applicableFilters", new JsonArray().add("SPATIAL"));
+
+    assertSame(TemporalWindow.UNBOUNDED, new QueryDecoder().getTemporalWindow(request));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test during window without endtime")
+  public void testDuringWithoutEnd(VertxTestContext vertxTestContext) {
+    assertThrows(
+        EsQueryException.class,
+        () -> TemporalWindow.forRelation(temporalRequest("during", "2020-10-10T14:20Z", null), 10));
+    vertxTestContext.completeNow();
+  }
+}
@@ -0,0 +1,245 @@
+package iudx.resource.server.database.latest;
+
+import static iudx.resource.server.common.Constants.GROUP_RESOURCES;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.resource.server.cache.CacheService;
+import iudx.resource.server.cache.cachelmpl.CacheType;
+import iudx.resource.server.common.ResponseUrn;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+
+@ExtendWith({VertxExtension.class})
+public class LatestDataServiceImplTest {
+
+  private static final String GROUP_ID = "8b95ab80-2aaf-4636-a65e-7f2563d0d371";
+  private static final String ID_1 = "b58da193-23d9-43eb-b98a-a103d4b6103c";
+  private static final String ID_2 = "5b7556b5-0779-4c47-9cf2-3f209779aa22";
+
+  private RedisClient redisClient;
+  private CacheService cacheService;
+  private LatestDataServiceImpl latestDataService;
+
+  @BeforeEach
+  public void setUp(VertxTestContext vertxTestContext) {
+    redisClient = mock(RedisClient.class);
+    cacheService = mock(CacheService.class);
+    // ID_2 has a unique attribute, GROUP_ID is a group of ID_1 and ID_2
+    when(cacheService.get(any()))
+        .thenAnswer(
+            invocation -> {
+              JsonObject request = invocation.getArgument(0);
+              String key = request.getString("key");
+              if (CacheType.UNIQUE_ATTRIBUTE.name().equals(request.getString("type"))) {
+                return ID_2.equals(key)
+                    ? Future.succeededFuture(new JsonObject().put("unique", "license_plate"))
+                    : Future.failedFuture("No entry for given key");
+              }
+              if (GROUP_ID.equals(key)) {
+                return Future.succeededFuture(
+                    new JsonObject()
+                        .put("id", GROUP_ID)
+                        .put(GROUP_RESOURCES, new JsonArray().add(ID_1).add(ID_2)));
+              }
+              return Future.succeededFuture(
+                  new JsonObject().put("id", key).put("resourceGroup", GROUP_ID));
+            });
+    latestDataService = new LatestDataServiceImpl(redisClient, cacheService, "iudx");
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test latest values of a list of ids are got in a single lookup")
+  public void testLatestOfIds(VertxTestContext vertxTestContext) {
+    JsonObject value = new JsonObject().put("id", ID_1).put("temperature", 25);
+    JsonObject uniqueValues =
+        new JsonObject()
+            .put("iudx:" + ID_2, new JsonObject())
+            .put("KA01", new JsonObject().put("license_plate", "KA01"))
+            .put("KA02", new JsonObject().put("license_plate", "KA02"));
+    ArgumentCaptor<List<RedisArgs>> argsCaptor = ArgumentCaptor.forClass(List.class);
+    when(redisClient.mget(argsCaptor.capture()))
+        .thenReturn(Future.succeededFuture(Arrays.asList(value.encode(), uniqueValues.encode())));
+
+    latestDataService.getLatestData(
+        request(ID_1, ID_2),
+        vertxTestContext.succeeding(
+            response -> {
+              List<RedisArgs> args = argsCaptor.getValue();
+              assertEquals("iudx:" + ID_1, args.get(0).getKey());
+              assertTrue(args.get(0).getPath().startsWith("._"));
+              assertEquals("iudx:" + ID_2, args.get(1).getKey());
+              assertEquals(".", args.get(1).getPath());
+              JsonArray results = response.getJsonArray("results");
+              assertEquals(3, results.size());
+              assertEquals(value, results.getJsonObject(0));
+              verify(redisClient, never()).searchEncoded(any(), any());
+              vertxTestContext.completeNow();
+            }));
+  }
+
+  @Test
+  @DisplayName("Test latest values of a group are the values of its resources")
+  public void testLatestOfGroup(VertxTestContext vertxTestContext) {
+    JsonObject value = new JsonObject().put("id", ID_1);
+    ArgumentCaptor<List<RedisArgs>> argsCaptor = ArgumentCaptor.forClass(List.class);
+    when(redisClient.mget(argsCaptor.capture()))
+        .thenReturn(Future.succeededFuture(Arrays.asList(value.encode(), null)));
+
+    latestDataService.getLatestData(
+        request(GROUP_ID),
+        vertxTestContext.succeeding(
+            response -> {
+              List<String> keys = new ArrayList<>();
+              argsCaptor.getValue().forEach(args -> keys.add(args.getKey()));
+              assertEquals(List.of("iudx:" + ID_1, "iudx:" + ID_2), keys);
+              assertEquals(new JsonArray().add(value), response.getJsonArray("results"));
+              vertxTestContext.completeNow();
+            }));
+  }
+
+  @Test
+  @DisplayName("Test latest values not found for any id fails the lookup")
+  public void testLatestOfIdsNotFound(VertxTestContext vertxTestContext) {
+    when(redisClient.mget(anyList()))
+        .thenReturn(Future.succeededFuture(Arrays.asList(null, null)));
+
+    latestDataService.getLatestData(
+        request(ID_1, ID_2),
+        vertxTestContext.failing(
+            failure -> {
+              assertEquals(204, new JsonObject(failure.getMessage()).getInteger("type"));
+              vertxTestContext.completeNow();
+            }));
+  }
+
+  @Test
+  @DisplayName("Test latest value of a single resource is got with JSON.GET")
+  public void testLatestOfResource(VertxTestContext vertxTestContext) {
+    JsonObject value = new JsonObject().put("id", ID_1);
+    when(redisClient.searchEncoded(any(), any()))
+        .thenReturn(Future.succeededFuture(value.encode()));
+
+    latestDataService.getLatestData(
+        request(ID_1),
+        vertxTestContext.succeeding(
+            response -> {
+              assertEquals(new JsonArray().add(value), response.getJsonArray("results"));
+              verify(redisClient, never()).mget(anyList());
+              vertxTestContext.completeNow();
+            }));
+  }
+
+  @Test
+  @DisplayName("Test latest values in the near-cache aren't read from Redis")
+  public void testLatestFromNearCache(VertxTestContext vertxTestContext) {
+    LatestNearCache nearCache = new LatestNearCache(1024 * 1024, 60);
+    latestDataService = new LatestDataServiceImpl(redisClient, cacheService, "iudx", nearCache);
+    JsonObject cached = new JsonObject().put("id", ID_1);
+    JsonObject value = new JsonObject().put("id", ID_2);
+    nearCache.watched(ID_1);
+    nearCache.watched(ID_2);
+    nearCache.put(ID_1, new JsonArray().add(cached).encode(), nearCache.stamp());
+    JsonObject uniqueValues =
+        new JsonObject().put("iudx:" + ID_2, new JsonObject()).put("v", value);
+    ArgumentCaptor<List<RedisArgs>> argsCaptor = ArgumentCaptor.forClass(List.class);
+    when(redisClient.mget(argsCaptor.capture()))
+        .thenReturn(Future.succeededFuture(Arrays.asList(uniqueValues.encode())));
+
+    latestDataService.getLatestData(
+        request(ID_1),
+        vertxTestContext.succeeding(
+            single -> {
+              assertEquals(new JsonArray().add(cached), single.getJsonArray("results"));
+              verify(redisClient, never()).searchEncoded(any(), any());
+              latestDataService.getLatestData(
+                  request(ID_1, ID_2),
+                  vertxTestContext.succeeding(
+                      multiple -> {
+                        assertEquals(1, argsCaptor.getValue().size());
+                        assertEquals("iudx:" + ID_2, argsCaptor.getValue().get(0).getKey());
+                        assertEquals(
+                            new JsonArray().add(cached).add(value),
+                            multiple.getJsonArray("results"));
+                        assertEquals(
+                            new JsonArray().add(value), new JsonArray(nearCache.get(ID_2)));
+                        vertxTestContext.completeNow();
+                      }));
+            }));
+  }
+
+  @Test
+  @DisplayName("Test latest values from Redis are spliced into the encoded response")
+  public void testLatestEncoded(VertxTestContext vertxTestContext) {
+    String value = "{\"id\": \"" + ID_1 + "\", \"temperature\": 25.10}";
+    when(redisClient.mget(anyList()))
+        .thenReturn(Future.succeededFuture(Arrays.asList(value, null)));
+
+    latestDataService.getLatestDataEncoded(
+        request(ID_1, ID_2),
+        vertxTestContext.succeeding(
+            response -> {
+              assertTrue(response.endsWith(",\"results\":[" + value + "]}"));
+              JsonObject decoded = new JsonObject(response);
+              assertEquals(ResponseUrn.SUCCESS_URN.getUrn(), decoded.getString("type"));
+              assertEquals(new JsonArray("[" + value + "]"), decoded.getJsonArray("results"));
+              vertxTestContext.completeNow();
+            }));
+  }
+
+  @Test
+  @DisplayName("Test latest values are projected to attrs in Redis")
+  public void testLatestProjected(VertxTestContext vertxTestContext) {
+    JsonObject uniqueValues =
+        new JsonObject()
+            .put("iudx:" + ID_2, new JsonObject())
+            .put("KA01", new JsonObject().put("license_plate", "KA01").put("speed", 40));
+    when(redisClient.getPaths(anyList()))
+        .thenAnswer(
+            invocation -> {
+              List<RedisArgs> args = invocation.getArgument(0);
+              List<String> paths = args.get(0).getPaths();
+              // a JSONPath matching nothing is replied with no matches
+              JsonObject matches =
+                  new JsonObject()
+                      .put(paths.get(0), new JsonArray().add(25))
+                      .put(paths.get(1), new JsonArray());
+              return Future.succeededFuture(Arrays.asList(matches.encode(), uniqueValues.encode()));
+            });
+    JsonObject request =
+        request(ID_1, ID_2)
+            .put("searchType", "latestSearch_responseFilter")
+            .put("attrs", new JsonArray().add("temperature").add("speed"));
+
+    latestDataService.getLatestData(
+        request,
+        vertxTestContext.succeeding(
+            response -> {
+              assertEquals(
+                  new JsonArray()
+                      .add(new JsonObject().put("temperature", 25))
+                      .add(new JsonObject().put("speed", 40)),
+                  response.getJsonArray("results"));
+              verify(redisClient, never()).mget(anyList());
+              vertxTestContext.completeNow();
+            }));
+  }
+
+  private JsonObject request(String... ids) {
+    return new JsonObject().put("id", new JsonArray(List.of(ids)));
+  }
+}
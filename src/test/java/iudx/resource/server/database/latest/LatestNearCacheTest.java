@@ -0,0 +1,119 @@
+package iudx.resource.server.database.latest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith({VertxExtension.class})
+public class LatestNearCacheTest {
+
+  private List<String> watched;
+  private List<String> unwatched;
+
+  @BeforeEach
+  public void setUp(VertxTestContext vertxTestContext) {
+    watched = new ArrayList<>();
+    unwatched = new ArrayList<>();
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test values cached are watched till they are evicted")
+  public void testWatchTillEvicted(VertxTestContext vertxTestContext) {
+    LatestNearCache nearCache = nearCache(200);
+    nearCache.put("id-1", values(70), nearCache.stamp());
+    assertNull(nearCache.get("id-1"));
+    assertEquals(List.of("id-1"), watched);
+
+    nearCache.watched("id-1");
+    nearCache.watched("id-2");
+    nearCache.watched("id-3");
+    nearCache.put("id-1", values(70), nearCache.stamp());
+    nearCache.put("id-2", values(70), nearCache.stamp());
+    nearCache.put("id-3", values(70), nearCache.stamp());
+
+    assertEquals(List.of("id-1"), unwatched);
+    assertNull(nearCache.get("id-1"));
+    assertEquals(values(70), nearCache.get("id-3"));
+    nearCache.put("id-1", values(70), nearCache.stamp());
+    assertNull(nearCache.get("id-1"));
+    assertEquals(List.of("id-1", "id-1"), watched);
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test values read before their watch is confirmed aren't cached")
+  public void testReadBeforeWatched(VertxTestContext vertxTestContext) {
+    LatestNearCache nearCache = nearCache(1000);
+    nearCache.put("id-1", values(10), nearCache.stamp());
+    // read racing the binding, an update published meanwhile wouldn't be received
+    long racingRead = nearCache.stamp();
+
+    nearCache.watched("id-1");
+    nearCache.put("id-1", values(10), racingRead);
+    assertNull(nearCache.get("id-1"));
+
+    nearCache.put("id-1", values(10), nearCache.stamp());
+    assertEquals(values(10), nearCache.get("id-1"));
+    nearCache.unwatched("id-1");
+    assertNull(nearCache.get("id-1"));
+    nearCache.put("id-1", values(10), nearCache.stamp());
+    assertNull(nearCache.get("id-1"));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test values read right after an update aren't cached")
+  public void testUpdateGrace(VertxTestContext vertxTestContext) {
+    LatestNearCache nearCache = nearCache(1000);
+    nearCache.watched("id-1");
+    nearCache.put("id-1", values(10), nearCache.stamp());
+
+    assertTrue(nearCache.invalidate("id-1"));
+    nearCache.put("id-1", values(10), nearCache.stamp());
+
+    assertNull(nearCache.get("id-1"));
+    assertFalse(nearCache.invalidate("id-1"));
+    assertTrue(unwatched.isEmpty());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test values and watches are invalidated all at once")
+  public void testInvalidateAll(VertxTestContext vertxTestContext) {
+    LatestNearCache nearCache = nearCache(1000);
+    nearCache.watched("id-1");
+    nearCache.watched("id-2");
+    nearCache.put("id-1", values(10), nearCache.stamp());
+    nearCache.put("id-2", values(10), nearCache.stamp());
+
+    nearCache.invalidateAll();
+
+    assertEquals(0, nearCache.size());
+    assertNull(nearCache.get("id-2"));
+    nearCache.put("id-1", values(10), nearCache.stamp());
+    assertNull(nearCache.get("id-1"));
+    assertEquals(List.of("id-1"), watched);
+    vertxTestContext.completeNow();
+  }
+
+  private LatestNearCache nearCache(long maxWeight) {
+    return new LatestNearCache(maxWeight, 60)
+        .watchHandler(watched::add)
+        .unwatchHandler(unwatched::add);
+  }
+
+  private String values(int length) {
+    // encoded as {"v":"..."} in brackets, 10 characters and the value
+    return new JsonArray().add(new JsonObject().put("v", "x".repeat(length - 10))).encode();
+  }
+}
@@ -0,0 +1,195 @@
+package iudx.resource.server.database.latest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+import io.vertx.core.Future;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.redis.client.Command;
+import io.vertx.redis.client.RedisAPI;
+import io.vertx.redis.client.impl.types.BulkType;
+import io.vertx.redis.client.impl.types.MultiType;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith({VertxExtension.class})
+public class RedisClientTest {
+
+  private RedisAPI redisAPI;
+  private List<List<String>> sent;
+
+  @BeforeEach
+  public void setUp(VertxTestContext vertxTestContext) {
+    redisAPI = mock(RedisAPI.class);
+    sent = new ArrayList<>();
+    // keys starting with "missing" aren't found, others have their key as value
+    doAnswer(
+            invocation -> {
+              List<String> cmdArgs = new ArrayList<>();
+              Object[] arguments = invocation.getArguments();
+              for (int i = 1; i < arguments.length; i++) {
+                cmdArgs.add((String) arguments[i]);
+              }
+              sent.add(cmdArgs);
+              MultiType response = MultiType.create(cmdArgs.size() - 1, false);
+              for (String key : cmdArgs.subList(0, cmdArgs.size() - 1)) {
+                response.add(
+                    key.startsWith("missing")
+                        ? null
+                        : BulkType.create(new JsonObject().put("key", key).toBuffer(), false));
+              }
+              return Future.succeededFuture(response);
+            })
+        .when(redisAPI)
+        .send(eq(Command.JSON_MGET), any(String[].class));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test keys are got with a JSON.MGET for each path")
+  public void testMgetByPath(VertxTestContext vertxTestContext) {
+    RedisClient redisClient = new RedisClient(redisAPI, false);
+    List<RedisArgs> args =
+        List.of(args("iudx:a", "."), args("iudx:b", "._sha"), args("missing", "."));
+
+    redisClient
+        .mget(args)
+        .onComplete(
+            vertxTestContext.succeeding(
+                results -> {
+                  assertEquals(2, sent.size());
+                  assertEquals(List.of("iudx:a", "missing", "."), sent.get(0));
+                  assertEquals(List.of("iudx:b", "._sha"), sent.get(1));
+                  assertEquals("iudx:a", new JsonObject(results.get(0)).getString("key"));
+                  assertEquals("iudx:b", new JsonObject(results.get(1)).getString("key"));
+                  assertNull(results.get(2));
+                  vertxTestContext.completeNow();
+                }));
+  }
+
+  @Test
+  @DisplayName("Test keys of a path are got in batches")
+  public void testMgetBatches(VertxTestContext vertxTestContext) {
+    RedisClient redisClient = new RedisClient(redisAPI, false);
+    List<RedisArgs> args = new ArrayList<>();
+    for (int i = 0; i < 250; i++) {
+      args.add(args("iudx:" + i, "."));
+    }
+
+    redisClient
+        .mget(args)
+        .onComplete(
+            vertxTestContext.succeeding(
+                results -> {
+                  assertEquals(3, sent.size());
+                  assertEquals(101, sent.get(0).size());
+                  assertEquals(51, sent.get(2).size());
+                  assertEquals(250, results.size());
+                  assertEquals("iudx:249", new JsonObject(results.get(249)).getString("key"));
+                  vertxTestContext.completeNow();
+                }));
+  }
+
+  @Test
+  @DisplayName("Test keys of a cluster are batched by hash slot")
+  public void testMgetCluster(VertxTestContext vertxTestContext) {
+    RedisClient redisClient = new RedisClient(redisAPI, true);
+    List<RedisArgs> args = new ArrayList<>();
+    Set<Integer> slots = new HashSet<>();
+    for (int i = 0; i < 10; i++) {
+      args.add(args("iudx:" + i, "."));
+      slots.add(RedisClient.slot("iudx:" + i));
+    }
+
+    redisClient
+        .mget(args)
+        .onComplete(
+            vertxTestContext.succeeding(
+                results -> {
+                  assertEquals(slots.size(), sent.size());
+                  for (List<String> batch : sent) {
+                    List<String> keys = batch.subList(0, batch.size() - 1);
+                    assertEquals(1, keys.stream().map(RedisClient::slot).distinct().count());
+                  }
+                  assertEquals("iudx:3", new JsonObject(results.get(3)).getString("key"));
+                  vertxTestContext.completeNow();
+                }));
+  }
+
+  @Test
+  @DisplayName("Test hash slots of keys are those of a Redis cluster")
+  public void testSlot(VertxTestContext vertxTestContext) {
+    // CLUSTER KEYSLOT of these keys
+    assertEquals(12182, RedisClient.slot("foo"));
+    assertEquals(12739, RedisClient.slot("123456789"));
+    assertEquals(RedisClient.slot("foo"), RedisClient.slot("{foo}:iudx"));
+    assertNotEquals(RedisClient.slot("foo"), RedisClient.slot("{}foo"));
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test failed JSON.MGET fails the lookup")
+  public void testMgetFailure(VertxTestContext vertxTestContext) {
+    doReturn(Future.failedFuture("connection closed"))
+        .when(redisAPI)
+        .send(eq(Command.JSON_MGET), any(String[].class));
+    RedisClient redisClient = new RedisClient(redisAPI, false);
+
+    redisClient
+        .mget(List.of(args("iudx:a", "."), args("iudx:b", ".")))
+        .onComplete(
+            vertxTestContext.failing(
+                failure -> {
+                  assertTrue(failure.getMessage().contains("connection closed"));
+                  vertxTestContext.completeNow();
+                }));
+  }
+
+  @Test
+  @DisplayName("Test paths of each key are got with a single JSON.GET")
+  public void testGetPaths(VertxTestContext vertxTestContext) {
+    doAnswer(
+            invocation -> {
+              String key = invocation.getArgument(1);
+              return Future.succeededFuture(
+                  key.startsWith("missing")
+                      ? null
+                      : BulkType.create(new JsonObject().put("key", key).toBuffer(), false));
+            })
+        .when(redisAPI)
+        .send(eq(Command.JSON_GET), any(String[].class));
+    RedisClient redisClient = new RedisClient(redisAPI, false);
+    RedisArgs projected = args("iudx:a", ".");
+    projected.setPaths(List.of("$._sha['a']", "$._sha['b']"));
+
+    redisClient
+        .getPaths(List.of(projected, args("missing", ".")))
+        .onComplete(
+            vertxTestContext.succeeding(
+                results -> {
+                  verify(redisAPI)
+                      .send(Command.JSON_GET, "iudx:a", "$._sha['a']", "$._sha['b']");
+                  verify(redisAPI, never()).send(eq(Command.JSON_MGET), any(String[].class));
+                  assertEquals("iudx:a", new JsonObject(results.get(0)).getString("key"));
+                  assertNull(results.get(1));
+                  vertxTestContext.completeNow();
+                }));
+  }
+
+  private RedisArgs args(String key, String path) {
+    RedisArgs args = new RedisArgs();
+    args.setKey(key);
+    args.setPath(path);
+    return args;
+  }
+}
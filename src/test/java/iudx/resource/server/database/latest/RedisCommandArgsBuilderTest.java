@@ -3,6 +3,7 @@ package iudx.resource.server.database.latest;
 import static iudx.resource.server.database.archives.Constants.DEFAULT_ATTRIBUTE;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 
+import java.util.List;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
@@ -50,4 +51,17 @@ public class RedisCommandArgsBuilderTest {
     assertEquals("._" + sha, redisArgs.getPath());
   }
 
+  @Test
+  public void projectedArgs() {
+    String id = "asdas/asdasdas/adsasdasd/asdasda";
+    RedisArgs redisArgs =
+        redisCmdArgsBuilder.getRedisCommandArgs(id, false, "iudx", List.of("a", "b"));
+    RedisArgs snapshotArgs =
+        redisCmdArgsBuilder.getRedisCommandArgs(id, true, "iudx", List.of("a", "b"));
+
+    String sha = DigestUtils.sha1Hex(id + "/" + DEFAULT_ATTRIBUTE);
+    assertEquals(List.of("$._" + sha + "['a']", "$._" + sha + "['b']"), redisArgs.getPaths());
+    assertEquals(List.of("."), snapshotArgs.getPaths());
+  }
+
 }
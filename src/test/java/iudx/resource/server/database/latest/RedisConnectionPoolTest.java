@@ -0,0 +1,199 @@
+package iudx.resource.server.database.latest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.redis.client.Command;
+import io.vertx.redis.client.Redis;
+import io.vertx.redis.client.RedisConnection;
+import io.vertx.redis.client.Request;
+import io.vertx.redis.client.Response;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+
+@ExtendWith({VertxExtension.class})
+public class RedisConnectionPoolTest {
+
+  private Redis client;
+  private List<Promise<RedisConnection>> connecting;
+  private SimpleMeterRegistry registry;
+  private RedisClientMetrics metrics;
+
+  @BeforeEach
+  public void setUp(VertxTestContext vertxTestContext) {
+    client = mock(Redis.class);
+    connecting = new ArrayList<>();
+    when(client.connect())
+        .thenAnswer(
+            invocation -> {
+              Promise<RedisConnection> promise = Promise.promise();
+              connecting.add(promise);
+              return promise.future();
+            });
+    registry = new SimpleMeterRegistry();
+    metrics = new RedisClientMetrics(registry);
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test commands are pipelined on the least busy connection")
+  public void testLeastBusyConnection(Vertx vertx, VertxTestContext vertxTestContext) {
+    RedisConnectionPool pool = new RedisConnectionPool(vertx, client, 2, 10, metrics);
+    Future<Void> opened = pool.open();
+    RedisConnection first = connection();
+    RedisConnection second = connection();
+    connecting.get(0).complete(first);
+    connecting.get(1).complete(second);
+
+    assertTrue(opened.succeeded());
+    pool.send(Request.cmd(Command.PING));
+    pool.send(Request.cmd(Command.PING));
+    pool.send(Request.cmd(Command.PING));
+
+    verify(first, times(2)).send(any());
+    verify(second, times(1)).send(any());
+    assertEquals(2.0, registry.get("rs.redis.pool.connections").gauge().value());
+    assertEquals(1.0, registry.get("rs.redis.pool.utilization").gauge().value());
+    assertEquals(3.0, registry.get("rs.redis.commands.running").gauge().value());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test commands wait for a connection to open, up to a limit")
+  public void testWaitingCommands(Vertx vertx, VertxTestContext vertxTestContext) {
+    RedisConnectionPool pool = new RedisConnectionPool(vertx, client, 1, 1, metrics);
+    pool.open();
+
+    Future<Response> waiting = pool.send(Request.cmd(Command.PING));
+    Future<Response> rejected = pool.send(Request.cmd(Command.PING));
+
+    assertTrue(rejected.failed());
+    assertFalse(waiting.isComplete());
+    assertEquals(1, metrics.getWaitingCommands());
+    RedisConnection connection = connection();
+    connecting.get(0).complete(connection);
+    verify(connection).send(any());
+    assertEquals(0, metrics.getWaitingCommands());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test commands fail right away while pending queues are full")
+  public void testPendingQueueFull(Vertx vertx, VertxTestContext vertxTestContext) {
+    RedisConnectionPool pool = new RedisConnectionPool(vertx, client, 1, 10, metrics);
+    pool.open();
+    RedisConnection connection = connection();
+    when(connection.pendingQueueFull()).thenReturn(true);
+    connecting.get(0).complete(connection);
+
+    pool.send(Request.cmd(Command.PING))
+        .onComplete(
+            vertxTestContext.failing(
+                failure -> {
+                  verify(connection, never()).send(any());
+                  vertxTestContext.completeNow();
+                }));
+  }
+
+  @Test
+  @DisplayName("Test a lost connection is opened again")
+  public void testReconnect(Vertx vertx, VertxTestContext vertxTestContext) {
+    RedisConnectionPool pool = new RedisConnectionPool(vertx, client, 1, 10, metrics);
+    pool.open();
+    RedisConnection lost = connection();
+    connecting.get(0).complete(lost);
+    ArgumentCaptor<Handler<Void>> endHandler = ArgumentCaptor.forClass(Handler.class);
+    verify(lost).endHandler(endHandler.capture());
+
+    endHandler.getValue().handle(null);
+
+    assertEquals(0, metrics.getOpenConnections());
+    assertEquals(2, connecting.size());
+    RedisConnection reopened = connection();
+    connecting.get(1).complete(reopened);
+    pool.send(Request.cmd(Command.PING));
+    verify(reopened).send(any());
+    verify(lost, never()).send(any());
+    assertEquals(1, metrics.getOpenConnections());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test pool fails to open once first attempts fail, connections are still retried")
+  public void testConnectBackoff(Vertx vertx, VertxTestContext vertxTestContext) {
+    RedisConnectionPool pool = new RedisConnectionPool(vertx, client, 1, 10, metrics);
+    Future<Void> opened = pool.open();
+    connecting.get(0).fail("connection refused");
+
+    assertTrue(opened.failed());
+    assertEquals(1, connecting.size());
+    vertx.setTimer(
+        1000,
+        id -> {
+          assertEquals(2, connecting.size());
+          connecting.get(1).complete(connection());
+          assertEquals(1, metrics.getOpenConnections());
+          vertxTestContext.completeNow();
+        });
+  }
+
+  @Test
+  @DisplayName("Test pool opens if the first attempt of any connection succeeds")
+  public void testOpenWithFailedConnection(Vertx vertx, VertxTestContext vertxTestContext) {
+    RedisConnectionPool pool = new RedisConnectionPool(vertx, client, 2, 10, metrics);
+    Future<Void> opened = pool.open();
+    connecting.get(0).fail("connection refused");
+    connecting.get(1).complete(connection());
+
+    assertTrue(opened.succeeded());
+    pool.close();
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test idle connections are recycled and opened again when commands are sent")
+  public void testRecycleIdle(Vertx vertx, VertxTestContext vertxTestContext) {
+    RedisConnectionPool pool = new RedisConnectionPool(vertx, client, 2, 10, 60000, metrics);
+    pool.open();
+    RedisConnection busy = connection();
+    RedisConnection idle = connection();
+    connecting.get(0).complete(busy);
+    connecting.get(1).complete(idle);
+    pool.send(Request.cmd(Command.PING));
+
+    pool.recycleIdle(System.currentTimeMillis() + 60000);
+
+    verify(idle).close();
+    verify(busy, never()).close();
+    assertEquals(1, metrics.getOpenConnections());
+    pool.send(Request.cmd(Command.PING));
+    assertEquals(3, connecting.size());
+    RedisConnection reopened = connection();
+    connecting.get(2).complete(reopened);
+    pool.send(Request.cmd(Command.PING));
+    verify(reopened).send(any());
+    verify(idle, times(0)).send(any());
+    pool.close();
+    vertxTestContext.completeNow();
+  }
+
+  private RedisConnection connection() {
+    RedisConnection connection = mock(RedisConnection.class);
+    when(connection.send(any())).thenReturn(Promise.<Response>promise().future());
+    when(connection.close()).thenReturn(Future.succeededFuture());
+    return connection;
+  }
+}
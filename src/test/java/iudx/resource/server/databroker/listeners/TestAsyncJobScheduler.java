@@ -0,0 +1,183 @@
+package iudx.resource.server.databroker.listeners;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.vertx.core.Promise;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import iudx.resource.server.databroker.listeners.AsyncJobScheduler.AsyncJob;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+
+@ExtendWith(VertxExtension.class)
+public class TestAsyncJobScheduler {
+  private List<AsyncJob> started;
+  private List<Promise<Void>> running;
+  private SimpleMeterRegistry registry;
+  private AsyncJobScheduler scheduler;
+
+  @BeforeEach
+  public void setUp(VertxTestContext vertxTestContext) {
+    started = new ArrayList<>();
+    running = new ArrayList<>();
+    registry = new SimpleMeterRegistry();
+    scheduler =
+        new AsyncJobScheduler(
+            2,
+            job -> {
+              Promise<Void> promise = Promise.promise();
+              started.add(job);
+              running.add(promise);
+              return promise.future();
+            },
+            registry);
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test jobs beyond the worker limit wait for a running job to complete")
+  public void testWorkerLimit(VertxTestContext vertxTestContext) {
+    scheduler.submit(job("user-a", 1, 60, 1));
+    scheduler.submit(job("user-a", 1, 60, 2));
+    scheduler.submit(job("user-a", 1, 60, 3));
+
+    assertEquals(2, started.size());
+    assertEquals(2, scheduler.getRunningJobs());
+    assertEquals(1, scheduler.getQueuedJobs());
+    assertEquals(1.0, registry.get("rs.async.jobs.queued").gauge().value());
+    assertEquals(2.0, registry.get("rs.async.jobs.running").gauge().value());
+
+    running.get(0).complete();
+
+    assertEquals(3, started.size());
+    assertEquals(0, scheduler.getQueuedJobs());
+    assertEquals(3, registry.get("rs.async.jobs.wait").timer().count());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test users take turns for free workers")
+  public void testRoundRobin(VertxTestContext vertxTestContext) {
+    scheduler.submit(job("user-a", 1, 60, 1));
+    scheduler.submit(job("user-a", 1, 60, 2));
+    scheduler.submit(job("user-a", 1, 60, 3));
+    scheduler.submit(job("user-a", 1, 60, 4));
+    scheduler.submit(job("user-b", 1, 60, 5));
+
+    running.get(0).complete();
+    running.get(1).fail("query failed");
+
+    assertEquals(List.of("1", "2", "3", "5"), searchIds());
+    assertEquals(2, scheduler.getRunningJobs());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test smallest estimated job of a user is started first")
+  public void testSmallestFirst(VertxTestContext vertxTestContext) {
+    scheduler.submit(job("user-a", 1, 60, 1));
+    scheduler.submit(job("user-a", 1, 60, 2));
+    scheduler.submit(job("user-a", 5, 86400, 3));
+    scheduler.submit(job("user-a", 1, 3600, 4));
+    scheduler.submit(job("user-a", 1, 60, 5));
+
+    running.get(0).complete();
+    running.get(1).complete();
+    running.get(2).complete();
+
+    assertEquals(List.of("1", "2", "5", "4", "3"), searchIds());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test jobs of a user beyond the bound aren't queued")
+  public void testQueuedPerUserBound(VertxTestContext vertxTestContext) {
+    AsyncJobScheduler boundScheduler =
+        new AsyncJobScheduler(
+            1,
+            2,
+            job -> {
+              started.add(job);
+              return Promise.<Void>promise().future();
+            },
+            null);
+
+    assertTrue(boundScheduler.submit(job("user-a", 1, 60, 1)));
+    assertTrue(boundScheduler.submit(job("user-a", 1, 60, 2)));
+    assertTrue(boundScheduler.submit(job("user-a", 1, 60, 3)));
+    assertFalse(boundScheduler.submit(job("user-a", 1, 60, 4)));
+    assertTrue(boundScheduler.submit(job("user-b", 1, 60, 5)));
+
+    assertEquals(3, boundScheduler.getQueuedJobs());
+    assertEquals(List.of("1"), searchIds());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test a job failing to start frees its worker")
+  public void testRunnerException(VertxTestContext vertxTestContext) {
+    List<AsyncJob> attempted = new ArrayList<>();
+    AsyncJobScheduler failingScheduler =
+        new AsyncJobScheduler(
+            1,
+            job -> {
+              attempted.add(job);
+              throw new IllegalStateException("service unavailable");
+            },
+            null);
+
+    failingScheduler.submit(job("user-a", 1, 60, 1));
+    failingScheduler.submit(job("user-a", 1, 60, 2));
+
+    assertEquals(2, attempted.size());
+    assertEquals(0, failingScheduler.getRunningJobs());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test estimated size of a query")
+  public void testEstimateSize(VertxTestContext vertxTestContext) {
+    assertEquals(3 * 3600L, job("user-a", 3, 3600, 1).getEstimatedSize());
+    assertEquals(Long.MAX_VALUE, AsyncJob.estimateSize(null));
+    assertEquals(
+        Long.MAX_VALUE, AsyncJob.estimateSize(new JsonObject().put("time", "2020-10-18")));
+    assertEquals(
+        Long.MAX_VALUE,
+        AsyncJob.estimateSize(
+            new JsonObject().put("time", "yesterday").put("endtime", "2020-10-18T00:00:00Z")));
+    vertxTestContext.completeNow();
+  }
+
+  private List<String> searchIds() {
+    List<String> searchIds = new ArrayList<>();
+    started.forEach(job -> searchIds.add(job.getSearchId()));
+    return searchIds;
+  }
+
+  private AsyncJob job(String user, int ids, long windowSeconds, int searchId) {
+    JsonArray idArray = new JsonArray();
+    for (int i = 0; i < ids; i++) {
+      idArray.add("id-" + i);
+    }
+    Instant time = Instant.parse("2020-10-18T00:00:00Z");
+    JsonObject query =
+        new JsonObject()
+            .put("id", idArray)
+            .put("time", time.toString())
+            .put("endtime", time.plusSeconds(windowSeconds).toString());
+    JsonObject message =
+        new JsonObject()
+            .put("searchId", String.valueOf(searchId))
+            .put("user", user)
+            .put("query", query);
+    return new AsyncJob(user, message);
+  }
+}
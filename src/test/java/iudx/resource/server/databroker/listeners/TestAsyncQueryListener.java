@@ -2,10 +2,16 @@ package iudx.resource.server.databroker.listeners;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static iudx.resource.server.common.Constants.ASYNC_QUERY_Q;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -17,6 +23,7 @@ import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.stubbing.Answer;
+import com.rabbitmq.client.Envelope;
 import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
@@ -29,7 +36,14 @@ import io.vertx.rabbitmq.RabbitMQClient;
 import io.vertx.rabbitmq.RabbitMQConsumer;
 import io.vertx.rabbitmq.RabbitMQMessage;
 import io.vertx.rabbitmq.RabbitMQOptions;
+import io.vertx.sqlclient.Row;
+import io.vertx.sqlclient.RowIterator;
+import io.vertx.sqlclient.RowSet;
 import iudx.resource.server.database.async.AsyncService;
+import iudx.resource.server.databroker.PostgresClient;
+import java.util.ArrayList;
+import java.util.List;
+import org.mockito.ArgumentCaptor;
 
 
 @ExtendWith({VertxExtension.class, MockitoExtension.class})
@@ -51,6 +65,8 @@ public class TestAsyncQueryListener {
   @Mock
   AsyncService asyncService;
   @Mock
+  PostgresClient pgClient;
+  @Mock
   RabbitMQMessage message;
   @Mock
   Throwable throwable;
@@ -59,7 +75,7 @@ public class TestAsyncQueryListener {
   @BeforeEach
   public void setUp(VertxTestContext vertxTestContext) {
     vHost = "Dummy vHost";
-    asyncQueryListener = new AsyncQueryListener(vertx, config, vHost, asyncService);
+    asyncQueryListener = new AsyncQueryListener(vertx, config, vHost, asyncService, pgClient);
     asyncQueryListener.client = mock(client.getClass());
     vertxTestContext.completeNow();
   }
@@ -89,10 +105,13 @@ public class TestAsyncQueryListener {
 
 
     when(asyncQueryListener.client.start()).thenReturn(voidFuture);
+    when(asyncQueryListener.client.basicQos(anyInt())).thenReturn(Future.succeededFuture());
+    when(message.envelope()).thenReturn(new Envelope(1L, false, "", ASYNC_QUERY_Q));
     when(clientStartAsyncResult.succeeded()).thenReturn(true);
     when(consumerASyncResult.succeeded()).thenReturn(true);
     when(consumerASyncResult.result()).thenReturn(rmqConsumer);
     when(message.body()).thenReturn(buffer);
+    when(pgClient.executeAsync(anyString())).thenReturn(Future.succeededFuture());
 
 
 
@@ -123,7 +142,7 @@ public class TestAsyncQueryListener {
     asyncQueryListener.start();
     verify(voidFuture, times(1)).onComplete(any());
     verify(clientStartAsyncResult).succeeded();
-    verify(asyncService).asyncSearch(anyString(), anyString(), anyString(), any(),anyString(),anyString(),anyString(),anyString());
+    verify(asyncService).asyncSearch(anyString(), anyString(), anyString(), any(),anyString(),anyString(),anyString(),anyString(), any());
     verify(message).body();
     assertEquals(buffer, message.body());
     vertxTestContext.completeNow();
@@ -143,6 +162,8 @@ public class TestAsyncQueryListener {
 
 
     when(asyncQueryListener.client.start()).thenReturn(voidFuture);
+    when(asyncQueryListener.client.basicQos(anyInt())).thenReturn(Future.succeededFuture());
+    when(message.envelope()).thenReturn(new Envelope(1L, false, "", ASYNC_QUERY_Q));
     when(clientStartAsyncResult.succeeded()).thenReturn(true);
     when(consumerASyncResult.succeeded()).thenReturn(true);
     when(consumerASyncResult.result()).thenReturn(rmqConsumer);
@@ -179,6 +200,7 @@ public class TestAsyncQueryListener {
     verify(clientStartAsyncResult).succeeded();
     verify(message).body();
     assertEquals(null, message.body());
+    verify(asyncQueryListener.client).basicAck(1L, false);
     vertxTestContext.completeNow();
   }
 
@@ -219,10 +241,13 @@ public class TestAsyncQueryListener {
 
 
     when(asyncQueryListener.client.start()).thenReturn(voidFuture);
+    when(asyncQueryListener.client.basicQos(anyInt())).thenReturn(Future.succeededFuture());
+    when(message.envelope()).thenReturn(new Envelope(1L, false, "", ASYNC_QUERY_Q));
     when(clientStartAsyncResult.succeeded()).thenReturn(true);
     when(consumerASyncResult.succeeded()).thenReturn(true);
     when(consumerASyncResult.result()).thenReturn(rmqConsumer);
     when(message.body()).thenReturn(buffer);
+    when(pgClient.executeAsync(anyString())).thenReturn(Future.succeededFuture());
 
 
 
@@ -253,10 +278,113 @@ public class TestAsyncQueryListener {
     asyncQueryListener.start();
     verify(voidFuture, times(1)).onComplete(any());
     verify(clientStartAsyncResult).succeeded();
-    verify(asyncService).asyncSearch(anyString(), anyString(), anyString(), any(),anyString(),anyString(),anyString(),anyString());
+    verify(asyncService).asyncSearch(anyString(), anyString(), anyString(), any(),anyString(),anyString(),anyString(),anyString(), any());
     verify(message).body();
     assertEquals(buffer, message.body());
     vertxTestContext.completeNow();
 
   }
+
+  @Test
+  @DisplayName("Test a backlog of a user beyond the prefetch doesn't hold back others")
+  public void testBacklogBeyondPrefetch(VertxTestContext vertxTestContext) {
+    AsyncQueryListener listener =
+        new AsyncQueryListener(vertx, config, vHost, asyncService, pgClient, 1, 2, 100);
+    listener.client = mock(RabbitMQClient.class);
+    List<String> started = new ArrayList<>();
+    List<Handler<AsyncResult<Void>>> running = new ArrayList<>();
+    when(pgClient.executeAsync(anyString())).thenReturn(Future.succeededFuture());
+    doAnswer(
+            invocation -> {
+              started.add(invocation.getArgument(2));
+              running.add(invocation.getArgument(8));
+              return asyncService;
+            })
+        .when(asyncService)
+        .asyncSearch(any(), any(), any(), any(), any(), any(), any(), any(), any());
+
+    for (int i = 1; i <= 5; i++) {
+      listener.handleMessage(message(i, "user-a"));
+    }
+    listener.handleMessage(message(6, "user-b"));
+
+    // handed off messages are acknowledged, so the broker delivers beyond the prefetch
+    for (long i = 1; i <= 6; i++) {
+      verify(listener.client).basicAck(i, false);
+    }
+    assertEquals(List.of("search-1"), started);
+    running.get(0).handle(Future.succeededFuture());
+    running.get(1).handle(Future.succeededFuture());
+    assertEquals(List.of("search-1", "search-2", "search-6"), started);
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test message not saved to its row is requeued, not acknowledged or run")
+  public void testMessageNotSavedRequeued(VertxTestContext vertxTestContext) {
+    when(pgClient.executeAsync(anyString()))
+        .thenReturn(Future.failedFuture("connection refused"));
+    doAnswer(
+            invocation -> {
+              ((Handler<Long>) invocation.getArgument(1)).handle(1L);
+              return 1L;
+            })
+        .when(vertx)
+        .setTimer(anyLong(), any());
+
+    asyncQueryListener.handleMessage(message(3, "user-a"));
+
+    verify(asyncQueryListener.client).basicNack(3L, false, true);
+    verify(asyncQueryListener.client, never()).basicAck(anyLong(), anyBoolean());
+    verify(asyncService, never())
+        .asyncSearch(any(), any(), any(), any(), any(), any(), any(), any(), any());
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test queries of stale rows are claimed and held till done")
+  public void testRecoverStaleQueries(VertxTestContext vertxTestContext) {
+    RowSet<Row> rows = mock(RowSet.class);
+    RowIterator<Row> rowIterator = mock(RowIterator.class);
+    Row row = mock(Row.class);
+    List<Handler<AsyncResult<Void>>> running = new ArrayList<>();
+    ArgumentCaptor<String> sqlCaptor = ArgumentCaptor.forClass(String.class);
+    when(pgClient.executeAsync(anyString())).thenReturn(Future.succeededFuture(rows));
+    when(rows.iterator()).thenReturn(rowIterator);
+    when(rowIterator.hasNext()).thenReturn(true, false);
+    when(rowIterator.next()).thenReturn(row);
+    when(row.getJsonObject("message")).thenReturn(query(7, "user-a"));
+    doAnswer(
+            invocation -> {
+              running.add(invocation.getArgument(8));
+              return asyncService;
+            })
+        .when(asyncService)
+        .asyncSearch(any(), any(), any(), any(), any(), any(), any(), any(), any());
+
+    asyncQueryListener.recover();
+    asyncQueryListener.heartbeat();
+    running.get(0).handle(Future.succeededFuture());
+    asyncQueryListener.heartbeat();
+
+    verify(pgClient, times(2)).executeAsync(sqlCaptor.capture());
+    assertTrue(sqlCaptor.getAllValues().get(0).contains("FOR UPDATE SKIP LOCKED"));
+    assertTrue(sqlCaptor.getAllValues().get(1).contains("IN ('search-7')"));
+    vertxTestContext.completeNow();
+  }
+
+  private RabbitMQMessage message(long deliveryTag, String user) {
+    RabbitMQMessage message = mock(RabbitMQMessage.class);
+    when(message.envelope()).thenReturn(new Envelope(deliveryTag, false, "", ASYNC_QUERY_Q));
+    when(message.body()).thenReturn(query(deliveryTag, user).toBuffer());
+    return message;
+  }
+
+  private JsonObject query(long searchId, String user) {
+    return new JsonObject()
+        .put("requestId", "request-" + searchId)
+        .put("searchId", "search-" + searchId)
+        .put("user", user)
+        .put("query", new JsonObject());
+  }
 }
@@ -0,0 +1,101 @@
+package iudx.resource.server.databroker.listeners;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Envelope;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Promise;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.junit5.VertxExtension;
+import io.vertx.junit5.VertxTestContext;
+import io.vertx.rabbitmq.QueueOptions;
+import io.vertx.rabbitmq.RabbitMQClient;
+import io.vertx.rabbitmq.RabbitMQConsumer;
+import io.vertx.rabbitmq.RabbitMQMessage;
+import io.vertx.rabbitmq.RabbitMQOptions;
+import iudx.resource.server.cache.CacheService;
+import iudx.resource.server.database.latest.LatestNearCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith({VertxExtension.class, MockitoExtension.class})
+public class TestLatestUpdateListener {
+  LatestUpdateListener latestUpdateListener;
+  LatestNearCache nearCache;
+  @Mock
+  Vertx vertx;
+  @Mock
+  CacheService cache;
+  @Mock
+  RabbitMQOptions config;
+  @Mock
+  RabbitMQClient client;
+  @Mock
+  AMQP.Queue.DeclareOk declareOk;
+  @Mock
+  RabbitMQConsumer rabbitMQConsumer;
+  @Mock
+  RabbitMQMessage message;
+
+  @BeforeEach
+  public void setUp(VertxTestContext vertxTestContext) {
+    nearCache = new LatestNearCache(1000, 60);
+    latestUpdateListener =
+        new LatestUpdateListener(vertx, config, "Dummy vHost", cache, nearCache);
+    latestUpdateListener.client = client;
+    vertxTestContext.completeNow();
+  }
+
+  @Test
+  @DisplayName("Test values read while binding aren't cached")
+  public void testReadWhileBinding(VertxTestContext vertxTestContext) {
+    ArgumentCaptor<Handler<Promise<Void>>> connectionCaptor =
+        ArgumentCaptor.forClass(Handler.class);
+    when(client.start()).thenReturn(Future.succeededFuture());
+    when(declareOk.getQueue()).thenReturn("queue");
+    when(client.queueDeclare("", false, true, true))
+        .thenReturn(Future.succeededFuture(declareOk));
+    when(client.basicConsumer(eq("queue"), any(QueueOptions.class)))
+        .thenReturn(Future.succeededFuture(rabbitMQConsumer));
+    when(cache.get(any()))
+        .thenReturn(Future.succeededFuture(new JsonObject().put("resourceGroup", "group")));
+    Promise<Void> bindPromise = Promise.promise();
+    when(client.queueBind("queue", "group", "id-1")).thenReturn(bindPromise.future());
+    when(client.queueUnbind("queue", "group", "id-1")).thenReturn(Future.succeededFuture());
+    when(message.envelope()).thenReturn(new Envelope(1L, false, "group", "id-1"));
+
+    latestUpdateListener.start();
+    verify(client).addConnectionEstablishedCallback(connectionCaptor.capture());
+    connectionCaptor.getValue().handle(Promise.promise());
+
+    nearCache.put("id-1", "[1]", nearCache.stamp());
+    // read racing the binding, an update published meanwhile wouldn't be received
+    long racingRead = nearCache.stamp();
+    bindPromise.complete();
+    nearCache.put("id-1", "[1]", racingRead);
+    assertNull(nearCache.get("id-1"));
+
+    nearCache.put("id-1", "[2]", nearCache.stamp());
+    assertEquals("[2]", nearCache.get("id-1"));
+
+    latestUpdateListener.handleMessage(message);
+    assertNull(nearCache.get("id-1"));
+    latestUpdateListener.handleMessage(message);
+    verify(client).queueUnbind("queue", "group", "id-1");
+    vertxTestContext.completeNow();
+  }
+}